@@ -4,12 +4,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.nrg.framework.annotations.XnatPlugin;
 import org.nrg.xdat.security.helpers.UserHelper;
 import org.nrg.xdat.security.services.SearchHelperServiceI;
+import org.nrg.xnatx.plugins.jupyterhub.client.AsyncJupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.DefaultAsyncJupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.client.DefaultJupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubCircuitBreaker;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubRequestLimiter;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubRetryPolicy;
 import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
-import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubCullingService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubHealthService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubLeaderElection;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationRecovery;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubReconciliationService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStateMirror;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SharedDataDeletionQueue;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.*;
 import org.springframework.scheduling.config.TriggerTask;
 import org.springframework.scheduling.support.PeriodicTrigger;
@@ -47,25 +60,89 @@ public class JupyterHubPlugin {
     }
 
     @Bean
-    @Scope(value = ConfigurableBeanFactory.SCOPE_PROTOTYPE, proxyMode = ScopedProxyMode.TARGET_CLASS)
-    public JupyterHubClient getJupyterHubClient() {
-        return new DefaultJupyterHubClient(jupyterHubPreferences.getJupyterHubToken(),
-                                           jupyterHubPreferences.getJupyterHubApiUrl());
+    public HubCircuitBreaker getHubCircuitBreaker() {
+        return new HubCircuitBreaker(jupyterHubPreferences);
     }
 
     @Bean
-    public TriggerTask cullIdleServers(final JupyterHubService jupyterHubService) {
-        return new TriggerTask(jupyterHubService::cullInactiveServers, new PeriodicTrigger(5, TimeUnit.MINUTES));
+    public HubRetryPolicy getHubRetryPolicy() {
+        return new HubRetryPolicy(jupyterHubPreferences);
     }
 
     @Bean
-    public TriggerTask cullLongRunningServers(final JupyterHubService jupyterHubService) {
-        return new TriggerTask(jupyterHubService::cullLongRunningServers, new PeriodicTrigger(5, TimeUnit.MINUTES));
+    public HubRequestLimiter getHubRequestLimiter() {
+        return new HubRequestLimiter(jupyterHubPreferences);
     }
 
     @Bean
-    public TriggerTask cullDeadServerSharedFolders(final JupyterHubService jupyterHubService) {
-        return new TriggerTask(jupyterHubService::cleanupOrphanedSharedDataDirs, new PeriodicTrigger(1, TimeUnit.DAYS));
+    public JupyterHubClient getJupyterHubClient(final HubCircuitBreaker hubCircuitBreaker, final HubRetryPolicy hubRetryPolicy,
+                                                final HubRequestLimiter hubRequestLimiter) {
+        return new DefaultJupyterHubClient(jupyterHubPreferences, hubCircuitBreaker, hubRetryPolicy, hubRequestLimiter);
+    }
+
+    @Bean
+    public AsyncJupyterHubClient getAsyncJupyterHubClient(final HubCircuitBreaker hubCircuitBreaker, final HubRetryPolicy hubRetryPolicy,
+                                                          final HubRequestLimiter hubRequestLimiter) {
+        return new DefaultAsyncJupyterHubClient(jupyterHubPreferences, hubCircuitBreaker, hubRetryPolicy, hubRequestLimiter);
+    }
+
+    @Bean
+    public JupyterHubLifecycleExecutor getJupyterHubLifecycleExecutor() {
+        return new JupyterHubLifecycleExecutor(jupyterHubPreferences);
+    }
+
+    @Bean
+    public SharedDataDeletionQueue getSharedDataDeletionQueue() {
+        return new SharedDataDeletionQueue(jupyterHubPreferences);
+    }
+
+    @Bean
+    public TriggerTask probeJupyterHubHealth(final JupyterHubHealthService jupyterHubHealthService) {
+        return new TriggerTask(jupyterHubHealthService::probe, new PeriodicTrigger(Math.max(1, jupyterHubPreferences.getHubHealthCheckInterval()), TimeUnit.SECONDS));
+    }
+
+    @Bean
+    public TriggerTask syncJupyterHubState(final JupyterHubStateMirror jupyterHubStateMirror) {
+        return new TriggerTask(jupyterHubStateMirror::sync, new PeriodicTrigger(30, TimeUnit.SECONDS));
+    }
+
+    @Bean
+    public TriggerTask renewLeaderLease(final JupyterHubLeaderElection jupyterHubLeaderElection) {
+        return new TriggerTask(jupyterHubLeaderElection::renew, new PeriodicTrigger(Math.max(1, jupyterHubPreferences.getLeaderLeaseDuration() / 3), TimeUnit.SECONDS));
+    }
+
+    @Bean
+    public TriggerTask cullServers(final JupyterHubCullingService jupyterHubCullingService, final JupyterHubLeaderElection jupyterHubLeaderElection) {
+        return new TriggerTask(() -> jupyterHubLeaderElection.runIfLeader("cullServers", jupyterHubCullingService::cull),
+                               new PeriodicTrigger(5, TimeUnit.MINUTES));
+    }
+
+    @Bean
+    public TriggerTask launchPrestartSchedules(final PrestartService prestartService) {
+        return new TriggerTask(prestartService::launchDueSchedules, new PeriodicTrigger(30, TimeUnit.SECONDS));
+    }
+
+    @Bean
+    public TriggerTask recoverJupyterServerOperations(final JupyterHubOperationRecovery jupyterHubOperationRecovery) {
+        return new TriggerTask(jupyterHubOperationRecovery::recover, new PeriodicTrigger(5, TimeUnit.MINUTES));
+    }
+
+    @Bean
+    public TriggerTask reapSharedDataDirectories(final SharedDataDirectoryService sharedDataDirectoryService, final JupyterHubLeaderElection jupyterHubLeaderElection) {
+        return new TriggerTask(() -> jupyterHubLeaderElection.runIfLeader("reapSharedDataDirectories", sharedDataDirectoryService::reap),
+                               new PeriodicTrigger(5, TimeUnit.MINUTES));
+    }
+
+    @Bean
+    public TriggerTask reconcileSharedDataDirectories(final SharedDataDirectoryService sharedDataDirectoryService, final JupyterHubLeaderElection jupyterHubLeaderElection) {
+        return new TriggerTask(() -> jupyterHubLeaderElection.runIfLeader("reconcileSharedDataDirectories", sharedDataDirectoryService::reconcile),
+                               new PeriodicTrigger(1, TimeUnit.DAYS));
+    }
+
+    @Bean
+    public TriggerTask reconcileJupyterHubServers(final JupyterHubReconciliationService jupyterHubReconciliationService, final JupyterHubLeaderElection jupyterHubLeaderElection) {
+        return new TriggerTask(() -> jupyterHubLeaderElection.runIfLeader("reconcileJupyterHubServers", jupyterHubReconciliationService::reconcile),
+                               new PeriodicTrigger(15, TimeUnit.MINUTES));
     }
 
 }
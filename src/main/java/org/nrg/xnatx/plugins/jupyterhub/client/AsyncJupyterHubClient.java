@@ -0,0 +1,45 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.SpawnProgress;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.UserOptions;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Non-blocking sibling of {@link JupyterHubClient}. No thread is held while waiting on JupyterHub. Failures complete
+ * the returned future exceptionally, startServer completes with a
+ * {@link org.nrg.xnatx.plugins.jupyterhub.client.exceptions.UserNotFoundException} or
+ * {@link org.nrg.xnatx.plugins.jupyterhub.client.exceptions.ResourceAlreadyExistsException} like its blocking
+ * counterpart.
+ */
+public interface AsyncJupyterHubClient {
+
+    CompletableFuture<List<User>> getUsers();
+    CompletableFuture<Optional<User>> getUser(String username);
+    CompletableFuture<Optional<Server>> getServer(String username, String servername);
+    CompletableFuture<Void> startServer(String username, String servername, UserOptions userOptions);
+
+    /**
+     * Starts a server. If the start request has to wait for the client's spawn limits, onQueued is called with the
+     * number of start requests ahead of it.
+     */
+    CompletableFuture<Void> startServer(String username, String servername, UserOptions userOptions, IntConsumer onQueued);
+    CompletableFuture<Void> stopServer(String username, String servername);
+
+    /**
+     * Follows the spawn progress event stream of a server. Each event is passed to the listener as it arrives.
+     *
+     * @return Completes with the ready or failed event, or with the last event received (null if none) if the stream
+     *         ends before the spawn finishes. Completing or cancelling the future closes the stream.
+     */
+    CompletableFuture<SpawnProgress> streamProgress(String username, String servername, Consumer<SpawnProgress> listener);
+    CompletableFuture<Token> createToken(String username, Token token);
+
+}
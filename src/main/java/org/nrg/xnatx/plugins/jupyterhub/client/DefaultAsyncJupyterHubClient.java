@@ -0,0 +1,451 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubApiException;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.ResourceAlreadyExistsException;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.UserNotFoundException;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.SpawnProgress;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.UserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link AsyncJupyterHubClient} built on the JDK HTTP client. Like {@link DefaultJupyterHubClient} a single instance
+ * is shared by the plugin and the underlying HTTP client is only rebuilt when the JupyterHub API URL or token change.
+ * Reads and server deletes are retried on transient failures according to the {@link HubRetryPolicy}. Every attempt,
+ * except following the spawn progress stream, is admitted by the {@link HubRequestLimiter} first and then passes the
+ * {@link HubCircuitBreaker} shared with the blocking client, so requests fail fast while the hub is down.
+ * <p>
+ * Each attempt leases the current connection once it is admitted and builds its request from it, so queued requests and
+ * retries go to the hub configured when they are sent. A replaced connection is retired and its HTTP client shut down
+ * once the attempts still using it are done.
+ */
+@Slf4j
+public class DefaultAsyncJupyterHubClient implements AsyncJupyterHubClient {
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final HubCircuitBreaker circuitBreaker;
+    private final HubRetryPolicy retryPolicy;
+    private final HubRequestLimiter requestLimiter;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<HubConnection> connection = new AtomicReference<>();
+
+    public DefaultAsyncJupyterHubClient(final JupyterHubPreferences jupyterHubPreferences, final HubCircuitBreaker circuitBreaker,
+                                        final HubRetryPolicy retryPolicy, final HubRequestLimiter requestLimiter) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.requestLimiter = requestLimiter;
+        // Same defaults as the RestTemplate message converters used by the blocking client
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Override
+    public CompletableFuture<List<User>> getUsers() {
+        log.debug("Getting all users from JupyterHub");
+
+        return retryPolicy.executeAsync("GET /users", () -> send(HubRequestLimiter.Pool.READ, hub -> get(hub, hub.getApiUrl() + "/users"),
+                                                                 HttpResponse.BodyHandlers.ofByteArray(), null)
+                  .thenApply(response -> {
+                      checkStatus(response, "Unable to get users from JupyterHub.");
+                      return Arrays.asList(readValue(response.body(), User[].class));
+                  }));
+    }
+
+    @Override
+    public CompletableFuture<Optional<User>> getUser(final String username) {
+        log.debug("Getting JupyterHub user {}", username);
+
+        return retryPolicy.executeAsync("GET /users/{name}", () -> send(HubRequestLimiter.Pool.READ, hub -> get(hub, userUrl(hub, username)),
+                                                                        HttpResponse.BodyHandlers.ofByteArray(), null)
+                  .thenApply(response -> {
+                      if (response.statusCode() == 404) {
+                          log.debug("User {} does not exist on JupyterHub", username);
+                          return Optional.<User>empty();
+                      }
+
+                      checkStatus(response, "Unable to get user " + username + " from JupyterHub.");
+                      log.debug("JupyterHub user {} retrieved", username);
+                      return Optional.of(readValue(response.body(), User.class));
+                  }));
+    }
+
+    @Override
+    public CompletableFuture<Optional<Server>> getServer(final String username, final String servername) {
+        log.debug("Getting server {} for user {}", servername, username);
+        return getUser(username).thenApply(user -> user.map(u -> u.getServers().get(servername)));
+    }
+
+    @Override
+    public CompletableFuture<Void> startServer(final String username, final String servername, final UserOptions userOptions) {
+        return startServer(username, servername, userOptions, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> startServer(final String username, final String servername, final UserOptions userOptions,
+                                               final IntConsumer onQueued) {
+        log.debug("User {} is trying to start server {} with user options {}", username, servername, userOptions);
+
+        return getUser(username).thenCompose(user -> {
+            // Check if user exists in JupyterHub
+            if (!user.isPresent()) {
+                return CompletableFuture.<Void>failedFuture(new UserNotFoundException(username));
+            }
+
+            // Check if server is already running
+            if (user.get().getServers().containsKey(servername)) {
+                log.error("Cannot start Jupyter Server {} for user {}. Server is already running", servername, username);
+                return CompletableFuture.<Void>failedFuture(StringUtils.isBlank(servername) ?
+                                                            new ResourceAlreadyExistsException(username) :
+                                                            new ResourceAlreadyExistsException(username, servername));
+            }
+
+            // User exist and server does not. Let's start a new server.
+            final byte[] body = writeValue(userOptions);
+            return send(HubRequestLimiter.Pool.SPAWN,
+                        hub -> authorized(hub, serverUrl(hub, username, servername))
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString(), onQueued)
+                      .thenAccept(response -> checkStatus(response, "Failed to start Jupyter Server " + servername + " for user " + username + "."));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> stopServer(final String username, final String servername) {
+        log.debug("User {} is trying to stop server {}", username, servername);
+
+        final Function<HubConnection, HttpRequest> request = hub -> authorized(hub, serverUrl(hub, username, servername))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString("{\"remove\": true}"))
+                .build();
+
+        // Deleting a server is idempotent, a repeated delete of a stopped server gets a 404
+        return retryPolicy.executeAsync("DELETE /users/{name}/server", () -> send(HubRequestLimiter.Pool.DELETE, request,
+                                                                                 HttpResponse.BodyHandlers.ofString(), null)
+                  .thenAccept(response -> {
+                      if (response.statusCode() == 404) {
+                          log.debug("User {} / Server {} not found.", username, servername);
+                          return;
+                      }
+
+                      checkStatus(response, "Failed to stop Jupyter server " + servername + " for user " + username + ".");
+                      log.debug("JupyterHub server {} for user {} stopped", servername, username);
+                  }));
+    }
+
+    @Override
+    public CompletableFuture<SpawnProgress> streamProgress(final String username, final String servername, final Consumer<SpawnProgress> listener) {
+        log.debug("Following spawn progress of server {} for user {}", servername, username);
+
+        final SpawnProgressSubscriber subscriber = new SpawnProgressSubscriber(objectMapper, listener);
+
+        // The connection is leased until the stream ends
+        final HubConnection hub = connection();
+        subscriber.getResult().whenComplete((progress, e) -> hub.release());
+
+        try {
+            // The request timeout only bounds the wait for the response headers, the stream itself stays open until the
+            // spawn finishes or the caller completes the returned future.
+            final HttpRequest request = authorized(hub, serverUrl(hub, username, servername) + "/progress")
+                    .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                    .GET()
+                    .build();
+
+            hub.getHttpClient()
+               .sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(subscriber))
+               .whenComplete((response, e) -> {
+                   if (e != null) {
+                       subscriber.fail(e);
+                   } else if (response.statusCode() < 200 || response.statusCode() > 299) {
+                       subscriber.fail(new JupyterHubApiException(response.statusCode(), "Unable to follow progress of server " + servername + " for user " + username + "."));
+                   }
+               });
+        } catch (RuntimeException e) {
+            subscriber.fail(e);
+        }
+        return subscriber.getResult();
+    }
+
+    @Override
+    public CompletableFuture<Token> createToken(final String username, final Token token) {
+        log.debug("Creating token for user {}", username);
+
+        // Every server start creates a token, so tokens share the spawn pool
+        final byte[] body = writeValue(token);
+        return send(HubRequestLimiter.Pool.SPAWN,
+                    hub -> authorized(hub, hub.getApiUrl() + "/users/" + username + "/tokens")
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofByteArray(), null)
+                  .thenApply(response -> {
+                      checkStatus(response, "Unable to create token for user " + username + ".");
+                      log.debug("Token created for user {}", username);
+                      return readValue(response.body(), Token.class);
+                  });
+    }
+
+    /**
+     * Stops the underlying HTTP client once the requests in flight are done. Called by Spring when the plugin context
+     * is shut down.
+     */
+    public void close() {
+        final HubConnection current = connection.getAndSet(null);
+        if (current != null) {
+            current.retire();
+        }
+    }
+
+    /**
+     * Returns the connection for the current JupyterHub API URL and token, rebuilding it only if one of those
+     * preferences has changed. The replaced connection is retired, its HTTP client is shut down once the requests
+     * still using it are done.
+     *
+     * @return The shared connection to JupyterHub, leased to the caller, who must {@link HubConnection#release()} it
+     */
+    protected HubConnection connection() {
+        final String apiUrl = jupyterHubPreferences.getJupyterHubApiUrl();
+        final String token = jupyterHubPreferences.getJupyterHubToken();
+
+        while (true) {
+            final HubConnection current = connection.get();
+            if (current != null && current.matches(apiUrl, token)) {
+                if (current.acquire()) {
+                    return current;
+                }
+                // Retired by a concurrent change, pick up its replacement
+                continue;
+            }
+
+            synchronized (connection) {
+                if (connection.get() != current) {
+                    continue;
+                }
+
+                final HttpClient httpClient = HttpClient.newBuilder()
+                                                        .version(HttpClient.Version.HTTP_1_1)
+                                                        .connectTimeout(Duration.ofSeconds(jupyterHubPreferences.getHubClientConnectTimeout()))
+                                                        .build();
+                final HubConnection replacement = new HubConnection(apiUrl, token, httpClient,
+                                                                    Duration.ofSeconds(jupyterHubPreferences.getHubClientReadTimeout()));
+                replacement.acquire();
+                connection.set(replacement);
+
+                if (current != null) {
+                    log.info("JupyterHub API URL or token changed, rebuilt the asynchronous JupyterHub client");
+                    current.retire();
+                    // Failures against the old hub say nothing about the new one
+                    circuitBreaker.reset();
+                }
+
+                return replacement;
+            }
+        }
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> send(final HubRequestLimiter.Pool pool, final Function<HubConnection, HttpRequest> request,
+                                                        final HttpResponse.BodyHandler<T> bodyHandler, final IntConsumer onQueued) {
+        return requestLimiter.submit(pool, () -> exchange(request, bodyHandler), onQueued);
+    }
+
+    /**
+     * Sends a request built for the current connection through the circuit breaker. The connection is leased until the
+     * response is received.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> exchange(final Function<HubConnection, HttpRequest> request,
+                                                            final HttpResponse.BodyHandler<T> bodyHandler) {
+        final HubConnection hub = connection();
+
+        final CompletableFuture<HttpResponse<T>> response;
+        try {
+            final HttpRequest built = request.apply(hub);
+            response = guarded(() -> hub.getHttpClient().sendAsync(built, bodyHandler));
+        } catch (RuntimeException e) {
+            hub.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.whenComplete((result, e) -> hub.release());
+    }
+
+    /**
+     * Sends a request unless the circuit breaker is open. Connection failures and 5xx responses count against the
+     * circuit breaker, any other response closes it.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> guarded(final Supplier<CompletableFuture<HttpResponse<T>>> request) {
+        try {
+            circuitBreaker.acquire();
+        } catch (JupyterHubUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return response.whenComplete((result, e) -> {
+            if (e != null || result.statusCode() >= 500) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+            }
+        });
+    }
+
+    private HttpRequest get(final HubConnection hub, final String url) {
+        return authorized(hub, url).GET().build();
+    }
+
+    private HttpRequest.Builder authorized(final HubConnection hub, final String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                          .timeout(hub.getRequestTimeout())
+                          .header(HttpHeaders.AUTHORIZATION, "token " + hub.getToken());
+    }
+
+    private void checkStatus(final HttpResponse<?> response, final String message) {
+        if (response.statusCode() < 200 || response.statusCode() > 299) {
+            log.debug("{} Response: {}", message, response.body());
+            throw new JupyterHubApiException(response.statusCode(), message,
+                                             response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null));
+        }
+    }
+
+    private <T> T readValue(final byte[] body, final Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] writeValue(final Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String serverUrl(final HubConnection hub, final String username, final String servername) {
+        if (StringUtils.isBlank(servername)) {
+            return hub.getApiUrl() + "/users/" + username + "/server";
+        } else {
+            return hub.getApiUrl() + "/users/" + username + "/servers/" + servername;
+        }
+    }
+
+    private String userUrl(final HubConnection hub, final String username) {
+        return hub.getApiUrl() + "/users/" + username;
+    }
+
+    /**
+     * An immutable API URL / token pair together with the HTTP client used to talk to that hub. Callers lease the
+     * connection for the duration of a request. A retired connection takes no new leases and shuts its HTTP client down
+     * when the last lease is released.
+     */
+    protected static final class HubConnection {
+
+        private final String apiUrl;
+        private final String token;
+        private final HttpClient httpClient;
+        private final Duration requestTimeout;
+        private int leases;
+        private boolean retired;
+
+        HubConnection(final String apiUrl, final String token, final HttpClient httpClient, final Duration requestTimeout) {
+            this.apiUrl = apiUrl;
+            this.token = token;
+            this.httpClient = httpClient;
+            this.requestTimeout = requestTimeout;
+        }
+
+        boolean matches(final String apiUrl, final String token) {
+            return StringUtils.equals(this.apiUrl, apiUrl) && StringUtils.equals(this.token, token);
+        }
+
+        String getApiUrl() {
+            return apiUrl;
+        }
+
+        String getToken() {
+            return token;
+        }
+
+        HttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        Duration getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        /**
+         * @return Whether the connection was leased, false once it is retired
+         */
+        synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            leases++;
+            return true;
+        }
+
+        void release() {
+            final boolean drained;
+            synchronized (this) {
+                leases--;
+                drained = retired && leases == 0;
+            }
+            if (drained) {
+                httpClient.shutdown();
+            }
+        }
+
+        void retire() {
+            final boolean drained;
+            synchronized (this) {
+                retired = true;
+                drained = leases == 0;
+            }
+            if (drained) {
+                httpClient.shutdown();
+            }
+        }
+
+        // For testing
+        synchronized boolean isClosed() {
+            return retired && leases == 0;
+        }
+    }
+}
@@ -1,31 +1,78 @@
 package org.nrg.xnatx.plugins.jupyterhub.client;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.ResourceAlreadyExistsException;
 import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.UserNotFoundException;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.*;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * JupyterHub REST client. A single instance is shared by the plugin. All requests go through one pooled, keep-alive
+ * HTTP client which is only rebuilt when the JupyterHub API URL or token preferences change.
+ * <p>
+ * Identical concurrent reads (version, info, users and user lookups) are coalesced: the first caller makes the request
+ * and the others wait for and share its result. Returned models may therefore be shared between callers and must be
+ * treated as read only.
+ * <p>
+ * Reads and server deletes are retried on transient failures according to the {@link HubRetryPolicy}. Creating users,
+ * tokens and servers is never retried. Every attempt is admitted by the {@link HubRequestLimiter} first, creating users
+ * and tokens counts against the spawn pool like starting servers.
+ */
 @Slf4j
 public class DefaultJupyterHubClient implements JupyterHubClient {
 
-    private final String jupyterHubApiToken;
-    private final String jupyterHubApiUrl;
-
-    public DefaultJupyterHubClient(final String jupyterHubApiToken, final String jupyterHubApiUrl) {
-        this.jupyterHubApiToken = jupyterHubApiToken;
-        this.jupyterHubApiUrl = jupyterHubApiUrl;
+    private static final MediaType PAGINATION_MEDIA_TYPE = MediaType.parseMediaType("application/jupyterhub-pagination+json");
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final HubCircuitBreaker circuitBreaker;
+    private final HubRetryPolicy retryPolicy;
+    private final HubRequestLimiter requestLimiter;
+    private final ObjectMapper objectMapper;
+    private final UserSummaryParser userSummaryParser;
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicReference<HubConnection> connection = new AtomicReference<>();
+
+    public DefaultJupyterHubClient(final JupyterHubPreferences jupyterHubPreferences,
+                                   final HubCircuitBreaker circuitBreaker,
+                                   final HubRetryPolicy retryPolicy,
+                                   final HubRequestLimiter requestLimiter) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.requestLimiter = requestLimiter;
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.userSummaryParser = new UserSummaryParser(objectMapper.getFactory());
     }
 
     /**
@@ -40,14 +87,22 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public Hub getVersion() {
         log.trace("Getting JupyterHub version");
 
-        RestTemplate restTemplate = new RestTemplate();
+        final HubConnection hub = connection();
+        try {
+            return singleFlight.execute(versionUrl(hub), () -> read("GET /", () -> fetchVersion(hub)));
+        } finally {
+            hub.release();
+        }
+    }
+
+    private Hub fetchVersion(final HubConnection hub) {
         // Skip authentication
         HttpEntity<String> request = new HttpEntity<>(null, null);
 
         try {
-            ResponseEntity<Hub> response = restTemplate.exchange(versionUrl(),
-                                                                 HttpMethod.GET,
-                                                                 request, Hub.class);
+            ResponseEntity<Hub> response = hub.getRestTemplate().exchange(versionUrl(hub),
+                                                                          HttpMethod.GET,
+                                                                          request, Hub.class);
             log.trace("JupyterHub version received.");
             return response.getBody();
         } catch (Exception e) {
@@ -68,15 +123,21 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public Hub getInfo() {
         log.trace("Getting JupyterHub info");
 
-        RestTemplate restTemplate = new RestTemplate();
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        HttpEntity<String> request = new HttpEntity<>(null, headers);
+        final HubConnection hub = connection();
+        try {
+            return singleFlight.execute(infoUrl(hub), () -> read("GET /info", () -> fetchInfo(hub)));
+        } finally {
+            hub.release();
+        }
+    }
+
+    private Hub fetchInfo(final HubConnection hub) {
+        HttpEntity<String> request = new HttpEntity<>(null, authorizationHeaders(hub));
 
         try {
-            ResponseEntity<Hub> response = restTemplate.exchange(infoUrl(),
-                                                                 HttpMethod.GET,
-                                                                 request, Hub.class);
+            ResponseEntity<Hub> response = hub.getRestTemplate().exchange(infoUrl(hub),
+                                                                          HttpMethod.GET,
+                                                                          request, Hub.class);
             log.trace("JupyterHub info received.");
             return response.getBody();
         } catch (RestClientException e) {
@@ -88,15 +149,14 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public User createUser(final String username) {
         log.debug("Creating JupyterHub user {}", username);
 
-        RestTemplate restTemplate = new RestTemplate();
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        HttpEntity<String> request = new HttpEntity<>(null, headers);
+        final HubConnection hub = connection();
 
         try {
-            ResponseEntity<User> response = restTemplate.exchange(userUrl(username),
-                                                                  HttpMethod.POST,
-                                                                  request, User.class);
+            HttpEntity<String> request = new HttpEntity<>(null, authorizationHeaders(hub));
+            ResponseEntity<User> response = requestLimiter.execute(HubRequestLimiter.Pool.SPAWN,
+                                                                   () -> hub.getRestTemplate().exchange(userUrl(hub, username),
+                                                                                                        HttpMethod.POST,
+                                                                                                        request, User.class));
 
             log.info("JupyterHub user {} created", username);
 
@@ -104,6 +164,8 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
         } catch (RestClientException e) {
             log.debug("Unable to create user on JupyterHub", e);
             throw new RuntimeException(e);
+        } finally {
+            hub.release();
         }
     }
 
@@ -116,15 +178,21 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public List<User> getUsers() {
         log.debug("Getting all users from JupyterHub");
 
-        RestTemplate restTemplate = new RestTemplate();
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        HttpEntity<String> request = new HttpEntity<>(null, headers);
+        final HubConnection hub = connection();
+        try {
+            return singleFlight.execute(usersUrl(hub), () -> read("GET /users", () -> fetchUsers(hub)));
+        } finally {
+            hub.release();
+        }
+    }
+
+    private List<User> fetchUsers(final HubConnection hub) {
+        HttpEntity<String> request = new HttpEntity<>(null, authorizationHeaders(hub));
 
         try {
-            ResponseEntity<User[]> response = restTemplate.exchange(usersUrl(),
-                                                                  HttpMethod.GET,
-                                                                  request, User[].class);
+            ResponseEntity<User[]> response = hub.getRestTemplate().exchange(usersUrl(hub),
+                                                                             HttpMethod.GET,
+                                                                             request, User[].class);
 
             return Arrays.asList(response.getBody());
         } catch (RestClientException e) {
@@ -133,20 +201,137 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
         }
     }
 
+    /**
+     * Iterates over the JupyterHub users page by page using the hub's offset/limit pagination. Page size is set by the
+     * hubClientUsersPageSize preference.
+     * <p>
+     * JupyterHub API endpoint: /users?offset={offset}&limit={limit}[&state=active]
+     *
+     * @param activeOnly Only return users with at least one active (ready or pending) server, and only those servers.
+     *
+     * @return Lazily populated iterator over the users
+     */
+    @Override
+    public Iterator<User> iterateUsers(final boolean activeOnly) {
+        return new UserPageIterator((offset, limit) -> getUsersPage(offset, limit, activeOnly),
+                                    jupyterHubPreferences.getHubClientUsersPageSize());
+    }
+
+    /**
+     * Streams the JupyterHub users page by page, see {@link #iterateUsers(boolean)}.
+     */
+    @Override
+    public Stream<User> streamUsers(final boolean activeOnly) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateUsers(activeOnly), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Streams lightweight summaries of the JupyterHub users, page by page like {@link #streamUsers(boolean)}. Users
+     * only have their name, last activity and servers, and servers only their name, ready and pending state, url,
+     * start time and last activity. The response is read with a streaming parser, so user options and other fields
+     * are never bound. Use this for culling and summaries, not for anything which needs the full models.
+     *
+     * @param activeOnly Only return users with at least one active (ready or pending) server, and only those servers.
+     *
+     * @return Lazily populated stream of user summaries
+     */
+    @Override
+    public Stream<User> streamUserSummaries(final boolean activeOnly) {
+        final Iterator<User> iterator = new UserPageIterator((offset, limit) -> getUserSummariesPage(offset, limit, activeOnly),
+                                                             jupyterHubPreferences.getHubClientUsersPageSize());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private UserPageIterator.Page getUserSummariesPage(final int offset, final int limit, final boolean activeOnly) {
+        log.debug("Getting summaries of users {} to {} from JupyterHub", offset, offset + limit);
+
+        final HubConnection hub = connection();
+        try {
+            final String url = usersPageUrl(hub, offset, limit, activeOnly);
+            return singleFlight.execute(url + "#summary", () -> read("GET /users", () -> fetchUserSummariesPage(hub, url, offset, limit)));
+        } finally {
+            hub.release();
+        }
+    }
+
+    private UserPageIterator.Page fetchUserSummariesPage(final HubConnection hub, final String url, final int offset, final int limit) {
+        try {
+            return hub.getRestTemplate().execute(url, HttpMethod.GET,
+                                                 request -> {
+                                                     request.getHeaders().addAll(authorizationHeaders(hub));
+                                                     // Ask for the paginated response model, older hubs ignore this and return a plain list
+                                                     request.getHeaders().setAccept(Collections.singletonList(PAGINATION_MEDIA_TYPE));
+                                                 },
+                                                 response -> userSummaryParser.parsePage(response.getBody(), offset, limit));
+        } catch (RestClientException e) {
+            log.debug("Unable to get user summaries from JupyterHub", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private UserPageIterator.Page getUsersPage(final int offset, final int limit, final boolean activeOnly) {
+        log.debug("Getting users {} to {} from JupyterHub", offset, offset + limit);
+
+        final HubConnection hub = connection();
+        try {
+            return singleFlight.execute(usersPageUrl(hub, offset, limit, activeOnly),
+                                        () -> read("GET /users", () -> fetchUsersPage(hub, offset, limit, activeOnly)));
+        } finally {
+            hub.release();
+        }
+    }
+
+    private UserPageIterator.Page fetchUsersPage(final HubConnection hub, final int offset, final int limit, final boolean activeOnly) {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.addAll(authorizationHeaders(hub));
+        // Ask for the paginated response model, older hubs ignore this and return a plain list
+        headers.setAccept(Collections.singletonList(PAGINATION_MEDIA_TYPE));
+        HttpEntity<String> request = new HttpEntity<>(null, headers);
+
+        try {
+            ResponseEntity<String> response = hub.getRestTemplate().exchange(usersPageUrl(hub, offset, limit, activeOnly),
+                                                                             HttpMethod.GET,
+                                                                             request, String.class);
+
+            if (StringUtils.isBlank(response.getBody())) {
+                return new UserPageIterator.Page(Collections.emptyList(), null);
+            }
+
+            final JsonNode body = objectMapper.readTree(response.getBody());
+
+            if (body.isArray()) {
+                final List<User> users = Arrays.asList(objectMapper.treeToValue(body, User[].class));
+                return new UserPageIterator.Page(users, users.size() < limit ? null : offset + users.size());
+            }
+
+            final List<User> users = Arrays.asList(objectMapper.treeToValue(body.path("items"), User[].class));
+            final JsonNode next = body.path("_pagination").path("next");
+            return new UserPageIterator.Page(users, next.hasNonNull("offset") ? next.get("offset").asInt() : null);
+        } catch (RestClientException | IOException e) {
+            log.debug("Unable to get users from JupyterHub", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public Optional<User> getUser(String username) {
         log.debug("Getting JupyterHub user {}", username);
 
-        RestTemplate restTemplate = new RestTemplate();
+        final HubConnection hub = connection();
+        try {
+            return singleFlight.execute(userUrl(hub, username), () -> read("GET /users/{name}", () -> fetchUser(hub, username)));
+        } finally {
+            hub.release();
+        }
+    }
 
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        HttpEntity<String> request = new HttpEntity<>(null, headers);
+    private Optional<User> fetchUser(final HubConnection hub, final String username) {
+        HttpEntity<String> request = new HttpEntity<>(null, authorizationHeaders(hub));
 
         try {
-            ResponseEntity<User> response = restTemplate.exchange(userUrl(username),
-                                                                  HttpMethod.GET,
-                                                                  request, User.class);
+            ResponseEntity<User> response = hub.getRestTemplate().exchange(userUrl(hub, username),
+                                                                           HttpMethod.GET,
+                                                                           request, User.class);
 
             log.debug("JupyterHub user {} retrieved", username);
             return Optional.of(response.getBody());
@@ -207,19 +392,19 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
         }
 
         // User exist and server does not. Let's start a new server.
-        RestTemplate restTemplate = new RestTemplate();
-
-        // Create request and add XNAT service authorization token to request header
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        HttpEntity<UserOptions> request = new HttpEntity<>(userOptions, headers);
+        final HubConnection hub = connection();
 
         try {
+            // Create request and add XNAT service authorization token to request header
+            MultiValueMap<String, String> headers = authorizationHeaders(hub);
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            HttpEntity<UserOptions> request = new HttpEntity<>(userOptions, headers);
+
             // POST server request to JupyterHub
-            ResponseEntity<String> response = restTemplate.exchange(serverUrl(username, servername),
-                                                                    HttpMethod.POST,
-                                                                    request, String.class);
+            ResponseEntity<String> response = requestLimiter.execute(HubRequestLimiter.Pool.SPAWN,
+                                                                     () -> hub.getRestTemplate().exchange(serverUrl(hub, username, servername),
+                                                                                                          HttpMethod.POST,
+                                                                                                          request, String.class));
 
             if (response.getStatusCodeValue() >= 200 && response.getStatusCodeValue() <= 299) {
                 return;
@@ -233,6 +418,8 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
         } catch (RestClientException e) {
             log.debug("Failed to start Jupyter Server " + servername + " for user " + username, e);
             throw new RuntimeException(e);
+        } finally {
+            hub.release();
         }
     }
 
@@ -245,19 +432,21 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public void stopServer(String username, String servername) {
         log.debug("User {} is trying to stop server {}", username, servername);
 
-        RestTemplate restTemplate = new RestTemplate();
+        final HubConnection hub = connection();
 
-        Map<String, Boolean> requestBody = Collections.singletonMap("remove", true);
+        try {
+            Map<String, Boolean> requestBody = Collections.singletonMap("remove", true);
 
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        HttpEntity<Map<String, Boolean>> request = new HttpEntity<>(requestBody, headers);
+            MultiValueMap<String, String> headers = authorizationHeaders(hub);
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            HttpEntity<Map<String, Boolean>> request = new HttpEntity<>(requestBody, headers);
 
-        try {
-            ResponseEntity<String> response = restTemplate.exchange(serverUrl(username, servername),
-                                                                  HttpMethod.DELETE,
-                                                                  request, String.class);
+            // Deleting a server is idempotent, a repeated delete of a stopped server gets a 404
+            retryPolicy.execute("DELETE /users/{name}/server",
+                                () -> requestLimiter.execute(HubRequestLimiter.Pool.DELETE,
+                                                             () -> hub.getRestTemplate().exchange(serverUrl(hub, username, servername),
+                                                                                                  HttpMethod.DELETE,
+                                                                                                  request, String.class)));
 
             log.debug("JupyterHub server {} for user {} stopped", servername, username);
         } catch (HttpClientErrorException e) {
@@ -267,6 +456,8 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
                 log.debug("Failed to stop Jupyter server", e);
                 throw e;
             }
+        } finally {
+            hub.release();
         }
     }
 
@@ -283,55 +474,277 @@ public class DefaultJupyterHubClient implements JupyterHubClient {
     public Token createToken(String username, Token token) {
         log.debug("Creating token for user {}", username);
 
-        RestTemplate restTemplate = new RestTemplate();
-
-        MultiValueMap<String, String> headers = new HttpHeaders();
-        headers.add(HttpHeaders.AUTHORIZATION, "token " + jupyterHubApiToken);
-        headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-        HttpEntity<Token> request = new HttpEntity<>(token, headers);
+        final HubConnection hub = connection();
 
         try {
-            ResponseEntity<Token> response = restTemplate.exchange(tokenUrl(username, null),
-                                                                    HttpMethod.POST,
-                                                                    request, Token.class);
+            MultiValueMap<String, String> headers = authorizationHeaders(hub);
+            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+            HttpEntity<Token> request = new HttpEntity<>(token, headers);
+
+            // Every server start creates a token, so tokens share the spawn pool
+            ResponseEntity<Token> response = requestLimiter.execute(HubRequestLimiter.Pool.SPAWN,
+                                                                    () -> hub.getRestTemplate().exchange(tokenUrl(hub, username, null),
+                                                                                                         HttpMethod.POST,
+                                                                                                         request, Token.class));
 
             log.debug("Token created for user {}", username);
             return response.getBody();
         } catch (Exception e) {
             log.debug("Unable to create token for user " + username, e);
             throw new RuntimeException(e);
+        } finally {
+            hub.release();
         }
     }
 
-    private String serverUrl(final String username, final String servername) {
+    /**
+     * Read coalescing and retry counters since the client was created, and the requests currently waiting on the
+     * request limiter.
+     *
+     * @return The client stats
+     */
+    @Override
+    public HubClientStats getStats() {
+        final long reads = singleFlight.getCalls();
+        final long coalesced = singleFlight.getCoalesced();
+        return HubClientStats.builder()
+                             .reads(reads)
+                             .coalescedReads(coalesced)
+                             .coalescingRatio(reads == 0 ? 0 : (double) coalesced / reads)
+                             .retries(retryPolicy.getRetries())
+                             .queuedRequests(requestLimiter.getQueued())
+                             .build();
+    }
+
+    /**
+     * Releases the pooled connections once the requests in flight are done. Called by Spring when the plugin context
+     * is shut down.
+     */
+    public void close() {
+        final HubConnection current = connection.getAndSet(null);
+        if (current != null) {
+            current.retire();
+        }
+    }
+
+    /**
+     * Returns the connection for the current JupyterHub API URL and token. The connection, and its connection pool,
+     * is only rebuilt when one of those preferences has changed. Concurrent callers racing on a change all end up with
+     * the same new connection. The replaced connection is retired, its pool is closed once the requests still using it
+     * are done.
+     *
+     * @return The shared connection to JupyterHub, leased to the caller, who must {@link HubConnection#release()} it
+     */
+    protected HubConnection connection() {
+        final String apiUrl = jupyterHubPreferences.getJupyterHubApiUrl();
+        final String token = jupyterHubPreferences.getJupyterHubToken();
+
+        while (true) {
+            final HubConnection current = connection.get();
+            if (current != null && current.matches(apiUrl, token)) {
+                if (current.acquire()) {
+                    return current;
+                }
+                // Retired by a concurrent change, pick up its replacement
+                continue;
+            }
+
+            synchronized (connection) {
+                if (connection.get() != current) {
+                    continue;
+                }
+
+                final HubConnection replacement = new HubConnection(apiUrl, token, jupyterHubPreferences, circuitBreaker);
+                replacement.acquire();
+                connection.set(replacement);
+
+                if (current != null) {
+                    log.info("JupyterHub API URL or token changed, rebuilt the JupyterHub client connection pool");
+                    current.retire();
+                    // Failures against the old hub say nothing about the new one
+                    circuitBreaker.reset();
+                }
+
+                return replacement;
+            }
+        }
+    }
+
+    /**
+     * Sends an idempotent read through the retry policy and the read pool of the request limiter.
+     */
+    private <T> T read(final String endpoint, final Supplier<T> request) {
+        return retryPolicy.execute(endpoint, () -> requestLimiter.execute(HubRequestLimiter.Pool.READ, request));
+    }
+
+    private MultiValueMap<String, String> authorizationHeaders(final HubConnection hub) {
+        MultiValueMap<String, String> headers = new HttpHeaders();
+        headers.add(HttpHeaders.AUTHORIZATION, "token " + hub.getToken());
+        return headers;
+    }
+
+    private String serverUrl(final HubConnection hub, final String username, final String servername) {
         if (StringUtils.isBlank(servername)) {
-            return jupyterHubApiUrl + "/users/" + username + "/server";
+            return hub.getApiUrl() + "/users/" + username + "/server";
         } else {
-            return jupyterHubApiUrl + "/users/" + username + "/servers/" + servername;
+            return hub.getApiUrl() + "/users/" + username + "/servers/" + servername;
         }
     }
 
-    private String usersUrl() {
-        return jupyterHubApiUrl + "/users";
+    private String usersUrl(final HubConnection hub) {
+        return hub.getApiUrl() + "/users";
+    }
+
+    private String usersPageUrl(final HubConnection hub, final int offset, final int limit, final boolean activeOnly) {
+        return usersUrl(hub) + "?offset=" + offset + "&limit=" + limit + (activeOnly ? "&state=active" : "");
     }
 
-    private String userUrl(final String username) {
-        return jupyterHubApiUrl + "/users/" + username;
+    private String userUrl(final HubConnection hub, final String username) {
+        return hub.getApiUrl() + "/users/" + username;
     }
 
-    private String versionUrl() {
-        return jupyterHubApiUrl + "/";
+    private String versionUrl(final HubConnection hub) {
+        return hub.getApiUrl() + "/";
     }
 
-    private String infoUrl() {
-        return jupyterHubApiUrl + "/info";
+    private String infoUrl(final HubConnection hub) {
+        return hub.getApiUrl() + "/info";
     }
 
-    private String tokenUrl(final String username, final String tokenId) {
+    private String tokenUrl(final HubConnection hub, final String username, final String tokenId) {
         if (StringUtils.isBlank(tokenId)) {
-            return jupyterHubApiUrl + "/users/" + username + "/tokens";
+            return hub.getApiUrl() + "/users/" + username + "/tokens";
         } else {
-            return jupyterHubApiUrl + "/users/" + username + "/tokens/" + tokenId;
+            return hub.getApiUrl() + "/users/" + username + "/tokens/" + tokenId;
+        }
+    }
+
+    /**
+     * An immutable API URL / token pair together with the pooled HTTP client used to talk to that hub. Callers lease
+     * the connection for the duration of a request, including its retries. A retired connection takes no new leases
+     * and closes its pool when the last lease is released.
+     */
+    protected static final class HubConnection {
+
+        private final String apiUrl;
+        private final String token;
+        private final CloseableHttpClient httpClient;
+        private final RestTemplate restTemplate;
+        private int leases;
+        private boolean retired;
+
+        HubConnection(final String apiUrl, final String token, final JupyterHubPreferences jupyterHubPreferences,
+                      final HubCircuitBreaker circuitBreaker) {
+            this.apiUrl = apiUrl;
+            this.token = token;
+
+            final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+            connectionManager.setMaxTotal(jupyterHubPreferences.getHubClientMaxConnections());
+            connectionManager.setDefaultMaxPerRoute(jupyterHubPreferences.getHubClientMaxConnectionsPerRoute());
+
+            final int connectTimeout = (int) TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getHubClientConnectTimeout());
+            final int readTimeout = (int) TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getHubClientReadTimeout());
+            final RequestConfig requestConfig = RequestConfig.custom()
+                                                             .setConnectTimeout(connectTimeout)
+                                                             .setConnectionRequestTimeout(connectTimeout)
+                                                             .setSocketTimeout(readTimeout)
+                                                             .build();
+
+            this.httpClient = HttpClients.custom()
+                                         .setConnectionManager(connectionManager)
+                                         .setDefaultRequestConfig(requestConfig)
+                                         .evictExpiredConnections()
+                                         .evictIdleConnections(60, TimeUnit.SECONDS)
+                                         .build();
+            this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+            this.restTemplate.getInterceptors().add(circuitBreakerInterceptor(circuitBreaker));
+        }
+
+        /**
+         * Connection failures and 5xx responses count against the circuit breaker, any other response closes it.
+         */
+        private static ClientHttpRequestInterceptor circuitBreakerInterceptor(final HubCircuitBreaker circuitBreaker) {
+            return (request, body, execution) -> {
+                circuitBreaker.acquire();
+
+                boolean recorded = false;
+                try {
+                    final ClientHttpResponse response = execution.execute(request, body);
+                    if (response.getRawStatusCode() >= 500) {
+                        circuitBreaker.recordFailure();
+                    } else {
+                        circuitBreaker.recordSuccess();
+                    }
+                    recorded = true;
+                    return response;
+                } finally {
+                    if (!recorded) {
+                        circuitBreaker.recordFailure();
+                    }
+                }
+            };
+        }
+
+        boolean matches(final String apiUrl, final String token) {
+            return StringUtils.equals(this.apiUrl, apiUrl) && StringUtils.equals(this.token, token);
+        }
+
+        String getApiUrl() {
+            return apiUrl;
+        }
+
+        String getToken() {
+            return token;
+        }
+
+        RestTemplate getRestTemplate() {
+            return restTemplate;
+        }
+
+        /**
+         * @return Whether the connection was leased, false once it is retired
+         */
+        synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            leases++;
+            return true;
+        }
+
+        void release() {
+            final boolean drained;
+            synchronized (this) {
+                leases--;
+                drained = retired && leases == 0;
+            }
+            if (drained) {
+                close();
+            }
+        }
+
+        void retire() {
+            final boolean drained;
+            synchronized (this) {
+                retired = true;
+                drained = leases == 0;
+            }
+            if (drained) {
+                close();
+            }
+        }
+
+        // For testing
+        synchronized boolean isClosed() {
+            return retired && leases == 0;
+        }
+
+        private void close() {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.warn("Unable to close JupyterHub client connection pool", e);
+            }
         }
     }
 }
@@ -0,0 +1,102 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker for requests to JupyterHub. After hubCircuitBreakerFailureThreshold consecutive connection failures
+ * or 5xx responses the breaker opens and requests fail immediately with a {@link JupyterHubUnavailableException}.
+ * Once hubCircuitBreakerOpenDuration seconds have passed a single trial request is let through. The breaker closes
+ * again if it succeeds and stays open if it fails.
+ */
+@Slf4j
+public class HubCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+
+    public HubCircuitBreaker(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    /**
+     * Call before sending a request to JupyterHub.
+     *
+     * @throws JupyterHubUnavailableException If the breaker is open
+     */
+    public synchronized void acquire() {
+        switch (state) {
+            case OPEN:
+                final long openDuration = TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getHubCircuitBreakerOpenDuration());
+                if (System.currentTimeMillis() - openedAt < openDuration) {
+                    throw new JupyterHubUnavailableException("JupyterHub is unavailable, not sending request until the circuit breaker resets.");
+                }
+                log.info("JupyterHub circuit breaker half open, sending a trial request");
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return;
+
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    throw new JupyterHubUnavailableException("JupyterHub is unavailable, waiting on the circuit breaker trial request.");
+                }
+                trialInFlight = true;
+                return;
+
+            default:
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            log.info("JupyterHub is reachable again, circuit breaker closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= jupyterHubPreferences.getHubCircuitBreakerFailureThreshold())) {
+            if (state == State.CLOSED) {
+                log.warn("JupyterHub circuit breaker opened after {} consecutive failures", consecutiveFailures);
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Closes the breaker, used when the JupyterHub API URL or token changes.
+     */
+    public synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+}
@@ -0,0 +1,259 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Client side bulkhead and rate limiter for requests to JupyterHub. Server starts, server stops and reads each have
+ * their own pool so a flood of one kind cannot starve the others. The user and token creation which precede a start
+ * count as starts. A pool admits a request when it has fewer than
+ * hubClient[Spawn|Delete|Read]MaxConcurrent requests in flight and a token is available in its bucket, which refills at
+ * hubClient[Spawn|Delete|Read]Rate tokens per second up to a burst of one second's worth. Requests which cannot be
+ * admitted wait in FIFO order.
+ * <p>
+ * Asynchronous requests wait without holding a thread. Blocking requests wait at most hubClientReadTimeout seconds.
+ */
+@Slf4j
+public class HubRequestLimiter {
+
+    public enum Pool {
+        SPAWN,
+        DELETE,
+        READ
+    }
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final Map<Pool, Lane> lanes = new EnumMap<>(Pool.class);
+
+    public HubRequestLimiter(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        for (final Pool pool : Pool.values()) {
+            lanes.put(pool, new Lane(pool));
+        }
+    }
+
+    /**
+     * Sends an asynchronous request once the pool admits it.
+     *
+     * @param pool     The pool the request counts against
+     * @param request  Starts the request, the permit is held until the returned future completes
+     * @param onQueued Called with the number of requests ahead if the request has to wait, may be null
+     *
+     * @return Completes with the request result
+     */
+    public <T> CompletableFuture<T> submit(final Pool pool, final Supplier<CompletableFuture<T>> request, final IntConsumer onQueued) {
+        final Lane lane = lanes.get(pool);
+        return lane.acquire(onQueued).thenCompose(ignored -> {
+            CompletableFuture<T> result;
+            try {
+                result = request.get();
+            } catch (RuntimeException e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            return result.whenComplete((value, e) -> lane.release());
+        });
+    }
+
+    /**
+     * Runs a blocking request once the pool admits it.
+     *
+     * @throws JupyterHubUnavailableException If the request was not admitted within hubClientReadTimeout seconds
+     */
+    public <T> T execute(final Pool pool, final Supplier<T> request) {
+        final Lane lane = lanes.get(pool);
+        final CompletableFuture<Void> permit = lane.acquire(null);
+
+        try {
+            permit.get(Math.max(1, jupyterHubPreferences.getHubClientReadTimeout()), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            if (permit.cancel(false)) {
+                throw new JupyterHubUnavailableException("Too many requests to JupyterHub in progress, " + pool.name().toLowerCase() + " request not sent.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (permit.cancel(false)) {
+                throw new JupyterHubUnavailableException("Interrupted while waiting to send a " + pool.name().toLowerCase() + " request to JupyterHub.");
+            }
+        } catch (ExecutionException e) {
+            // Permits are never completed exceptionally
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            return request.get();
+        } finally {
+            lane.release();
+        }
+    }
+
+    /**
+     * @return Number of requests waiting in each pool
+     */
+    public Map<String, Integer> getQueued() {
+        final Map<String, Integer> queued = new LinkedHashMap<>();
+        lanes.forEach((pool, lane) -> queued.put(pool.name(), lane.getQueued()));
+        return queued;
+    }
+
+    private final class Lane {
+
+        private final Pool pool;
+        private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+        private int inFlight = 0;
+        private double tokens = Double.MAX_VALUE; // Capped to the burst on the first refill
+        private long lastRefill = System.nanoTime();
+        private boolean drainScheduled = false;
+
+        Lane(final Pool pool) {
+            this.pool = pool;
+        }
+
+        CompletableFuture<Void> acquire(final IntConsumer onQueued) {
+            final CompletableFuture<Void> permit = new CompletableFuture<>();
+            final int ahead;
+
+            synchronized (this) {
+                refill();
+                if (waiting.isEmpty() && hasCapacity() && hasToken()) {
+                    take();
+                    permit.complete(null);
+                    return permit;
+                }
+                ahead = waiting.size();
+                waiting.add(permit);
+            }
+
+            log.debug("JupyterHub {} request queued, {} ahead", pool, ahead);
+            if (onQueued != null) {
+                onQueued.accept(ahead);
+            }
+            drain();
+            return permit;
+        }
+
+        void release() {
+            synchronized (this) {
+                inFlight--;
+            }
+            drain();
+        }
+
+        synchronized int getQueued() {
+            return waiting.size();
+        }
+
+        /**
+         * Admits waiting requests while there is capacity and tokens. If the bucket is empty a drain is scheduled for
+         * when the next token is available. Permits are completed outside the lock as completing runs the request.
+         */
+        private void drain() {
+            final List<CompletableFuture<Void>> admitted = new ArrayList<>();
+            long delay = 0;
+
+            synchronized (this) {
+                refill();
+                while (!waiting.isEmpty() && hasCapacity()) {
+                    if (!hasToken()) {
+                        delay = nanosUntilToken();
+                        break;
+                    }
+
+                    final CompletableFuture<Void> next = waiting.poll();
+                    if (next.isDone()) {
+                        // Blocking caller gave up
+                        continue;
+                    }
+                    take();
+                    admitted.add(next);
+                }
+
+                if (delay > 0 && !drainScheduled) {
+                    drainScheduled = true;
+                } else {
+                    delay = 0;
+                }
+            }
+
+            for (final CompletableFuture<Void> permit : admitted) {
+                if (!permit.complete(null)) {
+                    release();
+                }
+            }
+
+            if (delay > 0) {
+                CompletableFuture.runAsync(() -> {
+                    synchronized (this) {
+                        drainScheduled = false;
+                    }
+                    drain();
+                }, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS));
+            }
+        }
+
+        private boolean hasCapacity() {
+            final int max = maxConcurrent();
+            return max <= 0 || inFlight < max;
+        }
+
+        private boolean hasToken() {
+            return rate() <= 0 || tokens >= 1;
+        }
+
+        private void take() {
+            inFlight++;
+            if (rate() > 0) {
+                tokens -= 1;
+            }
+        }
+
+        private void refill() {
+            final long now = System.nanoTime();
+            final int rate = rate();
+            final double burst = Math.max(1, rate);
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+        }
+
+        private long nanosUntilToken() {
+            return Math.max(TimeUnit.MILLISECONDS.toNanos(1), (long) ((1 - tokens) / rate() * 1e9));
+        }
+
+        private int maxConcurrent() {
+            switch (pool) {
+                case SPAWN:
+                    return jupyterHubPreferences.getHubClientSpawnMaxConcurrent();
+                case DELETE:
+                    return jupyterHubPreferences.getHubClientDeleteMaxConcurrent();
+                default:
+                    return jupyterHubPreferences.getHubClientReadMaxConcurrent();
+            }
+        }
+
+        private int rate() {
+            switch (pool) {
+                case SPAWN:
+                    return jupyterHubPreferences.getHubClientSpawnRate();
+                case DELETE:
+                    return jupyterHubPreferences.getHubClientDeleteRate();
+                default:
+                    return jupyterHubPreferences.getHubClientReadRate();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,257 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubApiException;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Retries idempotent JupyterHub requests after a transient failure: a connection error, 429, 502, 503 or 504. Only
+ * wrap requests which are safe to repeat.
+ * <p>
+ * The delay before retry n is a random value between 0 and min(hubClientRetryMaxDelay, hubClientRetryBaseDelay * 2^n)
+ * milliseconds. A Retry-After header from the hub replaces the computed delay, and if it asks for a longer wait than
+ * hubClientRetryMaxDelay the request is not retried. Each endpoint also has a retry budget so a struggling hub is not
+ * hit with a multiple of its normal load: retries are limited to hubClientRetryBudgetPercent of the endpoint's
+ * requests, plus a small reserve.
+ */
+@Slf4j
+public class HubRetryPolicy {
+
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(429, 502, 503, 504)));
+    private static final double BUDGET_RESERVE = 10;
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final ConcurrentMap<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+    private final LongAdder retries = new LongAdder();
+
+    public HubRetryPolicy(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    /**
+     * Runs a blocking request, retrying it on transient failures.
+     *
+     * @param endpoint Budget key, e.g. "GET /users/{name}"
+     * @param request  The idempotent request
+     *
+     * @return The request result
+     */
+    public <T> T execute(final String endpoint, final Supplier<T> request) {
+        final RetryBudget budget = budget(endpoint);
+        budget.deposit();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return request.get();
+            } catch (RuntimeException e) {
+                final long delay = retryDelay(endpoint, budget, attempt, e);
+                if (delay < 0) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a non-blocking request, retrying it on transient failures. The backoff is scheduled on a delayed executor,
+     * no thread is held while waiting.
+     *
+     * @param endpoint Budget key, e.g. "GET /users/{name}"
+     * @param request  Starts the idempotent request
+     *
+     * @return Completes with the request result, or with the last failure once retries are exhausted
+     */
+    public <T> CompletableFuture<T> executeAsync(final String endpoint, final Supplier<CompletableFuture<T>> request) {
+        final RetryBudget budget = budget(endpoint);
+        budget.deposit();
+        return executeAsync(endpoint, budget, request, 0);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(final String endpoint, final RetryBudget budget,
+                                                  final Supplier<CompletableFuture<T>> request, final int attempt) {
+        return request.get()
+                      .handle((result, e) -> {
+                          if (e == null) {
+                              return CompletableFuture.<T>completedFuture(result);
+                          }
+
+                          final Throwable cause = unwrap(e);
+                          final long delay = retryDelay(endpoint, budget, attempt, cause);
+                          if (delay < 0) {
+                              return CompletableFuture.<T>failedFuture(cause);
+                          }
+
+                          return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                                                  .thenCompose(ignored -> executeAsync(endpoint, budget, request, attempt + 1));
+                      })
+                      .thenCompose(future -> future);
+    }
+
+    /**
+     * Number of retries sent since XNAT started.
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Decides whether a failed attempt is retried.
+     *
+     * @return Milliseconds to wait before the next attempt, or -1 to give up
+     */
+    private long retryDelay(final String endpoint, final RetryBudget budget, final int attempt, final Throwable failure) {
+        if (attempt >= jupyterHubPreferences.getHubClientMaxRetries() || !isTransient(failure)) {
+            return -1;
+        }
+
+        final long maxDelay = Math.max(0, jupyterHubPreferences.getHubClientRetryMaxDelay());
+        final Duration retryAfter = retryAfter(failure);
+
+        final long delay;
+        if (retryAfter != null) {
+            if (retryAfter.toMillis() > maxDelay) {
+                log.debug("JupyterHub asked to retry {} after {} ms, longer than the maximum retry delay", endpoint, retryAfter.toMillis());
+                return -1;
+            }
+            delay = Math.max(0, retryAfter.toMillis());
+        } else {
+            final long base = Math.max(1, jupyterHubPreferences.getHubClientRetryBaseDelay());
+            final long cap = Math.min(maxDelay, base << Math.min(attempt, 20));
+            delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        }
+
+        if (!budget.withdraw()) {
+            log.debug("Retry budget for {} exhausted, not retrying", endpoint);
+            return -1;
+        }
+
+        retries.increment();
+        log.debug("Transient failure on {}, retry {} in {} ms: {}", endpoint, attempt + 1, delay, failure.getMessage());
+        return delay;
+    }
+
+    private RetryBudget budget(final String endpoint) {
+        return budgets.computeIfAbsent(endpoint, key -> new RetryBudget());
+    }
+
+    static boolean isTransient(final Throwable failure) {
+        final Throwable cause = rootRequestFailure(failure);
+        if (cause instanceof HttpStatusCodeException) {
+            return RETRYABLE_STATUS_CODES.contains(((HttpStatusCodeException) cause).getRawStatusCode());
+        } else if (cause instanceof JupyterHubApiException) {
+            return RETRYABLE_STATUS_CODES.contains(((JupyterHubApiException) cause).getStatusCode());
+        }
+        // A response which cannot be parsed will not parse any better the second time
+        if (cause instanceof JsonProcessingException || (cause instanceof ResourceAccessException && cause.getCause() instanceof JsonProcessingException)) {
+            return false;
+        }
+        return cause instanceof ResourceAccessException || cause instanceof IOException;
+    }
+
+    static Duration retryAfter(final Throwable failure) {
+        final Throwable cause = rootRequestFailure(failure);
+        if (cause instanceof HttpStatusCodeException) {
+            final HttpHeaders headers = ((HttpStatusCodeException) cause).getResponseHeaders();
+            return headers == null ? null : parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        } else if (cause instanceof JupyterHubApiException) {
+            return parseRetryAfter(((JupyterHubApiException) cause).getRetryAfter());
+        }
+        return null;
+    }
+
+    /**
+     * Parses a Retry-After header, either delta-seconds or an HTTP date.
+     */
+    static Duration parseRetryAfter(final String retryAfter) {
+        if (StringUtils.isBlank(retryAfter)) {
+            return null;
+        }
+
+        final String value = retryAfter.trim();
+        if (StringUtils.isNumeric(value)) {
+            return Duration.ofSeconds(Long.parseLong(value));
+        }
+
+        try {
+            final Duration until = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return until.isNegative() ? Duration.ZERO : until;
+        } catch (DateTimeParseException e) {
+            log.debug("Ignoring unparseable Retry-After header {}", value);
+            return null;
+        }
+    }
+
+    /**
+     * The blocking client wraps RestClientExceptions in RuntimeExceptions, find the exception describing the failed
+     * request.
+     */
+    private static Throwable rootRequestFailure(final Throwable failure) {
+        Throwable cause = unwrap(failure);
+        while (cause != null && !(cause instanceof HttpStatusCodeException || cause instanceof JupyterHubApiException ||
+                                  cause instanceof ResourceAccessException || cause instanceof IOException)) {
+            if (cause.getCause() == null || cause.getCause() == cause) {
+                return cause;
+            }
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static Throwable unwrap(final Throwable throwable) {
+        return (throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null ?
+               throwable.getCause() : throwable;
+    }
+
+    /**
+     * Token bucket per endpoint. Every request adds hubClientRetryBudgetPercent / 100 of a token, every retry takes a
+     * whole one.
+     */
+    private final class RetryBudget {
+
+        private double tokens = BUDGET_RESERVE;
+
+        synchronized void deposit() {
+            tokens = Math.min(BUDGET_RESERVE, tokens + jupyterHubPreferences.getHubClientRetryBudgetPercent() / 100.0);
+        }
+
+        synchronized boolean withdraw() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+
+}
@@ -4,8 +4,10 @@ import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.ResourceAlreadyExistsE
 import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.UserNotFoundException;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.*;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface JupyterHubClient {
 
@@ -13,6 +15,9 @@ public interface JupyterHubClient {
     Hub getInfo();
     User createUser(String username);
     List<User> getUsers();
+    Iterator<User> iterateUsers(boolean activeOnly);
+    Stream<User> streamUsers(boolean activeOnly);
+    Stream<User> streamUserSummaries(boolean activeOnly);
     Optional<User> getUser(String username);
     Optional<Server> getServer(String username);
     Optional<Server> getServer(String username, String servername);
@@ -21,5 +26,6 @@ public interface JupyterHubClient {
     void stopServer(String username);
     void stopServer(String username, String servername);
     Token createToken(String username, Token token);
+    HubClientStats getStats();
 
 }
@@ -0,0 +1,67 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keyed single-flight execution. While a call for a key is in flight, concurrent calls with the same key wait for it
+ * and get its result, or its exception, instead of making their own. Nothing is cached once the call returns.
+ * <p>
+ * Only use this for idempotent reads. Callers share the returned object, so it must not be modified.
+ */
+@Slf4j
+class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    <T> T execute(final String key, final Supplier<T> supplier) {
+        calls.increment();
+
+        final CompletableFuture<Object> call = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = inFlight.putIfAbsent(key, call);
+
+        if (existing != null) {
+            coalesced.increment();
+            log.trace("Joining in-flight request {}", key);
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            final T result = supplier.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+}
@@ -0,0 +1,116 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.SpawnProgress;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * Line subscriber for the JupyterHub spawn progress event stream. Each server-sent event is parsed into a
+ * {@link SpawnProgress} and handed to the listener. The result completes with the first ready or failed event, or with
+ * the last event seen (possibly null) if the hub closes the stream before the spawn finishes. Completing or cancelling
+ * the result from outside closes the stream.
+ */
+@Slf4j
+final class SpawnProgressSubscriber implements Flow.Subscriber<String> {
+
+    private final ObjectMapper objectMapper;
+    private final Consumer<SpawnProgress> listener;
+    private final CompletableFuture<SpawnProgress> result = new CompletableFuture<>();
+    private final StringBuilder data = new StringBuilder();
+
+    private volatile Flow.Subscription subscription;
+    private SpawnProgress last;
+
+    SpawnProgressSubscriber(final ObjectMapper objectMapper, final Consumer<SpawnProgress> listener) {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        result.whenComplete((progress, e) -> {
+            final Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        });
+    }
+
+    CompletableFuture<SpawnProgress> getResult() {
+        return result;
+    }
+
+    void fail(final Throwable e) {
+        result.completeExceptionally(e);
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (result.isDone()) {
+            subscription.cancel();
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(final String line) {
+        if (result.isDone()) {
+            return;
+        }
+
+        if (StringUtils.isEmpty(line)) {
+            // A blank line ends the event
+            dispatch();
+        } else if (line.startsWith("data:")) {
+            if (data.length() > 0) {
+                data.append('\n');
+            }
+            data.append(StringUtils.removeStart(line.substring("data:".length()), " "));
+        }
+        // Comments (keep-alives) and other SSE fields are ignored
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        dispatch();
+        result.complete(last);
+    }
+
+    private void dispatch() {
+        if (data.length() == 0) {
+            return;
+        }
+
+        final String json = data.toString();
+        data.setLength(0);
+
+        final SpawnProgress progress;
+        try {
+            progress = objectMapper.readValue(json, SpawnProgress.class);
+        } catch (IOException e) {
+            log.warn("Unable to parse JupyterHub progress event: {}", json, e);
+            return;
+        }
+
+        last = progress;
+        try {
+            listener.accept(progress);
+        } catch (Exception e) {
+            log.error("JupyterHub progress listener failed", e);
+        }
+
+        if (progress.isTerminal()) {
+            result.complete(progress);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over JupyterHub users one page at a time. Only the current page is held in memory, the next page is
+ * requested when the current one is exhausted.
+ */
+final class UserPageIterator implements Iterator<User> {
+
+    /**
+     * Fetches a single page of users starting at the given offset.
+     */
+    @FunctionalInterface
+    interface PageFetcher {
+        Page fetch(int offset, int limit);
+    }
+
+    /**
+     * A page of users and the offset of the next page, null if this is the last page.
+     */
+    static final class Page {
+        private final List<User> users;
+        private final Integer nextOffset;
+
+        Page(final List<User> users, final Integer nextOffset) {
+            this.users = users != null ? users : Collections.emptyList();
+            this.nextOffset = nextOffset;
+        }
+
+        List<User> getUsers() {
+            return users;
+        }
+
+        Integer getNextOffset() {
+            return nextOffset;
+        }
+    }
+
+    private final PageFetcher fetcher;
+    private final int pageSize;
+
+    private Iterator<User> current = Collections.emptyIterator();
+    private Integer nextOffset = 0;
+
+    UserPageIterator(final PageFetcher fetcher, final int pageSize) {
+        this.fetcher = fetcher;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext() && nextOffset != null) {
+            final Page page = fetcher.fetch(nextOffset, pageSize);
+            current = page.getUsers().iterator();
+            // Guard against a hub repeating an empty page forever
+            nextOffset = page.getUsers().isEmpty() ? null : page.getNextOffset();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public User next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+}
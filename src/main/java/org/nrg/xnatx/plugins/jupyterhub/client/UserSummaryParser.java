@@ -0,0 +1,197 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming parser for JupyterHub user lists. Only the fields needed by culling and summary views are read: the user
+ * name and last activity, and each server's name, ready and pending state, url, start time and last activity.
+ * Everything else, notably each server's user options, is skipped without being bound. Accepts a plain list of users
+ * or the paginated response model.
+ */
+final class UserSummaryParser {
+
+    // Same format as the @JsonFormat annotations on the models
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss[.SSSSSS]X").withZone(ZoneId.of("UTC"));
+
+    private final JsonFactory jsonFactory;
+
+    UserSummaryParser(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Parses one page of users.
+     *
+     * @param body   The response body
+     * @param offset Offset the page was requested at
+     * @param limit  Page size the page was requested with, used to detect the last page of a plain list
+     *
+     * @return The page of user summaries
+     */
+    UserPageIterator.Page parsePage(final InputStream body, final int offset, final int limit) throws IOException {
+        try (final JsonParser parser = jsonFactory.createParser(body)) {
+            final JsonToken first = parser.nextToken();
+
+            if (first == null) {
+                return new UserPageIterator.Page(null, null);
+            }
+
+            if (first == JsonToken.START_ARRAY) {
+                final List<User> users = readUsers(parser);
+                return new UserPageIterator.Page(users, users.size() < limit ? null : offset + users.size());
+            }
+
+            expect(parser, JsonToken.START_OBJECT);
+            List<User> users = null;
+            Integer nextOffset = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                parser.nextToken();
+
+                if ("items".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    users = readUsers(parser);
+                } else if ("_pagination".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                    nextOffset = readNextOffset(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return new UserPageIterator.Page(users, nextOffset);
+        }
+    }
+
+    private List<User> readUsers(final JsonParser parser) throws IOException {
+        final List<User> users = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            users.add(readUser(parser));
+        }
+        return users;
+    }
+
+    private User readUser(final JsonParser parser) throws IOException {
+        final User user = new User();
+        final Map<String, Server> servers = new HashMap<>();
+        user.setServers(servers);
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "name":
+                    user.setName(parser.getValueAsString());
+                    break;
+                case "last_activity":
+                    user.setLast_activity(readTimestamp(parser));
+                    break;
+                case "servers":
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            final String servername = parser.getCurrentName();
+                            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                                final Server server = readServer(parser);
+                                if (server.getName() == null) {
+                                    server.setName(servername);
+                                }
+                                servers.put(servername, server);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return user;
+    }
+
+    private Server readServer(final JsonParser parser) throws IOException {
+        final Server server = new Server();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "name":
+                    server.setName(parser.getValueAsString());
+                    break;
+                case "ready":
+                    server.setReady(value == JsonToken.VALUE_NULL ? null : parser.getValueAsBoolean());
+                    break;
+                case "pending":
+                    server.setPending(parser.getValueAsString());
+                    break;
+                case "url":
+                    server.setUrl(parser.getValueAsString());
+                    break;
+                case "started":
+                    server.setStarted(readTimestamp(parser));
+                    break;
+                case "last_activity":
+                    server.setLast_activity(readTimestamp(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return server;
+    }
+
+    private Integer readNextOffset(final JsonParser parser) throws IOException {
+        Integer nextOffset = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("next".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String nextField = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    if ("offset".equals(nextField) && value == JsonToken.VALUE_NUMBER_INT) {
+                        nextOffset = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return nextOffset;
+    }
+
+    private static ZonedDateTime readTimestamp(final JsonParser parser) throws IOException {
+        final String value = parser.getValueAsString();
+        return value == null || value.isEmpty() ? null : ZonedDateTime.parse(value, TIMESTAMP);
+    }
+
+    private static void expect(final JsonParser parser, final JsonToken token) throws IOException {
+        if (parser.currentToken() != token) {
+            throw new IOException("Unexpected JSON token " + parser.currentToken() + " in JupyterHub users response, expected " + token);
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.nrg.xnatx.plugins.jupyterhub.client.exceptions;
+
+/**
+ * Unexpected HTTP status returned by the JupyterHub API.
+ */
+public class JupyterHubApiException extends RuntimeException {
+
+    private final int statusCode;
+    private final String retryAfter;
+
+    public JupyterHubApiException(final int statusCode, final String message) {
+        this(statusCode, message, null);
+    }
+
+    public JupyterHubApiException(final int statusCode, final String message, final String retryAfter) {
+        super(message + " JupyterHub responded with HTTP status " + statusCode + ".");
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return The Retry-After header of the response, if any
+     */
+    public String getRetryAfter() {
+        return retryAfter;
+    }
+
+}
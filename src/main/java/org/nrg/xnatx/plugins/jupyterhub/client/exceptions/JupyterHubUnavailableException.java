@@ -0,0 +1,14 @@
+package org.nrg.xnatx.plugins.jupyterhub.client.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown without contacting JupyterHub while the client circuit breaker is open.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class JupyterHubUnavailableException extends RuntimeException {
+    public JupyterHubUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,8 +1,10 @@
 package org.nrg.xnatx.plugins.jupyterhub.client.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.models.LifecycleStats;
 
 @Data
 @Builder
@@ -10,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = false)
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Slf4j
 public class Hub {
 
@@ -18,5 +21,8 @@ public class Hub {
     private String sysExecutable;
     private Authenticator authenticator;
     private Spawner spawner;
+    private HubHealth health; // Added by XNAT, not part of the JupyterHub response
+    private HubClientStats clientStats; // Added by XNAT, not part of the JupyterHub response
+    private LifecycleStats lifecycle; // Added by XNAT, not part of the JupyterHub response
 
 }
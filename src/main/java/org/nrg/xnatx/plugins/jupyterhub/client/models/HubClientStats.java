@@ -0,0 +1,25 @@
+package org.nrg.xnatx.plugins.jupyterhub.client.models;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * Request counters of the shared JupyterHub client since XNAT started.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class HubClientStats {
+
+    private long reads;          // Idempotent GETs requested by XNAT
+    private long coalescedReads; // Reads served by joining an identical in-flight request
+    private double coalescingRatio;
+    private long retries;        // Requests resent after a transient failure, by the blocking and asynchronous clients
+    private Map<String, Integer> queuedRequests; // Requests waiting on the request limiter, per pool
+
+}
@@ -0,0 +1,29 @@
+package org.nrg.xnatx.plugins.jupyterhub.client.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Result of the last background health check of JupyterHub together with the client circuit breaker state.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Slf4j
+public class HubHealth {
+
+    private boolean reachable;     // Unauthenticated version endpoint responded
+    private boolean authenticated; // XNAT's token was accepted by the info endpoint
+    private String circuitBreaker;
+    private int consecutiveFailures;
+    private String message;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSSSSS]X", timezone = "UTC") private ZonedDateTime checked;
+
+}
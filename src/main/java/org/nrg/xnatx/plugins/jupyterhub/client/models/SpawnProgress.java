@@ -0,0 +1,30 @@
+package org.nrg.xnatx.plugins.jupyterhub.client.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A single event from the JupyterHub spawn progress stream, {@code /users/{name}/servers/{server}/progress}.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Slf4j
+public class SpawnProgress {
+
+    private Integer progress; // 0 - 100
+    private String message;
+    private String html_message;
+    private Boolean ready;
+    private Boolean failed;
+    private String url;
+
+    public boolean isTerminal() {
+        return Boolean.TRUE.equals(ready) || Boolean.TRUE.equals(failed);
+    }
+
+}
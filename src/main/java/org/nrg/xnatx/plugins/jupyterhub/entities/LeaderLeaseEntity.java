@@ -0,0 +1,52 @@
+package org.nrg.xnatx.plugins.jupyterhub.entities;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A lease held by one XNAT node at a time. The holder keeps the lease by renewing it before it expires, any other node
+ * can take it over once it has expired.
+ */
+@Entity
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"name"})})
+@Slf4j
+public class LeaderLeaseEntity extends AbstractHibernateEntity {
+
+    private String name;
+    private String holder;
+    private Date expires;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getHolder() {
+        return holder;
+    }
+
+    public void setHolder(String holder) {
+        this.holder = holder;
+    }
+
+    public Date getExpires() {
+        return expires;
+    }
+
+    public void setExpires(Date expires) {
+        this.expires = expires;
+    }
+
+}
@@ -0,0 +1,246 @@
+package org.nrg.xnatx.plugins.jupyterhub.entities;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Entity
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Table(indexes = {@Index(columnList = "status,startAt")})
+@Slf4j
+public class PrestartScheduleEntity extends AbstractHibernateEntity {
+
+    private String name;
+    private List<String> usernames;
+    private String servername;
+    private String xsiType;
+    private String itemId;
+    private String itemLabel;
+    private String projectId;
+    private Long computeEnvironmentConfigId;
+    private Long hardwareConfigId;
+    private Date startAt;
+    private Integer rampRate;
+    private Date cullExemptUntil;
+    private String createdBy;
+    private PrestartSchedule.Status status;
+    private Integer launched;
+    private Integer position;  // Users whose start has been sent, the ramp resumes from here
+    private Date heartbeat;    // Last progress of the running ramp
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getServername() {
+        return servername;
+    }
+
+    public void setServername(String servername) {
+        this.servername = servername;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getXsiType() {
+        return xsiType;
+    }
+
+    public void setXsiType(String xsiType) {
+        this.xsiType = xsiType;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getItemLabel() {
+        return itemLabel;
+    }
+
+    public void setItemLabel(String itemLabel) {
+        this.itemLabel = itemLabel;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(String projectId) {
+        this.projectId = projectId;
+    }
+
+    public Long getComputeEnvironmentConfigId() {
+        return computeEnvironmentConfigId;
+    }
+
+    public void setComputeEnvironmentConfigId(Long computeEnvironmentConfigId) {
+        this.computeEnvironmentConfigId = computeEnvironmentConfigId;
+    }
+
+    public Long getHardwareConfigId() {
+        return hardwareConfigId;
+    }
+
+    public void setHardwareConfigId(Long hardwareConfigId) {
+        this.hardwareConfigId = hardwareConfigId;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getStartAt() {
+        return startAt;
+    }
+
+    public void setStartAt(Date startAt) {
+        this.startAt = startAt;
+    }
+
+    public Integer getRampRate() {
+        return rampRate;
+    }
+
+    public void setRampRate(Integer rampRate) {
+        this.rampRate = rampRate;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getCullExemptUntil() {
+        return cullExemptUntil;
+    }
+
+    public void setCullExemptUntil(Date cullExemptUntil) {
+        this.cullExemptUntil = cullExemptUntil;
+    }
+
+    public String getCreatedBy() {
+        return createdBy;
+    }
+
+    public void setCreatedBy(String createdBy) {
+        this.createdBy = createdBy;
+    }
+
+    @Enumerated(EnumType.STRING)
+    public PrestartSchedule.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(PrestartSchedule.Status status) {
+        this.status = status;
+    }
+
+    public Integer getLaunched() {
+        return launched;
+    }
+
+    public void setLaunched(Integer launched) {
+        this.launched = launched;
+    }
+
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+
+    @Temporal(TemporalType.TIMESTAMP)
+    public Date getHeartbeat() {
+        return heartbeat;
+    }
+
+    public void setHeartbeat(Date heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * Creates a new entity from the pojo representation.
+     * @param pojo The pojo representation of the entity.
+     * @return The entity representation of the pojo.
+     */
+    public static PrestartScheduleEntity fromPojo(PrestartSchedule pojo) {
+        final PrestartScheduleEntity entity = new PrestartScheduleEntity();
+        entity.update(pojo);
+        return entity;
+    }
+
+    /**
+     * Updates the entity with the pojo representation. Does not update the ID.
+     * @param pojo The pojo representation of the entity.
+     */
+    public void update(PrestartSchedule pojo) {
+        // Don't update the ID, that's immutable
+        this.setName(pojo.getName());
+        this.setUsernames(pojo.getUsernames() != null ? new ArrayList<>(pojo.getUsernames()) : new ArrayList<>());
+        this.setServername(pojo.getServername());
+        this.setXsiType(pojo.getXsiType());
+        this.setItemId(pojo.getItemId());
+        this.setItemLabel(pojo.getItemLabel());
+        this.setProjectId(pojo.getProjectId());
+        this.setComputeEnvironmentConfigId(pojo.getComputeEnvironmentConfigId());
+        this.setHardwareConfigId(pojo.getHardwareConfigId());
+        this.setStartAt(pojo.getStartAt());
+        this.setRampRate(pojo.getRampRate());
+        this.setCullExemptUntil(pojo.getCullExemptUntil());
+        this.setCreatedBy(pojo.getCreatedBy());
+        this.setStatus(pojo.getStatus());
+        this.setLaunched(pojo.getLaunched());
+    }
+
+    /**
+     * Converts the entity to a pojo representation.
+     * @return The pojo representation of the entity.
+     */
+    public PrestartSchedule toPojo() {
+        return PrestartSchedule.builder()
+                .id(this.getId())
+                .name(this.getName())
+                .usernames(this.getUsernames() != null ? new ArrayList<>(this.getUsernames()) : new ArrayList<>())
+                .servername(this.getServername())
+                .xsiType(this.getXsiType())
+                .itemId(this.getItemId())
+                .itemLabel(this.getItemLabel())
+                .projectId(this.getProjectId())
+                .computeEnvironmentConfigId(this.getComputeEnvironmentConfigId())
+                .hardwareConfigId(this.getHardwareConfigId())
+                .startAt(this.getStartAt())
+                .rampRate(this.getRampRate())
+                .cullExemptUntil(this.getCullExemptUntil())
+                .createdBy(this.getCreatedBy())
+                .status(this.getStatus())
+                .launched(this.getLaunched())
+                .build();
+    }
+
+}
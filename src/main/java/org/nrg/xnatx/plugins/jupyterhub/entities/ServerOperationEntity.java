@@ -0,0 +1,151 @@
+package org.nrg.xnatx.plugins.jupyterhub.entities;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A server start or stop in flight, persisted so it can be resumed or finalized when the XNAT node running it is
+ * restarted or fails. The row is deleted once the operation has ended.
+ */
+@Entity
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Table(indexes = {@Index(columnList = "node"), @Index(columnList = "eventTrackingId"), @Index(columnList = "deadline")})
+@Slf4j
+public class ServerOperationEntity extends AbstractHibernateEntity {
+
+    private String node;
+    private String username;
+    private Integer userId;
+    private String servername;
+    private JupyterServerEventI.Operation operation;
+    private String eventTrackingId;
+    private List<String> attachedTrackingIds;
+    private String xsiType;
+    private String itemId;
+    private JupyterServerEventI.Status state;
+    private String step;
+    private Integer progress;
+    private Date deadline;
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getServername() {
+        return servername;
+    }
+
+    public void setServername(String servername) {
+        this.servername = servername;
+    }
+
+    @Enumerated(EnumType.STRING)
+    public JupyterServerEventI.Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(JupyterServerEventI.Operation operation) {
+        this.operation = operation;
+    }
+
+    public String getEventTrackingId() {
+        return eventTrackingId;
+    }
+
+    public void setEventTrackingId(String eventTrackingId) {
+        this.eventTrackingId = eventTrackingId;
+    }
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    public List<String> getAttachedTrackingIds() {
+        return attachedTrackingIds;
+    }
+
+    public void setAttachedTrackingIds(List<String> attachedTrackingIds) {
+        this.attachedTrackingIds = attachedTrackingIds;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getXsiType() {
+        return xsiType;
+    }
+
+    public void setXsiType(String xsiType) {
+        this.xsiType = xsiType;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(String itemId) {
+        this.itemId = itemId;
+    }
+
+    @Enumerated(EnumType.STRING)
+    public JupyterServerEventI.Status getState() {
+        return state;
+    }
+
+    public void setState(JupyterServerEventI.Status state) {
+        this.state = state;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getStep() {
+        return step;
+    }
+
+    public void setStep(String step) {
+        this.step = step;
+    }
+
+    public Integer getProgress() {
+        return progress;
+    }
+
+    public void setProgress(Integer progress) {
+        this.progress = progress;
+    }
+
+    public Date getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Date deadline) {
+        this.deadline = deadline;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.nrg.xnatx.plugins.jupyterhub.entities;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.*;
+
+/**
+ * Journal entry of a shared data directory created for a project server, recorded before the directory is populated
+ * and deleted once the directory has been removed. The creation time is the entity's created timestamp.
+ */
+@Entity
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Table(indexes = {@Index(columnList = "eventTrackingId")})
+@Slf4j
+public class SharedDataDirectoryEntity extends AbstractHibernateEntity {
+
+    private String eventTrackingId;
+    private String path;
+    private String owner;
+
+    public String getEventTrackingId() {
+        return eventTrackingId;
+    }
+
+    public void setEventTrackingId(String eventTrackingId) {
+        this.eventTrackingId = eventTrackingId;
+    }
+
+    @Column(columnDefinition = "TEXT")
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+}
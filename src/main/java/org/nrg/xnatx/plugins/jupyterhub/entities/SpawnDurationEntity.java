@@ -0,0 +1,63 @@
+package org.nrg.xnatx.plugins.jupyterhub.entities;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntity;
+
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * How long JupyterHub took to spawn a server, from the start request until the server was ready, for a compute
+ * environment and hardware configuration pair. A spawn which timed out is recorded with the time waited, a lower bound
+ * of its spawn time.
+ */
+@Entity
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Table(indexes = {@Index(columnList = "computeEnvironmentConfigId,hardwareConfigId")})
+@Slf4j
+public class SpawnDurationEntity extends AbstractHibernateEntity {
+
+    private Long computeEnvironmentConfigId;
+    private Long hardwareConfigId;
+    private Long durationMillis;
+    private Boolean timedOut;
+
+    public Long getComputeEnvironmentConfigId() {
+        return computeEnvironmentConfigId;
+    }
+
+    public void setComputeEnvironmentConfigId(Long computeEnvironmentConfigId) {
+        this.computeEnvironmentConfigId = computeEnvironmentConfigId;
+    }
+
+    public Long getHardwareConfigId() {
+        return hardwareConfigId;
+    }
+
+    public void setHardwareConfigId(Long hardwareConfigId) {
+        this.hardwareConfigId = hardwareConfigId;
+    }
+
+    public Long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(Long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public Boolean getTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(Boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
+}
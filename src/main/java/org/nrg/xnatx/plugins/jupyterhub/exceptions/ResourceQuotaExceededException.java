@@ -0,0 +1,7 @@
+package org.nrg.xnatx.plugins.jupyterhub.exceptions;
+
+public class ResourceQuotaExceededException extends Exception {
+    public ResourceQuotaExceededException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package org.nrg.xnatx.plugins.jupyterhub.exceptions;
+
+/**
+ * A server start failed a check. The message is shown to the user as is.
+ */
+public class ServerStartRejectedException extends Exception {
+    public ServerStartRejectedException(final String message) {
+        super(message);
+    }
+}
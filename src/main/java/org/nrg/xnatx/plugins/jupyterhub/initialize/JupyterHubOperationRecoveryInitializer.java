@@ -0,0 +1,56 @@
+package org.nrg.xnatx.plugins.jupyterhub.initialize;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnat.initialization.tasks.AbstractInitializingTask;
+import org.nrg.xnat.initialization.tasks.InitializingTaskException;
+import org.nrg.xnat.services.XnatAppInfo;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationRecovery;
+import org.nrg.xnatx.plugins.jupyterhub.utils.XFTManagerHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resumes or finalizes the Jupyter server starts and stops which were in flight when this XNAT node was stopped.
+ */
+@Component
+@Slf4j
+public class JupyterHubOperationRecoveryInitializer extends AbstractInitializingTask {
+
+    private final XFTManagerHelper xftManagerHelper;
+    private final XnatAppInfo appInfo;
+    private final JupyterHubOperationRecovery operationRecovery;
+
+    @Autowired
+    public JupyterHubOperationRecoveryInitializer(final XFTManagerHelper xftManagerHelper,
+                                                  final XnatAppInfo appInfo,
+                                                  final JupyterHubOperationRecovery operationRecovery) {
+        this.xftManagerHelper = xftManagerHelper;
+        this.appInfo = appInfo;
+        this.operationRecovery = operationRecovery;
+    }
+
+    /**
+     * Returns the name of the task.
+     * @return The name of the task.
+     */
+    @Override
+    public String getTaskName() {
+        return "JupyterHubOperationRecoveryInitializer";
+    }
+
+    /**
+     * Recovers the interrupted Jupyter server operations of this node.
+     * @throws InitializingTaskException When the XFTManagerHelper or XnatAppInfo is not initialized.
+     */
+    @Override
+    protected void callImpl() throws InitializingTaskException {
+        if (!xftManagerHelper.isInitialized() || !appInfo.isInitialized()) {
+            log.debug("XFTManagerHelper or XnatAppInfo is not initialized, deferring recovery of Jupyter server operations.");
+            throw new InitializingTaskException(InitializingTaskException.Level.RequiresInitialization);
+        }
+
+        log.info("Recovering interrupted Jupyter server operations.");
+        operationRecovery.recover();
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.ZonedDateTime;
+
+/**
+ * A running server selected for culling, with the cull policy which selected it and why.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class CullCandidate {
+
+    private String username;
+    private String servername;
+    private String policy;
+    private String reason;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSSSSS]X", timezone = "UTC") private ZonedDateTime started;
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSSSSS]X", timezone = "UTC") private ZonedDateTime lastActivity;
+
+}
@@ -0,0 +1,46 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Outcome of a reconciliation of the XNAT records of Jupyter servers with the servers running on JupyterHub.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class HubReconciliation {
+
+    private Date started;
+    private Date finished;
+    private int hubServers;                   // Servers running on JupyterHub
+    private int userOptions;                  // User options checked
+    private int staleUserOptions;             // User options deleted, their server no longer runs on JupyterHub
+    private int sharedDataDirectories;        // Shared data directories queued for deletion
+    private List<UnrecordedServer> unrecordedServers;
+
+    /**
+     * A server running on JupyterHub without user options in XNAT, e.g. started from the JupyterHub UI or left running
+     * after its user options were removed.
+     */
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class UnrecordedServer {
+
+        private String username;
+        private String servername;
+        @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSSSSS]X", timezone = "UTC") private ZonedDateTime started;
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Metrics of the thread pool orchestrating Jupyter server starts and stops.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class LifecycleStats {
+
+    private int threads;
+    private int activeTasks;
+    private int queued;
+    private long completedTasks;
+    private long rejected; // New operations turned away by the admission policy
+
+}
@@ -0,0 +1,50 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import io.swagger.annotations.ApiModel;
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Launches the same Jupyter server for a group of users at a set time, for example shortly before a class. The servers
+ * are started in a rate limited ramp and are not culled until the cull exemption ends. When no usernames are given the
+ * servers are started for all members of the project.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+@ApiModel(value = "Jupyter Server Pre-start Schedule", description = "Jupyter Server Pre-start Schedule")
+public class PrestartSchedule {
+
+    private Long id;
+    private String name;
+    private List<String> usernames;
+    private String servername;
+    private String xsiType;
+    private String itemId;
+    private String itemLabel;
+    private String projectId;
+    private Long computeEnvironmentConfigId;
+    private Long hardwareConfigId;
+
+    private Date startAt;
+    private Integer rampRate; // Servers started per minute
+    private Date cullExemptUntil;
+
+    private String createdBy;
+    private Status status;
+    private Integer launched;
+
+    public enum Status {
+        Scheduled,
+        Running,
+        Completed,
+        Cancelled
+    }
+
+}
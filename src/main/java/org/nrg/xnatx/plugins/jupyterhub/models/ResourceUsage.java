@@ -0,0 +1,21 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CPU and memory reserved by the running Jupyter servers of a user or of a project.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class ResourceUsage {
+
+    private int servers;
+    private double cpu;
+    private long memoryBytes;
+
+}
@@ -0,0 +1,37 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+
+/**
+ * Progress and metrics of the deletion of a shared data directory tree.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class SharedDataDeletion {
+
+    public enum Status {
+        Queued,
+        Running,
+        Completed,
+        Failed
+    }
+
+    private String path;
+    private Status status;
+    private long files;       // Files and links deleted so far
+    private long directories; // Directories deleted so far
+    private long failures;    // Entries which could not be deleted
+    private String lastError;
+    private Date queued;
+    private Date started;
+    private Date finished;
+    private double entriesPerSecond;
+
+}
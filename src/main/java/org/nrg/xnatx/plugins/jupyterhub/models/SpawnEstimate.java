@@ -0,0 +1,24 @@
+package org.nrg.xnatx.plugins.jupyterhub.models;
+
+import lombok.*;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Spawn time percentiles of a compute environment and hardware configuration pair, from its recent spawn history.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = false)
+@Slf4j
+public class SpawnEstimate {
+
+    private Long computeEnvironmentConfigId;
+    private Long hardwareConfigId;
+    private int samples;
+    private int timeouts;
+    private long p50Millis;
+    private long p95Millis;
+
+}
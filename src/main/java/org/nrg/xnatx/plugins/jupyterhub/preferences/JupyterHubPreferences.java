@@ -36,6 +36,47 @@ public class JupyterHubPreferences extends AbstractPreferenceBean {
     public static final String MAX_NAMED_SERVERS_PREF_ID = "maxNamedServers";
     public static final String SHARED_PROJECT_STRING = "jupyter-notebooks";
     public static final String JUPYTERHUB_TOKEN = "jupyterHubToken";
+    public static final String HUB_CLIENT_MAX_CONNECTIONS_PREF_ID = "hubClientMaxConnections";
+    public static final String HUB_CLIENT_MAX_CONNECTIONS_PER_ROUTE_PREF_ID = "hubClientMaxConnectionsPerRoute";
+    public static final String HUB_CLIENT_CONNECT_TIMEOUT_PREF_ID = "hubClientConnectTimeout";
+    public static final String HUB_CLIENT_READ_TIMEOUT_PREF_ID = "hubClientReadTimeout";
+    public static final String HUB_CLIENT_USERS_PAGE_SIZE_PREF_ID = "hubClientUsersPageSize";
+    public static final String HUB_STATE_MAX_STALENESS_PREF_ID = "hubStateMaxStaleness";
+    public static final String HUB_HEALTH_CHECK_INTERVAL_PREF_ID = "hubHealthCheckInterval";
+    public static final String HUB_CIRCUIT_BREAKER_FAILURE_THRESHOLD_PREF_ID = "hubCircuitBreakerFailureThreshold";
+    public static final String HUB_CIRCUIT_BREAKER_OPEN_DURATION_PREF_ID = "hubCircuitBreakerOpenDuration";
+    public static final String HUB_CLIENT_MAX_RETRIES_PREF_ID = "hubClientMaxRetries";
+    public static final String HUB_CLIENT_RETRY_BASE_DELAY_PREF_ID = "hubClientRetryBaseDelay";
+    public static final String HUB_CLIENT_RETRY_MAX_DELAY_PREF_ID = "hubClientRetryMaxDelay";
+    public static final String HUB_CLIENT_RETRY_BUDGET_PERCENT_PREF_ID = "hubClientRetryBudgetPercent";
+    public static final String HUB_CLIENT_SPAWN_MAX_CONCURRENT_PREF_ID = "hubClientSpawnMaxConcurrent";
+    public static final String HUB_CLIENT_SPAWN_RATE_PREF_ID = "hubClientSpawnRate";
+    public static final String HUB_CLIENT_DELETE_MAX_CONCURRENT_PREF_ID = "hubClientDeleteMaxConcurrent";
+    public static final String HUB_CLIENT_DELETE_RATE_PREF_ID = "hubClientDeleteRate";
+    public static final String HUB_CLIENT_READ_MAX_CONCURRENT_PREF_ID = "hubClientReadMaxConcurrent";
+    public static final String HUB_CLIENT_READ_RATE_PREF_ID = "hubClientReadRate";
+    public static final String HUB_LIFECYCLE_THREADS_PREF_ID = "hubLifecycleThreads";
+    public static final String HUB_LIFECYCLE_QUEUE_CAPACITY_PREF_ID = "hubLifecycleQueueCapacity";
+    public static final String SPAWN_HISTORY_SIZE_PREF_ID = "spawnHistorySize";
+    public static final String SPAWN_HISTORY_MIN_SAMPLES_PREF_ID = "spawnHistoryMinSamples";
+    public static final String START_TIMEOUT_FLOOR_PREF_ID = "startTimeoutFloor";
+    public static final String START_QUEUE_MAX_CONCURRENT_PREF_ID = "startQueueMaxConcurrent";
+    public static final String START_QUEUE_PROJECT_WEIGHTS_PREF_ID = "startQueueProjectWeights";
+    public static final String USER_CPU_QUOTA_PREF_ID = "userCpuQuota";
+    public static final String USER_MEMORY_QUOTA_PREF_ID = "userMemoryQuota";
+    public static final String PROJECT_CPU_QUOTA_PREF_ID = "projectCpuQuota";
+    public static final String PROJECT_MEMORY_QUOTA_PREF_ID = "projectMemoryQuota";
+    public static final String PRESTART_RAMP_RATE_PREF_ID = "prestartRampRate";
+    public static final String PRESTART_CULL_EXEMPTION_PREF_ID = "prestartCullExemption";
+    public static final String LEADER_LEASE_DURATION_PREF_ID = "leaderLeaseDuration";
+    public static final String CULL_MAX_CONCURRENT_STOPS_PREF_ID = "cullMaxConcurrentStops";
+    public static final String CLUSTER_CPU_CAPACITY_PREF_ID = "clusterCpuCapacity";
+    public static final String CLUSTER_MEMORY_CAPACITY_PREF_ID = "clusterMemoryCapacity";
+    public static final String CAPACITY_EVICTION_THRESHOLD_PREF_ID = "capacityEvictionThreshold";
+    public static final String CAPACITY_EVICTION_MIN_IDLE_PREF_ID = "capacityEvictionMinIdle";
+    public static final String CAPACITY_EVICTION_PROTECT_DASHBOARDS_PREF_ID = "capacityEvictionProtectDashboards";
+    public static final String SHARED_DATA_DELETION_THREADS_PREF_ID = "sharedDataDeletionThreads";
+    public static final String SHARED_DATA_DELETION_RATE_PREF_ID = "sharedDataDeletionRate";
 
 
     @Autowired
@@ -355,6 +396,582 @@ public class JupyterHubPreferences extends AbstractPreferenceBean {
         }
     }
 
+    // Pooled connections to JupyterHub, only read when the hub client is (re)built
+    @NrgPreference(defaultValue = "100")
+    public int getHubClientMaxConnections() {
+        return getIntegerValue(HUB_CLIENT_MAX_CONNECTIONS_PREF_ID);
+    }
+
+    public void setHubClientMaxConnections(final int hubClientMaxConnections) {
+        try {
+            setIntegerValue(hubClientMaxConnections, HUB_CLIENT_MAX_CONNECTIONS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientMaxConnections': something is very wrong here.", e);
+        }
+    }
+
+    @NrgPreference(defaultValue = "100")
+    public int getHubClientMaxConnectionsPerRoute() {
+        return getIntegerValue(HUB_CLIENT_MAX_CONNECTIONS_PER_ROUTE_PREF_ID);
+    }
+
+    public void setHubClientMaxConnectionsPerRoute(final int hubClientMaxConnectionsPerRoute) {
+        try {
+            setIntegerValue(hubClientMaxConnectionsPerRoute, HUB_CLIENT_MAX_CONNECTIONS_PER_ROUTE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientMaxConnectionsPerRoute': something is very wrong here.", e);
+        }
+    }
+
+    // Connect timeout in seconds
+    @NrgPreference(defaultValue = "10")
+    public int getHubClientConnectTimeout() {
+        return getIntegerValue(HUB_CLIENT_CONNECT_TIMEOUT_PREF_ID);
+    }
+
+    public void setHubClientConnectTimeout(final int hubClientConnectTimeout) {
+        try {
+            setIntegerValue(hubClientConnectTimeout, HUB_CLIENT_CONNECT_TIMEOUT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientConnectTimeout': something is very wrong here.", e);
+        }
+    }
+
+    // Read timeout in seconds
+    @NrgPreference(defaultValue = "30")
+    public int getHubClientReadTimeout() {
+        return getIntegerValue(HUB_CLIENT_READ_TIMEOUT_PREF_ID);
+    }
+
+    public void setHubClientReadTimeout(final int hubClientReadTimeout) {
+        try {
+            setIntegerValue(hubClientReadTimeout, HUB_CLIENT_READ_TIMEOUT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientReadTimeout': something is very wrong here.", e);
+        }
+    }
+
+    // Number of users requested per page when iterating over JupyterHub users. JupyterHub caps this at its own
+    // api_page_max_limit (200 by default).
+    @NrgPreference(defaultValue = "200")
+    public int getHubClientUsersPageSize() {
+        return getIntegerValue(HUB_CLIENT_USERS_PAGE_SIZE_PREF_ID);
+    }
+
+    public void setHubClientUsersPageSize(final int hubClientUsersPageSize) {
+        try {
+            setIntegerValue(hubClientUsersPageSize, HUB_CLIENT_USERS_PAGE_SIZE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientUsersPageSize': something is very wrong here.", e);
+        }
+    }
+
+    // Age in seconds after which mirrored JupyterHub users and servers are refreshed from the hub on read. The mirror
+    // is synced in the background every 30 seconds.
+    @NrgPreference(defaultValue = "60")
+    public int getHubStateMaxStaleness() {
+        return getIntegerValue(HUB_STATE_MAX_STALENESS_PREF_ID);
+    }
+
+    public void setHubStateMaxStaleness(final int hubStateMaxStaleness) {
+        try {
+            setIntegerValue(hubStateMaxStaleness, HUB_STATE_MAX_STALENESS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubStateMaxStaleness': something is very wrong here.", e);
+        }
+    }
+
+    // Seconds between background JupyterHub health checks. Server starts use the cached result while it is younger
+    // than this. Changes to the schedule take effect on restart.
+    @NrgPreference(defaultValue = "15")
+    public int getHubHealthCheckInterval() {
+        return getIntegerValue(HUB_HEALTH_CHECK_INTERVAL_PREF_ID);
+    }
+
+    public void setHubHealthCheckInterval(final int hubHealthCheckInterval) {
+        try {
+            setIntegerValue(hubHealthCheckInterval, HUB_HEALTH_CHECK_INTERVAL_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubHealthCheckInterval': something is very wrong here.", e);
+        }
+    }
+
+    // Consecutive connection failures or 5xx responses before requests to JupyterHub fail fast
+    @NrgPreference(defaultValue = "5")
+    public int getHubCircuitBreakerFailureThreshold() {
+        return getIntegerValue(HUB_CIRCUIT_BREAKER_FAILURE_THRESHOLD_PREF_ID);
+    }
+
+    public void setHubCircuitBreakerFailureThreshold(final int hubCircuitBreakerFailureThreshold) {
+        try {
+            setIntegerValue(hubCircuitBreakerFailureThreshold, HUB_CIRCUIT_BREAKER_FAILURE_THRESHOLD_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubCircuitBreakerFailureThreshold': something is very wrong here.", e);
+        }
+    }
+
+    // Seconds requests to JupyterHub fail fast before a trial request is sent
+    @NrgPreference(defaultValue = "30")
+    public int getHubCircuitBreakerOpenDuration() {
+        return getIntegerValue(HUB_CIRCUIT_BREAKER_OPEN_DURATION_PREF_ID);
+    }
+
+    public void setHubCircuitBreakerOpenDuration(final int hubCircuitBreakerOpenDuration) {
+        try {
+            setIntegerValue(hubCircuitBreakerOpenDuration, HUB_CIRCUIT_BREAKER_OPEN_DURATION_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubCircuitBreakerOpenDuration': something is very wrong here.", e);
+        }
+    }
+
+    // Retries of idempotent JupyterHub requests after a transient failure, 0 disables retries
+    @NrgPreference(defaultValue = "3")
+    public int getHubClientMaxRetries() {
+        return getIntegerValue(HUB_CLIENT_MAX_RETRIES_PREF_ID);
+    }
+
+    public void setHubClientMaxRetries(final int hubClientMaxRetries) {
+        try {
+            setIntegerValue(hubClientMaxRetries, HUB_CLIENT_MAX_RETRIES_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientMaxRetries': something is very wrong here.", e);
+        }
+    }
+
+    // Milliseconds, the backoff before retry n is a random delay up to base * 2^n
+    @NrgPreference(defaultValue = "250")
+    public int getHubClientRetryBaseDelay() {
+        return getIntegerValue(HUB_CLIENT_RETRY_BASE_DELAY_PREF_ID);
+    }
+
+    public void setHubClientRetryBaseDelay(final int hubClientRetryBaseDelay) {
+        try {
+            setIntegerValue(hubClientRetryBaseDelay, HUB_CLIENT_RETRY_BASE_DELAY_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientRetryBaseDelay': something is very wrong here.", e);
+        }
+    }
+
+    // Milliseconds, upper bound on the backoff and on the Retry-After delay XNAT will wait
+    @NrgPreference(defaultValue = "5000")
+    public int getHubClientRetryMaxDelay() {
+        return getIntegerValue(HUB_CLIENT_RETRY_MAX_DELAY_PREF_ID);
+    }
+
+    public void setHubClientRetryMaxDelay(final int hubClientRetryMaxDelay) {
+        try {
+            setIntegerValue(hubClientRetryMaxDelay, HUB_CLIENT_RETRY_MAX_DELAY_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientRetryMaxDelay': something is very wrong here.", e);
+        }
+    }
+
+    // Retries per endpoint are limited to this percentage of its requests
+    @NrgPreference(defaultValue = "10")
+    public int getHubClientRetryBudgetPercent() {
+        return getIntegerValue(HUB_CLIENT_RETRY_BUDGET_PERCENT_PREF_ID);
+    }
+
+    public void setHubClientRetryBudgetPercent(final int hubClientRetryBudgetPercent) {
+        try {
+            setIntegerValue(hubClientRetryBudgetPercent, HUB_CLIENT_RETRY_BUDGET_PERCENT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientRetryBudgetPercent': something is very wrong here.", e);
+        }
+    }
+
+    // Server start requests in flight to JupyterHub at once, further starts are queued. 0 for no limit
+    @NrgPreference(defaultValue = "10")
+    public int getHubClientSpawnMaxConcurrent() {
+        return getIntegerValue(HUB_CLIENT_SPAWN_MAX_CONCURRENT_PREF_ID);
+    }
+
+    public void setHubClientSpawnMaxConcurrent(final int hubClientSpawnMaxConcurrent) {
+        try {
+            setIntegerValue(hubClientSpawnMaxConcurrent, HUB_CLIENT_SPAWN_MAX_CONCURRENT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientSpawnMaxConcurrent': something is very wrong here.", e);
+        }
+    }
+
+    // Server start requests sent to JupyterHub per second. 0 for no limit
+    @NrgPreference(defaultValue = "2")
+    public int getHubClientSpawnRate() {
+        return getIntegerValue(HUB_CLIENT_SPAWN_RATE_PREF_ID);
+    }
+
+    public void setHubClientSpawnRate(final int hubClientSpawnRate) {
+        try {
+            setIntegerValue(hubClientSpawnRate, HUB_CLIENT_SPAWN_RATE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientSpawnRate': something is very wrong here.", e);
+        }
+    }
+
+    // Server stop requests in flight to JupyterHub at once. 0 for no limit
+    @NrgPreference(defaultValue = "10")
+    public int getHubClientDeleteMaxConcurrent() {
+        return getIntegerValue(HUB_CLIENT_DELETE_MAX_CONCURRENT_PREF_ID);
+    }
+
+    public void setHubClientDeleteMaxConcurrent(final int hubClientDeleteMaxConcurrent) {
+        try {
+            setIntegerValue(hubClientDeleteMaxConcurrent, HUB_CLIENT_DELETE_MAX_CONCURRENT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientDeleteMaxConcurrent': something is very wrong here.", e);
+        }
+    }
+
+    // Server stop requests sent to JupyterHub per second. 0 for no limit
+    @NrgPreference(defaultValue = "5")
+    public int getHubClientDeleteRate() {
+        return getIntegerValue(HUB_CLIENT_DELETE_RATE_PREF_ID);
+    }
+
+    public void setHubClientDeleteRate(final int hubClientDeleteRate) {
+        try {
+            setIntegerValue(hubClientDeleteRate, HUB_CLIENT_DELETE_RATE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientDeleteRate': something is very wrong here.", e);
+        }
+    }
+
+    // Reads in flight to JupyterHub at once. 0 for no limit
+    @NrgPreference(defaultValue = "50")
+    public int getHubClientReadMaxConcurrent() {
+        return getIntegerValue(HUB_CLIENT_READ_MAX_CONCURRENT_PREF_ID);
+    }
+
+    public void setHubClientReadMaxConcurrent(final int hubClientReadMaxConcurrent) {
+        try {
+            setIntegerValue(hubClientReadMaxConcurrent, HUB_CLIENT_READ_MAX_CONCURRENT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientReadMaxConcurrent': something is very wrong here.", e);
+        }
+    }
+
+    // Reads sent to JupyterHub per second. 0 for no limit
+    @NrgPreference(defaultValue = "100")
+    public int getHubClientReadRate() {
+        return getIntegerValue(HUB_CLIENT_READ_RATE_PREF_ID);
+    }
+
+    public void setHubClientReadRate(final int hubClientReadRate) {
+        try {
+            setIntegerValue(hubClientReadRate, HUB_CLIENT_READ_RATE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubClientReadRate': something is very wrong here.", e);
+        }
+    }
+
+    // Threads orchestrating server starts and stops, separate from the JVM common pool
+    @NrgPreference(defaultValue = "16")
+    public int getHubLifecycleThreads() {
+        return getIntegerValue(HUB_LIFECYCLE_THREADS_PREF_ID);
+    }
+
+    public void setHubLifecycleThreads(final int hubLifecycleThreads) {
+        try {
+            setIntegerValue(hubLifecycleThreads, HUB_LIFECYCLE_THREADS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubLifecycleThreads': something is very wrong here.", e);
+        }
+    }
+
+    // New server starts and stops are rejected while this many lifecycle tasks are waiting for a thread. 0 for no limit
+    @NrgPreference(defaultValue = "200")
+    public int getHubLifecycleQueueCapacity() {
+        return getIntegerValue(HUB_LIFECYCLE_QUEUE_CAPACITY_PREF_ID);
+    }
+
+    public void setHubLifecycleQueueCapacity(final int hubLifecycleQueueCapacity) {
+        try {
+            setIntegerValue(hubLifecycleQueueCapacity, HUB_LIFECYCLE_QUEUE_CAPACITY_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'hubLifecycleQueueCapacity': something is very wrong here.", e);
+        }
+    }
+
+    // Number of recent spawn durations kept per compute environment and hardware pair
+    @NrgPreference(defaultValue = "50")
+    public int getSpawnHistorySize() {
+        return getIntegerValue(SPAWN_HISTORY_SIZE_PREF_ID);
+    }
+
+    public void setSpawnHistorySize(final int spawnHistorySize) {
+        try {
+            setIntegerValue(spawnHistorySize, SPAWN_HISTORY_SIZE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'spawnHistorySize': something is very wrong here.", e);
+        }
+    }
+
+    // Spawns needed before the start timeout and readiness checks follow the spawn history instead of startTimeout and startPollingInterval. 0 to always use the preferences
+    @NrgPreference(defaultValue = "5")
+    public int getSpawnHistoryMinSamples() {
+        return getIntegerValue(SPAWN_HISTORY_MIN_SAMPLES_PREF_ID);
+    }
+
+    public void setSpawnHistoryMinSamples(final int spawnHistoryMinSamples) {
+        try {
+            setIntegerValue(spawnHistoryMinSamples, SPAWN_HISTORY_MIN_SAMPLES_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'spawnHistoryMinSamples': something is very wrong here.", e);
+        }
+    }
+
+    // Seconds, the start timeout learned from the spawn history is never shorter
+    @NrgPreference(defaultValue = "60")
+    public int getStartTimeoutFloor() {
+        return getIntegerValue(START_TIMEOUT_FLOOR_PREF_ID);
+    }
+
+    public void setStartTimeoutFloor(final int startTimeoutFloor) {
+        try {
+            setIntegerValue(startTimeoutFloor, START_TIMEOUT_FLOOR_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'startTimeoutFloor': something is very wrong here.", e);
+        }
+    }
+
+    // Servers spawning at once across all users, further starts wait in the fair start queue. 0 for no limit
+    @NrgPreference(defaultValue = "20")
+    public int getStartQueueMaxConcurrent() {
+        return getIntegerValue(START_QUEUE_MAX_CONCURRENT_PREF_ID);
+    }
+
+    public void setStartQueueMaxConcurrent(final int startQueueMaxConcurrent) {
+        try {
+            setIntegerValue(startQueueMaxConcurrent, START_QUEUE_MAX_CONCURRENT_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'startQueueMaxConcurrent': something is very wrong here.", e);
+        }
+    }
+
+    // Share of the spawn slots each project gets when the start queue is contended, by project ID. Projects not listed have weight 1
+    @NrgPreference(defaultValue = "")
+    public Map<String, String> getStartQueueProjectWeights() {
+        return getMapValue(START_QUEUE_PROJECT_WEIGHTS_PREF_ID);
+    }
+
+    public void setStartQueueProjectWeights(final Map<String, String> startQueueProjectWeights) {
+        try {
+            setMapValue(START_QUEUE_PROJECT_WEIGHTS_PREF_ID, startQueueProjectWeights);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'startQueueProjectWeights': something is very wrong here.", e);
+        }
+    }
+
+    // CPU cores reserved by all running servers of a user. Blank for no limit
+    @NrgPreference(defaultValue = "")
+    public String getUserCpuQuota() {
+        return getValue(USER_CPU_QUOTA_PREF_ID);
+    }
+
+    public void setUserCpuQuota(final String userCpuQuota) {
+        try {
+            set(userCpuQuota, USER_CPU_QUOTA_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'userCpuQuota': something is very wrong here.", e);
+        }
+    }
+
+    // Memory reserved by all running servers of a user, e.g. 32G. Blank for no limit
+    @NrgPreference(defaultValue = "")
+    public String getUserMemoryQuota() {
+        return getValue(USER_MEMORY_QUOTA_PREF_ID);
+    }
+
+    public void setUserMemoryQuota(final String userMemoryQuota) {
+        try {
+            set(userMemoryQuota, USER_MEMORY_QUOTA_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'userMemoryQuota': something is very wrong here.", e);
+        }
+    }
+
+    // CPU cores reserved by all running servers started in a project. Blank for no limit
+    @NrgPreference(defaultValue = "")
+    public String getProjectCpuQuota() {
+        return getValue(PROJECT_CPU_QUOTA_PREF_ID);
+    }
+
+    public void setProjectCpuQuota(final String projectCpuQuota) {
+        try {
+            set(projectCpuQuota, PROJECT_CPU_QUOTA_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'projectCpuQuota': something is very wrong here.", e);
+        }
+    }
+
+    // Memory reserved by all running servers started in a project, e.g. 128G. Blank for no limit
+    @NrgPreference(defaultValue = "")
+    public String getProjectMemoryQuota() {
+        return getValue(PROJECT_MEMORY_QUOTA_PREF_ID);
+    }
+
+    public void setProjectMemoryQuota(final String projectMemoryQuota) {
+        try {
+            set(projectMemoryQuota, PROJECT_MEMORY_QUOTA_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'projectMemoryQuota': something is very wrong here.", e);
+        }
+    }
+
+    // Scheduled pre-starts, servers started per minute when a schedule does not set its own rate
+    @NrgPreference(defaultValue = "10")
+    public int getPrestartRampRate() {
+        return getIntegerValue(PRESTART_RAMP_RATE_PREF_ID);
+    }
+
+    public void setPrestartRampRate(final int prestartRampRate) {
+        try {
+            setIntegerValue(prestartRampRate, PRESTART_RAMP_RATE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'prestartRampRate': something is very wrong here.", e);
+        }
+    }
+
+    // Minutes after a scheduled pre-start during which the started servers are not culled, when the schedule does not set an end
+    @NrgPreference(defaultValue = "120")
+    public int getPrestartCullExemption() {
+        return getIntegerValue(PRESTART_CULL_EXEMPTION_PREF_ID);
+    }
+
+    public void setPrestartCullExemption(final int prestartCullExemption) {
+        try {
+            setIntegerValue(prestartCullExemption, PRESTART_CULL_EXEMPTION_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'prestartCullExemption': something is very wrong here.", e);
+        }
+    }
+
+    // Seconds the XNAT node running the culling and cleanup tasks holds its lease without renewing it
+    @NrgPreference(defaultValue = "60")
+    public int getLeaderLeaseDuration() {
+        return getIntegerValue(LEADER_LEASE_DURATION_PREF_ID);
+    }
+
+    public void setLeaderLeaseDuration(final int leaderLeaseDuration) {
+        try {
+            setIntegerValue(leaderLeaseDuration, LEADER_LEASE_DURATION_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'leaderLeaseDuration': something is very wrong here.", e);
+        }
+    }
+
+    // Servers stopped at the same time by a cull pass
+    @NrgPreference(defaultValue = "4")
+    public int getCullMaxConcurrentStops() {
+        return getIntegerValue(CULL_MAX_CONCURRENT_STOPS_PREF_ID);
+    }
+
+    public void setCullMaxConcurrentStops(final int cullMaxConcurrentStops) {
+        try {
+            setIntegerValue(cullMaxConcurrentStops, CULL_MAX_CONCURRENT_STOPS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'cullMaxConcurrentStops': something is very wrong here.", e);
+        }
+    }
+
+    // CPU cores available to Jupyter servers across the cluster. Blank to disable capacity eviction of CPU
+    @NrgPreference(defaultValue = "")
+    public String getClusterCpuCapacity() {
+        return getValue(CLUSTER_CPU_CAPACITY_PREF_ID);
+    }
+
+    public void setClusterCpuCapacity(final String clusterCpuCapacity) {
+        try {
+            set(clusterCpuCapacity, CLUSTER_CPU_CAPACITY_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'clusterCpuCapacity': something is very wrong here.", e);
+        }
+    }
+
+    // Memory available to Jupyter servers across the cluster, e.g. 512G. Blank to disable capacity eviction of memory
+    @NrgPreference(defaultValue = "")
+    public String getClusterMemoryCapacity() {
+        return getValue(CLUSTER_MEMORY_CAPACITY_PREF_ID);
+    }
+
+    public void setClusterMemoryCapacity(final String clusterMemoryCapacity) {
+        try {
+            set(clusterMemoryCapacity, CLUSTER_MEMORY_CAPACITY_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'clusterMemoryCapacity': something is very wrong here.", e);
+        }
+    }
+
+    // Percent of the cluster capacity the running servers may reserve before idle servers are evicted
+    @NrgPreference(defaultValue = "90")
+    public int getCapacityEvictionThreshold() {
+        return getIntegerValue(CAPACITY_EVICTION_THRESHOLD_PREF_ID);
+    }
+
+    public void setCapacityEvictionThreshold(final int capacityEvictionThreshold) {
+        try {
+            setIntegerValue(capacityEvictionThreshold, CAPACITY_EVICTION_THRESHOLD_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'capacityEvictionThreshold': something is very wrong here.", e);
+        }
+    }
+
+    // Minutes a server must have been idle before it can be evicted for capacity
+    @NrgPreference(defaultValue = "30")
+    public int getCapacityEvictionMinIdle() {
+        return getIntegerValue(CAPACITY_EVICTION_MIN_IDLE_PREF_ID);
+    }
+
+    public void setCapacityEvictionMinIdle(final int capacityEvictionMinIdle) {
+        try {
+            setIntegerValue(capacityEvictionMinIdle, CAPACITY_EVICTION_MIN_IDLE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'capacityEvictionMinIdle': something is very wrong here.", e);
+        }
+    }
+
+    // Dashboards are never evicted for capacity
+    @NrgPreference(defaultValue = "true")
+    public boolean getCapacityEvictionProtectDashboards() {
+        return getBooleanValue(CAPACITY_EVICTION_PROTECT_DASHBOARDS_PREF_ID);
+    }
+
+    public void setCapacityEvictionProtectDashboards(final boolean capacityEvictionProtectDashboards) {
+        try {
+            setBooleanValue(capacityEvictionProtectDashboards, CAPACITY_EVICTION_PROTECT_DASHBOARDS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'capacityEvictionProtectDashboards': something is very wrong here.", e);
+        }
+    }
+
+    // Threads deleting shared data directories, shared by all directories being deleted
+    @NrgPreference(defaultValue = "2")
+    public int getSharedDataDeletionThreads() {
+        return getIntegerValue(SHARED_DATA_DELETION_THREADS_PREF_ID);
+    }
+
+    public void setSharedDataDeletionThreads(final int sharedDataDeletionThreads) {
+        try {
+            setIntegerValue(sharedDataDeletionThreads, SHARED_DATA_DELETION_THREADS_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'sharedDataDeletionThreads': something is very wrong here.", e);
+        }
+    }
+
+    // File system operations per second when deleting shared data directories. 0 for no limit
+    @NrgPreference(defaultValue = "500")
+    public int getSharedDataDeletionRate() {
+        return getIntegerValue(SHARED_DATA_DELETION_RATE_PREF_ID);
+    }
+
+    public void setSharedDataDeletionRate(final int sharedDataDeletionRate) {
+        try {
+            setIntegerValue(sharedDataDeletionRate, SHARED_DATA_DELETION_RATE_PREF_ID);
+        } catch (InvalidPreferenceName e) {
+            log.error("Invalid preference name 'sharedDataDeletionRate': something is very wrong here.", e);
+        }
+    }
+
     @NrgPreference(defaultValue = "false")
     public boolean getAllUsersCanStartJupyter() {
         return getBooleanValue(ALL_USERS_JUPYTER);
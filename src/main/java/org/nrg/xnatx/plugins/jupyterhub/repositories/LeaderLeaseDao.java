@@ -0,0 +1,67 @@
+package org.nrg.xnatx.plugins.jupyterhub.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.nrg.xnatx.plugins.jupyterhub.entities.LeaderLeaseEntity;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+@Slf4j
+public class LeaderLeaseDao extends AbstractHibernateDAO<LeaderLeaseEntity> {
+
+    // For testing
+    public LeaderLeaseDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds the lease with the given name.
+     * @param name The lease name.
+     * @return The lease, if any node has ever held it.
+     */
+    public Optional<LeaderLeaseEntity> findByName(final String name) {
+        Criteria criteria = getSession().createCriteria(LeaderLeaseEntity.class);
+        criteria.add(Restrictions.eq("name", name));
+        return Optional.ofNullable((LeaderLeaseEntity) criteria.uniqueResult());
+    }
+
+    /**
+     * Takes or renews the lease in a single conditional update, so two nodes never both succeed.
+     * @param name    The lease name.
+     * @param holder  The node ID of the caller.
+     * @param now     The current time.
+     * @param expires The new expiry of the lease.
+     * @return True if the caller holds the lease until the new expiry, false if another node holds it or the lease
+     * does not exist yet.
+     */
+    public boolean renew(final String name, final String holder, final Date now, final Date expires) {
+        return getSession().createQuery("update LeaderLeaseEntity set holder = :holder, expires = :expires " +
+                                        "where name = :name and (holder = :holder or expires < :now)")
+                           .setParameter("holder", holder)
+                           .setParameter("expires", expires)
+                           .setParameter("name", name)
+                           .setParameter("now", now)
+                           .executeUpdate() > 0;
+    }
+
+    /**
+     * Expires the lease if the caller holds it, so another node can take it over right away.
+     * @param name   The lease name.
+     * @param holder The node ID of the caller.
+     * @param now    The current time.
+     */
+    public void release(final String name, final String holder, final Date now) {
+        getSession().createQuery("update LeaderLeaseEntity set expires = :now where name = :name and holder = :holder")
+                    .setParameter("now", now)
+                    .setParameter("name", name)
+                    .setParameter("holder", holder)
+                    .executeUpdate();
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.nrg.xnatx.plugins.jupyterhub.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.LockOptions;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+@Slf4j
+public class PrestartScheduleDao extends AbstractHibernateDAO<PrestartScheduleEntity> {
+
+    // For testing
+    public PrestartScheduleDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds the scheduled pre-starts which are due to be launched.
+     * @param now The current time.
+     * @return The pre-starts still scheduled with a start time at or before now, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PrestartScheduleEntity> findDue(final Date now) {
+        Criteria criteria = getSession().createCriteria(PrestartScheduleEntity.class);
+        criteria.add(Restrictions.eq("status", PrestartSchedule.Status.Scheduled));
+        criteria.add(Restrictions.le("startAt", now));
+        criteria.addOrder(Order.asc("startAt"));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return criteria.list();
+    }
+
+    /**
+     * Finds the running pre-starts whose ramp has made no progress for some time, because the node running it stopped.
+     * @param heartbeatBefore The time before which the ramp last made progress.
+     * @return The abandoned pre-starts, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PrestartScheduleEntity> findAbandoned(final Date heartbeatBefore) {
+        Criteria criteria = getSession().createCriteria(PrestartScheduleEntity.class);
+        criteria.add(Restrictions.eq("status", PrestartSchedule.Status.Running));
+        criteria.add(Restrictions.or(Restrictions.isNull("heartbeat"), Restrictions.lt("heartbeat", heartbeatBefore)));
+        criteria.addOrder(Order.asc("startAt"));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return criteria.list();
+    }
+
+    /**
+     * Claims a due pre-start in a single conditional update, so only one node launches it.
+     * @param id  The ID of the pre-start.
+     * @param now The current time.
+     * @return True if the caller claimed the pre-start, false if it is no longer scheduled.
+     */
+    public boolean claim(final Long id, final Date now) {
+        return getSession().createQuery("update PrestartScheduleEntity set status = :running, heartbeat = :now, position = 0 " +
+                                        "where id = :id and status = :scheduled")
+                           .setParameter("running", PrestartSchedule.Status.Running)
+                           .setParameter("scheduled", PrestartSchedule.Status.Scheduled)
+                           .setParameter("now", now)
+                           .setParameter("id", id)
+                           .executeUpdate() > 0;
+    }
+
+    /**
+     * Takes over an abandoned ramp in a single conditional update, so only one node resumes it.
+     * @param id        The ID of the pre-start.
+     * @param heartbeat The heartbeat the caller found the ramp abandoned with, null if it never made progress.
+     * @param now       The current time.
+     * @return True if the caller took over the ramp, false if another node did or it is no longer running.
+     */
+    public boolean reclaim(final Long id, final Date heartbeat, final Date now) {
+        if (heartbeat == null) {
+            return getSession().createQuery("update PrestartScheduleEntity set heartbeat = :now where id = :id and status = :running and heartbeat is null")
+                               .setParameter("running", PrestartSchedule.Status.Running)
+                               .setParameter("now", now)
+                               .setParameter("id", id)
+                               .executeUpdate() > 0;
+        }
+        return getSession().createQuery("update PrestartScheduleEntity set heartbeat = :now where id = :id and status = :running and heartbeat = :heartbeat")
+                           .setParameter("running", PrestartSchedule.Status.Running)
+                           .setParameter("now", now)
+                           .setParameter("heartbeat", heartbeat)
+                           .setParameter("id", id)
+                           .executeUpdate() > 0;
+    }
+
+    /**
+     * Records the progress of a running ramp.
+     * @param id       The ID of the pre-start.
+     * @param position The number of users whose start has been sent, the position only moves forward.
+     * @param started  1 if the start was sent, 0 if it was skipped or rejected.
+     * @param now      The current time.
+     */
+    public void progress(final Long id, final int position, final int started, final Date now) {
+        getSession().createQuery("update PrestartScheduleEntity set heartbeat = :now, launched = coalesce(launched, 0) + :started " +
+                                 "where id = :id")
+                    .setParameter("now", now)
+                    .setParameter("started", started)
+                    .setParameter("id", id)
+                    .executeUpdate();
+        getSession().createQuery("update PrestartScheduleEntity set position = :position " +
+                                 "where id = :id and (position is null or position < :position)")
+                    .setParameter("position", position)
+                    .setParameter("id", id)
+                    .executeUpdate();
+    }
+
+    /**
+     * Sets the status of a pre-start, if it has one of the expected statuses.
+     * @param id       The ID of the pre-start.
+     * @param status   The new status.
+     * @param expected The statuses the pre-start may have.
+     * @return True if the status was changed.
+     */
+    public boolean setStatus(final Long id, final PrestartSchedule.Status status, final Collection<PrestartSchedule.Status> expected) {
+        return getSession().createQuery("update PrestartScheduleEntity set status = :status where id = :id and status in (:expected)")
+                           .setParameter("status", status)
+                           .setParameter("id", id)
+                           .setParameterList("expected", expected)
+                           .executeUpdate() > 0;
+    }
+
+    /**
+     * Stores the resolved users of a running pre-start. The users are an element collection, which a bulk update can't
+     * set, so the row is locked before its status is checked. A concurrent status update waits for the lock and is
+     * applied after the users are stored, never overwritten.
+     * @param id        The ID of the pre-start.
+     * @param usernames The users of the ramp.
+     * @return True if the users were stored, false if the pre-start is gone or no longer running.
+     */
+    public boolean setUsernames(final Long id, final List<String> usernames) {
+        final PrestartScheduleEntity entity = (PrestartScheduleEntity) getSession().get(PrestartScheduleEntity.class, id, LockOptions.UPGRADE);
+        if (entity == null || entity.getStatus() != PrestartSchedule.Status.Running) {
+            return false;
+        }
+        entity.setUsernames(new ArrayList<>(usernames));
+        return true;
+    }
+
+    /**
+     * Finds the launched pre-starts whose servers are still exempt from culling.
+     * @param now The current time.
+     * @return The running or completed pre-starts with a cull exemption ending after now.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PrestartScheduleEntity> findCullExempt(final Date now) {
+        Criteria criteria = getSession().createCriteria(PrestartScheduleEntity.class);
+        criteria.add(Restrictions.in("status", PrestartSchedule.Status.Running, PrestartSchedule.Status.Completed));
+        criteria.add(Restrictions.gt("cullExemptUntil", now));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return criteria.list();
+    }
+
+}
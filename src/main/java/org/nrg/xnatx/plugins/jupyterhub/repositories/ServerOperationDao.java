@@ -0,0 +1,67 @@
+package org.nrg.xnatx.plugins.jupyterhub.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Slf4j
+public class ServerOperationDao extends AbstractHibernateDAO<ServerOperationEntity> {
+
+    // For testing
+    public ServerOperationDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds the persisted operation with the given event tracking ID.
+     * @param eventTrackingId The event tracking ID of the request which started the operation.
+     * @return The operation, if it has not ended.
+     */
+    public Optional<ServerOperationEntity> findByEventTrackingId(final String eventTrackingId) {
+        Criteria criteria = getSession().createCriteria(ServerOperationEntity.class);
+        criteria.add(Restrictions.eq("eventTrackingId", eventTrackingId));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return Optional.ofNullable((ServerOperationEntity) criteria.uniqueResult());
+    }
+
+    /**
+     * Finds the operations run by an XNAT node.
+     * @param node The node ID.
+     * @return The operations of the node, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ServerOperationEntity> findByNode(final String node) {
+        Criteria criteria = getSession().createCriteria(ServerOperationEntity.class);
+        criteria.add(Restrictions.eq("node", node));
+        criteria.addOrder(Order.asc("id"));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return criteria.list();
+    }
+
+    /**
+     * Finds the operations of other XNAT nodes which should have ended some time ago.
+     * @param node   The node ID of the caller, whose operations are excluded.
+     * @param before The deadline the operations have passed.
+     * @return The abandoned operations, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ServerOperationEntity> findAbandoned(final String node, final Date before) {
+        Criteria criteria = getSession().createCriteria(ServerOperationEntity.class);
+        criteria.add(Restrictions.ne("node", node));
+        criteria.add(Restrictions.lt("deadline", before));
+        criteria.addOrder(Order.asc("id"));
+        criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        return criteria.list();
+    }
+
+}
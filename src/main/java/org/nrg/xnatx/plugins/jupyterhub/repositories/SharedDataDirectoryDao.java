@@ -0,0 +1,53 @@
+package org.nrg.xnatx.plugins.jupyterhub.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+@Slf4j
+public class SharedDataDirectoryDao extends AbstractHibernateDAO<SharedDataDirectoryEntity> {
+
+    // For testing
+    public SharedDataDirectoryDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds the journal entries of the shared data directories created for a server start.
+     * @param eventTrackingId The event tracking ID of the start.
+     * @return The journal entries, usually at most one.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SharedDataDirectoryEntity> findByEventTrackingId(final String eventTrackingId) {
+        Criteria criteria = getSession().createCriteria(SharedDataDirectoryEntity.class);
+        criteria.add(Restrictions.eq("eventTrackingId", eventTrackingId));
+        return criteria.list();
+    }
+
+    /**
+     * Finds the oldest directories which belong neither to a server with stored user options nor to a server operation
+     * in flight on any node.
+     * @param createdBefore Only directories created before this time, younger ones may still be in use by a start.
+     * @param limit         The maximum number of directories to return.
+     * @return The orphaned directories, oldest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SharedDataDirectoryEntity> findOrphaned(final Date createdBefore, final int limit) {
+        return getSession().createQuery("from SharedDataDirectoryEntity d where d.created < :createdBefore " +
+                                        "and not exists (select u.id from UserOptionsEntity u where u.eventTrackingId = d.eventTrackingId) " +
+                                        "and not exists (select o.id from ServerOperationEntity o where o.eventTrackingId = d.eventTrackingId) " +
+                                        "order by d.created")
+                           .setParameter("createdBefore", createdBefore)
+                           .setMaxResults(limit)
+                           .list();
+    }
+
+}
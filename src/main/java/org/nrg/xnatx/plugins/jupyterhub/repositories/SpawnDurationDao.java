@@ -0,0 +1,57 @@
+package org.nrg.xnatx.plugins.jupyterhub.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+@Slf4j
+public class SpawnDurationDao extends AbstractHibernateDAO<SpawnDurationEntity> {
+
+    // For testing
+    public SpawnDurationDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds the most recent spawn durations of a compute environment and hardware configuration pair.
+     * @param computeEnvironmentConfigId The compute environment config ID.
+     * @param hardwareConfigId           The hardware config ID.
+     * @param max                        The maximum number of durations to return.
+     * @return The spawn durations, newest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<SpawnDurationEntity> findRecent(final long computeEnvironmentConfigId, final long hardwareConfigId, final int max) {
+        Criteria criteria = getSession().createCriteria(SpawnDurationEntity.class);
+        criteria.add(Restrictions.eq("computeEnvironmentConfigId", computeEnvironmentConfigId));
+        criteria.add(Restrictions.eq("hardwareConfigId", hardwareConfigId));
+        criteria.addOrder(Order.desc("id"));
+        criteria.setMaxResults(max);
+        return criteria.list();
+    }
+
+    /**
+     * Deletes the spawn durations of a compute environment and hardware configuration pair recorded before the given
+     * one.
+     * @param computeEnvironmentConfigId The compute environment config ID.
+     * @param hardwareConfigId           The hardware config ID.
+     * @param id                         The ID of the oldest spawn duration to keep.
+     * @return The number of spawn durations deleted.
+     */
+    public int deleteBefore(final long computeEnvironmentConfigId, final long hardwareConfigId, final long id) {
+        return getSession().createQuery("delete from SpawnDurationEntity where computeEnvironmentConfigId = :computeEnvironmentConfigId " +
+                                        "and hardwareConfigId = :hardwareConfigId and id < :id")
+                           .setParameter("computeEnvironmentConfigId", computeEnvironmentConfigId)
+                           .setParameter("hardwareConfigId", hardwareConfigId)
+                           .setParameter("id", id)
+                           .executeUpdate();
+    }
+
+}
@@ -1,9 +1,62 @@
 package org.nrg.xnatx.plugins.jupyterhub.repositories;
 
+import org.hibernate.SessionFactory;
 import org.nrg.framework.orm.hibernate.AbstractHibernateDAO;
 import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
 @Repository
 public class UserOptionsDao extends AbstractHibernateDAO<UserOptionsEntity> {
+
+    // For testing
+    public UserOptionsDao(final SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Finds a page of user options.
+     * @param afterId Only user options with a greater ID.
+     * @param limit   The maximum number of user options to return.
+     * @return The user options, ordered by ID.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UserOptionsEntity> findAfter(final long afterId, final int limit) {
+        return getSession().createQuery("from UserOptionsEntity u where u.id > :afterId order by u.id")
+                           .setParameter("afterId", afterId)
+                           .setMaxResults(limit)
+                           .list();
+    }
+
+    /**
+     * Finds which of the given user options have not been stored since a given time and belong to no server operation
+     * in flight on any node.
+     * @param ids            The IDs of the user options.
+     * @param modifiedBefore Only user options last stored before this time.
+     * @return The user options which can be deleted.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UserOptionsEntity> findStale(final Collection<Long> ids, final Date modifiedBefore) {
+        return getSession().createQuery("from UserOptionsEntity u where u.id in (:ids) and u.timestamp < :modifiedBefore " +
+                                        "and not exists (select o.id from ServerOperationEntity o where o.eventTrackingId = u.eventTrackingId " +
+                                        "or (o.userId = u.userId and o.servername = u.servername))")
+                           .setParameterList("ids", ids)
+                           .setParameter("modifiedBefore", modifiedBefore)
+                           .list();
+    }
+
+    /**
+     * Deletes user options in a single statement.
+     * @param ids The IDs of the user options.
+     * @return The number of user options deleted.
+     */
+    public int deleteByIds(final Collection<Long> ids) {
+        return getSession().createQuery("delete from UserOptionsEntity where id in (:ids)")
+                           .setParameterList("ids", ids)
+                           .executeUpdate();
+    }
+
 }
@@ -22,10 +22,16 @@ import org.nrg.xnatx.plugins.jupyterhub.client.models.Hub;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.models.CullCandidate;
+import org.nrg.xnatx.plugins.jupyterhub.models.HubReconciliation;
 import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
+import org.nrg.xnatx.plugins.jupyterhub.models.SharedDataDeletion;
 import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubCullingService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubReconciliationService;
 import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
 import org.nrg.xnatx.plugins.jupyterhub.utils.RoleUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +54,9 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
 public class JupyterHubApi extends AbstractXapiRestController {
 
     private final JupyterHubService jupyterHubService;
+    private final JupyterHubCullingService jupyterHubCullingService;
+    private final SharedDataDirectoryService sharedDataDirectoryService;
+    private final JupyterHubReconciliationService jupyterHubReconciliationService;
     private final UserOptionsService jupyterHubUserOptionsService;
     private final EventTrackingDataHibernateService eventTrackingDataHibernateService;
     private final JupyterHubPreferences jupyterHubPreferences;
@@ -57,12 +66,18 @@ public class JupyterHubApi extends AbstractXapiRestController {
     public JupyterHubApi(final UserManagementServiceI userManagementService,
                          final RoleHolder roleHolder,
                          final JupyterHubService jupyterHubService,
+                         final JupyterHubCullingService jupyterHubCullingService,
+                         final SharedDataDirectoryService sharedDataDirectoryService,
+                         final JupyterHubReconciliationService jupyterHubReconciliationService,
                          final UserOptionsService jupyterHubUserOptionsService,
                          final EventTrackingDataHibernateService eventTrackingDataHibernateService,
                          final JupyterHubPreferences jupyterHubPreferences) {
         super(userManagementService, roleHolder);
         this.roleHolder = roleHolder;
         this.jupyterHubService = jupyterHubService;
+        this.jupyterHubCullingService = jupyterHubCullingService;
+        this.sharedDataDirectoryService = sharedDataDirectoryService;
+        this.jupyterHubReconciliationService = jupyterHubReconciliationService;
         this.jupyterHubUserOptionsService = jupyterHubUserOptionsService;
         this.eventTrackingDataHibernateService = eventTrackingDataHibernateService;
         this.jupyterHubPreferences = jupyterHubPreferences;
@@ -91,6 +106,47 @@ public class JupyterHubApi extends AbstractXapiRestController {
         return jupyterHubService.getInfo();
     }
 
+    @ApiOperation(value = "List the servers the next cull would stop.",
+                  notes = "Dry run of the cull policies against the servers currently running on JupyterHub, " +
+                          "with the policy selecting each server and why. No server is stopped.",
+                  response = CullCandidate.class, responseContainer = "List")
+    @ApiResponses({@ApiResponse(code = 200, message = "Cull candidates successfully evaluated."),
+                   @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+                   @ApiResponse(code = 403, message = "Not authorized."),
+                   @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "/cull/candidates", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = AccessLevel.Admin)
+    public List<CullCandidate> getCullCandidates() {
+        return jupyterHubCullingService.findCandidates();
+    }
+
+    @ApiOperation(value = "Get the progress of shared data directory deletions.",
+                  notes = "The shared data directories being deleted in the background, then the last deleted ones, " +
+                          "with the number of entries deleted, failures and deletion rate of each.",
+                  response = SharedDataDeletion.class, responseContainer = "List")
+    @ApiResponses({@ApiResponse(code = 200, message = "Shared data deletions successfully retrieved."),
+                   @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+                   @ApiResponse(code = 403, message = "Not authorized."),
+                   @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "/shared-data/deletions", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = AccessLevel.Admin)
+    public List<SharedDataDeletion> getSharedDataDeletions() {
+        return sharedDataDirectoryService.getDeletions();
+    }
+
+    @ApiOperation(value = "Get the outcome of the last reconciliation of XNAT with JupyterHub.",
+                  notes = "The stale user options deleted and the servers running on JupyterHub without user options " +
+                          "in XNAT, as of the last reconciliation run on this node.",
+                  response = HubReconciliation.class)
+    @ApiResponses({@ApiResponse(code = 200, message = "Reconciliation successfully retrieved."),
+                   @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+                   @ApiResponse(code = 403, message = "Not authorized."),
+                   @ApiResponse(code = 404, message = "No reconciliation has run on this node yet."),
+                   @ApiResponse(code = 500, message = "Unexpected error")})
+    @XapiRequestMapping(value = "/reconciliation", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = AccessLevel.Admin)
+    public HubReconciliation getReconciliation() throws NotFoundException {
+        return jupyterHubReconciliationService.getLastReconciliation()
+                                              .orElseThrow(() -> new NotFoundException("No reconciliation has run on this node yet."));
+    }
+
     @ApiOperation(value = "Get a JupyterHub user by name.", response = User.class)
     @ApiResponses({@ApiResponse(code = 200, message = "User found."),
                    @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
@@ -101,7 +157,9 @@ public class JupyterHubApi extends AbstractXapiRestController {
         return jupyterHubService.getUser(getUserI(username)).orElseThrow(() -> new NotFoundException("No user with name " + username + "exists on JupyterHub."));
     }
 
-    @ApiOperation(value = "Get all the users on JupyterHub.", notes = "All users and their active servers will be returned.", response = User.class, responseContainer = "List")
+    @ApiOperation(value = "Get the JupyterHub users with active servers.",
+                  notes = "Only users with at least one active server are returned, with their active servers. The list is served from XNAT's mirror of JupyterHub state and may lag the hub by up to the hubStateMaxStaleness preference.",
+                  response = User.class, responseContainer = "List")
     @ApiResponses({@ApiResponse(code = 200, message = "Users found."),
                    @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
                    @ApiResponse(code = 403, message = "Not authorized."),
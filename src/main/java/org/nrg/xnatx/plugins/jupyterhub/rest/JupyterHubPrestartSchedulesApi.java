@@ -0,0 +1,96 @@
+package org.nrg.xnatx.plugins.jupyterhub.rest;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.annotations.XapiRestController;
+import org.nrg.xapi.exceptions.NotFoundException;
+import org.nrg.xapi.rest.AbstractXapiRestController;
+import org.nrg.xapi.rest.XapiRequestMapping;
+import org.nrg.xdat.security.services.RoleHolder;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.util.List;
+
+import static org.nrg.xdat.security.helpers.AccessLevel.Admin;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.*;
+
+@Api("JupyterHub Pre-start Schedules API")
+@XapiRestController
+@RequestMapping("/jupyterhub/prestart-schedules")
+@Slf4j
+public class JupyterHubPrestartSchedulesApi extends AbstractXapiRestController {
+
+    private final PrestartService prestartService;
+
+    @Autowired
+    public JupyterHubPrestartSchedulesApi(final UserManagementServiceI userManagementService,
+                                          final RoleHolder roleHolder,
+                                          final PrestartService prestartService) {
+        super(userManagementService, roleHolder);
+        this.prestartService = prestartService;
+    }
+
+    @ApiOperation(value = "Get all pre-start schedules.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Successfully retrieved the list of pre-start schedules"),
+            @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+            @ApiResponse(code = 403, message = "Not authorized."),
+            @ApiResponse(code = 500, message = "Unexpected error")
+    })
+    @XapiRequestMapping(value = "", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = Admin)
+    public List<PrestartSchedule> getAll() {
+        return prestartService.getAll();
+    }
+
+    @ApiOperation(value = "Get a pre-start schedule by ID.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Successfully retrieved the pre-start schedule"),
+            @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+            @ApiResponse(code = 403, message = "Not authorized."),
+            @ApiResponse(code = 404, message = "Pre-start schedule not found."),
+            @ApiResponse(code = 500, message = "Unexpected error")
+    })
+    @XapiRequestMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE, method = GET, restrictTo = Admin)
+    public PrestartSchedule get(@PathVariable("id") Long id) throws NotFoundException {
+        return prestartService.get(id)
+                              .orElseThrow(() -> new NotFoundException("PrestartSchedule", id));
+    }
+
+    @ApiOperation(value = "Schedule Jupyter servers to be started for a list of users or all members of a project.",
+                  notes = "The servers are started in a rate limited ramp from the start time and are not culled until the cull exemption ends.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Successfully scheduled the pre-start"),
+            @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+            @ApiResponse(code = 403, message = "Not authorized."),
+            @ApiResponse(code = 500, message = "Unexpected error")
+    })
+    @XapiRequestMapping(value = "", produces = APPLICATION_JSON_VALUE, method = POST, restrictTo = Admin)
+    public PrestartSchedule create(@RequestBody PrestartSchedule schedule) {
+        return prestartService.create(getSessionUser(), schedule);
+    }
+
+    @ApiOperation(value = "Cancel a pre-start schedule.",
+                  notes = "Servers which were already started keep running but are no longer exempt from culling.")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Successfully cancelled the pre-start schedule"),
+            @ApiResponse(code = 401, message = "Must be authenticated to access the XNAT REST API."),
+            @ApiResponse(code = 403, message = "Not authorized."),
+            @ApiResponse(code = 404, message = "Pre-start schedule not found."),
+            @ApiResponse(code = 500, message = "Unexpected error")
+    })
+    @XapiRequestMapping(value = "/{id}", produces = APPLICATION_JSON_VALUE, method = DELETE, restrictTo = Admin)
+    public PrestartSchedule cancel(@PathVariable("id") Long id) throws NotFoundException {
+        return prestartService.cancel(id);
+    }
+
+}
@@ -0,0 +1,34 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+/**
+ * A rule selecting running servers to cull. All enabled policies are evaluated against the same snapshot of JupyterHub
+ * in each cull pass, a server is culled by the first policy which selects it. New policies are picked up as beans.
+ */
+public interface CullPolicy {
+
+    /**
+     * @return Name of the policy, reported with the servers it selects
+     */
+    String getName();
+
+    /**
+     * @return False if the policy is disabled by its preferences
+     */
+    boolean isEnabled();
+
+    /**
+     * @param username   The user owning the server
+     * @param servername Name of the server
+     * @param server     The server as reported by JupyterHub
+     * @param now        The time of the cull pass, in UTC
+     *
+     * @return Why the server should be culled, or empty to keep it
+     */
+    Optional<String> evaluate(String username, String servername, Server server, ZonedDateTime now);
+
+}
@@ -0,0 +1,28 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.models.CullCandidate;
+
+import java.util.List;
+
+/**
+ * Culls running servers in a single pass over JupyterHub, evaluating every enabled {@link CullPolicy} against the same
+ * snapshot of users and servers. When the servers left running would still reserve more than the configured share of
+ * the cluster capacity, the pass also evicts idle servers, least recently active first, until they no longer do.
+ */
+public interface JupyterHubCullingService {
+
+    /**
+     * Evaluates the cull policies and the capacity eviction without stopping any server.
+     *
+     * @return The servers a cull pass would stop now, and why
+     */
+    List<CullCandidate> findCandidates();
+
+    /**
+     * Stops the servers selected by the cull policies and the capacity eviction. The stops run in the background, a few at a time.
+     *
+     * @return The servers being stopped, and why
+     */
+    List<CullCandidate> cull();
+
+}
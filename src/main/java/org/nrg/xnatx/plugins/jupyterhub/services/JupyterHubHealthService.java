@@ -0,0 +1,11 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.HubHealth;
+
+public interface JupyterHubHealthService {
+
+    HubHealth getHealth();
+    HubHealth getLastHealth();
+    HubHealth probe();
+
+}
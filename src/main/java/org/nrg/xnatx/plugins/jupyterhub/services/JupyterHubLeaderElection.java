@@ -0,0 +1,33 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+/**
+ * Elects one XNAT node to run the cluster-wide scheduled tasks, such as culling servers and cleaning up shared data
+ * directories, through a lease in the database. The leader renews the lease periodically. When it stops renewing,
+ * because it was shut down or failed, another node takes over once the lease has expired.
+ */
+public interface JupyterHubLeaderElection {
+
+    /**
+     * Takes or renews the lease of this node. Called periodically, well within the lease duration.
+     */
+    void renew();
+
+    /**
+     * @return True if this node held the lease at its last renewal and the lease has not expired since.
+     */
+    boolean isLeader();
+
+    /**
+     * Runs the task if this node is the leader, trying to take the lease first if it is not.
+     *
+     * @param name Name of the task, for logging
+     * @param task The task to run
+     */
+    void runIfLeader(String name, Runnable task);
+
+    /**
+     * Releases the lease if this node holds it, so another node takes over without waiting for it to expire.
+     */
+    void release();
+
+}
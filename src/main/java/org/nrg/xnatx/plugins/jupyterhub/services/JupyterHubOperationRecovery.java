@@ -0,0 +1,15 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+/**
+ * Resumes or finalizes the server starts and stops which were in flight on an XNAT node when it was restarted or
+ * failed, so no user options, shared data directories or event trackers are left behind in progress.
+ */
+public interface JupyterHubOperationRecovery {
+
+    /**
+     * Recovers the persisted operations of this node which are no longer in flight and, on the leader, the operations
+     * of other nodes which are well past their deadline.
+     */
+    void recover();
+
+}
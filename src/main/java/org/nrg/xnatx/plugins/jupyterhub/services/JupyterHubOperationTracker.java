@@ -0,0 +1,74 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tracks the in-flight starts and stops of Jupyter servers, keyed by user and server name and by event tracking ID.
+ * Repeated requests for an operation which is already in flight, from double clicks or UI retries, are attached to it
+ * instead of running the operation again. A start and a stop of the same server never interleave.
+ * <p>
+ * Operations are persisted while in flight, with their latest step and a deadline, so they can be recovered when the
+ * XNAT node running them is restarted or fails.
+ */
+public interface JupyterHubOperationTracker {
+
+    /**
+     * Registers a server start or stop. If the same kind of operation is in flight for the server, or the event tracking
+     * ID belongs to an in-flight operation, the request is attached to that operation: its event tracking ID receives the
+     * latest event of the operation right away and a copy of every event after that.
+     *
+     * @param username        The user owning the server
+     * @param servername      Name of the server
+     * @param operation       Start or stop
+     * @param eventTrackingId Event tracking ID of the request
+     *
+     * @return The new operation, or empty if the request was attached to an in-flight operation.
+     */
+    Optional<TrackedOperation> begin(String username, String servername, JupyterServerEventI.Operation operation, String eventTrackingId);
+
+    /**
+     * Triggers the event, and a copy of it for every request attached to the operation of its event tracking ID.
+     *
+     * @param event The event to trigger
+     */
+    void triggerEvent(JupyterServerEvent event);
+
+    /**
+     * @return Number of operations in flight
+     */
+    int getInFlight();
+
+    /**
+     * @param eventTrackingId Event tracking ID of a request
+     *
+     * @return True if the request started or was attached to an operation in flight on this node
+     */
+    boolean isInFlight(String eventTrackingId);
+
+    interface TrackedOperation {
+
+        /**
+         * @return Completes once the previous operation of the other kind on the same server has ended. The operation
+         * must not touch the server before.
+         */
+        CompletableFuture<Void> previous();
+
+        /**
+         * Moves the deadline of the operation, after which an interrupted operation is given up instead of resumed.
+         *
+         * @param timeout Milliseconds from now
+         */
+        void setDeadline(long timeout);
+
+        /**
+         * Ends the operation. Later requests start a new operation. Ending more than once has no effect.
+         */
+        void end();
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.models.HubReconciliation;
+
+import java.util.Optional;
+
+/**
+ * Reconciles the user options XNAT stores for each Jupyter server with the servers running on JupyterHub. User options
+ * outlive their server when a stop gives up before removing them, they then keep holding a resource reservation and
+ * their shared data directory. Servers running on JupyterHub without user options are flagged for the administrators.
+ */
+public interface JupyterHubReconciliationService {
+
+    /**
+     * Deletes the user options of servers which no longer run on JupyterHub, releases their resource reservations and
+     * queues their shared data directories for deletion. User options stored recently or belonging to a server operation
+     * in flight are kept.
+     *
+     * @return The outcome of the reconciliation
+     */
+    HubReconciliation reconcile();
+
+    /**
+     * @return The outcome of the last reconciliation run on this node, if any
+     */
+    Optional<HubReconciliation> getLastReconciliation();
+
+}
@@ -0,0 +1,53 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Waits for JupyterHub servers to reach a state. All pending starts and stops share one poll loop: each tick takes a
+ * single snapshot of the active servers on the hub and resolves every operation due for a check against it.
+ */
+public interface JupyterHubServerPoller {
+
+    /**
+     * Waits until the server satisfies the condition or the timeout elapses.
+     *
+     * @param username   The JupyterHub username
+     * @param servername The server name, blank for the default server
+     * @param condition  Tested against the active server, empty if the hub has no active server with that name
+     * @param timeout    Milliseconds to wait
+     * @param onPoll     Called with the server state on each tick, may be null
+     *
+     * @return Completes with the server state which satisfied the condition, or the last state seen once the timeout
+     *         elapsed
+     */
+    CompletableFuture<Optional<Server>> awaitServer(String username, String servername, Predicate<Optional<Server>> condition,
+                                                    long timeout, Consumer<Optional<Server>> onPoll);
+
+    /**
+     * Waits until the server satisfies the condition or the timeout elapses, checking the server on a custom schedule.
+     *
+     * @param username   The JupyterHub username
+     * @param servername The server name, blank for the default server
+     * @param condition  Tested against the active server, empty if the hub has no active server with that name
+     * @param timeout    Milliseconds to wait
+     * @param schedule   Maps the milliseconds waited so far to the milliseconds until the next check
+     * @param onPoll     Called with the server state on each check, may be null
+     *
+     * @return Completes with the server state which satisfied the condition, or the last state seen once the timeout
+     *         elapsed
+     */
+    CompletableFuture<Optional<Server>> awaitServer(String username, String servername, Predicate<Optional<Server>> condition,
+                                                    long timeout, LongUnaryOperator schedule, Consumer<Optional<Server>> onPoll);
+
+    /**
+     * @return Number of operations currently waiting
+     */
+    int getPending();
+
+}
@@ -10,6 +10,7 @@ import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface JupyterHubService {
 
@@ -21,11 +22,8 @@ public interface JupyterHubService {
     Optional<Server> getServer(UserI user);
     Optional<Server> getServer(UserI user, String servername);
     void startServer(UserI user, ServerStartRequest startRequest);
-    void stopServer(UserI user, String eventTrackingId);
-    void stopServer(UserI user, String servername, String eventTrackingId);
+    CompletableFuture<Void> stopServer(UserI user, String eventTrackingId);
+    CompletableFuture<Void> stopServer(UserI user, String servername, String eventTrackingId);
     Token createToken(UserI user, String note, Integer expiresIn);
-    void cullInactiveServers();
-    void cullLongRunningServers();
-    void cleanupOrphanedSharedDataDirs();
 
 }
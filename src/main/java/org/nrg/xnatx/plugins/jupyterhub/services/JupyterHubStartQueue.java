@@ -0,0 +1,42 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * Admission queue in front of server starts. Caps the number of servers spawning at once and shares the spawn slots
+ * fairly between projects, weighted by the startQueueProjectWeights preference, and between users within a project.
+ */
+public interface JupyterHubStartQueue {
+
+    /**
+     * Waits for a spawn slot.
+     *
+     * @param username  The user starting the server
+     * @param projectId The project the server is started in
+     * @param onQueued  Called with the number of starts ahead in the queue whenever it changes, may be null
+     *
+     * @return Completes once the start may proceed. The admission must be released when the spawn finishes.
+     */
+    CompletableFuture<Admission> admit(String username, String projectId, IntConsumer onQueued);
+
+    /**
+     * @return Number of starts waiting for a spawn slot
+     */
+    int getQueued();
+
+    /**
+     * @return Number of admitted starts which have not been released
+     */
+    int getRunning();
+
+    interface Admission {
+
+        /**
+         * Frees the spawn slot. Releasing more than once has no effect.
+         */
+        void release();
+
+    }
+
+}
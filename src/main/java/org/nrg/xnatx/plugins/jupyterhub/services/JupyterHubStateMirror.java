@@ -0,0 +1,27 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * In-memory mirror of the JupyterHub users and their servers. Kept current by a single background sync and by the
+ * results of server starts and stops. Reads only go to JupyterHub when the mirrored state is older than the
+ * hubStateMaxStaleness preference.
+ */
+public interface JupyterHubStateMirror {
+
+    Optional<User> getUser(String username);
+    Optional<Server> getServer(String username, String servername);
+    List<User> getUsers();
+
+    void sync();
+
+    void putUser(User user);
+    void putServer(String username, Server server);
+    void removeServer(String username, String servername);
+    void invalidate(String username);
+
+}
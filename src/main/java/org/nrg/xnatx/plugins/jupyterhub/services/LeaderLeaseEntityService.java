@@ -0,0 +1,15 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.LeaderLeaseEntity;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface LeaderLeaseEntityService extends BaseHibernateService<LeaderLeaseEntity> {
+
+    Optional<LeaderLeaseEntity> findByName(String name);
+    boolean acquire(String name, String holder, Date expires);
+    void release(String name, String holder);
+
+}
@@ -0,0 +1,22 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface PrestartScheduleEntityService extends BaseHibernateService<PrestartScheduleEntity> {
+
+    List<PrestartScheduleEntity> findDue(Date now);
+    List<PrestartScheduleEntity> findCullExempt(Date now);
+    List<PrestartScheduleEntity> findAbandoned(Date heartbeatBefore);
+    boolean claim(Long id, Date now);
+    boolean reclaim(Long id, Date heartbeat, Date now);
+    void progress(Long id, int position, boolean started, Date now);
+    boolean setStatus(Long id, PrestartSchedule.Status status, Collection<PrestartSchedule.Status> expected);
+    boolean setUsernames(Long id, List<String> usernames);
+
+}
@@ -0,0 +1,22 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xapi.exceptions.NotFoundException;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Schedules Jupyter servers to be started ahead of time for a group of users, such as the students of a class.
+ */
+public interface PrestartService {
+
+    PrestartSchedule create(UserI user, PrestartSchedule schedule);
+    Optional<PrestartSchedule> get(Long id);
+    List<PrestartSchedule> getAll();
+    PrestartSchedule cancel(Long id) throws NotFoundException;
+
+    void launchDueSchedules();
+
+}
@@ -0,0 +1,53 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ResourceQuotaExceededException;
+import org.nrg.xnatx.plugins.jupyterhub.models.ResourceUsage;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.TaskTemplate;
+
+/**
+ * Ledger of the CPU and memory reservations of running Jupyter servers, aggregated per user and per project, and
+ * enforcement of the user and project quota preferences at launch. Usage read outside a reservation may lag servers
+ * started or stopped through other nodes.
+ */
+public interface ResourceQuotaService {
+
+    /**
+     * Reserves the resources of a server being started. Replaces any reservation the server already holds.
+     *
+     * @param userId       The ID of the user starting the server
+     * @param servername   The server name
+     * @param projectId    The project the server is started in
+     * @param taskTemplate The task template of the server, its resource reservations are counted
+     *
+     * @throws ResourceQuotaExceededException If the reservation would take the user or the project over quota. Nothing
+     *                                        is reserved.
+     */
+    void reserve(Integer userId, String servername, String projectId, TaskTemplate taskTemplate) throws ResourceQuotaExceededException;
+
+    boolean isReserved(Integer userId, String servername);
+
+    void release(Integer userId, String servername);
+
+    ResourceUsage getUserUsage(Integer userId);
+
+    ResourceUsage getProjectUsage(String projectId);
+
+    /**
+     * Rebuilds the ledger from the stored user options, counting the servers started and stopped through other nodes.
+     */
+    void reload();
+
+    /**
+     * @return The resources reserved by all running servers
+     */
+    ResourceUsage getTotalUsage();
+
+    /**
+     * @param userId     The ID of the user owning the server
+     * @param servername The server name
+     *
+     * @return The resources reserved by the server, none if it holds no reservation
+     */
+    ResourceUsage getServerUsage(Integer userId, String servername);
+
+}
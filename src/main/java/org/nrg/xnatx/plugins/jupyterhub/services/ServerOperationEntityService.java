@@ -0,0 +1,17 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ServerOperationEntityService extends BaseHibernateService<ServerOperationEntity> {
+
+    Optional<ServerOperationEntity> findByEventTrackingId(String eventTrackingId);
+    List<ServerOperationEntity> findByNode(String node);
+    List<ServerOperationEntity> findAbandoned(String node, Date before);
+    void deleteByEventTrackingId(String eventTrackingId);
+
+}
@@ -0,0 +1,14 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+
+import java.util.Date;
+import java.util.List;
+
+public interface SharedDataDirectoryEntityService extends BaseHibernateService<SharedDataDirectoryEntity> {
+
+    List<SharedDataDirectoryEntity> findByEventTrackingId(String eventTrackingId);
+    List<SharedDataDirectoryEntity> findOrphaned(Date createdBefore, int limit);
+
+}
@@ -0,0 +1,61 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.models.SharedDataDeletion;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps a journal of the shared data directories created in the archive for project servers, so orphaned directories
+ * are found from the journal instead of by scanning the archive. A full scan only remains as a periodic reconciliation
+ * for directories the journal does not know about.
+ */
+public interface SharedDataDirectoryService {
+
+    /**
+     * Journals the shared data directory of a server start. Called before the directory is created, so the
+     * reconciliation never mistakes a directory being populated for an orphan.
+     *
+     * @param user            The user starting the server
+     * @param eventTrackingId The event tracking ID of the start
+     *
+     * @return The directory to create, relative to the archive's shared data directory
+     */
+    Path record(UserI user, String eventTrackingId);
+
+    /**
+     * Queues the shared data directory of a server start for deletion. Its journal entry is removed once the directory
+     * is deleted, and kept for the reaper to try again if it can't be.
+     *
+     * @param eventTrackingId The event tracking ID of the start
+     *
+     * @return Completes once the directory has been deleted or has failed to
+     */
+    CompletableFuture<Void> remove(String eventTrackingId);
+
+    /**
+     * Queues a batch of journaled directories which no longer belong to a running server or a server operation in
+     * flight for deletion. Directories of servers still running on JupyterHub are kept, nothing is queued while
+     * JupyterHub cannot be read.
+     *
+     * @return The number of directories queued
+     */
+    int reap();
+
+    /**
+     * Scans the archive's shared data directory and queues the directories which are neither journaled nor used by a
+     * running server for deletion, e.g. those created before the journal existed. Directories modified within the
+     * reaper's grace period are left alone.
+     *
+     * @return The number of directories queued
+     */
+    int reconcile();
+
+    /**
+     * @return The progress of the directories being deleted and of the last deleted ones
+     */
+    List<SharedDataDeletion> getDeletions();
+
+}
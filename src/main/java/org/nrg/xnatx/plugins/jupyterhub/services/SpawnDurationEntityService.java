@@ -0,0 +1,13 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.framework.orm.hibernate.BaseHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+
+import java.util.List;
+
+public interface SpawnDurationEntityService extends BaseHibernateService<SpawnDurationEntity> {
+
+    List<SpawnDurationEntity> findRecent(long computeEnvironmentConfigId, long hardwareConfigId, int max);
+    void record(SpawnDurationEntity spawnDuration, int keep);
+
+}
@@ -0,0 +1,41 @@
+package org.nrg.xnatx.plugins.jupyterhub.services;
+
+import org.nrg.xnatx.plugins.jupyterhub.models.SpawnEstimate;
+
+import java.util.Optional;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Learns how long servers take to spawn for each compute environment and hardware configuration pair. The spawn
+ * history is stored in the database so the estimates survive restarts.
+ */
+public interface SpawnHistoryService {
+
+    void recordSpawn(Long computeEnvironmentConfigId, Long hardwareConfigId, long durationMillis);
+
+    /**
+     * Records a spawn which did not finish within the start timeout. The time waited counts as its spawn time, so the
+     * learned start timeout grows past it.
+     *
+     * @param computeEnvironmentConfigId The compute environment config of the server
+     * @param hardwareConfigId           The hardware config of the server
+     * @param waitedMillis               How long the spawn was waited for
+     */
+    void recordTimeout(Long computeEnvironmentConfigId, Long hardwareConfigId, long waitedMillis);
+
+    Optional<SpawnEstimate> getEstimate(Long computeEnvironmentConfigId, Long hardwareConfigId);
+
+    /**
+     * @return Milliseconds to wait for a server of the pair to spawn, at least the startTimeoutFloor preference. Falls
+     *         back to the startTimeout preference until enough spawns have been recorded.
+     */
+    long getStartTimeout(Long computeEnvironmentConfigId, Long hardwareConfigId);
+
+    /**
+     * @return Readiness check schedule for a server of the pair, mapping the milliseconds waited so far to the
+     *         milliseconds until the next check. Falls back to the startPollingInterval preference until enough spawns
+     *         have been recorded.
+     */
+    LongUnaryOperator getReadinessSchedule(Long computeEnvironmentConfigId, Long hardwareConfigId);
+
+}
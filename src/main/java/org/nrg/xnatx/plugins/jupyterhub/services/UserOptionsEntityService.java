@@ -3,11 +3,16 @@ package org.nrg.xnatx.plugins.jupyterhub.services;
 import org.nrg.framework.orm.hibernate.BaseHibernateService;
 import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserOptionsEntityService extends BaseHibernateService<UserOptionsEntity> {
 
     void createOrUpdate(UserOptionsEntity userOptionsEntity);
     Optional<UserOptionsEntity> find(Integer userId, String servername);
+    List<UserOptionsEntity> findAfter(long afterId, int limit);
+    List<UserOptionsEntity> deleteStale(Collection<Long> ids, Date modifiedBefore);
 
 }
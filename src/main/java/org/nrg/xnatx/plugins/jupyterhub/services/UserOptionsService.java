@@ -5,6 +5,7 @@ import org.nrg.xft.exception.DBPoolException;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.exceptions.InvalidArchiveStructure;
 import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.utils.StageGraph;
 
 import java.io.IOException;
 import java.sql.SQLException;
@@ -27,6 +28,7 @@ public interface UserOptionsService {
     Optional<XnatUserOptions> retrieveUserOptions(UserI user);
     Optional<XnatUserOptions> retrieveUserOptions(UserI user, String servername);
     void storeUserOptions(UserI user, String servername, String xsiType, String id, String projectId, Long computeEnvironmentConfigId, Long hardwareConfigId, Long dashboardConfigId, String eventTrackingId) throws BaseXnatExperimentdata.UnknownPrimaryProjectException, DBPoolException, SQLException, InvalidArchiveStructure, IOException;
+    StageGraph.Stage<Void> storeUserOptions(StageGraph graph, UserI user, String servername, String xsiType, String id, String projectId, Long computeEnvironmentConfigId, Long hardwareConfigId, Long dashboardConfigId, String eventTrackingId, List<StageGraph.Stage<?>> gates);
     void removeUserOptions(UserI user, String servername);
 
 }
@@ -0,0 +1,344 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xdat.security.user.exceptions.UserInitException;
+import org.nrg.xdat.security.user.exceptions.UserNotFoundException;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.models.CullCandidate;
+import org.nrg.xnatx.plugins.jupyterhub.models.ResourceUsage;
+import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.CullPolicy;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubCullingService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartScheduleEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Each cull pass reads the users with running servers from JupyterHub once, skips the servers exempt from culling and
+ * asks each enabled policy in turn whether to cull a server. The selected servers are stopped by a few lanes, each
+ * taking the next server once its previous stop has ended, so a pass never floods the lifecycle executor. Users are
+ * resolved once per pass, whatever the number of their servers.
+ * <p>
+ * When the total reservations in the resource ledger are over the eviction threshold of the cluster capacity, the
+ * servers no policy selected go into a priority queue keyed on their last activity. Servers idle for less than the
+ * minimum idle time, and dashboards unless configured otherwise, are never queued or evicted. The least recently active
+ * servers are then evicted until the reservations left, net of the servers already selected, are back under the
+ * threshold. Servers reserving nothing of the resources under pressure are passed over.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubCullingService implements JupyterHubCullingService {
+
+    private final JupyterHubClient jupyterHubClient;
+    private final JupyterHubService jupyterHubService;
+    private final PrestartScheduleEntityService prestartScheduleEntityService;
+    private final ResourceQuotaService resourceQuotaService;
+    private final UserOptionsService userOptionsService;
+    private final UserManagementServiceI userManagementService;
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final List<CullPolicy> cullPolicies;
+
+    @Autowired
+    public DefaultJupyterHubCullingService(final JupyterHubClient jupyterHubClient,
+                                           final JupyterHubService jupyterHubService,
+                                           final PrestartScheduleEntityService prestartScheduleEntityService,
+                                           final ResourceQuotaService resourceQuotaService,
+                                           final UserOptionsService userOptionsService,
+                                           final UserManagementServiceI userManagementService,
+                                           final JupyterHubPreferences jupyterHubPreferences,
+                                           final List<CullPolicy> cullPolicies) {
+        this.jupyterHubClient = jupyterHubClient;
+        this.jupyterHubService = jupyterHubService;
+        this.prestartScheduleEntityService = prestartScheduleEntityService;
+        this.resourceQuotaService = resourceQuotaService;
+        this.userOptionsService = userOptionsService;
+        this.userManagementService = userManagementService;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        this.cullPolicies = cullPolicies;
+    }
+
+    @Override
+    public List<CullCandidate> findCandidates() {
+        return findCandidates(ZonedDateTime.now(ZoneId.of("UTC")), new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public List<CullCandidate> cull() {
+        final ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
+        final Map<String, Optional<UserI>> users = new ConcurrentHashMap<>();
+        final List<CullCandidate> candidates;
+        try {
+            candidates = findCandidates(now, users);
+        } catch (Exception e) {
+            log.error("Failed to cull Jupyter notebook servers", e);
+            return Collections.emptyList();
+        }
+
+        if (!candidates.isEmpty()) {
+            log.info("Culling {} Jupyter notebook servers", candidates.size());
+            stop(candidates, users, now);
+        }
+        return candidates;
+    }
+
+    private List<CullCandidate> findCandidates(final ZonedDateTime now, final Map<String, Optional<UserI>> users) {
+        final List<CullPolicy> enabled = cullPolicies.stream().filter(CullPolicy::isEnabled).collect(Collectors.toList());
+        final Optional<Capacity> capacity = Capacity.of(jupyterHubPreferences);
+        // Count the reservations of servers started through every node, not only the ones this node has seen
+        capacity.ifPresent(ignored -> resourceQuotaService.reload());
+        final Capacity pressure = capacity.filter(configured -> configured.isExceededBy(resourceQuotaService.getTotalUsage()))
+                                          .orElse(null);
+        if (enabled.isEmpty() && pressure == null) {
+            log.debug("Not culling Jupyter notebook servers, no cull policy is enabled and the cluster capacity is not under pressure");
+            return Collections.emptyList();
+        }
+
+        log.debug("Evaluating cull policies {}{}", enabled.stream().map(CullPolicy::getName).collect(Collectors.toList()),
+                  pressure != null ? " and capacity eviction" : "");
+        final Set<String> exemptServers = getCullExemptServers(now);
+        final List<CullCandidate> candidates = new ArrayList<>();
+        final PriorityQueue<IdleServer> idleServers = new PriorityQueue<>(Comparator.comparing((IdleServer idle) -> idle.since));
+        final int minIdle = jupyterHubPreferences.getCapacityEvictionMinIdle();
+
+        // Only users with running servers. Summaries carry the activity timestamps without binding user options.
+        jupyterHubClient.streamUserSummaries(true).forEach(user -> user.getServers().forEach((servername, server) -> {
+            if (exemptServers.contains(user.getName() + "/" + servername)) {
+                return;
+            }
+            for (final CullPolicy policy : enabled) {
+                final Optional<String> reason = policy.evaluate(user.getName(), servername, server, now);
+                if (reason.isPresent()) {
+                    candidates.add(CullCandidate.builder()
+                                                .username(user.getName())
+                                                .servername(servername)
+                                                .policy(policy.getName())
+                                                .reason(reason.get())
+                                                .started(server.getStarted())
+                                                .lastActivity(server.getLast_activity())
+                                                .build());
+                    return;
+                }
+            }
+            if (pressure != null) {
+                final ZonedDateTime since = server.getLast_activity() != null ? server.getLast_activity() : server.getStarted();
+                if (since != null && ChronoUnit.MINUTES.between(since, now) >= minIdle) {
+                    idleServers.add(new IdleServer(user.getName(), servername, server, since));
+                }
+            }
+        }));
+
+        if (pressure != null) {
+            candidates.addAll(evict(pressure, idleServers, candidates, users, now));
+        }
+        return candidates;
+    }
+
+    /**
+     * Selects idle servers, least recently active first, until the reservations left are under the eviction threshold.
+     *
+     * @param capacity    The cluster capacity scaled to the eviction threshold
+     * @param idleServers The servers which can be evicted
+     * @param culled      The servers already selected by a cull policy
+     * @param users       The users resolved in this pass
+     * @param now         The time of the cull pass
+     *
+     * @return The servers to evict
+     */
+    private List<CullCandidate> evict(final Capacity capacity, final PriorityQueue<IdleServer> idleServers, final List<CullCandidate> culled,
+                                      final Map<String, Optional<UserI>> users, final ZonedDateTime now) {
+        final ResourceUsage usage = resourceQuotaService.getTotalUsage();
+        for (final CullCandidate candidate : culled) {
+            users.computeIfAbsent(candidate.getUsername(), this::getUser)
+                 .ifPresent(user -> subtract(usage, resourceQuotaService.getServerUsage(user.getID(), candidate.getServername())));
+        }
+
+        final boolean protectDashboards = jupyterHubPreferences.getCapacityEvictionProtectDashboards();
+        final int threshold = jupyterHubPreferences.getCapacityEvictionThreshold();
+        final List<CullCandidate> evicted = new ArrayList<>();
+        IdleServer idle;
+        while (capacity.isExceededBy(usage) && (idle = idleServers.poll()) != null) {
+            final Optional<UserI> user = users.computeIfAbsent(idle.username, this::getUser);
+            if (!user.isPresent() || protectDashboards && isDashboard(user.get(), idle.servername)) {
+                continue;
+            }
+
+            final ResourceUsage reserved = resourceQuotaService.getServerUsage(user.get().getID(), idle.servername);
+            if (!capacity.isRelievedBy(usage, reserved)) {
+                continue;
+            }
+
+            evicted.add(CullCandidate.builder()
+                                     .username(idle.username)
+                                     .servername(idle.servername)
+                                     .policy("capacity")
+                                     .reason("Idle for " + ChronoUnit.MINUTES.between(idle.since, now) + " minutes while the running servers reserve more than "
+                                             + threshold + "% of the cluster capacity.")
+                                     .started(idle.server.getStarted())
+                                     .lastActivity(idle.server.getLast_activity())
+                                     .build());
+            subtract(usage, reserved);
+        }
+
+        if (capacity.isExceededBy(usage)) {
+            log.warn("Jupyter servers reserve more than {}% of the cluster capacity and no idle server is left to evict", threshold);
+        }
+        return evicted;
+    }
+
+    private boolean isDashboard(final UserI user, final String servername) {
+        return userOptionsService.retrieveUserOptions(user, servername).map(XnatUserOptions::getDashboardConfigId).isPresent();
+    }
+
+    private static void subtract(final ResourceUsage usage, final ResourceUsage reserved) {
+        usage.setServers(usage.getServers() - reserved.getServers());
+        usage.setCpu(usage.getCpu() - reserved.getCpu());
+        usage.setMemoryBytes(usage.getMemoryBytes() - reserved.getMemoryBytes());
+    }
+
+    /**
+     * Servers started by a scheduled pre-start are not culled until the pre-start's cull exemption ends.
+     *
+     * @param now The time of the cull.
+     * @return The exempt servers as username/servername.
+     */
+    private Set<String> getCullExemptServers(final ZonedDateTime now) {
+        return prestartScheduleEntityService.findCullExempt(Date.from(now.toInstant()))
+                                            .stream()
+                                            .flatMap(schedule -> schedule.getUsernames()
+                                                                         .stream()
+                                                                         .map(username -> username + "/" + StringUtils.defaultString(schedule.getServername())))
+                                            .collect(Collectors.toSet());
+    }
+
+    private CompletableFuture<Void> stop(final List<CullCandidate> candidates, final Map<String, Optional<UserI>> users, final ZonedDateTime now) {
+        final Queue<CullCandidate> queue = new ConcurrentLinkedQueue<>(candidates);
+        final int lanes = Math.max(1, Math.min(jupyterHubPreferences.getCullMaxConcurrentStops(), candidates.size()));
+
+        return CompletableFuture.allOf(IntStream.range(0, lanes)
+                                                .mapToObj(ignored -> lane(queue, users, now))
+                                                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Stops the queued servers one after the other until the queue is empty.
+     */
+    private CompletableFuture<Void> lane(final Queue<CullCandidate> queue, final Map<String, Optional<UserI>> users, final ZonedDateTime now) {
+        CullCandidate candidate;
+        while ((candidate = queue.poll()) != null) {
+            final CompletableFuture<Void> stopped = stop(candidate, users, now);
+            if (!stopped.isDone()) {
+                return stopped.handle((ignored, throwable) -> null).thenCompose(ignored -> lane(queue, users, now));
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> stop(final CullCandidate candidate, final Map<String, Optional<UserI>> users, final ZonedDateTime now) {
+        final Optional<UserI> user = users.computeIfAbsent(candidate.getUsername(), this::getUser);
+        if (!user.isPresent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        log.info("Removing Jupyter server '{}' for user {}. {}", candidate.getServername(), candidate.getUsername(), candidate.getReason());
+        try {
+            // Each server gets its own event tracking ID, stops sharing one would be attached to the first of them
+            return jupyterHubService.stopServer(user.get(), candidate.getServername(),
+                                                now + "_cull_" + candidate.getPolicy() + "_" + candidate.getUsername() + "_" + candidate.getServername());
+        } catch (RuntimeException e) {
+            log.error("Unable to stop Jupyter server '{}' for user {}", candidate.getServername(), candidate.getUsername(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private Optional<UserI> getUser(final String username) {
+        try {
+            return Optional.of(userManagementService.getUser(username));
+        } catch (UserInitException | UserNotFoundException e) {
+            log.error("Unable to cull Jupyter servers of user {}", username, e);
+            return Optional.empty();
+        }
+    }
+
+    private static final class IdleServer {
+        private final String username;
+        private final String servername;
+        private final Server server;
+        private final ZonedDateTime since;
+
+        private IdleServer(final String username, final String servername, final Server server, final ZonedDateTime since) {
+            this.username = username;
+            this.servername = servername;
+            this.server = server;
+            this.since = since;
+        }
+    }
+
+    /**
+     * The share of the cluster capacity the running servers may reserve. A negative limit leaves the resource unlimited.
+     */
+    private static final class Capacity {
+        private static final double CPU_TOLERANCE = 1e-9;
+
+        private final double cpu;
+        private final long memoryBytes;
+
+        private Capacity(final double cpu, final long memoryBytes) {
+            this.cpu = cpu;
+            this.memoryBytes = memoryBytes;
+        }
+
+        /**
+         * @return The capacity scaled to the eviction threshold, or empty if no cluster capacity is configured
+         */
+        private static Optional<Capacity> of(final JupyterHubPreferences jupyterHubPreferences) {
+            final double cpuCapacity = NumberUtils.toDouble(StringUtils.trimToEmpty(jupyterHubPreferences.getClusterCpuCapacity()), -1);
+            final long memoryCapacity = DefaultResourceQuotaService.parseMemory(jupyterHubPreferences.getClusterMemoryCapacity());
+            if (cpuCapacity < 0 && memoryCapacity < 0) {
+                return Optional.empty();
+            }
+
+            final double threshold = Math.max(0, jupyterHubPreferences.getCapacityEvictionThreshold()) / 100.0;
+            return Optional.of(new Capacity(cpuCapacity < 0 ? -1 : cpuCapacity * threshold,
+                                            memoryCapacity < 0 ? -1 : (long) (memoryCapacity * threshold)));
+        }
+
+        private boolean isExceededBy(final ResourceUsage usage) {
+            return isCpuExceededBy(usage) || isMemoryExceededBy(usage);
+        }
+
+        /**
+         * @return True if releasing the reservation lowers a resource which is over the limit
+         */
+        private boolean isRelievedBy(final ResourceUsage usage, final ResourceUsage reserved) {
+            return isCpuExceededBy(usage) && reserved.getCpu() > 0 || isMemoryExceededBy(usage) && reserved.getMemoryBytes() > 0;
+        }
+
+        private boolean isCpuExceededBy(final ResourceUsage usage) {
+            return cpu >= 0 && usage.getCpu() > cpu + CPU_TOLERANCE;
+        }
+
+        private boolean isMemoryExceededBy(final ResourceUsage usage) {
+            return memoryBytes >= 0 && usage.getMemoryBytes() > memoryBytes;
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubCircuitBreaker;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.HubHealth;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubHealthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Caches the reachability and authentication status of JupyterHub. Probed in the background so server starts do not
+ * have to contact JupyterHub before doing any work.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubHealthService implements JupyterHubHealthService {
+
+    private final JupyterHubClient jupyterHubClient;
+    private final HubCircuitBreaker hubCircuitBreaker;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private volatile HubHealth lastHealth;
+
+    @Autowired
+    public DefaultJupyterHubHealthService(final JupyterHubClient jupyterHubClient,
+                                          final HubCircuitBreaker hubCircuitBreaker,
+                                          final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubClient = jupyterHubClient;
+        this.hubCircuitBreaker = hubCircuitBreaker;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    /**
+     * Gets the cached health of JupyterHub, probing JupyterHub first if the last check is older than the health check
+     * interval.
+     *
+     * @return The health of JupyterHub
+     */
+    @Override
+    public HubHealth getHealth() {
+        final HubHealth health = lastHealth;
+        final ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
+        if (health == null || ChronoUnit.SECONDS.between(health.getChecked(), now) >= jupyterHubPreferences.getHubHealthCheckInterval()) {
+            return probe();
+        }
+        return withCircuitBreaker(health);
+    }
+
+    /**
+     * Gets the result of the last health check without contacting JupyterHub.
+     *
+     * @return The last health check, with the current circuit breaker state
+     */
+    @Override
+    public HubHealth getLastHealth() {
+        final HubHealth health = lastHealth;
+        return withCircuitBreaker(health != null ? health : HubHealth.builder().message("JupyterHub has not been checked yet.").build());
+    }
+
+    /**
+     * Checks whether JupyterHub is reachable and whether XNAT's token is accepted, and caches the result.
+     *
+     * @return The health of JupyterHub
+     */
+    @Override
+    public HubHealth probe() {
+        boolean reachable = false;
+        boolean authenticated = false;
+        String message = "JupyterHub is reachable and accepts XNAT's token.";
+
+        // getVersion() does not require authentication, check if JupyterHub is online
+        try {
+            jupyterHubClient.getVersion();
+            reachable = true;
+        } catch (Exception e) {
+            log.debug("JupyterHub health check failed, JupyterHub is not reachable", e);
+            message = "Unable to connect to JupyterHub.";
+        }
+
+        // getInfo() does require authentication, check if XNAT can connect and authenticate with JupyterHub
+        if (reachable) {
+            try {
+                jupyterHubClient.getInfo();
+                authenticated = true;
+            } catch (Exception e) {
+                log.debug("JupyterHub health check failed, unable to authenticate with JupyterHub", e);
+                message = "Unable to authenticate with JupyterHub.";
+            }
+        }
+
+        final HubHealth health = HubHealth.builder()
+                                          .reachable(reachable)
+                                          .authenticated(authenticated)
+                                          .message(message)
+                                          .checked(ZonedDateTime.now(ZoneId.of("UTC")))
+                                          .build();
+        lastHealth = health;
+        return withCircuitBreaker(health);
+    }
+
+    private HubHealth withCircuitBreaker(final HubHealth health) {
+        return HubHealth.builder()
+                        .reachable(health.isReachable())
+                        .authenticated(health.isAuthenticated())
+                        .message(health.getMessage())
+                        .checked(health.getChecked())
+                        .circuitBreaker(hubCircuitBreaker.getState().name())
+                        .consecutiveFailures(hubCircuitBreaker.getConsecutiveFailures())
+                        .build();
+    }
+
+}
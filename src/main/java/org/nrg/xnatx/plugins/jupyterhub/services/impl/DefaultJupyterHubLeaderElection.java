@@ -0,0 +1,107 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubLeaderElection;
+import org.nrg.xnatx.plugins.jupyterhub.services.LeaderLeaseEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease based leader election. The lease is taken or renewed with a single conditional update, so at most one node
+ * holds an unexpired lease. This node only considers itself the leader until the expiry it last wrote, measured from
+ * before the renewal was sent, so it steps down before any other node can take the lease over. This assumes the clocks
+ * of the XNAT nodes are synchronized to within a few seconds.
+ * <p>
+ * If the database can't be reached the node keeps its lease until the expiry, it does not give up leadership on a
+ * single failed renewal.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubLeaderElection implements JupyterHubLeaderElection, DisposableBean {
+
+    static final String LEASE_NAME = "jupyterhub-scheduled-tasks";
+    private static final int MIN_LEASE_DURATION = 10;
+
+    private final LeaderLeaseEntityService leaderLeaseEntityService;
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final String node;
+
+    private volatile long leaderUntil;
+
+    @Autowired
+    public DefaultJupyterHubLeaderElection(final LeaderLeaseEntityService leaderLeaseEntityService,
+                                           final JupyterHubPreferences jupyterHubPreferences,
+                                           final SystemHelper systemHelper) {
+        this.leaderLeaseEntityService = leaderLeaseEntityService;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        this.node = systemHelper.getNodeId();
+    }
+
+    @Override
+    public synchronized void renew() {
+        final long now = System.currentTimeMillis();
+        final long expires = now + TimeUnit.SECONDS.toMillis(Math.max(MIN_LEASE_DURATION, jupyterHubPreferences.getLeaderLeaseDuration()));
+        final boolean wasLeader = isLeader();
+
+        final boolean acquired;
+        try {
+            acquired = leaderLeaseEntityService.acquire(LEASE_NAME, node, new Date(expires));
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew the JupyterHub scheduled tasks lease of node {}", node, e);
+            return;
+        }
+
+        leaderUntil = acquired ? expires : 0;
+        if (acquired && !wasLeader) {
+            log.info("Node {} is now running the JupyterHub scheduled tasks", node);
+        } else if (!acquired && wasLeader) {
+            log.warn("Node {} lost the JupyterHub scheduled tasks lease", node);
+        }
+    }
+
+    @Override
+    public boolean isLeader() {
+        return System.currentTimeMillis() < leaderUntil;
+    }
+
+    @Override
+    public void runIfLeader(final String name, final Runnable task) {
+        if (!isLeader()) {
+            renew();
+        }
+        if (isLeader()) {
+            task.run();
+        } else {
+            log.debug("Skipping {}, another node holds the JupyterHub scheduled tasks lease", name);
+        }
+    }
+
+    @Override
+    public synchronized void release() {
+        if (!isLeader()) {
+            return;
+        }
+        leaderUntil = 0;
+        try {
+            leaderLeaseEntityService.release(LEASE_NAME, node);
+            log.info("Node {} released the JupyterHub scheduled tasks lease", node);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release the JupyterHub scheduled tasks lease of node {}", node, e);
+        }
+    }
+
+    /**
+     * Releases the lease when the plugin context is shut down.
+     */
+    @Override
+    public void destroy() {
+        release();
+    }
+
+}
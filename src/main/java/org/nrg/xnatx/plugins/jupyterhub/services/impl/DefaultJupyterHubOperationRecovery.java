@@ -0,0 +1,262 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xdat.security.user.exceptions.UserInitException;
+import org.nrg.xdat.security.user.exceptions.UserNotFoundException;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubLeaderElection;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationRecovery;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationTracker;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubServerPoller;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStateMirror;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.ServerOperationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers interrupted operations by comparing their persisted step with the server on JupyterHub:
+ * <ul>
+ *     <li>A start whose server is ready is completed. A start whose server is still spawning is resumed until its
+ *     deadline. A start whose server is gone, or still not ready after the deadline, is failed, and the user options,
+ *     resource reservation and shared data directory of a start without a server are removed.</li>
+ *     <li>A stop whose server is gone is completed after removing what the stop would have removed. A stop whose server
+ *     is still there is sent again.</li>
+ * </ul>
+ * Operations which had already completed or failed only have their row removed. If JupyterHub can't be reached the row
+ * is kept and the operation is recovered on the next pass. The operations of other nodes are only taken over by the
+ * leader, once they are more than {@value #ABANDONED_GRACE_MINUTES} minutes past their deadline.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubOperationRecovery implements JupyterHubOperationRecovery {
+
+    static final long ABANDONED_GRACE_MINUTES = 5;
+
+    private final ServerOperationEntityService serverOperationEntityService;
+    private final JupyterHubOperationTracker operationTracker;
+    private final JupyterHubClient jupyterHubClient;
+    private final JupyterHubService jupyterHubService;
+    private final JupyterHubServerPoller jupyterHubServerPoller;
+    private final JupyterHubStateMirror jupyterHubStateMirror;
+    private final UserOptionsService userOptionsService;
+    private final ResourceQuotaService resourceQuotaService;
+    private final SharedDataDirectoryService sharedDataDirectoryService;
+    private final UserManagementServiceI userManagementService;
+    private final JupyterHubLifecycleExecutor lifecycleExecutor;
+    private final JupyterHubLeaderElection leaderElection;
+    private final String node;
+
+    @Autowired
+    public DefaultJupyterHubOperationRecovery(final ServerOperationEntityService serverOperationEntityService,
+                                              final JupyterHubOperationTracker operationTracker,
+                                              final JupyterHubClient jupyterHubClient,
+                                              final JupyterHubService jupyterHubService,
+                                              final JupyterHubServerPoller jupyterHubServerPoller,
+                                              final JupyterHubStateMirror jupyterHubStateMirror,
+                                              final UserOptionsService userOptionsService,
+                                              final ResourceQuotaService resourceQuotaService,
+                                              final SharedDataDirectoryService sharedDataDirectoryService,
+                                              final UserManagementServiceI userManagementService,
+                                              final JupyterHubLifecycleExecutor lifecycleExecutor,
+                                              final JupyterHubLeaderElection leaderElection,
+                                              final SystemHelper systemHelper) {
+        this.serverOperationEntityService = serverOperationEntityService;
+        this.operationTracker = operationTracker;
+        this.jupyterHubClient = jupyterHubClient;
+        this.jupyterHubService = jupyterHubService;
+        this.jupyterHubServerPoller = jupyterHubServerPoller;
+        this.jupyterHubStateMirror = jupyterHubStateMirror;
+        this.userOptionsService = userOptionsService;
+        this.resourceQuotaService = resourceQuotaService;
+        this.sharedDataDirectoryService = sharedDataDirectoryService;
+        this.userManagementService = userManagementService;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.leaderElection = leaderElection;
+        this.node = systemHelper.getNodeId();
+    }
+
+    @Override
+    public void recover() {
+        final List<ServerOperationEntity> interrupted = new ArrayList<>();
+        serverOperationEntityService.findByNode(node).stream()
+                                    .filter(operation -> !operationTracker.isInFlight(operation.getEventTrackingId()))
+                                    .forEach(interrupted::add);
+        if (leaderElection.isLeader()) {
+            interrupted.addAll(serverOperationEntityService.findAbandoned(node, new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(ABANDONED_GRACE_MINUTES))));
+        }
+
+        if (!interrupted.isEmpty()) {
+            log.info("Recovering {} interrupted Jupyter server operations", interrupted.size());
+        }
+
+        for (final ServerOperationEntity operation : interrupted) {
+            try {
+                recover(operation);
+            } catch (RuntimeException e) {
+                log.error("Failed to recover {} operation {} of server '{}' for user {}, retrying on the next pass",
+                          operation.getOperation(), operation.getEventTrackingId(), operation.getServername(), operation.getUsername(), e);
+            }
+        }
+    }
+
+    private void recover(final ServerOperationEntity operation) {
+        final String username = operation.getUsername();
+        final String servername = operation.getServername();
+
+        if (operation.getState() != JupyterServerEventI.Status.InProgress && operation.getState() != JupyterServerEventI.Status.Warning) {
+            log.debug("{} operation {} had already ended, removing it", operation.getOperation(), operation.getEventTrackingId());
+            serverOperationEntityService.delete(operation);
+            return;
+        }
+
+        final UserI user;
+        try {
+            user = userManagementService.getUser(username);
+        } catch (UserNotFoundException | UserInitException e) {
+            log.warn("User {} of interrupted {} operation {} not found, removing it", username, operation.getOperation(), operation.getEventTrackingId(), e);
+            serverOperationEntityService.delete(operation);
+            return;
+        }
+
+        // Throws if JupyterHub is unavailable, the row is kept for the next pass
+        final Optional<Server> server = jupyterHubClient.getServer(username, servername);
+        serverOperationEntityService.delete(operation);
+
+        if (operation.getOperation() == JupyterServerEventI.Operation.Stop) {
+            if (server.isPresent()) {
+                log.info("Resuming interrupted stop {} of server '{}' for user {}", operation.getEventTrackingId(), servername, username);
+                jupyterHubService.stopServer(user, servername, operation.getEventTrackingId());
+            } else {
+                log.info("Completing interrupted stop {} of server '{}' for user {}", operation.getEventTrackingId(), servername, username);
+                removeServerData(user, servername);
+                jupyterHubStateMirror.removeServer(username, servername);
+                notify(operation, JupyterServerEventI.Status.Completed, "Jupyter Server Stopped.");
+            }
+            return;
+        }
+
+        if (server.isPresent() && Boolean.TRUE.equals(server.get().getReady())) {
+            log.info("Completing interrupted start {} of server '{}' for user {}", operation.getEventTrackingId(), servername, username);
+            notify(operation, JupyterServerEventI.Status.Completed, "Jupyter notebook is available at: " + server.get().getUrl());
+            return;
+        }
+
+        final long remaining = operation.getDeadline() != null ? operation.getDeadline().getTime() - System.currentTimeMillis() : 0;
+        if (server.isPresent() && remaining > 0) {
+            resume(operation, remaining);
+            return;
+        }
+
+        log.info("Failing interrupted start {} of server '{}' for user {}", operation.getEventTrackingId(), servername, username);
+        if (!server.isPresent()) {
+            removeServerData(user, servername);
+        }
+        jupyterHubStateMirror.invalidate(username);
+        notify(operation, JupyterServerEventI.Status.Failed,
+               "Failed to launch Jupyter notebook. XNAT was restarted while the server was starting. Please try again.");
+    }
+
+    /**
+     * Waits for the server of an interrupted start which is still spawning, tracking it as a start again so repeated
+     * requests attach to it.
+     */
+    private void resume(final ServerOperationEntity interrupted, final long remaining) {
+        final String username = interrupted.getUsername();
+        final String servername = interrupted.getServername();
+        final Optional<JupyterHubOperationTracker.TrackedOperation> tracked = operationTracker.begin(username, servername,
+                                                                                                   JupyterServerEventI.Operation.Start,
+                                                                                                   interrupted.getEventTrackingId());
+        if (!tracked.isPresent()) {
+            return;
+        }
+
+        final JupyterHubOperationTracker.TrackedOperation operation = tracked.get();
+        operation.setDeadline(remaining);
+        if (interrupted.getAttachedTrackingIds() != null) {
+            interrupted.getAttachedTrackingIds().forEach(attached -> operationTracker.begin(username, servername, JupyterServerEventI.Operation.Start, attached));
+        }
+
+        log.info("Resuming interrupted start {} of server '{}' for user {}", interrupted.getEventTrackingId(), servername, username);
+        operationTracker.triggerEvent(event(interrupted, interrupted.getEventTrackingId(), JupyterServerEventI.Status.InProgress,
+                                            "Waiting for JupyterHub to spawn server."));
+
+        jupyterHubServerPoller.awaitServer(username, servername, server -> server.isPresent() && Boolean.TRUE.equals(server.get().getReady()),
+                                           remaining, null)
+                              .thenAccept(server -> {
+                                  if (server.isPresent() && Boolean.TRUE.equals(server.get().getReady())) {
+                                      operationTracker.triggerEvent(event(interrupted, interrupted.getEventTrackingId(), JupyterServerEventI.Status.Completed,
+                                                                          "Jupyter notebook is available at: " + server.get().getUrl()));
+                                  } else {
+                                      jupyterHubStateMirror.invalidate(username);
+                                      operationTracker.triggerEvent(event(interrupted, interrupted.getEventTrackingId(), JupyterServerEventI.Status.Failed,
+                                                                          "Failed to launch Jupyter notebook. Timeout exceeded while waiting for JupyterHub to spawn server. " +
+                                                                          "Check the XNAT and JupyterHub system logs for error messages."));
+                                  }
+                              })
+                              .whenComplete((ignored, throwable) -> {
+                                  if (throwable != null) {
+                                      log.error("Failed to resume start {} of server '{}' for user {}", interrupted.getEventTrackingId(), servername, username, throwable);
+                                  }
+                                  operation.end();
+                              });
+    }
+
+    /**
+     * Removes the user options, resource reservation and shared data directory of a server which is no longer running.
+     */
+    private void removeServerData(final UserI user, final String servername) {
+        final Optional<String> sharedDataTrackingId = userOptionsService.retrieveUserOptions(user, servername).map(XnatUserOptions::getEventTrackingId);
+
+        userOptionsService.removeUserOptions(user, servername);
+        resourceQuotaService.release(user.getID(), servername);
+
+        sharedDataTrackingId.ifPresent(eventTrackingId -> CompletableFuture.runAsync(() -> sharedDataDirectoryService.remove(eventTrackingId),
+                                                                                     lifecycleExecutor));
+    }
+
+    /**
+     * Triggers the final event of a recovered operation for the request which started it and the requests attached to it.
+     */
+    private void notify(final ServerOperationEntity operation, final JupyterServerEventI.Status status, final String message) {
+        operationTracker.triggerEvent(event(operation, operation.getEventTrackingId(), status, message));
+        if (operation.getAttachedTrackingIds() != null) {
+            operation.getAttachedTrackingIds().forEach(attached -> operationTracker.triggerEvent(event(operation, attached, status, message)));
+        }
+    }
+
+    private static JupyterServerEvent event(final ServerOperationEntity operation, final String trackingId,
+                                            final JupyterServerEventI.Status status, final String message) {
+        return JupyterServerEvent.builder()
+                                 .trackingId(trackingId)
+                                 .userId(operation.getUserId())
+                                 .xsiType(operation.getXsiType())
+                                 .itemId(operation.getItemId())
+                                 .operation(operation.getOperation())
+                                 .status(status)
+                                 .progress(status == JupyterServerEventI.Status.InProgress ? 45 : 100)
+                                 .eventTime(System.currentTimeMillis())
+                                 .message(message)
+                                 .build();
+    }
+
+}
@@ -0,0 +1,297 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.services.NrgEventServiceI;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationTracker;
+import org.nrg.xnatx.plugins.jupyterhub.services.ServerOperationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Operation registry guarded by striped per-user locks. Registering and ending an operation happen under the lock of
+ * the user's stripe, so two requests for the same server always see each other. Operations of different users only
+ * contend when their usernames share a stripe.
+ * <p>
+ * A start registered while a stop of the same server is in flight, or the other way around, replaces it as the
+ * server's operation and waits for it through {@link TrackedOperation#previous()}. Events of an operation are copied to
+ * the attached requests under the operation's monitor, so an attached request receives each event exactly once,
+ * either replayed when attaching or copied afterwards.
+ * <p>
+ * Each operation is persisted as a {@link ServerOperationEntity} while in flight, updated with every event it triggers
+ * and deleted when it ends. The initial deadline allows for the start or stop timeout, the start moves it once the
+ * spawn timeout is known. A failure to persist is logged and does not affect the operation itself.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubOperationTracker implements JupyterHubOperationTracker {
+
+    private static final int STRIPES = 64;
+
+    private final NrgEventServiceI eventService;
+    private final ServerOperationEntityService serverOperationEntityService;
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final String node;
+
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final ConcurrentMap<String, Operation> byServer = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Operation> byTrackingId = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DefaultJupyterHubOperationTracker(final NrgEventServiceI eventService,
+                                             final ServerOperationEntityService serverOperationEntityService,
+                                             final JupyterHubPreferences jupyterHubPreferences,
+                                             final SystemHelper systemHelper) {
+        this.eventService = eventService;
+        this.serverOperationEntityService = serverOperationEntityService;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+        this.node = systemHelper.getNodeId();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Optional<TrackedOperation> begin(final String username, final String servername,
+                                            final JupyterServerEventI.Operation operation, final String eventTrackingId) {
+        final String key = username + "/" + servername;
+        final Lock lock = stripe(username);
+        Operation attachedTo = null;
+        Operation started = null;
+        JupyterServerEvent replay = null;
+
+        lock.lock();
+        try {
+            final Operation current = byServer.get(key);
+            final Operation byId = byTrackingId.get(eventTrackingId);
+
+            if (byId != null && byId.kind == operation) {
+                attachedTo = byId;
+            } else if (current != null && current.kind == operation) {
+                attachedTo = current;
+            } else {
+                started = new Operation(key, username, servername, operation, eventTrackingId,
+                                        current != null ? current.done : CompletableFuture.completedFuture(null));
+                byServer.put(key, started);
+                byTrackingId.put(eventTrackingId, started);
+            }
+
+            if (attachedTo != null) {
+                byTrackingId.putIfAbsent(eventTrackingId, attachedTo);
+                replay = attachedTo.attach(eventTrackingId);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (started != null) {
+            started.persist(operation == JupyterServerEventI.Operation.Start ? jupyterHubPreferences.getStartTimeout()
+                                                                             : jupyterHubPreferences.getStopTimeout());
+            return Optional.of(started);
+        }
+
+        log.info("{} of server '{}' for user {} is already in progress, attached request {} to operation {}",
+                 operation, servername, username, eventTrackingId, attachedTo.eventTrackingId);
+        if (replay != null) {
+            eventService.triggerEvent(retarget(replay, eventTrackingId));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void triggerEvent(final JupyterServerEvent event) {
+        eventService.triggerEvent(event);
+
+        final Operation operation = byTrackingId.get(event.getTrackingId());
+        if (operation == null || !operation.eventTrackingId.equals(event.getTrackingId())) {
+            return;
+        }
+
+        for (final String attached : operation.publish(event)) {
+            eventService.triggerEvent(retarget(event, attached));
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        return byServer.size();
+    }
+
+    @Override
+    public boolean isInFlight(final String eventTrackingId) {
+        return byTrackingId.containsKey(eventTrackingId);
+    }
+
+    private Lock stripe(final String username) {
+        return stripes[Math.floorMod(username.hashCode(), STRIPES)];
+    }
+
+    private void end(final Operation operation) {
+        // Unpersisted first, the recovery never sees a persisted operation which is not in flight on its node
+        operation.unpersist();
+
+        final Lock lock = stripe(operation.username);
+        lock.lock();
+        try {
+            byServer.remove(operation.key, operation);
+            byTrackingId.remove(operation.eventTrackingId, operation);
+            operation.attached().forEach(attached -> byTrackingId.remove(attached, operation));
+        } finally {
+            lock.unlock();
+        }
+        operation.done.complete(null);
+    }
+
+    private static JupyterServerEvent retarget(final JupyterServerEvent event, final String trackingId) {
+        return JupyterServerEvent.builder()
+                                 .trackingId(trackingId)
+                                 .userId(event.getUserId())
+                                 .xsiType(event.getXsiType())
+                                 .itemId(event.getItemId())
+                                 .operation(event.getOperation())
+                                 .status(event.getStatus())
+                                 .progress(event.getProgress())
+                                 .eventTime(event.getEventTime())
+                                 .message(event.getMessage())
+                                 .build();
+    }
+
+    private final class Operation implements TrackedOperation {
+
+        private final String key;
+        private final String username;
+        private final String servername;
+        private final JupyterServerEventI.Operation kind;
+        private final String eventTrackingId;
+        private final CompletableFuture<Void> previous;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final List<String> attached = new ArrayList<>();
+        private JupyterServerEvent lastEvent;
+        private ServerOperationEntity entity;
+
+        private Operation(final String key, final String username, final String servername, final JupyterServerEventI.Operation kind,
+                          final String eventTrackingId, final CompletableFuture<Void> previous) {
+            this.key = key;
+            this.username = username;
+            this.servername = servername;
+            this.kind = kind;
+            this.eventTrackingId = eventTrackingId;
+            this.previous = previous;
+        }
+
+        @Override
+        public CompletableFuture<Void> previous() {
+            return previous;
+        }
+
+        @Override
+        public synchronized void setDeadline(final long timeout) {
+            if (entity != null) {
+                entity.setDeadline(new Date(System.currentTimeMillis() + timeout));
+                save();
+            }
+        }
+
+        @Override
+        public void end() {
+            if (!done.isDone()) {
+                DefaultJupyterHubOperationTracker.this.end(this);
+            }
+        }
+
+        /**
+         * @return The latest event to replay to the attached request, null if the operation has not triggered any.
+         */
+        private synchronized JupyterServerEvent attach(final String trackingId) {
+            if (!trackingId.equals(eventTrackingId) && !attached.contains(trackingId)) {
+                attached.add(trackingId);
+                if (entity != null) {
+                    entity.setAttachedTrackingIds(new ArrayList<>(attached));
+                    save();
+                }
+                return lastEvent;
+            }
+            return null;
+        }
+
+        /**
+         * @return The event tracking IDs to copy the event to.
+         */
+        private synchronized List<String> publish(final JupyterServerEvent event) {
+            lastEvent = event;
+            if (entity != null) {
+                entity.setUserId(event.getUserId());
+                if (event.getXsiType() != null) {
+                    entity.setXsiType(event.getXsiType());
+                    entity.setItemId(event.getItemId());
+                }
+                entity.setState(event.getStatus());
+                entity.setStep(event.getMessage());
+                entity.setProgress(event.getProgress());
+                save();
+            }
+            return new ArrayList<>(attached);
+        }
+
+        /**
+         * @param timeout Seconds until the deadline
+         */
+        private synchronized void persist(final Integer timeout) {
+            try {
+                entity = serverOperationEntityService.create(ServerOperationEntity.builder()
+                                                                                  .node(node)
+                                                                                  .username(username)
+                                                                                  .servername(servername)
+                                                                                  .operation(kind)
+                                                                                  .eventTrackingId(eventTrackingId)
+                                                                                  .attachedTrackingIds(new ArrayList<>())
+                                                                                  .state(JupyterServerEventI.Status.InProgress)
+                                                                                  .progress(0)
+                                                                                  .deadline(new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeout != null ? timeout : 0)))
+                                                                                  .build());
+            } catch (RuntimeException e) {
+                log.warn("Failed to persist {} operation {} of server '{}' for user {}", kind, eventTrackingId, servername, username, e);
+            }
+        }
+
+        private synchronized void unpersist() {
+            if (entity != null) {
+                try {
+                    serverOperationEntityService.delete(entity);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to delete persisted {} operation {}", kind, eventTrackingId, e);
+                }
+                entity = null;
+            }
+        }
+
+        private void save() {
+            try {
+                serverOperationEntityService.update(entity);
+            } catch (RuntimeException e) {
+                log.warn("Failed to update persisted {} operation {}", kind, eventTrackingId, e);
+            }
+        }
+
+        private synchronized List<String> attached() {
+            return new ArrayList<>(attached);
+        }
+
+    }
+
+}
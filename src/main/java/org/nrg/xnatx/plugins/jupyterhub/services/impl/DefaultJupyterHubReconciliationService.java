@@ -0,0 +1,144 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.HubReconciliation;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubReconciliationService;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Each pass reads the users with running servers from JupyterHub once and keys their servers by the XNAT user ID and
+ * server name in their user options, the unique key of the user options table. The table is then read a page at a
+ * time, ordered by ID. The user options of each page matching no running server are deleted with one query, which
+ * leaves out those stored within a grace period, while their start may not have reached JupyterHub yet, and those of a
+ * server operation in flight on any node. The reservations of the deleted user options are released, and once their
+ * event tracking ID is gone the shared data directory reaper removes their directories, which it is asked to do right
+ * away. Nothing is deleted when JupyterHub can't be read.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubReconciliationService implements JupyterHubReconciliationService {
+
+    static final int BATCH_SIZE = 500;
+    private static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+    private final JupyterHubClient jupyterHubClient;
+    private final UserOptionsEntityService userOptionsEntityService;
+    private final ResourceQuotaService resourceQuotaService;
+    private final SharedDataDirectoryService sharedDataDirectoryService;
+
+    private volatile HubReconciliation lastReconciliation;
+
+    @Autowired
+    public DefaultJupyterHubReconciliationService(final JupyterHubClient jupyterHubClient,
+                                                  final UserOptionsEntityService userOptionsEntityService,
+                                                  final ResourceQuotaService resourceQuotaService,
+                                                  final SharedDataDirectoryService sharedDataDirectoryService) {
+        this.jupyterHubClient = jupyterHubClient;
+        this.userOptionsEntityService = userOptionsEntityService;
+        this.resourceQuotaService = resourceQuotaService;
+        this.sharedDataDirectoryService = sharedDataDirectoryService;
+    }
+
+    @Override
+    public HubReconciliation reconcile() {
+        final Date started = new Date();
+        final Date modifiedBefore = new Date(started.getTime() - GRACE_PERIOD);
+
+        // Running servers by user ID and server name, servers without an XNAT user ID can't have user options
+        final Map<String, HubReconciliation.UnrecordedServer> running = new HashMap<>();
+        final List<HubReconciliation.UnrecordedServer> unrecorded = new ArrayList<>();
+        final List<User> users = jupyterHubClient.streamUsers(true).collect(Collectors.toList());
+        for (final User user : users) {
+            for (final Map.Entry<String, Server> entry : user.getServers().entrySet()) {
+                final Server server = entry.getValue();
+                final HubReconciliation.UnrecordedServer summary = HubReconciliation.UnrecordedServer.builder()
+                                                                                                     .username(user.getName())
+                                                                                                     .servername(entry.getKey())
+                                                                                                     .started(server.getStarted())
+                                                                                                     .build();
+                final String userId = server.getUser_options() != null ? server.getUser_options().get("userId") : null;
+                if (userId != null) {
+                    running.put(key(userId, entry.getKey()), summary);
+                } else {
+                    unrecorded.add(summary);
+                }
+            }
+        }
+        final int hubServers = running.size() + unrecorded.size();
+
+        final Set<String> recorded = new HashSet<>();
+        final List<UserOptionsEntity> deleted = new ArrayList<>();
+        int checked = 0;
+        long afterId = 0;
+        List<UserOptionsEntity> page;
+        do {
+            page = userOptionsEntityService.findAfter(afterId, BATCH_SIZE);
+            final List<Long> stale = new ArrayList<>();
+            for (final UserOptionsEntity userOptions : page) {
+                final String key = key(String.valueOf(userOptions.getUserId()), userOptions.getServername());
+                if (running.containsKey(key)) {
+                    recorded.add(key);
+                } else {
+                    stale.add(userOptions.getId());
+                }
+                afterId = userOptions.getId();
+            }
+            checked += page.size();
+            if (!stale.isEmpty()) {
+                deleted.addAll(userOptionsEntityService.deleteStale(stale, modifiedBefore));
+            }
+        } while (page.size() == BATCH_SIZE);
+
+        deleted.forEach(userOptions -> resourceQuotaService.release(userOptions.getUserId(), userOptions.getServername()));
+        final int sharedDataDirectories = deleted.isEmpty() ? 0 : sharedDataDirectoryService.reap();
+
+        running.forEach((key, server) -> {
+            if (!recorded.contains(key)) {
+                unrecorded.add(server);
+            }
+        });
+        unrecorded.forEach(server -> log.warn("Server '{}' of user {} is running on JupyterHub but has no user options in XNAT",
+                                              server.getServername(), server.getUsername()));
+
+        final HubReconciliation reconciliation = HubReconciliation.builder()
+                                                                  .started(started)
+                                                                  .finished(new Date())
+                                                                  .hubServers(hubServers)
+                                                                  .userOptions(checked)
+                                                                  .staleUserOptions(deleted.size())
+                                                                  .sharedDataDirectories(sharedDataDirectories)
+                                                                  .unrecordedServers(unrecorded)
+                                                                  .build();
+        if (deleted.isEmpty()) {
+            log.debug("Reconciled {} JupyterHub servers with {} user options", hubServers, checked);
+        } else {
+            log.info("Reconciled {} JupyterHub servers with {} user options, deleted {} stale user options and queued {} shared data directories for deletion",
+                     hubServers, checked, deleted.size(), sharedDataDirectories);
+        }
+        lastReconciliation = reconciliation;
+        return reconciliation;
+    }
+
+    @Override
+    public Optional<HubReconciliation> getLastReconciliation() {
+        return Optional.ofNullable(lastReconciliation);
+    }
+
+    private static String key(final String userId, final String servername) {
+        return userId + "/" + StringUtils.defaultString(servername);
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubServerPoller;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Single poll loop for all pending server starts and stops. The loop only runs while operations are waiting. Each
+ * operation has its own check schedule; on ticks where any operation is due the active users are read from JupyterHub
+ * once, as lightweight summaries, and every due operation is tested against that snapshot. Operations without a
+ * schedule are checked every tick of the shorter of the start and stop polling intervals.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubServerPoller implements JupyterHubServerPoller {
+
+    // Finest check granularity of any schedule
+    private static final long TICK_MILLIS = 1000;
+
+    private final JupyterHubClient jupyterHubClient;
+    private final JupyterHubLifecycleExecutor lifecycleExecutor;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    @Autowired
+    public DefaultJupyterHubServerPoller(final JupyterHubClient jupyterHubClient,
+                                         final JupyterHubLifecycleExecutor lifecycleExecutor,
+                                         final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubClient = jupyterHubClient;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public CompletableFuture<Optional<Server>> awaitServer(final String username, final String servername,
+                                                           final Predicate<Optional<Server>> condition,
+                                                           final long timeout, final Consumer<Optional<Server>> onPoll) {
+        return awaitServer(username, servername, condition, timeout, elapsed -> interval(), onPoll);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Server>> awaitServer(final String username, final String servername,
+                                                           final Predicate<Optional<Server>> condition,
+                                                           final long timeout, final LongUnaryOperator schedule,
+                                                           final Consumer<Optional<Server>> onPoll) {
+        final Waiter waiter = new Waiter(username, servername, condition, System.currentTimeMillis(), timeout, schedule, onPoll);
+        waiters.add(waiter);
+        scheduleTick();
+        return waiter.result;
+    }
+
+    @Override
+    public int getPending() {
+        return waiters.size();
+    }
+
+    private void scheduleTick() {
+        if (scheduled.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::tick, CompletableFuture.delayedExecutor(TICK_MILLIS, TimeUnit.MILLISECONDS, lifecycleExecutor));
+        }
+    }
+
+    private void tick() {
+        try {
+            if (!waiters.isEmpty()) {
+                poll();
+            }
+        } catch (Exception e) {
+            log.error("Unexpected failure polling JupyterHub servers", e);
+        } finally {
+            scheduled.set(false);
+            // Operations may have been added while this tick ran
+            if (!waiters.isEmpty()) {
+                scheduleTick();
+            }
+        }
+    }
+
+    private void poll() {
+        final long now = System.currentTimeMillis();
+
+        // Only go to the hub when an operation is due for a check
+        if (waiters.stream().noneMatch(waiter -> waiter.isDue(now))) {
+            return;
+        }
+
+        final Map<String, User> snapshot;
+        try {
+            snapshot = jupyterHubClient.streamUserSummaries(true).collect(Collectors.toMap(User::getName, Function.identity(), (a, b) -> b));
+        } catch (Exception e) {
+            log.warn("Unable to poll JupyterHub for {} pending server operations", waiters.size(), e);
+            // Operations out of time fail with the hub error, the rest wait for the next tick
+            waiters.removeIf(waiter -> {
+                if (now >= waiter.deadline) {
+                    waiter.result.completeExceptionally(e);
+                    return true;
+                }
+                return false;
+            });
+            return;
+        }
+
+        log.debug("Polled JupyterHub for {} pending server operations, {} users with active servers", waiters.size(), snapshot.size());
+
+        waiters.removeIf(waiter -> {
+            if (!waiter.isDue(now)) {
+                return false;
+            }
+
+            final User user = snapshot.get(waiter.username);
+            final Optional<Server> server = Optional.ofNullable(user != null && user.getServers() != null ? user.getServers().get(waiter.servername) : null);
+
+            try {
+                if (waiter.onPoll != null) {
+                    waiter.onPoll.accept(server);
+                }
+
+                if (waiter.condition.test(server) || now >= waiter.deadline) {
+                    waiter.result.complete(server);
+                    return true;
+                }
+                waiter.scheduleNext(now);
+            } catch (Exception e) {
+                waiter.result.completeExceptionally(e);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private long interval() {
+        final int seconds = Math.min(jupyterHubPreferences.getStartPollingInterval(), jupyterHubPreferences.getStopPollingInterval());
+        return TimeUnit.SECONDS.toMillis(Math.max(1, seconds));
+    }
+
+    private static final class Waiter {
+        private final String username;
+        private final String servername;
+        private final Predicate<Optional<Server>> condition;
+        private final long started;
+        private final long deadline;
+        private final LongUnaryOperator schedule;
+        private final Consumer<Optional<Server>> onPoll;
+        private final CompletableFuture<Optional<Server>> result = new CompletableFuture<>();
+        private volatile long nextPollAt;
+
+        private Waiter(final String username, final String servername, final Predicate<Optional<Server>> condition,
+                       final long started, final long timeout, final LongUnaryOperator schedule,
+                       final Consumer<Optional<Server>> onPoll) {
+            this.username = username;
+            this.servername = servername;
+            this.condition = condition;
+            this.started = started;
+            this.deadline = started + timeout;
+            this.schedule = schedule;
+            this.onPoll = onPoll;
+            scheduleNext(started);
+        }
+
+        private boolean isDue(final long now) {
+            // Checks falling closer to this tick than to the next one share its snapshot
+            final long tick = now + TICK_MILLIS / 2;
+            return tick >= nextPollAt || tick >= deadline;
+        }
+
+        private void scheduleNext(final long now) {
+            nextPollAt = now + Math.max(TICK_MILLIS, schedule.applyAsLong(now - started));
+        }
+    }
+
+}
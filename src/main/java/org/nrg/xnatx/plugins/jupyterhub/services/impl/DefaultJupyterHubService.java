@@ -3,76 +3,110 @@ package org.nrg.xnatx.plugins.jupyterhub.services.impl;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.nrg.framework.constants.Scope;
-import org.nrg.framework.services.NrgEventServiceI;
-import org.nrg.xdat.XDAT;
-import org.nrg.xdat.security.services.UserManagementServiceI;
-import org.nrg.xdat.security.user.exceptions.UserInitException;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.compute.services.JobTemplateService;
-import org.nrg.xnat.utils.FileUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.AsyncJupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.ResourceAlreadyExistsException;
 import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.UserNotFoundException;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Hub;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.HubHealth;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.SpawnProgress;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
 import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
 import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ResourceQuotaExceededException;
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ServerStartRejectedException;
 import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
 import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.DashboardJobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubHealthService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationTracker;
 import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubServerPoller;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStartQueue;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStateMirror;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnHistoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
 import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubServiceAccountHelper;
 import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+import org.nrg.xnatx.plugins.jupyterhub.utils.StageGraph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-@SuppressWarnings("BusyWait")
 @Service
 @Slf4j
 public class DefaultJupyterHubService implements JupyterHubService {
 
     private final JupyterHubClient jupyterHubClient;
-    private final NrgEventServiceI eventService;
+    private final AsyncJupyterHubClient asyncJupyterHubClient;
+    private final JupyterHubStateMirror jupyterHubStateMirror;
+    private final JupyterHubHealthService jupyterHubHealthService;
+    private final JupyterHubLifecycleExecutor lifecycleExecutor;
+    private final JupyterHubServerPoller jupyterHubServerPoller;
+    private final SpawnHistoryService spawnHistoryService;
+    private final JupyterHubStartQueue jupyterHubStartQueue;
+    private final ResourceQuotaService resourceQuotaService;
+    private final JupyterHubOperationTracker operationTracker;
     private final PermissionsHelper permissionsHelper;
     private final UserOptionsService userOptionsService;
+    private final SharedDataDirectoryService sharedDataDirectoryService;
     private final JupyterHubPreferences jupyterHubPreferences;
-    private final UserManagementServiceI userManagementService;
     private final JobTemplateService jobTemplateService;
     private final DashboardJobTemplateService dashboardJobTemplateService;
     private final JupyterHubServiceAccountHelper jupyterHubServiceAccountHelper;
 
     @Autowired
     public DefaultJupyterHubService(final JupyterHubClient jupyterHubClient,
-                                    final NrgEventServiceI eventService,
+                                    final AsyncJupyterHubClient asyncJupyterHubClient,
+                                    final JupyterHubStateMirror jupyterHubStateMirror,
+                                    final JupyterHubHealthService jupyterHubHealthService,
+                                    final JupyterHubLifecycleExecutor lifecycleExecutor,
+                                    final JupyterHubServerPoller jupyterHubServerPoller,
+                                    final SpawnHistoryService spawnHistoryService,
+                                    final JupyterHubStartQueue jupyterHubStartQueue,
+                                    final ResourceQuotaService resourceQuotaService,
+                                    final JupyterHubOperationTracker operationTracker,
                                     final PermissionsHelper permissionsHelper,
                                     final UserOptionsService userOptionsService,
+                                    final SharedDataDirectoryService sharedDataDirectoryService,
                                     final JupyterHubPreferences jupyterHubPreferences,
-                                    final UserManagementServiceI userManagementService,
                                     @Qualifier("defaultJobTemplateService") final JobTemplateService jobTemplateService,
                                     final DashboardJobTemplateService dashboardJobTemplateService,
                                     final JupyterHubServiceAccountHelper jupyterHubServiceAccountHelper) {
         this.jupyterHubClient = jupyterHubClient;
-        this.eventService = eventService;
+        this.asyncJupyterHubClient = asyncJupyterHubClient;
+        this.jupyterHubStateMirror = jupyterHubStateMirror;
+        this.jupyterHubHealthService = jupyterHubHealthService;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.jupyterHubServerPoller = jupyterHubServerPoller;
+        this.spawnHistoryService = spawnHistoryService;
+        this.jupyterHubStartQueue = jupyterHubStartQueue;
+        this.resourceQuotaService = resourceQuotaService;
+        this.operationTracker = operationTracker;
         this.permissionsHelper = permissionsHelper;
         this.userOptionsService = userOptionsService;
+        this.sharedDataDirectoryService = sharedDataDirectoryService;
         this.jupyterHubPreferences = jupyterHubPreferences;
-        this.userManagementService = userManagementService;
         this.jobTemplateService = jobTemplateService;
         this.dashboardJobTemplateService = dashboardJobTemplateService;
         this.jupyterHubServiceAccountHelper = jupyterHubServiceAccountHelper;
@@ -88,12 +122,27 @@ public class DefaultJupyterHubService implements JupyterHubService {
     }
 
     /**
-     * Get full JupyterHub information
+     * Get full JupyterHub information, including the last health check and the client circuit breaker state. If
+     * JupyterHub can't be reached only the health is populated.
      * @return Hub with all fields populated
      */
     @Override
     public Hub getInfo() {
-        return jupyterHubClient.getInfo();
+        Hub info;
+        try {
+            info = jupyterHubClient.getInfo();
+        } catch (Exception e) {
+            log.debug("Unable to get JupyterHub info", e);
+            info = null;
+        }
+
+        if (info == null) {
+            info = Hub.builder().build();
+        }
+        info.setHealth(jupyterHubHealthService.getLastHealth());
+        info.setClientStats(jupyterHubClient.getStats());
+        info.setLifecycle(lifecycleExecutor.getStats());
+        return info;
     }
 
     /**
@@ -105,11 +154,14 @@ public class DefaultJupyterHubService implements JupyterHubService {
      */
     @Override
     public User createUser(final UserI user) {
-        return jupyterHubClient.createUser(user.getUsername());
+        final User created = jupyterHubClient.createUser(user.getUsername());
+        jupyterHubStateMirror.putUser(created);
+        return created;
     }
 
     /**
-     * Gets the JupyterHub user for the provided XNAT user. Optional is empty if user does not exist.
+     * Gets the JupyterHub user for the provided XNAT user. Optional is empty if user does not exist. Served from the
+     * hub state mirror unless the mirrored user is stale.
      *
      * @param user The XNAT user
      *
@@ -117,16 +169,16 @@ public class DefaultJupyterHubService implements JupyterHubService {
      */
     @Override
     public Optional<User> getUser(final UserI user) {
-        return jupyterHubClient.getUser(user.getUsername());
+        return jupyterHubStateMirror.getUser(user.getUsername());
     }
 
     /**
-     * Gets all the users and their active servers from JupyterHub.
-     * @return List of all users on JupyterHub
+     * Gets the users with active servers from the hub state mirror.
+     * @return List of users with at least one active server on JupyterHub
      */
     @Override
     public List<User> getUsers() {
-        return jupyterHubClient.getUsers();
+        return jupyterHubStateMirror.getUsers();
     }
 
     /**
@@ -137,7 +189,7 @@ public class DefaultJupyterHubService implements JupyterHubService {
      */
     @Override
     public Optional<Server> getServer(final UserI user) {
-        return jupyterHubClient.getServer(user.getUsername());
+        return jupyterHubStateMirror.getServer(user.getUsername(), "");
     }
 
     /**
@@ -150,7 +202,7 @@ public class DefaultJupyterHubService implements JupyterHubService {
      */
     @Override
     public Optional<Server> getServer(final UserI user, final String servername) {
-        return jupyterHubClient.getServer(user.getUsername(), servername);
+        return jupyterHubStateMirror.getServer(user.getUsername(), servername);
     }
 
     /**
@@ -175,168 +227,355 @@ public class DefaultJupyterHubService implements JupyterHubService {
 
         final String application = dashboardConfigId != null ? "dashboard" : "Jupyter notebook";
 
-        eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                              JupyterServerEventI.Operation.Start, 0,
-                                                              "Starting " + application + " for user " + user.getUsername() + "."));
-
-        if (!permissionsHelper.canRead(user, projectId, itemId, xsiType)) {
-            eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                JupyterServerEventI.Operation.Start,
-                                                                "Failed to launch " + application + ". Permission denied to read " + xsiType + " " + itemId + " in project " + projectId));
+        // A repeated request for a start in flight receives the events of that start instead of starting again
+        final Optional<JupyterHubOperationTracker.TrackedOperation> tracked = operationTracker.begin(user.getUsername(), servername,
+                                                                                                   JupyterServerEventI.Operation.Start,
+                                                                                                   eventTrackingId);
+        if (!tracked.isPresent()) {
             return;
         }
+        final JupyterHubOperationTracker.TrackedOperation operation = tracked.get();
+
+        operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                  JupyterServerEventI.Operation.Start, 0,
+                                                                  "Starting " + application + " for user " + user.getUsername() + "."));
+
+        // The preflight checks and storing the user options run as concurrent stages, everything after the start request
+        // is sent to JupyterHub is chained onto the asynchronous client so no thread is held while the server spawns. A
+        // stop of the same server in flight is waited for first.
+        final CompletableFuture<Boolean> prepared = operation.previous()
+                .thenCompose(ignored -> CompletableFuture.supplyAsync(() -> prepareServerStart(user, startRequest, application), lifecycleExecutor.operations()))
+                .thenCompose(Function.identity());
+
+        prepared.thenCompose(proceed -> {
+                    if (!proceed) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
 
-        Map<Scope, String> executionScope = new HashMap<>();
-        executionScope.put(Scope.Project, projectId);
-        executionScope.put(Scope.User, user.getUsername());
-        executionScope.put(Scope.DataType, xsiType);
-        executionScope.put(Scope.Site, "XNAT");
-
-        if (dashboardConfigId != null) {
-            if (!dashboardJobTemplateService.isAvailable(dashboardConfigId, computeEnvironmentConfigId, hardwareConfigId, executionScope)) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start,
-                                                                    "Failed to start dashboard. The dashboard is not available to the user."));
-                return;
-            }
-        } else if (!jobTemplateService.isAvailable(computeEnvironmentConfigId, hardwareConfigId, executionScope)) {
-            eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                JupyterServerEventI.Operation.Start,
-                                                                "Failed to launch Jupyter notebook server. The compute environment or hardware configuration is not available to the user."));
-            return;
-        }
+                    // Wait for a spawn slot. The slot is held until the server is ready or the start failed.
+                    return jupyterHubStartQueue.admit(user.getUsername(), projectId,
+                                                      ahead -> operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                                         JupyterServerEventI.Operation.Start, 30,
+                                                                                                                         "Waiting to start, " + ahead + " server start(s) ahead in the queue.")))
+                            .thenCompose(admission -> {
+                                // Send empty user options. User's should not be able to directly send bind mounts.
+                                // JupyterHub will request the user options.
+                                return asyncJupyterHubClient.startServer(user.getUsername(), servername,
+                                                                         XnatUserOptions.builder()
+                                                                                 .userId(user.getID())
+                                                                                 .xsiType(xsiType)
+                                                                                 .itemId(itemId)
+                                                                                 .itemLabel(itemLabel)
+                                                                                 .projectId(projectId)
+                                                                                 .eventTrackingId(eventTrackingId)
+                                                                                 .dashboardConfigId(dashboardConfigId)
+                                                                                 .build(),
+                                                                         ahead -> operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                                                            JupyterServerEventI.Operation.Start, 30,
+                                                                                                                                            "Waiting for JupyterHub capacity, " + ahead + " server start(s) ahead in the queue.")))
+                                    .thenCompose(ignored -> {
+                                        // Count the spawning server against the user's limit right away
+                                        jupyterHubStateMirror.putServer(user.getUsername(), Server.builder()
+                                                                                                  .name(servername)
+                                                                                                  .ready(false)
+                                                                                                  .pending("spawn")
+                                                                                                  .started(ZonedDateTime.now(ZoneId.of("UTC")))
+                                                                                                  .last_activity(ZonedDateTime.now(ZoneId.of("UTC")))
+                                                                                                  .build());
+                                        operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                  JupyterServerEventI.Operation.Start, 40,
+                                                                                                  "JupyterHub is spawning container."));
+
+                                        // An interrupted start is resumed until the spawn timeout has passed
+                                        operation.setDeadline(spawnHistoryService.getStartTimeout(computeEnvironmentConfigId, hardwareConfigId));
+
+                                        final long spawnRequested = System.currentTimeMillis();
+                                        return awaitServerReady(user, servername, xsiType, itemId, eventTrackingId, computeEnvironmentConfigId, hardwareConfigId)
+                                                .whenComplete((progress, throwable) -> {
+                                                    if (progress != null && Boolean.TRUE.equals(progress.getReady())) {
+                                                        spawnHistoryService.recordSpawn(computeEnvironmentConfigId, hardwareConfigId,
+                                                                                        System.currentTimeMillis() - spawnRequested);
+                                                    } else if (progress == null && throwable == null) {
+                                                        // Timed out, the spawn took at least this long
+                                                        spawnHistoryService.recordTimeout(computeEnvironmentConfigId, hardwareConfigId,
+                                                                                          System.currentTimeMillis() - spawnRequested);
+                                                    }
+                                                });
+                                    })
+                                    .thenAccept(progress -> {
+                                        if (progress != null && Boolean.TRUE.equals(progress.getReady())) {
+                                            log.info("{} started for user: {}, xsiType: {}, itemId: {}, projectId: {}, computeEnvironmentConfigId: {}, hardwareConfigId: {}, dashboardConfigId: {}.",
+                                                     StringUtils.capitalize(application), user.getUsername(), xsiType, itemId, projectId, computeEnvironmentConfigId, hardwareConfigId, dashboardConfigId);
+                                            jupyterHubStateMirror.putServer(user.getUsername(), Server.builder()
+                                                                                                      .name(servername)
+                                                                                                      .ready(true)
+                                                                                                      .url(progress.getUrl())
+                                                                                                      .started(ZonedDateTime.now(ZoneId.of("UTC")))
+                                                                                                      .last_activity(ZonedDateTime.now(ZoneId.of("UTC")))
+                                                                                                      .user_options(Collections.singletonMap("eventTrackingId", eventTrackingId))
+                                                                                                      .build());
+                                            operationTracker.triggerEvent(JupyterServerEvent.completed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                       JupyterServerEventI.Operation.Start,
+                                                                                                       StringUtils.capitalize(application) + " is available at: " + progress.getUrl()));
+                                            return;
+                                        }
+
+                                        // The hub decides what happened to a server that did not become ready
+                                        jupyterHubStateMirror.invalidate(user.getUsername());
+
+                                        if (progress != null && Boolean.TRUE.equals(progress.getFailed())) {
+                                            resourceQuotaService.release(user.getID(), servername);
+                                            operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                    JupyterServerEventI.Operation.Start,
+                                                                                                    "Failed to launch " + application + ". " + progress.getMessage() + " " +
+                                                                                                            "Check the XNAT and JupyterHub system logs for error messages."));
+                                            return;
+                                        }
+
+                                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                JupyterServerEventI.Operation.Start,
+                                                                                                "Failed to launch " + application + "." +
+                                                                                                        "Timeout exceeded while waiting for JupyterHub to spawn server. " +
+                                                                                                        "Check the XNAT and JupyterHub system logs for error messages."));
+                                    })
+                                    .whenComplete((ignored, throwable) -> admission.release());
+                            });
+                })
+                .exceptionally(throwable -> {
+                    final Throwable e = unwrap(throwable);
+
+                    if (e instanceof RejectedExecutionException) {
+                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                JupyterServerEventI.Operation.Start,
+                                                                                "Failed to launch " + application + ". " + e.getMessage() + " Try again in a few minutes."));
+                        return null;
+                    }
 
-        CompletableFuture.runAsync(() -> {
-            // getVersion() does not require authentication, check if JupyterHub is online
-            try {
-                jupyterHubClient.getVersion();
-            } catch (Exception e) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start,
-                                                                    "Failed to connect to JupyterHub. Please ensure the following:\n" +
-                                                                    "(1) JupyterHub is running \n" +
-                                                                    "(2) Verify the correct API URL is set in the plugin settings."
-                ));
-                return;
-            }
+                    jupyterHubStateMirror.invalidate(user.getUsername());
 
-            // getInfo() does require authentication, check if XNAT can connect and authenticate with JupyterHub
-            try {
-                jupyterHubClient.getInfo();
-            } catch (Exception e) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                        JupyterServerEventI.Operation.Start,
-                            "Failed to connect to JupyterHub. Please check the following: \n" +
-                                    "(1) Ensure that JupyterHub is running. \n" +
-                                    "(2) Verify the correct API URL is set in the plugin settings. \n" +
-                                    "(3) Confirm XNATs token for authenticating with JupyterHub is correctly set in " +
-                                    "both the plugin settings and JupyterHub configuration."
-                ));
-                return;
-            }
+                    // The resources stay reserved for a server that is already running
+                    if (!(e instanceof ResourceAlreadyExistsException)) {
+                        resourceQuotaService.release(user.getID(), servername);
+                    }
 
-            try {
-                // We don't want to update the user options entity if there is a running server
-                eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                      JupyterServerEventI.Operation.Start, 0,
-                                                                      "Checking for existing Jupyter servers."));
+                    if (e instanceof UserNotFoundException) {
+                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                JupyterServerEventI.Operation.Start,
+                                                                                "Failed to launch " + application + ". User not found."));
+                    } else if (e instanceof ResourceAlreadyExistsException) {
+                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                JupyterServerEventI.Operation.Start,
+                                                                                "Failed to launch " + application + ". A server with the same name is already running."));
+                    } else {
+                        String msg = "Failed to launch " + application + ". ";
 
-                int maxNamedServers = jupyterHubPreferences.getMaxNamedServers();
-                boolean hasMaxNamedServers = jupyterHubClient.getUser(user.getUsername())
-                                                             .orElseGet(() -> createUser(user))
-                                                             .getServers()
-                                                             .size() >= maxNamedServers;
-                if (hasMaxNamedServers) {
-                    eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                        JupyterServerEventI.Operation.Start,
-                                                                        "Failed to launch " + application + ". Maximum number of running Jupyter servers reached."));
-                    return;
-                }
+                        if (!jupyterHubServiceAccountHelper.isJupyterHubServiceAccountEnabled()) {
+                            msg += "Make sure the JupyterHub service account user is enabled and provide the credentials to JupyterHub (refer to the documentation for more details). ";
+                        }
+
+                        msg += "Check the XNAT and JupyterHub system logs for error messages.";
 
-                eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                      JupyterServerEventI.Operation.Start, 20,
-                                                                      "Building container configuration."));
+                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                JupyterServerEventI.Operation.Start, msg));
+                        log.error(msg, e);
+                    }
 
-                userOptionsService.storeUserOptions(user, servername, xsiType, itemId, projectId, computeEnvironmentConfigId, hardwareConfigId, dashboardConfigId, eventTrackingId);
+                    return null;
+                })
+                .whenComplete((ignored, throwable) -> operation.end());
+    }
 
-                eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                      JupyterServerEventI.Operation.Start, 30,
-                                                                      "Saved container configuration. Sending start request to JupyterHub."));
-
-                // Send empty user options. User's should not be able to directly send bind mounts.
-                // JupyterHub will request the user options.
-                jupyterHubClient.startServer(user.getUsername(), servername,
-                                             XnatUserOptions.builder()
-                                                     .userId(user.getID())
-                                                     .xsiType(xsiType)
-                                                     .itemId(itemId)
-                                                     .itemLabel(itemLabel)
-                                                     .projectId(projectId)
-                                                     .eventTrackingId(eventTrackingId)
-                                                     .dashboardConfigId(dashboardConfigId)
-                                                     .build());
-
-                eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                      JupyterServerEventI.Operation.Start, 40,
-                                                                      "JupyterHub is spawning container."));
-
-                // TODO consume progress api
-                int time = 0;
-                while (time < inMilliSec(jupyterHubPreferences.getStartTimeout())) {
-                    // Give JupyterHub a chance to spawn the server before polling
-                    Thread.sleep(inMilliSec(jupyterHubPreferences.getStartPollingInterval()));
-                    Optional<Server> server = jupyterHubClient.getServer(user.getUsername(), servername);
-
-                    if (server.isPresent()) {
-                        if (server.get().getReady()) {
-                            log.info("{} started for user: {}, xsiType: {}, itemId: {}, projectId: {}, computeEnvironmentConfigId: {}, hardwareConfigId: {}, dashboardConfigId: {}.",
-                                     StringUtils.capitalize(application), user.getUsername(), xsiType, itemId, projectId, computeEnvironmentConfigId, hardwareConfigId, dashboardConfigId);
-                            eventService.triggerEvent(JupyterServerEvent.completed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                                   JupyterServerEventI.Operation.Start,
-                                                                                   StringUtils.capitalize(application) + " is available at: " + server.get().getUrl()));
-                            return;
-                        }
-                    } else {
-                        eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                              JupyterServerEventI.Operation.Start, 45,
-                                                                              "Waiting for JupyterHub to spawn server."));
+    /**
+     * Follows the JupyterHub spawn progress stream of a server, forwarding each hub message as a start event. Hub
+     * progress (0 - 100) is mapped onto the 40 - 99 range of the start operation. Falls back to the shared server poller if
+     * the stream is unavailable or ends before the spawn finishes. The timeout and the readiness check schedule come from
+     * the spawn history of the compute environment and hardware configuration.
+     *
+     * @return Completes with the ready or failed spawn event, or null if the start timeout was exceeded.
+     */
+    private CompletableFuture<SpawnProgress> awaitServerReady(final UserI user, final String servername, final String xsiType,
+                                                              final String itemId, final String eventTrackingId,
+                                                              final Long computeEnvironmentConfigId, final Long hardwareConfigId) {
+        final long startTimeout = spawnHistoryService.getStartTimeout(computeEnvironmentConfigId, hardwareConfigId);
+        final Consumer<SpawnProgress> forwardProgress = progress -> {
+            if (StringUtils.isNotBlank(progress.getMessage())) {
+                operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                          JupyterServerEventI.Operation.Start,
+                                                                          toStartProgress(progress.getProgress()),
+                                                                          progress.getMessage()));
+            }
+        };
+
+        return asyncJupyterHubClient.streamProgress(user.getUsername(), servername, forwardProgress)
+                .orTimeout(startTimeout, TimeUnit.MILLISECONDS)
+                .handle((progress, throwable) -> {
+                    if (throwable == null && progress != null && progress.isTerminal()) {
+                        return CompletableFuture.completedFuture(progress);
                     }
 
-                    time += inMilliSec(jupyterHubPreferences.getStartPollingInterval());
-                }
+                    if (unwrap(throwable) instanceof TimeoutException) {
+                        return CompletableFuture.<SpawnProgress>completedFuture(null);
+                    }
+
+                    log.debug("JupyterHub progress stream for server {} of user {} ended early, polling for the server instead.",
+                              servername, user.getUsername(), throwable);
+                    return jupyterHubServerPoller.awaitServer(user.getUsername(), servername,
+                                                              server -> server.isPresent() && Boolean.TRUE.equals(server.get().getReady()),
+                                                              startTimeout,
+                                                              spawnHistoryService.getReadinessSchedule(computeEnvironmentConfigId, hardwareConfigId),
+                                                              server -> {
+                                                                  if (!server.isPresent()) {
+                                                                      operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                                                                                JupyterServerEventI.Operation.Start, 45,
+                                                                                                                                "Waiting for JupyterHub to spawn server."));
+                                                                  }
+                                                              })
+                            .thenApply(server -> server.filter(s -> Boolean.TRUE.equals(s.getReady()))
+                                                       .map(s -> SpawnProgress.builder().progress(100).ready(true).url(s.getUrl()).build())
+                                                       .orElse(null));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Maps JupyterHub spawn progress onto the portion of the start operation after the start request was sent.
+     */
+    private static int toStartProgress(final Integer hubProgress) {
+        final int progress = hubProgress == null ? 0 : Math.max(0, Math.min(100, hubProgress));
+        return 40 + progress * 59 / 100;
+    }
+
+    /**
+     * Prepares a server start: the permission and availability checks, the JupyterHub connectivity checks, the named
+     * server limit check and storing the user options for the server run as a graph of stages on the lifecycle
+     * executor. Stages which do not depend on each other run concurrently and the first failed check cancels the rest.
+     * The resources of the stored user options are then reserved against the user and project quotas. Failures which
+     * have already been reported to the user complete with false.
+     *
+     * @param user         The user requesting the server.
+     * @param startRequest The request to start a Jupyter notebook server.
+     * @param application  Name of the application being started, used in event messages.
+     *
+     * @return Completes with true if the start request should be sent to JupyterHub, false otherwise.
+     */
+    private CompletableFuture<Boolean> prepareServerStart(final UserI user, final ServerStartRequest startRequest, final String application) {
+        final String servername = startRequest.getServername();
+        final String xsiType = startRequest.getXsiType();
+        final String itemId = startRequest.getItemId();
+        final String projectId = startRequest.getProjectId();
+        final String eventTrackingId = startRequest.getEventTrackingId();
+        final Long computeEnvironmentConfigId = startRequest.getComputeEnvironmentConfigId();
+        final Long hardwareConfigId = startRequest.getHardwareConfigId();
+        final Long dashboardConfigId = startRequest.getDashboardConfigId();
+
+        operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                  JupyterServerEventI.Operation.Start, 20,
+                                                                  "Checking for existing Jupyter servers and building container configuration."));
 
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start,
-                                                                    "Failed to launch " + application + "." +
-                                                                            "Timeout exceeded while waiting for JupyterHub to spawn server. " +
-                                                                            "Check the XNAT and JupyterHub system logs for error messages."));
-            } catch (UserNotFoundException e) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start,
-                                                                    "Failed to launch " + application + ". User not found."));
-            } catch (ResourceAlreadyExistsException e) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start,
-                                                                    "Failed to launch " + application + ". A server with the same name is already running."));
-            } catch (InterruptedException e) {
-                String msg = "Failed to launch " + application + ". Thread interrupted. Check the XNAT and JupyterHub system logs for error messages.";
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start, msg));
-                log.error(msg, e);
-            } catch (Exception e) {
-                String msg = "Failed to launch " + application + ". ";
-
-                if (!jupyterHubServiceAccountHelper.isJupyterHubServiceAccountEnabled()) {
-                    msg += "Make sure the JupyterHub service account user is enabled and provide the credentials to JupyterHub (refer to the documentation for more details). ";
+        // Read before the user options are stored, the quota ledger is rebuilt from them
+        final boolean reserved = resourceQuotaService.isReserved(user.getID(), servername);
+
+        final StageGraph graph = new StageGraph(lifecycleExecutor);
+
+        final StageGraph.Stage<Void> permissions = graph.stage("permissions", () -> {
+            if (!permissionsHelper.canRead(user, projectId, itemId, xsiType)) {
+                throw new ServerStartRejectedException("Failed to launch " + application + ". Permission denied to read " + xsiType + " " + itemId + " in project " + projectId);
+            }
+            return null;
+        });
+
+        final StageGraph.Stage<Void> availability = graph.stage("availability", () -> {
+            Map<Scope, String> executionScope = new HashMap<>();
+            executionScope.put(Scope.Project, projectId);
+            executionScope.put(Scope.User, user.getUsername());
+            executionScope.put(Scope.DataType, xsiType);
+            executionScope.put(Scope.Site, "XNAT");
+
+            if (dashboardConfigId != null) {
+                if (!dashboardJobTemplateService.isAvailable(dashboardConfigId, computeEnvironmentConfigId, hardwareConfigId, executionScope)) {
+                    throw new ServerStartRejectedException("Failed to start dashboard. The dashboard is not available to the user.");
                 }
+            } else if (!jobTemplateService.isAvailable(computeEnvironmentConfigId, hardwareConfigId, executionScope)) {
+                throw new ServerStartRejectedException("Failed to launch Jupyter notebook server. The compute environment or hardware configuration is not available to the user.");
+            }
+            return null;
+        });
 
-                msg += "Check the XNAT and JupyterHub system logs for error messages.";
+        final StageGraph.Stage<Void> hub = graph.stage("hub", () -> {
+            // Reachability and authentication are checked in the background, only probe here if that result is stale
+            final HubHealth health = jupyterHubHealthService.getHealth();
 
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
-                                                                    JupyterServerEventI.Operation.Start, msg));
-                log.error(msg, e);
+            if (!health.isReachable()) {
+                throw new ServerStartRejectedException("Failed to connect to JupyterHub. Please ensure the following:\n" +
+                                                       "(1) JupyterHub is running \n" +
+                                                       "(2) Verify the correct API URL is set in the plugin settings.");
             }
 
+            if (!health.isAuthenticated()) {
+                throw new ServerStartRejectedException("Failed to connect to JupyterHub. Please check the following: \n" +
+                                                       "(1) Ensure that JupyterHub is running. \n" +
+                                                       "(2) Verify the correct API URL is set in the plugin settings. \n" +
+                                                       "(3) Confirm XNATs token for authenticating with JupyterHub is correctly set in " +
+                                                       "both the plugin settings and JupyterHub configuration.");
+            }
+            return null;
+        });
+
+        // We don't want to update the user options entity if there is a running server
+        final StageGraph.Stage<Void> servers = graph.stage("servers", () -> {
+            int maxNamedServers = jupyterHubPreferences.getMaxNamedServers();
+            boolean hasMaxNamedServers = jupyterHubStateMirror.getUser(user.getUsername())
+                                                             .orElseGet(() -> createUser(user))
+                                                             .getServers()
+                                                             .size() >= maxNamedServers;
+            if (hasMaxNamedServers) {
+                throw new ServerStartRejectedException("Failed to launch " + application + ". Maximum number of running Jupyter servers reached.");
+            }
+            return null;
+        }, hub);
+
+        userOptionsService.storeUserOptions(graph, user, servername, xsiType, itemId, projectId,
+                                            computeEnvironmentConfigId, hardwareConfigId, dashboardConfigId, eventTrackingId,
+                                            Arrays.asList(permissions, availability, servers));
+
+        return graph.completion().handle((ignored, throwable) -> {
+            final Throwable e = unwrap(throwable);
+            if (e instanceof ServerStartRejectedException) {
+                operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                        JupyterServerEventI.Operation.Start, e.getMessage()));
+                return false;
+            } else if (e != null) {
+                throw new CompletionException(e);
+            }
+
+            final Map<String, Long> timings = graph.getTimings();
+            log.debug("Prepared server {} for user {} in {} ms: {}", servername, user.getUsername(), graph.getElapsed(), timings);
+
+            // Check the CPU and memory reservations of the stored task template against the user and project quotas
+            try {
+                resourceQuotaService.reserve(user.getID(), servername, projectId,
+                                             userOptionsService.retrieveUserOptions(user, servername)
+                                                               .map(XnatUserOptions::getTaskTemplate)
+                                                               .orElse(null));
+            } catch (ResourceQuotaExceededException quotaExceeded) {
+                if (!reserved) {
+                    userOptionsService.removeUserOptions(user, servername);
+                }
+                operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                        JupyterServerEventI.Operation.Start,
+                                                                        "Failed to launch " + application + ". " + quotaExceeded.getMessage() +
+                                                                                " Stop a running server or choose a smaller hardware configuration."));
+                return false;
+            }
+
+            operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(), xsiType, itemId,
+                                                                      JupyterServerEventI.Operation.Start, 30,
+                                                                      "Saved container configuration in " + graph.getElapsed() + " ms (" +
+                                                                              timings.entrySet().stream()
+                                                                                     .map(timing -> timing.getKey() + " " + timing.getValue() + " ms")
+                                                                                     .collect(Collectors.joining(", ")) +
+                                                                              "). Sending start request to JupyterHub."));
+            return true;
         });
     }
 
@@ -404,10 +643,11 @@ public class DefaultJupyterHubService implements JupyterHubService {
      *
      * @param user              The user of the default server to stop.
      * @param eventTrackingId   Use this with the Event Tracking Data Api to keep track of progress.
+     * @return Completes once the stop has ended, or right away if the request was attached to a stop in flight.
      */
     @Override
-    public void stopServer(final UserI user, String eventTrackingId) {
-        stopServer(user, "", eventTrackingId);
+    public CompletableFuture<Void> stopServer(final UserI user, String eventTrackingId) {
+        return stopServer(user, "", eventTrackingId);
     }
 
     /**
@@ -417,67 +657,84 @@ public class DefaultJupyterHubService implements JupyterHubService {
      * @param user              The user of the named server to stop.
      * @param servername        Name of the server to stop
      * @param eventTrackingId   Use this with the Event Tracking Data Api to keep track of progress.
+     * @return Completes once the stop has ended, or right away if the request was attached to a stop in flight.
      */
     @Override
-    public void stopServer(final UserI user, final String servername, String eventTrackingId) {
-        eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(),
-                                                              JupyterServerEventI.Operation.Stop, 0,
-                                                              "Stopping Jupyter Server."));
-
-        CompletableFuture.runAsync(() -> {
-            try {
-                eventService.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(),
-                                                                      JupyterServerEventI.Operation.Stop, 50,
-                                                                      "Sending stop request to JupyterHub."));
-
+    public CompletableFuture<Void> stopServer(final UserI user, final String servername, String eventTrackingId) {
+        // A repeated request for a stop in flight receives the events of that stop instead of stopping again
+        final Optional<JupyterHubOperationTracker.TrackedOperation> tracked = operationTracker.begin(user.getUsername(), servername,
+                                                                                                   JupyterServerEventI.Operation.Stop,
+                                                                                                   eventTrackingId);
+        if (!tracked.isPresent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final JupyterHubOperationTracker.TrackedOperation operation = tracked.get();
+
+        operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(),
+                                                                  JupyterServerEventI.Operation.Stop, 0,
+                                                                  "Stopping Jupyter Server."));
+
+        // A start of the same server in flight is waited for first
+        return operation.previous()
+                .thenCompose(ignored -> CompletableFuture.runAsync(() -> operationTracker.triggerEvent(JupyterServerEvent.progress(eventTrackingId, user.getID(),
+                                                                                                                                   JupyterServerEventI.Operation.Stop, 50,
+                                                                                                                                   "Sending stop request to JupyterHub.")),
+                                                                   lifecycleExecutor.operations()))
                 // Stop the pod first, then clean up shared data in the background
-                Optional<Server> serverForFolderDeletion = jupyterHubClient.getServer(user.getUsername(), servername);
-                jupyterHubClient.stopServer(user.getUsername(), servername);
-
-                if (serverForFolderDeletion.isPresent()) {
-                    Server deletionServer = serverForFolderDeletion.get();
-                    String serverEventTrackingId = deletionServer.getUser_options().get("eventTrackingId");
-                    if (serverEventTrackingId != null) {
-                        CompletableFuture.runAsync(() -> {
-                            try {
-                                FileUtils.removeCombinedFolder(Paths.get(JupyterHubPreferences.SHARED_PROJECT_STRING, serverEventTrackingId));
-                            } catch (IOException e) {
-                                log.error("Failed to clean up shared data directory for event {}", serverEventTrackingId, e);
-                            }
-                        });
-                    }
-                }
-
-                int time = 0;
-                while (time < inMilliSec(jupyterHubPreferences.getStopTimeout())) {
-                    // Give JupyterHub a chance to shut down the server before polling
-                    Thread.sleep(inMilliSec(jupyterHubPreferences.getStopPollingInterval()));
-
-                    Optional<Server> server = jupyterHubClient.getServer(user.getUsername(), servername);
-
+                .thenCompose(ignored -> asyncJupyterHubClient.getServer(user.getUsername(), servername))
+                .thenCompose(serverForFolderDeletion -> asyncJupyterHubClient.stopServer(user.getUsername(), servername)
+                                                                             .thenRun(() -> serverForFolderDeletion.ifPresent(this::removeSharedData)))
+                .thenCompose(stopped -> jupyterHubServerPoller.awaitServer(user.getUsername(), servername,
+                                                                           server -> !server.isPresent(),
+                                                                           inMilliSec(jupyterHubPreferences.getStopTimeout()), null))
+                .thenAcceptAsync(server -> {
                     if (!server.isPresent()) {
                         log.info("Jupyter server stopped for user {}", user.getUsername());
                         log.debug("Removing user options for user {} and server {}", user.getUsername(), servername);
                         userOptionsService.removeUserOptions(user, servername);
-                        eventService.triggerEvent(JupyterServerEvent.completed(eventTrackingId, user.getID(),
-                                                                               JupyterServerEventI.Operation.Stop,
-                                                                               "Jupyter Server Stopped."));
+                        resourceQuotaService.release(user.getID(), servername);
+                        jupyterHubStateMirror.removeServer(user.getUsername(), servername);
+                        operationTracker.triggerEvent(JupyterServerEvent.completed(eventTrackingId, user.getID(),
+                                                                                   JupyterServerEventI.Operation.Stop,
+                                                                                   "Jupyter Server Stopped."));
                         return;
                     }
 
-                    time += inMilliSec(jupyterHubPreferences.getStopPollingInterval());
-                }
+                    jupyterHubStateMirror.invalidate(user.getUsername());
+                    operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(),
+                                                                            JupyterServerEventI.Operation.Stop,
+                                                                            "Failed to stop Jupyter Server."));
+                }, lifecycleExecutor)
+                .exceptionally(throwable -> {
+                    final Throwable e = unwrap(throwable);
+
+                    if (e instanceof RejectedExecutionException) {
+                        operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(),
+                                                                                JupyterServerEventI.Operation.Stop,
+                                                                                "Failed to stop Jupyter Server. " + e.getMessage() + " Try again in a few minutes."));
+                        return null;
+                    }
 
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(),
-                                                                    JupyterServerEventI.Operation.Stop,
-                                                                    "Failed to stop Jupyter Server."));
-            } catch (Exception e) {
-                eventService.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(),
-                                                                    JupyterServerEventI.Operation.Stop,
-                                                                    "Failed to stop Jupyter Server."));
-                log.error("Failed to stop jupyter server", e);
-            }
-        });
+                    jupyterHubStateMirror.invalidate(user.getUsername());
+                    operationTracker.triggerEvent(JupyterServerEvent.failed(eventTrackingId, user.getID(),
+                                                                            JupyterServerEventI.Operation.Stop,
+                                                                            "Failed to stop Jupyter Server."));
+                    log.error("Failed to stop jupyter server", e);
+                    return null;
+                })
+                .whenComplete((ignored, throwable) -> operation.end());
+    }
+
+    /**
+     * Removes the shared data directory of a project server in the background.
+     *
+     * @param server The server being stopped.
+     */
+    private void removeSharedData(final Server server) {
+        final String serverEventTrackingId = server.getUser_options() != null ? server.getUser_options().get("eventTrackingId") : null;
+        if (serverEventTrackingId != null) {
+            CompletableFuture.runAsync(() -> sharedDataDirectoryService.remove(serverEventTrackingId), lifecycleExecutor);
+        }
     }
 
     /**
@@ -501,103 +758,16 @@ public class DefaultJupyterHubService implements JupyterHubService {
         return jupyterHubClient.createToken(user.getUsername(), token);
     }
 
-    /**
-     * Stop servers that have been inactive for some period of time
-     */
-    @Override
-    public void cullInactiveServers() {
-        try {
-            if (jupyterHubPreferences.getInactivityTimeout() > 0) {
-                log.debug("Culling idle Jupyter notebook servers");
-
-                final List<User> users = getUsers();
-                final ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
-
-                users.forEach(user -> {
-                    Map<String, Server> servers = user.getServers();
-                    servers.forEach((servername, server) -> {
-                        final ZonedDateTime lastActivity = server.getLast_activity();
-                        long inactiveTime = ChronoUnit.MINUTES.between(lastActivity, now);
-
-                        if (inactiveTime > jupyterHubPreferences.getInactivityTimeout()) {
-                            try {
-                                UserI userI = userManagementService.getUser(user.getName());
-                                log.info("Removing Jupyter server {} for user {} due to inactivity.", servername, user.getName());
-                                stopServer(userI, servername, now + "_cullIdleServers");
-                            } catch (UserInitException | org.nrg.xdat.security.user.exceptions.UserNotFoundException e) {
-                                log.error("Unable to delete long running Jupyter server for user " + user.getName(), e);
-                            }
-                        }
-                    });
-                });
-            } else {
-                log.debug("Not culling idle Jupyter notebook servers");
-            }
-        } catch (Exception e) {
-            log.error("Failed to cull idle Jupyter notebook servers");
-        }
-    }
-
-    /**
-     * Stop servers that have been running for some period of time
-     */
-    @Override
-    public void cullLongRunningServers() {
-        try {
-            if (jupyterHubPreferences.getMaxServerLifetime() > 0) {
-                log.debug("Culling long running Jupyter notebook servers");
-
-                final List<User> users = getUsers();
-                final ZonedDateTime now = ZonedDateTime.now(ZoneId.of("UTC"));
-
-                users.forEach(user -> {
-                    Map<String, Server> servers = user.getServers();
-                    servers.forEach((servername, server) -> {
-                        final ZonedDateTime started = server.getStarted();
-                        long runningTime = ChronoUnit.HOURS.between(started, now);
-
-                        if (runningTime >= jupyterHubPreferences.getMaxServerLifetime()) {
-                            try {
-                                UserI userI = userManagementService.getUser(user.getName());
-                                log.info("Removing Jupyter server {} for user {} due to long running time.", servername, user.getName());
-                                stopServer(userI, servername, now + "_cullLongRunningServers");
-                            } catch (UserInitException | org.nrg.xdat.security.user.exceptions.UserNotFoundException e) {
-                                log.error("Unable to delete long running Jupyter server for user " + user.getName(), e);
-                            }
-                        }
-                    });
-                });
-            } else {
-                log.debug("Not culling long running Jupyter notebook servers");
-            }
-        } catch (Exception e) {
-            log.error("Failed to cull long running Jupyter notebook servers");
-        }
+    private Integer inMilliSec(Integer seconds) {
+        return seconds * 1000;
     }
 
-    /**
-     * Removes shared data associated with jupyter servers created for projects. This method will be called once per day
-     * to check whether any servers have closed unexpectedly resulting in hanging data within the archive. If so, this
-     * method will delete that data.
-     */
-    public void cleanupOrphanedSharedDataDirs() {
-        List<String> eventTrackingIds = jupyterHubClient.getUsers().stream().flatMap(user -> user.getServers().values()
-                .stream().map(server -> server.getUser_options().get("eventTrackingId"))).collect(Collectors.toList());
-        Path baseDir = Paths.get(XDAT.getSiteConfigPreferences().getArchivePath(), FileUtils.SHARED_PROJECT_DIRECTORY_STRING,
-                JupyterHubPreferences.SHARED_PROJECT_STRING);
-        try {
-            List<Path> directories = Files.list(baseDir).filter(f -> !eventTrackingIds.contains(f.getFileName().toString())).collect(Collectors.toList());
-            for (Path directory : directories) {
-                    FileUtils.removeCombinedFolder(Paths.get(JupyterHubPreferences.SHARED_PROJECT_STRING, String.valueOf(directory.getFileName())));
-            }
-        } catch (IOException e) {
-        log.error("Could not remove outdated directories: ", e);
+    private static Throwable unwrap(final Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
         }
-
-    }
-
-    private Integer inMilliSec(Integer seconds) {
-        return seconds * 1000;
+        return cause;
     }
 
 }
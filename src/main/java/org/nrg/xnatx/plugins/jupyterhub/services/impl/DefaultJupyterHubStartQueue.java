@@ -0,0 +1,242 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStartQueue;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Start-time fair queue. Every project and every user carries a virtual time tag which advances on each admission, by
+ * 1 / weight for projects and by 1 for users. A free spawn slot goes to the waiting start of the project with the
+ * lowest tag, then of the user with the lowest tag, and finally to the earliest arrival. Projects and users becoming
+ * active start at the tag of the last admission, so idle time can't be saved up. A project launching a scripted batch
+ * therefore gets its weighted share of the slots while other projects have starts waiting, not all of them. The tag of
+ * a project or user with nothing waiting or spawning is dropped once the last admission has caught up with it, as it
+ * would restart at that tag anyway, and all tags are dropped once the queue runs empty, so only the projects and users
+ * of the current busy period are tracked.
+ * <p>
+ * Queue positions are the order in which the waiting starts would be admitted if nothing else changed. Admissions
+ * complete on the lifecycle executor so the start continues off the thread which released the slot.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubStartQueue implements JupyterHubStartQueue {
+
+    private final JupyterHubLifecycleExecutor lifecycleExecutor;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private final List<Request> waiting = new ArrayList<>();
+    private final Map<String, Integer> runningByProject = new HashMap<>();
+    private final Map<String, Integer> runningByUser = new HashMap<>();
+    private final Tags tags = new Tags();
+    private int running;
+    private long arrivals;
+
+    @Autowired
+    public DefaultJupyterHubStartQueue(final JupyterHubLifecycleExecutor lifecycleExecutor,
+                                       final JupyterHubPreferences jupyterHubPreferences) {
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public CompletableFuture<Admission> admit(final String username, final String projectId, final IntConsumer onQueued) {
+        final Request request = new Request(username, StringUtils.defaultString(projectId), onQueued);
+        final List<Runnable> notifications;
+        synchronized (this) {
+            request.arrival = arrivals++;
+            final boolean projectActive = runningByProject.containsKey(request.projectId) || waiting.stream().anyMatch(r -> r.projectId.equals(request.projectId));
+            final boolean userActive = runningByUser.containsKey(request.username) || waiting.stream().anyMatch(r -> r.username.equals(request.username));
+            tags.activate(request, projectActive, userActive);
+            waiting.add(request);
+            notifications = dispatch();
+        }
+        notifications.forEach(Runnable::run);
+        return request.admitted;
+    }
+
+    @Override
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    @Override
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    private void release(final Request request) {
+        final List<Runnable> notifications;
+        synchronized (this) {
+            running--;
+            runningByProject.merge(request.projectId, -1, Integer::sum);
+            runningByProject.remove(request.projectId, 0);
+            runningByUser.merge(request.username, -1, Integer::sum);
+            runningByUser.remove(request.username, 0);
+            notifications = dispatch();
+            prune();
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    // For testing
+    synchronized int getTagged() {
+        return tags.projects.size() + tags.users.size();
+    }
+
+    /**
+     * Drops the tags of projects and users with nothing waiting or spawning. Must hold the lock.
+     */
+    private void prune() {
+        final Set<String> activeProjects = new HashSet<>(runningByProject.keySet());
+        final Set<String> activeUsers = new HashSet<>(runningByUser.keySet());
+        waiting.forEach(request -> {
+            activeProjects.add(request.projectId);
+            activeUsers.add(request.username);
+        });
+        tags.prune(activeProjects, activeUsers);
+    }
+
+    /**
+     * Admits waiting starts while spawn slots are free, then works out the new queue positions. Must hold the lock, the
+     * returned notifications are run after it is released.
+     */
+    private List<Runnable> dispatch() {
+        final List<Runnable> notifications = new ArrayList<>();
+        final Map<String, Double> weights = projectWeights();
+        final int maxConcurrent = jupyterHubPreferences.getStartQueueMaxConcurrent();
+
+        while (!waiting.isEmpty() && (maxConcurrent <= 0 || running < maxConcurrent)) {
+            final Request next = tags.next(waiting);
+            waiting.remove(next);
+            tags.charge(next, weights);
+            running++;
+            runningByProject.merge(next.projectId, 1, Integer::sum);
+            runningByUser.merge(next.username, 1, Integer::sum);
+
+            log.debug("Admitted server start for user {} in project {}, {} spawning, {} waiting", next.username, next.projectId, running, waiting.size());
+            final Admission admission = new Admission() {
+                private final AtomicBoolean released = new AtomicBoolean(false);
+
+                @Override
+                public void release() {
+                    if (released.compareAndSet(false, true)) {
+                        DefaultJupyterHubStartQueue.this.release(next);
+                    }
+                }
+            };
+            notifications.add(() -> lifecycleExecutor.execute(() -> next.admitted.complete(admission)));
+        }
+
+        // Replay the selection on a copy of the tags to find the order the waiting starts would be admitted in
+        final List<Request> remaining = new ArrayList<>(waiting);
+        final Tags replay = tags.copy();
+        for (int ahead = 0; !remaining.isEmpty(); ahead++) {
+            final Request next = replay.next(remaining);
+            remaining.remove(next);
+            replay.charge(next, weights);
+
+            if (next.ahead != ahead && next.onQueued != null) {
+                final int position = ahead;
+                notifications.add(() -> next.onQueued.accept(position));
+            }
+            next.ahead = ahead;
+        }
+
+        return notifications;
+    }
+
+    private Map<String, Double> projectWeights() {
+        final Map<String, String> configured = jupyterHubPreferences.getStartQueueProjectWeights();
+        if (configured == null || configured.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, Double> weights = new HashMap<>();
+        configured.forEach((projectId, weight) -> {
+            final double value = NumberUtils.toDouble(weight, 1.0);
+            weights.put(projectId, value > 0 ? value : 1.0);
+        });
+        return weights;
+    }
+
+    private static final class Tags {
+        private final Map<String, Double> projects = new HashMap<>();
+        private final Map<String, Double> users = new HashMap<>();
+        private double projectClock;
+        private double userClock;
+
+        private void activate(final Request request, final boolean projectActive, final boolean userActive) {
+            if (!projectActive) {
+                projects.merge(request.projectId, projectClock, Math::max);
+            }
+            if (!userActive) {
+                users.merge(request.username, userClock, Math::max);
+            }
+        }
+
+        private Request next(final List<Request> candidates) {
+            return Collections.min(candidates, Comparator.<Request>comparingDouble(request -> projects.getOrDefault(request.projectId, projectClock))
+                                                         .thenComparingDouble(request -> users.getOrDefault(request.username, userClock))
+                                                         .thenComparingLong(request -> request.arrival));
+        }
+
+        private void charge(final Request request, final Map<String, Double> weights) {
+            projectClock = projects.getOrDefault(request.projectId, projectClock);
+            projects.put(request.projectId, projectClock + 1 / weights.getOrDefault(request.projectId, 1.0));
+            userClock = users.getOrDefault(request.username, userClock);
+            users.put(request.username, userClock + 1);
+        }
+
+        /**
+         * Drops the inactive tags the last admission has caught up with. A tag ahead of the last admission is kept, the
+         * project or user would otherwise skip the admissions it is ahead by when it becomes active again. With nothing
+         * active the busy period is over and the tags start afresh.
+         */
+        private void prune(final Set<String> activeProjects, final Set<String> activeUsers) {
+            if (activeProjects.isEmpty() && activeUsers.isEmpty()) {
+                projects.clear();
+                users.clear();
+                projectClock = 0;
+                userClock = 0;
+                return;
+            }
+            projects.entrySet().removeIf(tag -> !activeProjects.contains(tag.getKey()) && tag.getValue() <= projectClock);
+            users.entrySet().removeIf(tag -> !activeUsers.contains(tag.getKey()) && tag.getValue() <= userClock);
+        }
+
+        private Tags copy() {
+            final Tags copy = new Tags();
+            copy.projects.putAll(projects);
+            copy.users.putAll(users);
+            copy.projectClock = projectClock;
+            copy.userClock = userClock;
+            return copy;
+        }
+    }
+
+    private static final class Request {
+        private final String username;
+        private final String projectId;
+        private final IntConsumer onQueued;
+        private final CompletableFuture<Admission> admitted = new CompletableFuture<>();
+        private long arrival;
+        private int ahead = -1;
+
+        private Request(final String username, final String projectId, final IntConsumer onQueued) {
+            this.username = username;
+            this.projectId = projectId;
+            this.onQueued = onQueued;
+        }
+    }
+
+}
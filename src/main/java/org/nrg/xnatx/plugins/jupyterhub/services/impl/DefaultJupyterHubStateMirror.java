@@ -0,0 +1,186 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStateMirror;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mirrors the users with active servers on JupyterHub, plus any user looked up directly. Each entry records when it
+ * was last confirmed against the hub. A sync never overwrites an entry that was updated by a start or stop after the
+ * sync began, so in-flight operations are not lost to an older page of users.
+ */
+@Service
+@Slf4j
+public class DefaultJupyterHubStateMirror implements JupyterHubStateMirror {
+
+    private final JupyterHubClient jupyterHubClient;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private final Map<String, Entry> users = new ConcurrentHashMap<>();
+    private volatile long lastSync = 0;
+
+    @Autowired
+    public DefaultJupyterHubStateMirror(final JupyterHubClient jupyterHubClient,
+                                        final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubClient = jupyterHubClient;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    /**
+     * Gets the user from the mirror, or from JupyterHub if the mirrored user is stale or unknown.
+     *
+     * @param username The JupyterHub username
+     *
+     * @return The user, empty if the user does not exist on JupyterHub
+     */
+    @Override
+    public Optional<User> getUser(final String username) {
+        final Entry entry = users.get(username);
+        if (entry != null && isFresh(entry.fetched)) {
+            return Optional.ofNullable(entry.user);
+        }
+
+        log.debug("Mirrored state for JupyterHub user {} is stale, getting user from JupyterHub", username);
+        final long fetched = System.currentTimeMillis();
+        final Optional<User> user = jupyterHubClient.getUser(username);
+        // A putServer or removeServer made while the user was being fetched is newer than the fetched user
+        users.merge(username, new Entry(user.map(DefaultJupyterHubStateMirror::copy).orElse(null), fetched),
+                    (current, fetchedEntry) -> current.fetched > fetched ? current : fetchedEntry);
+        return user;
+    }
+
+    @Override
+    public Optional<Server> getServer(final String username, final String servername) {
+        return getUser(username).map(user -> user.getServers().get(servername));
+    }
+
+    /**
+     * Gets the users with active servers. Syncs with JupyterHub first if the last sync is stale.
+     *
+     * @return Users with at least one active server
+     */
+    @Override
+    public List<User> getUsers() {
+        if (!isFresh(lastSync)) {
+            refresh();
+        }
+
+        return users.values().stream()
+                    .map(entry -> entry.user)
+                    .filter(user -> user != null && !user.getServers().isEmpty())
+                    .collect(Collectors.toList());
+    }
+
+    /**
+     * Scheduled sync with JupyterHub. Failures are logged, the mirror keeps its previous state.
+     */
+    @Override
+    public void sync() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Unable to sync JupyterHub state", e);
+        }
+    }
+
+    @Override
+    public void putUser(final User user) {
+        if (user == null) {
+            return;
+        }
+        users.put(user.getName(), new Entry(copy(user), System.currentTimeMillis()));
+    }
+
+    @Override
+    public void putServer(final String username, final Server server) {
+        final long now = System.currentTimeMillis();
+        users.compute(username, (name, entry) -> {
+            final User user = entry != null && entry.user != null ? copy(entry.user) : User.builder().name(name).servers(new HashMap<>()).build();
+            user.getServers().put(server.getName(), server);
+            return new Entry(user, now);
+        });
+    }
+
+    @Override
+    public void removeServer(final String username, final String servername) {
+        final long now = System.currentTimeMillis();
+        users.computeIfPresent(username, (name, entry) -> {
+            if (entry.user == null) {
+                return entry;
+            }
+            final User user = copy(entry.user);
+            user.getServers().remove(servername);
+            return new Entry(user, now);
+        });
+    }
+
+    @Override
+    public void invalidate(final String username) {
+        users.remove(username);
+    }
+
+    private void refresh() {
+        final long started = System.currentTimeMillis();
+        final Map<String, User> active = new HashMap<>();
+        jupyterHubClient.streamUsers(true).forEach(user -> active.put(user.getName(), copy(user)));
+
+        active.forEach((name, user) -> users.merge(name, new Entry(user, started),
+                                                    (current, synced) -> current.fetched > started ? current : synced));
+
+        // Users no longer in the active list have no running servers. Users which are not on JupyterHub at all are
+        // left to expire.
+        users.replaceAll((name, entry) -> {
+            if (active.containsKey(name) || entry.fetched > started || entry.user == null) {
+                return entry;
+            }
+            final User user = copy(entry.user);
+            user.getServers().clear();
+            return new Entry(user, started);
+        });
+        users.entrySet().removeIf(e -> e.getValue().user == null && !isFresh(e.getValue().fetched));
+
+        lastSync = started;
+        log.debug("Synced JupyterHub state, {} users with active servers", active.size());
+    }
+
+    private boolean isFresh(final long fetched) {
+        return System.currentTimeMillis() - fetched < TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getHubStateMaxStaleness());
+    }
+
+    /**
+     * Copies the user with its own servers map so mirrored users are never modified in place.
+     */
+    private static User copy(final User user) {
+        return User.builder()
+                   .name(user.getName())
+                   .admin(user.isAdmin())
+                   .roles(user.getRoles())
+                   .groups(user.getGroups())
+                   .server(user.getServer())
+                   .pending(user.getPending())
+                   .last_activity(user.getLast_activity())
+                   .servers(user.getServers() != null ? new HashMap<>(user.getServers()) : new HashMap<>())
+                   .build();
+    }
+
+    private static final class Entry {
+        private final User user; // null if the user does not exist on JupyterHub
+        private final long fetched;
+
+        private Entry(final User user, final long fetched) {
+            this.user = user;
+            this.fetched = fetched;
+        }
+    }
+
+}
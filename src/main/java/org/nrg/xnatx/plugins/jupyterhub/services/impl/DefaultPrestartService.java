@@ -0,0 +1,309 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.nrg.xapi.exceptions.NotFoundException;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartScheduleEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Launches scheduled pre-starts. Due schedules are picked up by a periodic task and their servers are started one user
+ * at a time, spaced out by the schedule's ramp rate, so a class does not hit JupyterHub all at once. Each start goes
+ * through {@link JupyterHubService#startServer(UserI, ServerStartRequest)} as if the user had launched it, including the
+ * permission and availability checks, the start queue and the quotas.
+ * <p>
+ * Every node runs the periodic task. A due schedule is claimed with a conditional update before its ramp starts, so
+ * exactly one node launches it. The ramp re-reads the schedule before each start, which stops it when the schedule is
+ * cancelled through any node, and records its position and a heartbeat after each start. A running ramp without a
+ * heartbeat for {@link #ABANDONED_AFTER} was left behind by a node which stopped, it is taken over by one node, again
+ * through a conditional update, and resumed from its position.
+ */
+@Service
+@Slf4j
+public class DefaultPrestartService implements PrestartService {
+
+    // Far above the 60 seconds between two starts of the slowest ramp
+    static final long ABANDONED_AFTER = TimeUnit.MINUTES.toMillis(10);
+
+    private final PrestartScheduleEntityService prestartScheduleEntityService;
+    private final JupyterHubService jupyterHubService;
+    private final UserManagementServiceI userManagementService;
+    private final PermissionsHelper permissionsHelper;
+    private final JupyterHubLifecycleExecutor lifecycleExecutor;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    // Schedules whose ramp is running on this node
+    private final Set<Long> ramping = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public DefaultPrestartService(final PrestartScheduleEntityService prestartScheduleEntityService,
+                                  final JupyterHubService jupyterHubService,
+                                  final UserManagementServiceI userManagementService,
+                                  final PermissionsHelper permissionsHelper,
+                                  final JupyterHubLifecycleExecutor lifecycleExecutor,
+                                  final JupyterHubPreferences jupyterHubPreferences) {
+        this.prestartScheduleEntityService = prestartScheduleEntityService;
+        this.jupyterHubService = jupyterHubService;
+        this.userManagementService = userManagementService;
+        this.permissionsHelper = permissionsHelper;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    /**
+     * Schedules a pre-start. The ramp rate defaults to the prestartRampRate preference and the cull exemption to
+     * prestartCullExemption minutes after the start time.
+     *
+     * @param user     The user scheduling the pre-start.
+     * @param schedule The pre-start to schedule.
+     *
+     * @return The scheduled pre-start.
+     */
+    @Override
+    public PrestartSchedule create(final UserI user, final PrestartSchedule schedule) {
+        validate(schedule);
+
+        final PrestartScheduleEntity entity = PrestartScheduleEntity.fromPojo(schedule);
+        entity.setServername(StringUtils.defaultString(schedule.getServername()));
+        entity.setUsernames(schedule.getUsernames() == null ? new ArrayList<>() :
+                            schedule.getUsernames().stream()
+                                    .filter(StringUtils::isNotBlank)
+                                    .distinct()
+                                    .collect(Collectors.toList()));
+        if (schedule.getRampRate() == null || schedule.getRampRate() <= 0) {
+            entity.setRampRate(Math.max(1, jupyterHubPreferences.getPrestartRampRate()));
+        }
+        if (schedule.getCullExemptUntil() == null) {
+            entity.setCullExemptUntil(new Date(schedule.getStartAt().getTime() +
+                                               TimeUnit.MINUTES.toMillis(Math.max(0, jupyterHubPreferences.getPrestartCullExemption()))));
+        }
+        entity.setCreatedBy(user.getUsername());
+        entity.setStatus(PrestartSchedule.Status.Scheduled);
+        entity.setLaunched(0);
+
+        final PrestartScheduleEntity created = prestartScheduleEntityService.create(entity);
+        log.info("User {} scheduled pre-start {} in project {} at {}", user.getUsername(), created.getId(), created.getProjectId(), created.getStartAt());
+        return created.toPojo();
+    }
+
+    @Override
+    public Optional<PrestartSchedule> get(final Long id) {
+        return Optional.ofNullable(prestartScheduleEntityService.retrieve(id))
+                       .map(PrestartScheduleEntity::toPojo);
+    }
+
+    @Override
+    public List<PrestartSchedule> getAll() {
+        return prestartScheduleEntityService.getAll()
+                                            .stream()
+                                            .map(PrestartScheduleEntity::toPojo)
+                                            .collect(Collectors.toList());
+    }
+
+    /**
+     * Cancels a pre-start. Servers of a running ramp which have not been started yet are skipped, servers already
+     * started keep running but lose their cull exemption.
+     *
+     * @param id The ID of the pre-start.
+     *
+     * @return The cancelled pre-start.
+     *
+     * @throws NotFoundException When the pre-start cannot be found.
+     */
+    @Override
+    public PrestartSchedule cancel(final Long id) throws NotFoundException {
+        if (prestartScheduleEntityService.retrieve(id) == null) {
+            throw new NotFoundException("PrestartSchedule", id);
+        }
+        // A conditional update, a full update would overwrite the progress of a running ramp
+        prestartScheduleEntityService.setStatus(id, PrestartSchedule.Status.Cancelled, EnumSet.allOf(PrestartSchedule.Status.class));
+        log.info("Cancelled pre-start {}", id);
+        return prestartScheduleEntityService.retrieve(id).toPojo();
+    }
+
+    /**
+     * Starts the ramp of every pre-start which is due, and resumes the ramps abandoned by other nodes. Called
+     * periodically on every node.
+     */
+    @Override
+    public void launchDueSchedules() {
+        try {
+            for (final PrestartScheduleEntity entity : prestartScheduleEntityService.findDue(new Date())) {
+                if (prestartScheduleEntityService.claim(entity.getId(), new Date())) {
+                    launch(entity);
+                }
+            }
+            for (final PrestartScheduleEntity entity : prestartScheduleEntityService.findAbandoned(new Date(System.currentTimeMillis() - ABANDONED_AFTER))) {
+                if (!ramping.contains(entity.getId()) && prestartScheduleEntityService.reclaim(entity.getId(), entity.getHeartbeat(), new Date())) {
+                    log.info("Resuming pre-start {} abandoned at position {}", entity.getId(), entity.getPosition());
+                    ramp(entity, entity.getUsernames() != null ? new ArrayList<>(entity.getUsernames()) : new ArrayList<>(),
+                         entity.getPosition() != null ? entity.getPosition() : 0);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to launch scheduled Jupyter server pre-starts", e);
+        }
+    }
+
+    /**
+     * Resolves the users of a claimed pre-start and starts its ramp. The resolved users are stored with the schedule so
+     * the cullers know which servers are exempt, and so the ramp can be resumed.
+     */
+    private void launch(final PrestartScheduleEntity claimed) {
+        final Long id = claimed.getId();
+
+        final List<String> usernames;
+        if (claimed.getUsernames() == null || claimed.getUsernames().isEmpty()) {
+            usernames = getProjectMembers(claimed);
+        } else {
+            usernames = new ArrayList<>(claimed.getUsernames());
+        }
+
+        // A conditional update, a full update would overwrite a cancel committed since the claim
+        if (!prestartScheduleEntityService.setUsernames(id, usernames)) {
+            log.info("Pre-start {} was cancelled before its ramp started", id);
+            return;
+        }
+
+        ramp(claimed, usernames, 0);
+    }
+
+    /**
+     * Queues one server start per user from the given position, spaced 60 / rampRate seconds apart.
+     */
+    private void ramp(final PrestartScheduleEntity entity, final List<String> usernames, final int from) {
+        final Long id = entity.getId();
+        final long spacing = TimeUnit.MINUTES.toMillis(1) / Math.max(1, entity.getRampRate());
+        log.info("Launching pre-start {}, starting {} server(s) {} ms apart", id, usernames.size() - from, spacing);
+
+        ramping.add(id);
+        final List<CompletableFuture<Void>> starts = new ArrayList<>();
+        for (int i = from; i < usernames.size(); i++) {
+            final int position = i + 1;
+            final String username = usernames.get(i);
+            final ServerStartRequest startRequest = ServerStartRequest.builder()
+                                                                      .username(username)
+                                                                      .servername(entity.getServername())
+                                                                      .xsiType(entity.getXsiType())
+                                                                      .itemId(entity.getItemId())
+                                                                      .itemLabel(entity.getItemLabel())
+                                                                      .projectId(entity.getProjectId())
+                                                                      .computeEnvironmentConfigId(entity.getComputeEnvironmentConfigId())
+                                                                      .hardwareConfigId(entity.getHardwareConfigId())
+                                                                      .build();
+            starts.add(CompletableFuture.runAsync(() -> start(id, position, startRequest),
+                                                  CompletableFuture.delayedExecutor((i - from) * spacing, TimeUnit.MILLISECONDS, lifecycleExecutor)));
+        }
+
+        CompletableFuture.allOf(starts.toArray(new CompletableFuture[0])).whenComplete((ignored, throwable) -> {
+            ramping.remove(id);
+            try {
+                if (prestartScheduleEntityService.setStatus(id, PrestartSchedule.Status.Completed, Collections.singleton(PrestartSchedule.Status.Running))) {
+                    log.info("Pre-start {} finished, {} server(s) in the ramp", id, usernames.size());
+                }
+            } catch (Exception e) {
+                log.error("Failed to update pre-start {}", id, e);
+            }
+        });
+    }
+
+    /**
+     * Sends one start request of a pre-start, unless the pre-start is no longer running. Progress is reported through
+     * the event tracking API like any other start. The position and heartbeat of the ramp are recorded after the start.
+     */
+    private void start(final Long id, final int position, final ServerStartRequest startRequest) {
+        final PrestartScheduleEntity current = prestartScheduleEntityService.retrieve(id);
+        if (current == null || current.getStatus() != PrestartSchedule.Status.Running) {
+            return;
+        }
+
+        boolean started = false;
+        try {
+            final UserI user = userManagementService.getUser(startRequest.getUsername());
+            startRequest.setEventTrackingId("prestart_" + id + "_" + startRequest.getUsername() + "_" + System.currentTimeMillis());
+            jupyterHubService.startServer(user, startRequest);
+            started = true;
+        } catch (Exception e) {
+            log.error("Failed to pre-start Jupyter server for user {} of pre-start {}", startRequest.getUsername(), id, e);
+        }
+
+        try {
+            prestartScheduleEntityService.progress(id, position, started, new Date());
+        } catch (Exception e) {
+            log.warn("Failed to record the progress of pre-start {}", id, e);
+        }
+    }
+
+    private List<String> getProjectMembers(final PrestartScheduleEntity entity) {
+        try {
+            final UserI scheduledBy = userManagementService.getUser(entity.getCreatedBy());
+            return permissionsHelper.getProjectMembers(scheduledBy, entity.getProjectId());
+        } catch (Exception e) {
+            log.error("Failed to look up the members of project {} for pre-start {}", entity.getProjectId(), entity.getId(), e);
+            return new ArrayList<>();
+        }
+    }
+
+    private void validate(final PrestartSchedule schedule) {
+        if (schedule == null) {
+            throw new IllegalArgumentException("PrestartSchedule cannot be null");
+        }
+
+        List<String> errorMessages = new ArrayList<>();
+
+        if (StringUtils.isBlank(schedule.getXsiType())) {
+            errorMessages.add("XSI type cannot be blank");
+        }
+
+        if (StringUtils.isBlank(schedule.getItemId())) {
+            errorMessages.add("Item ID cannot be blank");
+        }
+
+        if (StringUtils.isBlank(schedule.getItemLabel())) {
+            errorMessages.add("Item label cannot be blank");
+        }
+
+        if (StringUtils.isBlank(schedule.getProjectId())) {
+            errorMessages.add("Project ID cannot be blank");
+        }
+
+        if (schedule.getComputeEnvironmentConfigId() == null) {
+            errorMessages.add("Compute environment config ID cannot be null");
+        }
+
+        if (schedule.getHardwareConfigId() == null) {
+            errorMessages.add("Hardware config ID cannot be null");
+        }
+
+        if (schedule.getStartAt() == null) {
+            errorMessages.add("Start time cannot be null");
+        }
+
+        if (schedule.getStartAt() != null && schedule.getCullExemptUntil() != null &&
+            schedule.getCullExemptUntil().before(schedule.getStartAt())) {
+            errorMessages.add("Cull exemption cannot end before the start time");
+        }
+
+        if (!errorMessages.isEmpty()) {
+            throw new IllegalArgumentException(String.join(", ", errorMessages));
+        }
+    }
+
+}
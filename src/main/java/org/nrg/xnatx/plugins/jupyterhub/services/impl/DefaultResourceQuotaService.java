@@ -0,0 +1,270 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ResourceQuotaExceededException;
+import org.nrg.xnatx.plugins.jupyterhub.models.ResourceUsage;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.Resources;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.TaskTemplate;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory resource ledger. Every server with stored user options holds a reservation of the CPU and memory
+ * reservations in its task template, so the ledger is rebuilt from the user options table, which all nodes share. A
+ * start stores its user options before reserving, and every reservation rebuilds the ledger first, so of two starts on
+ * different nodes the later one always counts the earlier one. Reads rebuild the ledger once it is older than
+ * {@link #RELOAD_INTERVAL}, usage reported between rebuilds misses servers started or stopped through other nodes.
+ * All reads and updates of the ledger are made under one lock, which makes the quota check and the reservation a single
+ * atomic step on a node.
+ */
+@Service
+@Slf4j
+public class DefaultResourceQuotaService implements ResourceQuotaService {
+
+    static final long RELOAD_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private static final double CPU_TOLERANCE = 1e-9;
+    private static final Pattern MEMORY = Pattern.compile("^\\s*(\\d*\\.?\\d+)\\s*([kmgtp]?)(i?b?)\\s*$", Pattern.CASE_INSENSITIVE);
+
+    private final UserOptionsEntityService userOptionsEntityService;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private final Map<String, Reservation> reservations = new HashMap<>();
+    private final Map<Integer, ResourceUsage> byUser = new HashMap<>();
+    private final Map<String, ResourceUsage> byProject = new HashMap<>();
+    private final ResourceUsage total = new ResourceUsage();
+    private long loadedAt = 0;
+
+    @Autowired
+    public DefaultResourceQuotaService(final UserOptionsEntityService userOptionsEntityService,
+                                       final JupyterHubPreferences jupyterHubPreferences) {
+        this.userOptionsEntityService = userOptionsEntityService;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public synchronized void reserve(final Integer userId, final String servername, final String projectId,
+                                     final TaskTemplate taskTemplate) throws ResourceQuotaExceededException {
+        // Count the servers other nodes started since the last rebuild, which also loads the options this start stored
+        final boolean held = reservations.containsKey(key(userId, servername));
+        load(true);
+
+        final Reservation reservation = new Reservation(userId, StringUtils.defaultString(projectId), taskTemplate);
+        final Reservation previous = reservations.get(key(userId, servername));
+
+        final ResourceUsage user = without(byUser.get(userId), previous);
+        final ResourceUsage project = without(byProject.get(reservation.projectId), previous != null && previous.projectId.equals(reservation.projectId) ? previous : null);
+
+        try {
+            check("your", user, reservation, jupyterHubPreferences.getUserCpuQuota(), jupyterHubPreferences.getUserMemoryQuota());
+            check("the project's", project, reservation, jupyterHubPreferences.getProjectCpuQuota(), jupyterHubPreferences.getProjectMemoryQuota());
+        } catch (ResourceQuotaExceededException e) {
+            // The rejected start removes its stored options unless they belong to a server holding a reservation
+            if (!held) {
+                remove(key(userId, servername));
+            }
+            throw e;
+        }
+
+        if (previous != null) {
+            remove(key(userId, servername));
+        }
+        add(key(userId, servername), reservation);
+    }
+
+    @Override
+    public synchronized boolean isReserved(final Integer userId, final String servername) {
+        load(false);
+        return reservations.containsKey(key(userId, servername));
+    }
+
+    @Override
+    public synchronized void release(final Integer userId, final String servername) {
+        load(false);
+        remove(key(userId, servername));
+    }
+
+    @Override
+    public synchronized ResourceUsage getUserUsage(final Integer userId) {
+        load(false);
+        return copy(byUser.get(userId));
+    }
+
+    @Override
+    public synchronized ResourceUsage getProjectUsage(final String projectId) {
+        load(false);
+        return copy(byProject.get(StringUtils.defaultString(projectId)));
+    }
+
+    @Override
+    public synchronized void reload() {
+        load(true);
+    }
+
+    @Override
+    public synchronized ResourceUsage getTotalUsage() {
+        load(false);
+        return copy(total);
+    }
+
+    @Override
+    public synchronized ResourceUsage getServerUsage(final Integer userId, final String servername) {
+        load(false);
+        final Reservation reservation = reservations.get(key(userId, servername));
+        return reservation == null ? new ResourceUsage() : new ResourceUsage(1, reservation.cpu, reservation.memoryBytes);
+    }
+
+    /**
+     * Parses a Docker style memory size, e.g. 512M or 4G, into bytes. Units are powers of 1024.
+     *
+     * @return The number of bytes, or -1 if the size can't be parsed
+     */
+    static long parseMemory(final String memory) {
+        if (StringUtils.isBlank(memory)) {
+            return -1;
+        }
+
+        final Matcher matcher = MEMORY.matcher(memory);
+        if (!matcher.matches()) {
+            return -1;
+        }
+
+        final int exponent = "bkmgtp".indexOf(StringUtils.defaultIfEmpty(matcher.group(2), "b").toLowerCase(Locale.ROOT));
+        return (long) (Double.parseDouble(matcher.group(1)) * Math.pow(1024, exponent));
+    }
+
+    private void check(final String whose, final ResourceUsage usage, final Reservation reservation,
+                       final String cpuQuota, final String memoryQuota) throws ResourceQuotaExceededException {
+        final double cpuLimit = NumberUtils.toDouble(StringUtils.trimToEmpty(cpuQuota), -1);
+        if (cpuLimit >= 0 && usage.getCpu() + reservation.cpu > cpuLimit + CPU_TOLERANCE) {
+            throw new ResourceQuotaExceededException(String.format("The server would reserve %s CPUs, exceeding %s quota of %s CPUs with %s already in use.",
+                                                                   format(reservation.cpu), whose, format(cpuLimit), format(usage.getCpu())));
+        }
+
+        final long memoryLimit = parseMemory(memoryQuota);
+        if (memoryLimit >= 0 && usage.getMemoryBytes() + reservation.memoryBytes > memoryLimit) {
+            throw new ResourceQuotaExceededException(String.format("The server would reserve %s of memory, exceeding %s quota of %s with %s already in use.",
+                                                                   formatMemory(reservation.memoryBytes), whose, formatMemory(memoryLimit), formatMemory(usage.getMemoryBytes())));
+        }
+    }
+
+    private void load(final boolean force) {
+        final long now = System.currentTimeMillis();
+        if (!force && loadedAt > 0 && now - loadedAt < RELOAD_INTERVAL) {
+            return;
+        }
+
+        final List<UserOptionsEntity> stored;
+        try {
+            stored = userOptionsEntityService.getAll();
+        } catch (Exception e) {
+            if (loadedAt > 0) {
+                log.warn("Unable to reload server resource reservations, keeping the ones loaded {} ms ago", now - loadedAt, e);
+            } else {
+                log.error("Unable to load server resource reservations, trying again on next use", e);
+            }
+            return;
+        }
+
+        reservations.clear();
+        byUser.clear();
+        byProject.clear();
+        total.setServers(0);
+        total.setCpu(0);
+        total.setMemoryBytes(0);
+        for (final UserOptionsEntity userOptions : stored) {
+            add(key(userOptions.getUserId(), userOptions.getServername()),
+                new Reservation(userOptions.getUserId(), StringUtils.defaultString(userOptions.getProjectId()), userOptions.getTaskTemplate()));
+        }
+        log.debug("Loaded {} server resource reservations", reservations.size());
+        loadedAt = now;
+    }
+
+    private void add(final String key, final Reservation reservation) {
+        reservations.put(key, reservation);
+        apply(byUser.computeIfAbsent(reservation.userId, id -> new ResourceUsage()), reservation, 1);
+        apply(byProject.computeIfAbsent(reservation.projectId, id -> new ResourceUsage()), reservation, 1);
+        apply(total, reservation, 1);
+    }
+
+    private void remove(final String key) {
+        final Reservation reservation = reservations.remove(key);
+        if (reservation == null) {
+            return;
+        }
+
+        apply(total, reservation, -1);
+
+        final ResourceUsage user = byUser.get(reservation.userId);
+        apply(user, reservation, -1);
+        if (user.getServers() <= 0) {
+            byUser.remove(reservation.userId);
+        }
+
+        final ResourceUsage project = byProject.get(reservation.projectId);
+        apply(project, reservation, -1);
+        if (project.getServers() <= 0) {
+            byProject.remove(reservation.projectId);
+        }
+    }
+
+    private static void apply(final ResourceUsage usage, final Reservation reservation, final int sign) {
+        usage.setServers(usage.getServers() + sign);
+        usage.setCpu(usage.getCpu() + sign * reservation.cpu);
+        usage.setMemoryBytes(usage.getMemoryBytes() + sign * reservation.memoryBytes);
+    }
+
+    private static ResourceUsage without(final ResourceUsage usage, final Reservation reservation) {
+        final ResourceUsage result = copy(usage);
+        if (reservation != null) {
+            apply(result, reservation, -1);
+        }
+        return result;
+    }
+
+    private static ResourceUsage copy(final ResourceUsage usage) {
+        return usage == null ? new ResourceUsage() : new ResourceUsage(usage.getServers(), usage.getCpu(), usage.getMemoryBytes());
+    }
+
+    private static String key(final Integer userId, final String servername) {
+        return userId + ":" + StringUtils.defaultString(servername);
+    }
+
+    private static String format(final double cpu) {
+        return String.format("%.2f", cpu).replaceAll("\\.?0+$", "");
+    }
+
+    private static String formatMemory(final long bytes) {
+        return format(bytes / (1024.0 * 1024 * 1024)) + "G";
+    }
+
+    private static final class Reservation {
+        private final Integer userId;
+        private final String projectId;
+        private final double cpu;
+        private final long memoryBytes;
+
+        private Reservation(final Integer userId, final String projectId, final TaskTemplate taskTemplate) {
+            final Resources resources = taskTemplate != null ? taskTemplate.getResources() : null;
+            this.userId = userId;
+            this.projectId = projectId;
+            this.cpu = resources != null && resources.getCpuReservation() != null ? resources.getCpuReservation() : 0;
+            this.memoryBytes = resources != null ? Math.max(0, parseMemory(resources.getMemReservation())) : 0;
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.utils.FileUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.SharedDataDeletion;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SharedDataDeletionQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The reaper asks the database for the journaled directories whose event tracking ID matches neither stored user
+ * options nor a persisted server operation, so each pass only touches the directories to remove. Directories younger
+ * than a grace period are left alone while their start may still be storing its user options, and directories of
+ * servers running on JupyterHub are kept even when a later start of the same server replaced their user options. The
+ * reconciliation lists the directories in the archive first, then reads the running servers from JupyterHub and the
+ * journal once each and checks every directory against both sets. A start journals its directory before creating it,
+ * so a listed directory of a start is always in the journal read after the listing. Directories younger than the grace
+ * period are skipped too. Directories are deleted in the background by the {@link SharedDataDeletionQueue}, a journal
+ * entry is only deleted once its whole directory is.
+ */
+@Service
+@Slf4j
+public class DefaultSharedDataDirectoryService implements SharedDataDirectoryService {
+
+    static final int REAP_BATCH_SIZE = 100;
+    private static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(10);
+
+    private final SharedDataDirectoryEntityService sharedDataDirectoryEntityService;
+    private final JupyterHubClient jupyterHubClient;
+    private final SiteConfigPreferences siteConfigPreferences;
+    private final SharedDataDeletionQueue sharedDataDeletionQueue;
+
+    @Autowired
+    public DefaultSharedDataDirectoryService(final SharedDataDirectoryEntityService sharedDataDirectoryEntityService,
+                                             final JupyterHubClient jupyterHubClient,
+                                             final SiteConfigPreferences siteConfigPreferences,
+                                             final SharedDataDeletionQueue sharedDataDeletionQueue) {
+        this.sharedDataDirectoryEntityService = sharedDataDirectoryEntityService;
+        this.jupyterHubClient = jupyterHubClient;
+        this.siteConfigPreferences = siteConfigPreferences;
+        this.sharedDataDeletionQueue = sharedDataDeletionQueue;
+    }
+
+    @Override
+    public Path record(final UserI user, final String eventTrackingId) {
+        final Path directory = directory(eventTrackingId);
+        try {
+            sharedDataDirectoryEntityService.create(SharedDataDirectoryEntity.builder()
+                                                                             .eventTrackingId(eventTrackingId)
+                                                                             .path(directory.toString())
+                                                                             .owner(user.getUsername())
+                                                                             .build());
+        } catch (RuntimeException e) {
+            // The reconciliation still finds the directory once its server is gone
+            log.warn("Failed to journal shared data directory {} of user {}", directory, user.getUsername(), e);
+        }
+        return directory;
+    }
+
+    @Override
+    public CompletableFuture<Void> remove(final String eventTrackingId) {
+        final List<SharedDataDirectoryEntity> entries = sharedDataDirectoryEntityService.findByEventTrackingId(eventTrackingId);
+        if (entries.isEmpty()) {
+            // Created before the journal existed
+            return delete(directory(eventTrackingId)).handle((deletion, e) -> null);
+        }
+        return CompletableFuture.allOf(entries.stream().map(this::remove).toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public int reap() {
+        final List<SharedDataDirectoryEntity> orphaned = sharedDataDirectoryEntityService.findOrphaned(new Date(System.currentTimeMillis() - GRACE_PERIOD),
+                                                                                                       REAP_BATCH_SIZE);
+        if (orphaned.isEmpty()) {
+            return 0;
+        }
+
+        final Set<String> running;
+        try {
+            running = running();
+        } catch (RuntimeException e) {
+            log.warn("Could not read the running servers from JupyterHub, shared data directories are reaped on the next pass", e);
+            return 0;
+        }
+
+        int queued = 0;
+        for (final SharedDataDirectoryEntity entry : orphaned) {
+            // Kept while its server runs with replaced user options, or while still being deleted since an earlier pass
+            if (!running.contains(entry.getEventTrackingId()) &&
+                !sharedDataDeletionQueue.isDeleting(sharedDataRoot().resolve(entry.getPath()))) {
+                remove(entry);
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} orphaned shared data directories for deletion", queued);
+        }
+        return queued;
+    }
+
+    @Override
+    public int reconcile() {
+        final Path baseDir = sharedDataRoot().resolve(JupyterHubPreferences.SHARED_PROJECT_STRING);
+        if (!Files.isDirectory(baseDir)) {
+            return 0;
+        }
+
+        // Listed before reading the journal, which then includes the directories of starts in progress
+        final long cutoff = System.currentTimeMillis() - GRACE_PERIOD;
+        final List<String> listed;
+        try (final Stream<Path> directories = Files.list(baseDir)) {
+            listed = directories.filter(directory -> isOlderThan(directory, cutoff))
+                                .map(directory -> directory.getFileName().toString())
+                                .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("Could not list shared data directories in {}", baseDir, e);
+            return 0;
+        }
+
+        final Set<String> running = running();
+        final Set<String> journaled = sharedDataDirectoryEntityService.getAll()
+                                                                      .stream()
+                                                                      .map(SharedDataDirectoryEntity::getEventTrackingId)
+                                                                      .collect(Collectors.toSet());
+
+        final List<String> unknown = listed.stream()
+                                           .filter(name -> !running.contains(name) && !journaled.contains(name))
+                                           .collect(Collectors.toList());
+
+        unknown.forEach(name -> delete(directory(name)));
+        log.info("Reconciled shared data directories, queued {} directories missing from the journal for deletion", unknown.size());
+        return unknown.size();
+    }
+
+    @Override
+    public List<SharedDataDeletion> getDeletions() {
+        return sharedDataDeletionQueue.getDeletions();
+    }
+
+    /**
+     * The event tracking IDs of the servers running on JupyterHub.
+     */
+    private Set<String> running() {
+        return jupyterHubClient.streamUsers(true)
+                               .flatMap(user -> user.getServers().values().stream())
+                               .filter(server -> server.getUser_options() != null)
+                               .map(server -> server.getUser_options().get("eventTrackingId"))
+                               .filter(Objects::nonNull)
+                               .collect(Collectors.toSet());
+    }
+
+    private static boolean isOlderThan(final Path directory, final long cutoff) {
+        try {
+            return Files.getLastModifiedTime(directory).toMillis() < cutoff;
+        } catch (IOException e) {
+            // Gone or unreadable, left for the next pass
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the journal entry once its directory is deleted, keeps it for the reaper to try again otherwise.
+     */
+    private CompletableFuture<Boolean> remove(final SharedDataDirectoryEntity entry) {
+        return delete(Paths.get(entry.getPath())).handle((deletion, e) -> {
+            if (e != null) {
+                return false;
+            }
+            try {
+                sharedDataDirectoryEntityService.delete(entry);
+                return true;
+            } catch (RuntimeException ex) {
+                log.warn("Failed to delete the journal entry of shared data directory {}", entry.getPath(), ex);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Queues a shared data directory for deletion. Paths outside the archive's jupyter-notebooks directory are refused.
+     *
+     * @param directory The directory, relative to the archive's shared data directory
+     */
+    private CompletableFuture<SharedDataDeletion> delete(final Path directory) {
+        final Path baseDir = sharedDataRoot().resolve(JupyterHubPreferences.SHARED_PROJECT_STRING).toAbsolutePath().normalize();
+        final Path tree = sharedDataRoot().resolve(directory).toAbsolutePath().normalize();
+        if (!tree.startsWith(baseDir) || tree.equals(baseDir)) {
+            log.error("Refusing to delete {}, it is not a shared data directory", tree);
+            return CompletableFuture.failedFuture(new IllegalArgumentException(tree + " is not a shared data directory"));
+        }
+
+        return sharedDataDeletionQueue.submit(tree).whenComplete((deletion, e) -> {
+            if (e != null) {
+                log.error("Failed to clean up shared data directory {}", directory, e);
+            }
+        });
+    }
+
+    private Path sharedDataRoot() {
+        return Paths.get(siteConfigPreferences.getArchivePath(), FileUtils.SHARED_PROJECT_DIRECTORY_STRING);
+    }
+
+    private Path directory(final String eventTrackingId) {
+        return Paths.get(JupyterHubPreferences.SHARED_PROJECT_STRING, eventTrackingId);
+    }
+
+}
@@ -0,0 +1,194 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.SpawnEstimate;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnDurationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Keeps the recent spawn durations of each compute environment and hardware configuration pair in memory, loaded from
+ * the database the first time a pair is used.
+ * <p>
+ * Readiness checks are dense around the expected ready time, from three quarters of the median spawn time until the
+ * 95th percentile. Before that window the wait until the next check halves as the window approaches, after it the wait
+ * doubles with each check. The start timeout is twice the 95th percentile, but never less than the startTimeoutFloor
+ * preference. Spawns which timed out count with the time waited for them, so once they make up more than 5% of the
+ * history the start timeout doubles past the one they exceeded instead of timing out every slow spawn again.
+ */
+@Service
+@Slf4j
+public class DefaultSpawnHistoryService implements SpawnHistoryService {
+
+    private static final long DENSE_POLL_MILLIS = 1000;
+    private static final long MAX_POLL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final SpawnDurationEntityService spawnDurationEntityService;
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    private final Map<String, Deque<Sample>> durations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DefaultSpawnHistoryService(final SpawnDurationEntityService spawnDurationEntityService,
+                                      final JupyterHubPreferences jupyterHubPreferences) {
+        this.spawnDurationEntityService = spawnDurationEntityService;
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public void recordSpawn(final Long computeEnvironmentConfigId, final Long hardwareConfigId, final long durationMillis) {
+        record(computeEnvironmentConfigId, hardwareConfigId, durationMillis, false);
+    }
+
+    @Override
+    public void recordTimeout(final Long computeEnvironmentConfigId, final Long hardwareConfigId, final long waitedMillis) {
+        record(computeEnvironmentConfigId, hardwareConfigId, waitedMillis, true);
+    }
+
+    @Override
+    public Optional<SpawnEstimate> getEstimate(final Long computeEnvironmentConfigId, final Long hardwareConfigId) {
+        if (computeEnvironmentConfigId == null || hardwareConfigId == null) {
+            return Optional.empty();
+        }
+
+        final Deque<Sample> history = history(computeEnvironmentConfigId, hardwareConfigId);
+        final long[] sorted;
+        final int timeouts;
+        synchronized (history) {
+            sorted = history.stream().mapToLong(sample -> sample.durationMillis).toArray();
+            timeouts = (int) history.stream().filter(sample -> sample.timedOut).count();
+        }
+
+        if (sorted.length == 0) {
+            return Optional.empty();
+        }
+
+        Arrays.sort(sorted);
+        return Optional.of(SpawnEstimate.builder()
+                                        .computeEnvironmentConfigId(computeEnvironmentConfigId)
+                                        .hardwareConfigId(hardwareConfigId)
+                                        .samples(sorted.length)
+                                        .timeouts(timeouts)
+                                        .p50Millis(percentile(sorted, 50))
+                                        .p95Millis(percentile(sorted, 95))
+                                        .build());
+    }
+
+    @Override
+    public long getStartTimeout(final Long computeEnvironmentConfigId, final Long hardwareConfigId) {
+        return learned(computeEnvironmentConfigId, hardwareConfigId)
+                .map(estimate -> Math.max(TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getStartTimeoutFloor()), 2 * estimate.getP95Millis()))
+                .orElseGet(() -> TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getStartTimeout()));
+    }
+
+    @Override
+    public LongUnaryOperator getReadinessSchedule(final Long computeEnvironmentConfigId, final Long hardwareConfigId) {
+        final Optional<SpawnEstimate> estimate = learned(computeEnvironmentConfigId, hardwareConfigId);
+
+        if (!estimate.isPresent()) {
+            final long interval = TimeUnit.SECONDS.toMillis(jupyterHubPreferences.getStartPollingInterval());
+            return elapsed -> interval;
+        }
+
+        final long windowStart = estimate.get().getP50Millis() * 3 / 4;
+        final long windowEnd = estimate.get().getP95Millis();
+
+        return elapsed -> {
+            if (elapsed < windowStart) {
+                return Math.max(DENSE_POLL_MILLIS, (windowStart - elapsed) / 2);
+            }
+            if (elapsed <= windowEnd) {
+                return DENSE_POLL_MILLIS;
+            }
+            return Math.min(MAX_POLL_MILLIS, Math.max(DENSE_POLL_MILLIS, elapsed - windowEnd));
+        };
+    }
+
+    /**
+     * The estimate of the pair, if enough spawns have been recorded to trust it. Never trusted if the minimum is 0.
+     */
+    private Optional<SpawnEstimate> learned(final Long computeEnvironmentConfigId, final Long hardwareConfigId) {
+        final int minSamples = jupyterHubPreferences.getSpawnHistoryMinSamples();
+        if (minSamples <= 0) {
+            return Optional.empty();
+        }
+        return getEstimate(computeEnvironmentConfigId, hardwareConfigId).filter(estimate -> estimate.getSamples() >= minSamples);
+    }
+
+    private void record(final Long computeEnvironmentConfigId, final Long hardwareConfigId, final long durationMillis, final boolean timedOut) {
+        if (computeEnvironmentConfigId == null || hardwareConfigId == null || durationMillis < 0) {
+            return;
+        }
+
+        final int size = historySize();
+        final Deque<Sample> history = history(computeEnvironmentConfigId, hardwareConfigId);
+        synchronized (history) {
+            history.addFirst(new Sample(durationMillis, timedOut));
+            while (history.size() > size) {
+                history.removeLast();
+            }
+        }
+
+        try {
+            spawnDurationEntityService.record(SpawnDurationEntity.builder()
+                                                                 .computeEnvironmentConfigId(computeEnvironmentConfigId)
+                                                                 .hardwareConfigId(hardwareConfigId)
+                                                                 .durationMillis(durationMillis)
+                                                                 .timedOut(timedOut)
+                                                                 .build(), size);
+        } catch (Exception e) {
+            log.warn("Unable to store spawn duration of compute environment config {} hardware config {}",
+                     computeEnvironmentConfigId, hardwareConfigId, e);
+        }
+    }
+
+    private Deque<Sample> history(final long computeEnvironmentConfigId, final long hardwareConfigId) {
+        return durations.computeIfAbsent(computeEnvironmentConfigId + ":" + hardwareConfigId, key -> {
+            final Deque<Sample> history = new ArrayDeque<>();
+            try {
+                final List<SpawnDurationEntity> recent = spawnDurationEntityService.findRecent(computeEnvironmentConfigId, hardwareConfigId, historySize());
+                recent.forEach(spawnDuration -> history.addLast(new Sample(spawnDuration.getDurationMillis(), Boolean.TRUE.equals(spawnDuration.getTimedOut()))));
+            } catch (Exception e) {
+                log.warn("Unable to load spawn history of compute environment config {} hardware config {}",
+                         computeEnvironmentConfigId, hardwareConfigId, e);
+            }
+            return history;
+        });
+    }
+
+    private int historySize() {
+        return Math.max(1, jupyterHubPreferences.getSpawnHistorySize());
+    }
+
+    /**
+     * Nearest rank percentile of sorted values.
+     */
+    private static long percentile(final long[] sorted, final int percentile) {
+        final int rank = (percentile * sorted.length + 99) / 100;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static final class Sample {
+        private final long durationMillis;
+        private final boolean timedOut;
+
+        private Sample(final long durationMillis, final boolean timedOut) {
+            this.durationMillis = durationMillis;
+            this.timedOut = timedOut;
+        }
+    }
+
+}
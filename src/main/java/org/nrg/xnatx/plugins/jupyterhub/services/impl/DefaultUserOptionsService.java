@@ -24,6 +24,7 @@ import org.nrg.xnat.exceptions.InvalidArchiveStructure;
 import org.nrg.framework.services.NrgEventServiceI;
 import org.nrg.xnat.utils.FileUtils;
 import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ServerStartRejectedException;
 import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
 import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
 import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
@@ -31,10 +32,12 @@ import org.nrg.xnatx.plugins.jupyterhub.models.docker.Mount;
 import org.nrg.xnatx.plugins.jupyterhub.models.docker.*;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.DashboardJobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserWorkspaceService;
 import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+import org.nrg.xnatx.plugins.jupyterhub.utils.StageGraph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
@@ -46,6 +49,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
@@ -63,6 +67,7 @@ public class DefaultUserOptionsService implements UserOptionsService {
     private final JobTemplateService jobTemplateService;
     private final DashboardJobTemplateService dashboardJobTemplateService;
     private final NrgEventServiceI eventService;
+    private final SharedDataDirectoryService sharedDataDirectoryService;
 
     @Autowired
     public DefaultUserOptionsService(final JupyterHubPreferences jupyterHubPreferences,
@@ -74,7 +79,8 @@ public class DefaultUserOptionsService implements UserOptionsService {
                                      final PermissionsHelper permissionsHelper,
                                      @Qualifier("defaultJobTemplateService") final JobTemplateService jobTemplateService,
                                      final DashboardJobTemplateService dashboardJobTemplateService,
-                                     final NrgEventServiceI eventService) {
+                                     final NrgEventServiceI eventService,
+                                     final SharedDataDirectoryService sharedDataDirectoryService) {
         this.jupyterHubPreferences = jupyterHubPreferences;
         this.userWorkspaceService = userWorkspaceService;
         this.searchHelperService = searchHelperService;
@@ -85,6 +91,7 @@ public class DefaultUserOptionsService implements UserOptionsService {
         this.jobTemplateService = jobTemplateService;
         this.dashboardJobTemplateService = dashboardJobTemplateService;
         this.eventService = eventService;
+        this.sharedDataDirectoryService = sharedDataDirectoryService;
     }
 
     public Map<String, String> getProjectPaths(final UserI user, final List<String> projectIds) throws BaseXnatExperimentdata.UnknownPrimaryProjectException, DBPoolException, SQLException, InvalidArchiveStructure, IOException {
@@ -129,7 +136,7 @@ public class DefaultUserOptionsService implements UserOptionsService {
                                     JupyterServerEventI.Operation.Start, 25,
                                     String.format("Preparing data for project %s (contains shared data) — %,d files to be %s. This may take a moment.",
                                             projectId, fileCount, mode)));
-                            Path sharedLinksDirectory = Paths.get(JupyterHubPreferences.SHARED_PROJECT_STRING, eventTrackingId);
+                            Path sharedLinksDirectory = sharedDataDirectoryService.record(user, eventTrackingId);
                             final long startTime = System.nanoTime();
                             IntConsumer progressCallback = processed -> {
                                 long elapsedSec = (System.nanoTime() - startTime) / 1_000_000_000;
@@ -345,36 +352,143 @@ public class DefaultUserOptionsService implements UserOptionsService {
     @Override
     public void storeUserOptions(UserI user, String servername, String xsiType, String id, String projectId,
                                  Long computeEnvironmentConfigId, Long hardwareConfigId, Long dashboardConfigId, String eventTrackingId) throws BaseXnatExperimentdata.UnknownPrimaryProjectException, DBPoolException, SQLException, InvalidArchiveStructure, IOException {
-        log.debug("Storing user options for user '{}' server '{}' xsiType '{}' id '{}' projectId '{}'",
-                  user.getUsername(), servername, xsiType, id, projectId);
-
-        if (!permissionsHelper.canRead(user, projectId, id, xsiType)) {
-            return;
-        }
-
-        // Resolve the job template before resolving the paths
-        Map<Scope, String> executionScope = new HashMap<>();
-        executionScope.put(Scope.Project, projectId);
-        executionScope.put(Scope.User, user.getUsername());
-        executionScope.put(Scope.DataType, xsiType);
+        // Standalone callers run the stages in order on the calling thread, gated by the permission check
+        final StageGraph graph = new StageGraph(Runnable::run);
+        final StageGraph.Stage<Void> authorized = graph.stage("permissions", () -> {
+            if (!permissionsHelper.canRead(user, projectId, id, xsiType)) {
+                throw new ServerStartRejectedException("Permission denied to read " + xsiType + " " + id + " in project " + projectId);
+            }
+            return null;
+        });
 
-        JobTemplate jobTemplate;
+        storeUserOptions(graph, user, servername, xsiType, id, projectId, computeEnvironmentConfigId, hardwareConfigId,
+                         dashboardConfigId, eventTrackingId, Collections.singletonList(authorized));
 
-        if (dashboardConfigId != null) {
-            // The dashboard resolver supersedes the compute environment command,
-            // enabling the initiation of the dashboard rather than Jupyter Lab
-            jobTemplate = dashboardJobTemplateService.resolve(dashboardConfigId, computeEnvironmentConfigId, hardwareConfigId, executionScope);
-        } else {
-            jobTemplate = jobTemplateService.resolve(computeEnvironmentConfigId, hardwareConfigId, executionScope);
+        try {
+            graph.completion().join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof ServerStartRejectedException) {
+                return;
+            } else if (cause instanceof BaseXnatExperimentdata.UnknownPrimaryProjectException) {
+                throw (BaseXnatExperimentdata.UnknownPrimaryProjectException) cause;
+            } else if (cause instanceof DBPoolException) {
+                throw (DBPoolException) cause;
+            } else if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof InvalidArchiveStructure) {
+                throw (InvalidArchiveStructure) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
         }
+    }
+
+    /**
+     * Adds the stages which build and store the user options of a server to a server start. The job template, the data
+     * paths, the user workspace and the alias token for the container environment are independent of each other and
+     * run concurrently once the start's checks passed. The paths are where shared project data is prepared, so they are
+     * never resolved for a start which is going to be rejected.
+     *
+     * @param graph The stages of the server start.
+     * @param gates The checks which must pass before any user options are built.
+     *
+     * @return The stage storing the user options.
+     */
+    @Override
+    public StageGraph.Stage<Void> storeUserOptions(StageGraph graph, UserI user, String servername, String xsiType, String id, String projectId,
+                                                  Long computeEnvironmentConfigId, Long hardwareConfigId, Long dashboardConfigId, String eventTrackingId,
+                                                  List<StageGraph.Stage<?>> gates) {
+        log.debug("Storing user options for user '{}' server '{}' xsiType '{}' id '{}' projectId '{}'",
+                  user.getUsername(), servername, xsiType, id, projectId);
 
         // specific xsi type -> general xsi type
-        if (instanceOf(xsiType, XnatExperimentdata.SCHEMA_ELEMENT_NAME)) {
-            xsiType = XnatExperimentdata.SCHEMA_ELEMENT_NAME;
-        } else if (instanceOf(xsiType, XnatImagescandata.SCHEMA_ELEMENT_NAME)) {
-            xsiType = XnatImagescandata.SCHEMA_ELEMENT_NAME;
-        }
+        final StageGraph.Stage<String> generalXsiType = graph.stage("xsiType", () -> {
+            if (instanceOf(xsiType, XnatExperimentdata.SCHEMA_ELEMENT_NAME)) {
+                return XnatExperimentdata.SCHEMA_ELEMENT_NAME;
+            } else if (instanceOf(xsiType, XnatImagescandata.SCHEMA_ELEMENT_NAME)) {
+                return XnatImagescandata.SCHEMA_ELEMENT_NAME;
+            }
+            return xsiType;
+        });
+
+        final List<StageGraph.Stage<?>> gatesAndXsiType = new ArrayList<>(gates);
+        gatesAndXsiType.add(generalXsiType);
+
+        final StageGraph.Stage<JobTemplate> jobTemplate = graph.stage("jobTemplate", () -> {
+            Map<Scope, String> executionScope = new HashMap<>();
+            executionScope.put(Scope.Project, projectId);
+            executionScope.put(Scope.User, user.getUsername());
+            executionScope.put(Scope.DataType, xsiType);
+
+            if (dashboardConfigId != null) {
+                // The dashboard resolver supersedes the compute environment command,
+                // enabling the initiation of the dashboard rather than Jupyter Lab
+                return dashboardJobTemplateService.resolve(dashboardConfigId, computeEnvironmentConfigId, hardwareConfigId, executionScope);
+            } else {
+                return jobTemplateService.resolve(computeEnvironmentConfigId, hardwareConfigId, executionScope);
+            }
+        }, gates);
+
+        final StageGraph.Stage<Map<String, String>> paths = graph.stage("paths", () -> getPaths(user, generalXsiType.get(), id, projectId, eventTrackingId), gatesAndXsiType);
+        final StageGraph.Stage<Path> workspacePath = graph.stage("workspace", () -> userWorkspaceService.getUserWorkspace(user), gates);
+        final StageGraph.Stage<Map<String, String>> environmentVariables = graph.stage("token", () -> getDefaultEnvironmentVariables(user, generalXsiType.get(), id), gatesAndXsiType);
+
+        return graph.stage("userOptions", () -> {
+            // Add user workspace mount
+            final Mount userNotebookDirectoryMount = Mount.builder()
+                    .source(translateWorkspacePath(workspacePath.get().toString()))
+                    .target(Paths.get("/workspace", user.getUsername()).toString())
+                    .type("bind")
+                    .readOnly(false)
+                    .build();
+
+            // Add xnat data mounts
+            final List<Mount> xnatDataMounts = paths.get().entrySet().stream()
+                    .map((entry) -> Mount.builder()
+                            .source(translateArchivePath(entry.getValue()))
+                            .target(Paths.get(entry.getKey()).toString())
+                            .type("bind")
+                            .readOnly(true)
+                            .build())
+                    .collect(Collectors.toList());
+
+            // Collect mounts
+            final List<Mount> mounts = new ArrayList<>(Collections.emptyList());
+            mounts.add(userNotebookDirectoryMount);
+            mounts.addAll(xnatDataMounts);
+
+            // Add mounts
+            TaskTemplate taskTemplate = toTaskTemplate(jobTemplate.get());
+            taskTemplate.getContainerSpec().getMounts().addAll(mounts);
+
+            // Add env variables
+            taskTemplate.getContainerSpec().getEnv().putAll(environmentVariables.get());
+
+            // Store the user options
+            UserOptionsEntity userOptionsEntity = UserOptionsEntity.builder()
+                    .userId(user.getID())
+                    .servername(servername)
+                    .xsiType(generalXsiType.get())
+                    .itemId(id)
+                    .projectId(projectId)
+                    .eventTrackingId(eventTrackingId)
+                    .taskTemplate(taskTemplate)
+                    .build();
+
+            userOptionsEntityService.createOrUpdate(userOptionsEntity);
+            return null;
+        }, jobTemplate, paths, workspacePath, environmentVariables);
+    }
 
+    /**
+     * Resolves the archive paths to mount for the item, keyed by their path in the container.
+     */
+    private Map<String, String> getPaths(final UserI user, final String xsiType, final String id, final String projectId,
+                                         final String eventTrackingId) throws BaseXnatExperimentdata.UnknownPrimaryProjectException, DBPoolException, SQLException, InvalidArchiveStructure, IOException {
         Map<String, String> paths = new HashMap<>();
 
         switch (xsiType) {
@@ -400,52 +514,7 @@ public class DefaultUserOptionsService implements UserOptionsService {
             }
         }
 
-        // Gather mounts
-        final Path workspacePath = userWorkspaceService.getUserWorkspace(user);
-
-        // Add user workspace mount
-        final Mount userNotebookDirectoryMount = Mount.builder()
-                .source(translateWorkspacePath(workspacePath.toString()))
-                .target(Paths.get("/workspace", user.getUsername()).toString())
-                .type("bind")
-                .readOnly(false)
-                .build();
-
-        // Add xnat data mounts
-        final List<Mount> xnatDataMounts = paths.entrySet().stream()
-                .map((entry) -> Mount.builder()
-                        .source(translateArchivePath(entry.getValue()))
-                        .target(Paths.get(entry.getKey()).toString())
-                        .type("bind")
-                        .readOnly(true)
-                        .build())
-                .collect(Collectors.toList());
-
-        // Collect mounts
-        final List<Mount> mounts = new ArrayList<>(Collections.emptyList());
-        mounts.add(userNotebookDirectoryMount);
-        mounts.addAll(xnatDataMounts);
-
-        // Add mounts
-        TaskTemplate taskTemplate = toTaskTemplate(jobTemplate);
-        taskTemplate.getContainerSpec().getMounts().addAll(mounts);
-
-        // Get and add env variables
-        Map<String, String> environmentVariables = getDefaultEnvironmentVariables(user, xsiType, id);
-        taskTemplate.getContainerSpec().getEnv().putAll(environmentVariables);
-
-        // Store the user options
-        UserOptionsEntity userOptionsEntity = UserOptionsEntity.builder()
-                .userId(user.getID())
-                .servername(servername)
-                .xsiType(xsiType)
-                .itemId(id)
-                .projectId(projectId)
-                .eventTrackingId(eventTrackingId)
-                .taskTemplate(taskTemplate)
-                .build();
-
-        userOptionsEntityService.createOrUpdate(userOptionsEntity);
+        return paths;
     }
 
     @Override
@@ -0,0 +1,65 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.LeaderLeaseEntity;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.LeaderLeaseDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.LeaderLeaseEntityService;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.Optional;
+
+@Service
+@Transactional
+@Slf4j
+public class HibernateLeaderLeaseEntityService extends AbstractHibernateEntityService<LeaderLeaseEntity, LeaderLeaseDao> implements LeaderLeaseEntityService {
+
+    // For testing
+    public HibernateLeaderLeaseEntityService(final LeaderLeaseDao dao) {
+        super();
+        setDao(dao);
+    }
+
+    /**
+     * Finds the lease with the given name.
+     * @param name The lease name.
+     * @return The lease, if any node has ever held it.
+     */
+    @Override
+    public Optional<LeaderLeaseEntity> findByName(final String name) {
+        return getDao().findByName(name);
+    }
+
+    /**
+     * Takes or renews the lease. The first node to ask for a lease creates it, a node creating it concurrently fails on
+     * the unique lease name when the transaction commits.
+     * @param name    The lease name.
+     * @param holder  The node ID of the caller.
+     * @param expires The new expiry of the lease.
+     * @return True if the caller holds the lease until the given expiry.
+     */
+    @Override
+    public boolean acquire(final String name, final String holder, final Date expires) {
+        if (getDao().renew(name, holder, new Date(), expires)) {
+            return true;
+        }
+        if (getDao().findByName(name).isPresent()) {
+            return false;
+        }
+        create(LeaderLeaseEntity.builder().name(name).holder(holder).expires(expires).build());
+        return true;
+    }
+
+    /**
+     * Expires the lease if the caller holds it.
+     * @param name   The lease name.
+     * @param holder The node ID of the caller.
+     */
+    @Override
+    public void release(final String name, final String holder) {
+        getDao().release(name, holder, new Date());
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.PrestartScheduleDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartScheduleEntityService;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Service
+@Transactional
+@Slf4j
+public class HibernatePrestartScheduleEntityService extends AbstractHibernateEntityService<PrestartScheduleEntity, PrestartScheduleDao> implements PrestartScheduleEntityService {
+
+    // For testing
+    public HibernatePrestartScheduleEntityService(final PrestartScheduleDao dao) {
+        super();
+        setDao(dao);
+    }
+
+    /**
+     * Finds the scheduled pre-starts which are due to be launched.
+     * @param now The current time.
+     * @return The pre-starts still scheduled with a start time at or before now, oldest first.
+     */
+    @Override
+    public List<PrestartScheduleEntity> findDue(final Date now) {
+        return getDao().findDue(now);
+    }
+
+    /**
+     * Finds the launched pre-starts whose servers are still exempt from culling.
+     * @param now The current time.
+     * @return The running or completed pre-starts with a cull exemption ending after now.
+     */
+    @Override
+    public List<PrestartScheduleEntity> findCullExempt(final Date now) {
+        return getDao().findCullExempt(now);
+    }
+
+    /**
+     * Finds the running pre-starts whose ramp has made no progress for some time.
+     * @param heartbeatBefore The time before which the ramp last made progress.
+     * @return The abandoned pre-starts, oldest first.
+     */
+    @Override
+    public List<PrestartScheduleEntity> findAbandoned(final Date heartbeatBefore) {
+        return getDao().findAbandoned(heartbeatBefore);
+    }
+
+    /**
+     * Claims a due pre-start, only one node succeeds.
+     * @param id  The ID of the pre-start.
+     * @param now The current time.
+     * @return True if the caller claimed the pre-start and should launch it.
+     */
+    @Override
+    public boolean claim(final Long id, final Date now) {
+        return getDao().claim(id, now);
+    }
+
+    /**
+     * Takes over an abandoned ramp, only one node succeeds.
+     * @param id        The ID of the pre-start.
+     * @param heartbeat The heartbeat the ramp was found abandoned with.
+     * @param now       The current time.
+     * @return True if the caller took over the ramp and should resume it.
+     */
+    @Override
+    public boolean reclaim(final Long id, final Date heartbeat, final Date now) {
+        return getDao().reclaim(id, heartbeat, now);
+    }
+
+    /**
+     * Records the progress of a running ramp.
+     * @param id       The ID of the pre-start.
+     * @param position The number of users whose start has been sent.
+     * @param started  True if the start was sent, false if it was skipped or rejected.
+     * @param now      The current time.
+     */
+    @Override
+    public void progress(final Long id, final int position, final boolean started, final Date now) {
+        getDao().progress(id, position, started ? 1 : 0, now);
+    }
+
+    /**
+     * Sets the status of a pre-start, if it has one of the expected statuses.
+     * @param id       The ID of the pre-start.
+     * @param status   The new status.
+     * @param expected The statuses the pre-start may have.
+     * @return True if the status was changed.
+     */
+    @Override
+    public boolean setStatus(final Long id, final PrestartSchedule.Status status, final Collection<PrestartSchedule.Status> expected) {
+        return getDao().setStatus(id, status, expected);
+    }
+
+    /**
+     * Stores the resolved users of a pre-start, if it is still running.
+     * @param id        The ID of the pre-start.
+     * @param usernames The users of the ramp.
+     * @return True if the users were stored.
+     */
+    @Override
+    public boolean setUsernames(final Long id, final List<String> usernames) {
+        return getDao().setUsernames(id, usernames);
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.ServerOperationDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.ServerOperationEntityService;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Transactional
+@Slf4j
+public class HibernateServerOperationEntityService extends AbstractHibernateEntityService<ServerOperationEntity, ServerOperationDao> implements ServerOperationEntityService {
+
+    // For testing
+    public HibernateServerOperationEntityService(final ServerOperationDao dao) {
+        super();
+        setDao(dao);
+    }
+
+    /**
+     * Finds the persisted operation with the given event tracking ID.
+     * @param eventTrackingId The event tracking ID of the request which started the operation.
+     * @return The operation, if it has not ended.
+     */
+    @Override
+    public Optional<ServerOperationEntity> findByEventTrackingId(final String eventTrackingId) {
+        return getDao().findByEventTrackingId(eventTrackingId);
+    }
+
+    /**
+     * Finds the operations run by an XNAT node.
+     * @param node The node ID.
+     * @return The operations of the node, oldest first.
+     */
+    @Override
+    public List<ServerOperationEntity> findByNode(final String node) {
+        return getDao().findByNode(node);
+    }
+
+    /**
+     * Finds the operations of other XNAT nodes which should have ended some time ago.
+     * @param node   The node ID of the caller, whose operations are excluded.
+     * @param before The deadline the operations have passed.
+     * @return The abandoned operations, oldest first.
+     */
+    @Override
+    public List<ServerOperationEntity> findAbandoned(final String node, final Date before) {
+        return getDao().findAbandoned(node, before);
+    }
+
+    /**
+     * Deletes the persisted operation with the given event tracking ID, if any.
+     * @param eventTrackingId The event tracking ID of the request which started the operation.
+     */
+    @Override
+    public void deleteByEventTrackingId(final String eventTrackingId) {
+        findByEventTrackingId(eventTrackingId).ifPresent(this::delete);
+    }
+
+}
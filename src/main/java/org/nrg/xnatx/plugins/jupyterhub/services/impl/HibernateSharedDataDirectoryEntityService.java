@@ -0,0 +1,46 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.SharedDataDirectoryDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryEntityService;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
+
+@Service
+@Transactional
+@Slf4j
+public class HibernateSharedDataDirectoryEntityService extends AbstractHibernateEntityService<SharedDataDirectoryEntity, SharedDataDirectoryDao> implements SharedDataDirectoryEntityService {
+
+    // For testing
+    public HibernateSharedDataDirectoryEntityService(final SharedDataDirectoryDao dao) {
+        super();
+        setDao(dao);
+    }
+
+    /**
+     * Finds the journal entries of the shared data directories created for a server start.
+     * @param eventTrackingId The event tracking ID of the start.
+     * @return The journal entries, usually at most one.
+     */
+    @Override
+    public List<SharedDataDirectoryEntity> findByEventTrackingId(final String eventTrackingId) {
+        return getDao().findByEventTrackingId(eventTrackingId);
+    }
+
+    /**
+     * Finds the oldest directories which no running server or server operation in flight refers to.
+     * @param createdBefore Only directories created before this time.
+     * @param limit         The maximum number of directories to return.
+     * @return The orphaned directories, oldest first.
+     */
+    @Override
+    public List<SharedDataDirectoryEntity> findOrphaned(final Date createdBefore, final int limit) {
+        return getDao().findOrphaned(createdBefore, limit);
+    }
+
+}
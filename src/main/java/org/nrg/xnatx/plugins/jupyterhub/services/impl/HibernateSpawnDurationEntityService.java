@@ -0,0 +1,56 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.framework.orm.hibernate.AbstractHibernateEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.SpawnDurationDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnDurationEntityService;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.List;
+
+@Service
+@Transactional
+@Slf4j
+public class HibernateSpawnDurationEntityService extends AbstractHibernateEntityService<SpawnDurationEntity, SpawnDurationDao> implements SpawnDurationEntityService {
+
+    // For testing
+    public HibernateSpawnDurationEntityService(final SpawnDurationDao dao) {
+        super();
+        setDao(dao);
+    }
+
+    /**
+     * Finds the most recent spawn durations of a compute environment and hardware configuration pair.
+     * @param computeEnvironmentConfigId The compute environment config ID.
+     * @param hardwareConfigId           The hardware config ID.
+     * @param max                        The maximum number of durations to return.
+     * @return The spawn durations, newest first.
+     */
+    @Override
+    public List<SpawnDurationEntity> findRecent(final long computeEnvironmentConfigId, final long hardwareConfigId, final int max) {
+        return getDao().findRecent(computeEnvironmentConfigId, hardwareConfigId, max);
+    }
+
+    /**
+     * Stores a spawn duration and deletes the older durations of the same pair beyond the most recent ones kept.
+     * @param spawnDuration The spawn duration to store.
+     * @param keep          The number of recent durations to keep for the pair.
+     */
+    @Override
+    public void record(final SpawnDurationEntity spawnDuration, final int keep) {
+        create(spawnDuration);
+
+        final long computeEnvironmentConfigId = spawnDuration.getComputeEnvironmentConfigId();
+        final long hardwareConfigId = spawnDuration.getHardwareConfigId();
+        final List<SpawnDurationEntity> kept = findRecent(computeEnvironmentConfigId, hardwareConfigId, Math.max(1, keep));
+
+        if (kept.size() >= keep) {
+            final int deleted = getDao().deleteBefore(computeEnvironmentConfigId, hardwareConfigId, kept.get(kept.size() - 1).getId());
+            log.debug("Deleted {} old spawn durations of compute environment config {} hardware config {}",
+                      deleted, computeEnvironmentConfigId, hardwareConfigId);
+        }
+    }
+
+}
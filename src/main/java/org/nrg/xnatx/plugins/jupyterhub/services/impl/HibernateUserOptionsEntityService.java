@@ -9,15 +9,25 @@ import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class HibernateUserOptionsEntityService extends AbstractHibernateEntityService<UserOptionsEntity, UserOptionsDao> implements UserOptionsEntityService {
 
+    // For testing
+    public HibernateUserOptionsEntityService(final UserOptionsDao dao) {
+        super();
+        setDao(dao);
+    }
+
     /**
      * Creates or updates the provided user options
      * @param userOptionsEntity the user options entity to create or update
@@ -70,4 +80,37 @@ public class HibernateUserOptionsEntityService extends AbstractHibernateEntitySe
 
         return Optional.of(serverConfigEntities.get(0));
     }
+
+    /**
+     * Finds a page of user options.
+     * @param afterId Only user options with a greater ID.
+     * @param limit   The maximum number of user options to return.
+     * @return The user options, ordered by ID.
+     */
+    @Override
+    @Transactional
+    public List<UserOptionsEntity> findAfter(final long afterId, final int limit) {
+        return getDao().findAfter(afterId, limit);
+    }
+
+    /**
+     * Deletes the given user options in a single statement, except those stored since a given time or belonging to a
+     * server operation in flight.
+     * @param ids            The IDs of the user options.
+     * @param modifiedBefore Only user options last stored before this time are deleted.
+     * @return The user options deleted.
+     */
+    @Override
+    @Transactional
+    public List<UserOptionsEntity> deleteStale(final Collection<Long> ids, final Date modifiedBefore) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<UserOptionsEntity> stale = getDao().findStale(ids, modifiedBefore);
+        if (!stale.isEmpty()) {
+            getDao().deleteByIds(stale.stream().map(UserOptionsEntity::getId).collect(Collectors.toList()));
+        }
+        return stale;
+    }
 }
@@ -0,0 +1,52 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.CullPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Culls servers without activity for longer than the inactivity timeout.
+ */
+@Service
+@Slf4j
+public class InactivityCullPolicy implements CullPolicy {
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    @Autowired
+    public InactivityCullPolicy(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public String getName() {
+        return "inactivity";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return jupyterHubPreferences.getInactivityTimeout() > 0;
+    }
+
+    @Override
+    public Optional<String> evaluate(final String username, final String servername, final Server server, final ZonedDateTime now) {
+        if (server.getLast_activity() == null) {
+            return Optional.empty();
+        }
+
+        final long timeout = jupyterHubPreferences.getInactivityTimeout();
+        final long inactiveTime = ChronoUnit.MINUTES.between(server.getLast_activity(), now);
+        if (inactiveTime > timeout) {
+            return Optional.of("Inactive for " + inactiveTime + " minutes, the inactivity timeout is " + timeout + " minutes.");
+        }
+        return Optional.empty();
+    }
+
+}
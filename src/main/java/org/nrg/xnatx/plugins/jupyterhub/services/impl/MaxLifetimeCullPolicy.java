@@ -0,0 +1,52 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.CullPolicy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+/**
+ * Culls servers running for the max server lifetime or longer, active or not.
+ */
+@Service
+@Slf4j
+public class MaxLifetimeCullPolicy implements CullPolicy {
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+
+    @Autowired
+    public MaxLifetimeCullPolicy(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+    }
+
+    @Override
+    public String getName() {
+        return "maxLifetime";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return jupyterHubPreferences.getMaxServerLifetime() > 0;
+    }
+
+    @Override
+    public Optional<String> evaluate(final String username, final String servername, final Server server, final ZonedDateTime now) {
+        if (server.getStarted() == null) {
+            return Optional.empty();
+        }
+
+        final long maxLifetime = jupyterHubPreferences.getMaxServerLifetime();
+        final long runningTime = ChronoUnit.HOURS.between(server.getStarted(), now);
+        if (runningTime >= maxLifetime) {
+            return Optional.of("Running for " + runningTime + " hours, the max server lifetime is " + maxLifetime + " hours.");
+        }
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.models.LifecycleStats;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread pool for server start and stop orchestration, so a burst of launches or a cull cannot starve the JVM common
+ * pool shared with the rest of XNAT. The pool has hubLifecycleThreads named platform threads.
+ * <p>
+ * Admission: new operations are submitted through {@link #operations()} and rejected with a
+ * {@link RejectedExecutionException} while hubLifecycleQueueCapacity tasks are already waiting. Continuations of
+ * operations which were already admitted run on the executor itself and are never rejected, so an admitted start or
+ * stop always gets to finish.
+ */
+@Slf4j
+public class JupyterHubLifecycleExecutor implements Executor {
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+    private final Executor operations = this::admit;
+
+    public JupyterHubLifecycleExecutor(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+
+        final int threads = threads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new LifecycleThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs a continuation of an admitted operation.
+     */
+    @Override
+    public void execute(final Runnable task) {
+        resize();
+        executor.execute(task);
+    }
+
+    /**
+     * @return Executor for starting new operations, applies the admission policy
+     */
+    public Executor operations() {
+        return operations;
+    }
+
+    public LifecycleStats getStats() {
+        return LifecycleStats.builder()
+                             .threads(executor.getPoolSize())
+                             .activeTasks(executor.getActiveCount())
+                             .queued(executor.getQueue().size())
+                             .completedTasks(executor.getCompletedTaskCount())
+                             .rejected(rejected.sum())
+                             .build();
+    }
+
+    /**
+     * Stops the pool. Called by Spring when the plugin context is shut down.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void admit(final Runnable task) {
+        final int capacity = jupyterHubPreferences.getHubLifecycleQueueCapacity();
+        if (capacity > 0 && executor.getQueue().size() >= capacity) {
+            rejected.increment();
+            log.warn("Rejecting JupyterHub server operation, {} lifecycle tasks are already waiting", executor.getQueue().size());
+            throw new RejectedExecutionException("XNAT is busy with other Jupyter server starts and stops.");
+        }
+        execute(task);
+    }
+
+    /**
+     * Applies changes to the hubLifecycleThreads preference.
+     */
+    private void resize() {
+        final int threads = threads();
+        if (threads != executor.getMaximumPoolSize()) {
+            log.info("Resizing JupyterHub lifecycle pool to {} threads", threads);
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    private int threads() {
+        return Math.max(1, jupyterHubPreferences.getHubLifecycleThreads());
+    }
+
+    private static final class LifecycleThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "jupyterhub-lifecycle-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
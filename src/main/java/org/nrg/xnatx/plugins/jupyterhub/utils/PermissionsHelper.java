@@ -2,6 +2,9 @@ package org.nrg.xnatx.plugins.jupyterhub.utils;
 
 import org.nrg.xft.security.UserI;
 
+import java.util.List;
+
 public interface PermissionsHelper {
     boolean canRead(UserI user, String projectId, String entityId, String xsiType);
+    List<String> getProjectMembers(UserI user, String projectId);
 }
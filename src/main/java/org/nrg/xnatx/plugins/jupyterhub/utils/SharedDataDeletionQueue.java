@@ -0,0 +1,326 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nrg.xnatx.plugins.jupyterhub.models.SharedDataDeletion;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background deletion of shared data directory trees, which hold hundreds of thousands of hard links or copies, so
+ * deleting several at once does not saturate the metadata operations of the archive file system.
+ * <p>
+ * Each directory of a tree is listed by its own task, which deletes the files and queues a task for each subdirectory,
+ * so the subtrees of a large tree and several trees are walked in parallel by the sharedDataDeletionThreads workers. A
+ * directory is deleted by the task finishing its last child. Every listing and delete takes a token from a bucket
+ * shared by all workers, which refills at sharedDataDeletionRate tokens per second up to a burst of one second's worth.
+ * Symbolic links are deleted, never followed.
+ * <p>
+ * A tree submitted while it is being deleted is not deleted twice. The progress of the trees being deleted and of the
+ * last finished ones is kept for {@link #getDeletions()}.
+ */
+@Slf4j
+public class SharedDataDeletionQueue {
+
+    private static final int FINISHED_KEPT = 50;
+
+    private final JupyterHubPreferences jupyterHubPreferences;
+    private final ThreadPoolExecutor executor;
+    private final Map<Path, Tree> active = new LinkedHashMap<>();
+    private final Deque<SharedDataDeletion> finished = new ArrayDeque<>();
+
+    private double tokens = Double.MAX_VALUE; // Capped to the burst on the first refill
+    private long lastRefill = System.nanoTime();
+
+    public SharedDataDeletionQueue(final JupyterHubPreferences jupyterHubPreferences) {
+        this.jupyterHubPreferences = jupyterHubPreferences;
+
+        final int threads = threads();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new DeletionThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a tree for deletion.
+     *
+     * @param directory The absolute path of the tree
+     *
+     * @return Completes with the final progress of the tree once it is deleted or no longer exists. Fails with an
+     * {@link IOException} if any entry could not be deleted.
+     */
+    public CompletableFuture<SharedDataDeletion> submit(final Path directory) {
+        final Path root = directory.toAbsolutePath().normalize();
+        final Tree tree;
+        synchronized (active) {
+            final Tree existing = active.get(root);
+            if (existing != null) {
+                return existing.result;
+            }
+            tree = new Tree(root);
+            active.put(root, tree);
+        }
+
+        log.debug("Queued deletion of shared data directory {}", root);
+        schedule(tree, () -> {
+            tree.started = new Date();
+            if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+                delete(tree, root, false);
+                finish(tree);
+                return;
+            }
+            walk(tree, new Node(root, null));
+        });
+        return tree.result;
+    }
+
+    /**
+     * @return True if the tree is queued or being deleted
+     */
+    public boolean isDeleting(final Path directory) {
+        synchronized (active) {
+            return active.containsKey(directory.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * @return The progress of the trees being deleted, then of the last finished ones, most recent first
+     */
+    public List<SharedDataDeletion> getDeletions() {
+        final List<SharedDataDeletion> deletions = new ArrayList<>();
+        synchronized (active) {
+            active.values().forEach(tree -> deletions.add(tree.snapshot()));
+            deletions.addAll(finished);
+        }
+        return deletions;
+    }
+
+    /**
+     * Stops the workers. Trees not deleted yet are left for the reaper. Called by Spring when the plugin context is
+     * shut down.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Lists a directory, deletes its files and queues its subdirectories.
+     */
+    private void walk(final Tree tree, final Node node) {
+        throttle();
+        try (final DirectoryStream<Path> entries = Files.newDirectoryStream(node.directory)) {
+            for (final Path entry : entries) {
+                if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                    final Node child = new Node(entry, node);
+                    node.pending.incrementAndGet();
+                    schedule(tree, () -> walk(tree, child));
+                } else {
+                    delete(tree, entry, false);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted by someone else
+        } catch (IOException | RuntimeException e) {
+            tree.fail(node.directory, e);
+        }
+        done(tree, node);
+    }
+
+    /**
+     * Deletes the directory once its listing and all its subdirectories are done, then tells its parent.
+     */
+    private void done(final Tree tree, final Node node) {
+        Node current = node;
+        while (current != null && current.pending.decrementAndGet() == 0) {
+            delete(tree, current.directory, true);
+            if (current.parent == null) {
+                finish(tree);
+            }
+            current = current.parent;
+        }
+    }
+
+    private void delete(final Tree tree, final Path path, final boolean directory) {
+        throttle();
+        try {
+            if (Files.deleteIfExists(path)) {
+                (directory ? tree.directories : tree.files).incrementAndGet();
+            }
+        } catch (IOException e) {
+            tree.fail(path, e);
+        }
+    }
+
+    private void schedule(final Tree tree, final Runnable task) {
+        resize();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    tree.fail(tree.root, e);
+                    finish(tree);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            tree.fail(tree.root, e);
+            finish(tree);
+        }
+    }
+
+    private void finish(final Tree tree) {
+        final SharedDataDeletion deletion;
+        synchronized (active) {
+            if (active.get(tree.root) != tree) {
+                return;
+            }
+            tree.finished = new Date();
+            deletion = tree.snapshot();
+            active.remove(tree.root);
+            finished.addFirst(deletion);
+            while (finished.size() > FINISHED_KEPT) {
+                finished.removeLast();
+            }
+        }
+
+        if (deletion.getFailures() > 0) {
+            log.warn("Deleted shared data directory {} with {} failures, last: {}", tree.root, deletion.getFailures(), deletion.getLastError());
+            tree.result.completeExceptionally(new IOException("Failed to delete " + deletion.getFailures() + " entries of " + tree.root + ": " + deletion.getLastError()));
+        } else {
+            log.info("Deleted shared data directory {}, {} files and {} directories at {} entries per second", tree.root,
+                     deletion.getFiles(), deletion.getDirectories(), String.format("%.0f", deletion.getEntriesPerSecond()));
+            tree.result.complete(deletion);
+        }
+    }
+
+    /**
+     * Waits for a token. Tokens are reserved in call order, a caller finding the bucket empty waits until its token is
+     * due.
+     */
+    private void throttle() {
+        final long wait;
+        synchronized (this) {
+            final int rate = jupyterHubPreferences.getSharedDataDeletionRate();
+            if (rate <= 0) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            tokens = Math.min(rate, tokens + (now - lastRefill) / 1e9 * rate) - 1;
+            lastRefill = now;
+            wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Applies changes to the sharedDataDeletionThreads preference.
+     */
+    private void resize() {
+        final int threads = threads();
+        if (threads != executor.getMaximumPoolSize()) {
+            log.info("Resizing shared data deletion pool to {} threads", threads);
+            if (threads > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(threads);
+                executor.setCorePoolSize(threads);
+            } else {
+                executor.setCorePoolSize(threads);
+                executor.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    private int threads() {
+        return Math.max(1, jupyterHubPreferences.getSharedDataDeletionThreads());
+    }
+
+    private static final class Node {
+
+        private final Path directory;
+        private final Node parent;
+        private final AtomicInteger pending = new AtomicInteger(1); // Its own listing, plus one per subdirectory
+
+        private Node(final Path directory, final Node parent) {
+            this.directory = directory;
+            this.parent = parent;
+        }
+    }
+
+    private static final class Tree {
+
+        private final Path root;
+        private final Date queued = new Date();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong directories = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final CompletableFuture<SharedDataDeletion> result = new CompletableFuture<>();
+        private volatile String lastError;
+        private volatile Date started;
+        private volatile Date finished;
+
+        private Tree(final Path root) {
+            this.root = root;
+        }
+
+        private void fail(final Path path, final Exception e) {
+            failures.incrementAndGet();
+            lastError = path + ": " + e;
+            log.debug("Failed to delete {}", path, e);
+        }
+
+        private SharedDataDeletion snapshot() {
+            final Date start = started;
+            final Date end = finished;
+            final long entries = files.get() + directories.get();
+            final long elapsed = start == null ? 0 : (end != null ? end.getTime() : System.currentTimeMillis()) - start.getTime();
+            return SharedDataDeletion.builder()
+                                     .path(root.toString())
+                                     .status(end != null ? (failures.get() > 0 ? SharedDataDeletion.Status.Failed : SharedDataDeletion.Status.Completed)
+                                                         : (start != null ? SharedDataDeletion.Status.Running : SharedDataDeletion.Status.Queued))
+                                     .files(files.get())
+                                     .directories(directories.get())
+                                     .failures(failures.get())
+                                     .lastError(lastError)
+                                     .queued(queued)
+                                     .started(start)
+                                     .finished(end)
+                                     .entriesPerSecond(elapsed > 0 ? entries * 1000.0 / elapsed : 0)
+                                     .build();
+        }
+    }
+
+    private static final class DeletionThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "jupyterhub-shared-data-deletion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
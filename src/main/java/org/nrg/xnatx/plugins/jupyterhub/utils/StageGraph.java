@@ -0,0 +1,204 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the stages of an operation as a dependency graph. A stage is started on the executor as soon as the stages it
+ * depends on have completed, so stages which do not depend on each other run concurrently.
+ * <p>
+ * The graph is structured: the first stage to fail cancels the others. Stages which have not started yet are skipped
+ * and running stages are interrupted. {@link #completion()} does not complete before every stage has finished or been
+ * skipped, so no stage outlives the operation. The time spent in each stage is recorded.
+ */
+@Slf4j
+public class StageGraph {
+
+    private final Executor executor;
+    private final List<Stage<?>> stages = new ArrayList<>();
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final long started = System.nanoTime();
+    private CompletableFuture<Void> completion;
+
+    public StageGraph(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Adds a stage to the graph.
+     *
+     * @param name      Name of the stage, used in the timings.
+     * @param task      The work of the stage. May read the results of the stages it depends on.
+     * @param dependsOn The stages which must complete before this stage starts.
+     *
+     * @return The stage.
+     */
+    public synchronized <T> Stage<T> stage(final String name, final Callable<T> task, final Stage<?>... dependsOn) {
+        return stage(name, task, Arrays.asList(dependsOn));
+    }
+
+    /**
+     * Adds a stage to the graph.
+     *
+     * @param name      Name of the stage, used in the timings.
+     * @param task      The work of the stage. May read the results of the stages it depends on.
+     * @param dependsOn The stages which must complete before this stage starts.
+     *
+     * @return The stage.
+     */
+    public synchronized <T> Stage<T> stage(final String name, final Callable<T> task, final Collection<Stage<?>> dependsOn) {
+        if (completion != null) {
+            throw new IllegalStateException("Cannot add stage " + name + " to a graph which is already awaited");
+        }
+
+        final Stage<T> stage = new Stage<>(name);
+        stages.add(stage);
+
+        CompletableFuture.allOf(dependsOn.stream().map(dependency -> dependency.result).toArray(CompletableFuture[]::new))
+                         .whenComplete((ignored, throwable) -> {
+                             if (throwable != null || failure.get() != null) {
+                                 stage.result.completeExceptionally(new CancellationException("Skipped stage " + name));
+                                 return;
+                             }
+
+                             try {
+                                 executor.execute(() -> run(stage, task));
+                             } catch (RuntimeException e) {
+                                 fail(e);
+                                 stage.result.completeExceptionally(e);
+                             }
+                         });
+
+        return stage;
+    }
+
+    /**
+     * Completes when every stage has finished. Completes exceptionally with the first failure if a stage failed. No
+     * stages can be added afterwards.
+     */
+    public synchronized CompletableFuture<Void> completion() {
+        if (completion == null) {
+            completion = CompletableFuture.allOf(stages.stream().map(stage -> stage.result).toArray(CompletableFuture[]::new))
+                                          .handle((ignored, throwable) -> {
+                                              final Throwable cause = failure.get();
+                                              if (cause != null) {
+                                                  throw new CompletionException(cause);
+                                              }
+                                              return null;
+                                          });
+        }
+        return completion;
+    }
+
+    /**
+     * @return Milliseconds spent in each stage which ran, in the order the stages finished.
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /**
+     * @return Milliseconds since the graph was created.
+     */
+    public long getElapsed() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private <T> void run(final Stage<T> stage, final Callable<T> task) {
+        if (!stage.begin()) {
+            stage.result.completeExceptionally(new CancellationException("Skipped stage " + stage.name));
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final T value = task.call();
+            stage.end();
+            record(stage, start);
+            stage.result.complete(value);
+        } catch (Throwable e) {
+            stage.end();
+            record(stage, start);
+            fail(e);
+            stage.result.completeExceptionally(e);
+        }
+    }
+
+    private void record(final Stage<?> stage, final long start) {
+        synchronized (timings) {
+            timings.put(stage.name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void fail(final Throwable throwable) {
+        if (failure.compareAndSet(null, throwable)) {
+            final List<Stage<?>> cancel;
+            synchronized (this) {
+                cancel = new ArrayList<>(stages);
+            }
+            cancel.forEach(Stage::cancel);
+        } else {
+            log.debug("Stage failed after the graph was cancelled", throwable);
+        }
+    }
+
+    /**
+     * A stage of the graph. Its result can be read by the stages depending on it.
+     */
+    public static final class Stage<T> {
+
+        private final String name;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private Thread runner;
+        private boolean cancelled;
+
+        private Stage(final String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The result of the stage. Only call from a stage depending on this one.
+         */
+        public T get() {
+            return result.join();
+        }
+
+        private synchronized boolean begin() {
+            if (cancelled) {
+                return false;
+            }
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        private synchronized void end() {
+            runner = null;
+            // Don't leave a cancellation interrupt behind on the pool thread
+            Thread.interrupted();
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (runner != null && runner != Thread.currentThread()) {
+                runner.interrupt();
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,8 @@
 package org.nrg.xnatx.plugins.jupyterhub.utils;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
 public interface SystemHelper {
 
     default String getEnv(String name) {
@@ -10,4 +13,20 @@ public interface SystemHelper {
         return System.getenv().getOrDefault(name, defaultValue);
     }
 
+    /**
+     * Identifies this XNAT node among the nodes sharing the database. Set JH_XNAT_NODE_ID when the host names of the
+     * nodes are not unique or not stable across restarts.
+     */
+    default String getNodeId() {
+        final String nodeId = getEnv("JH_XNAT_NODE_ID");
+        if (nodeId != null && !nodeId.isEmpty()) {
+            return nodeId;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
 }
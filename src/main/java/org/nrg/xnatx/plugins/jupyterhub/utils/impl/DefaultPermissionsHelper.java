@@ -10,6 +10,11 @@ import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 @Slf4j
 public class DefaultPermissionsHelper implements PermissionsHelper {
@@ -24,6 +29,29 @@ public class DefaultPermissionsHelper implements PermissionsHelper {
         this.permissionsService = permissionsService;
     }
 
+    /**
+     * The usernames of the owners, members and collaborators of a project.
+     *
+     * @param user      The user looking up the project.
+     * @param projectId The ID of the project.
+     *
+     * @return The usernames of the users in the project's groups, or an empty list if the project cannot be found.
+     */
+    @Override
+    public List<String> getProjectMembers(final UserI user, final String projectId) {
+        final XnatProjectdata project = XnatProjectdata.getXnatProjectdatasById(projectId, user, false);
+        if (project == null) {
+            log.warn("Could not find project \"{}\" to look up its members", projectId);
+            return new ArrayList<>();
+        }
+
+        final Set<String> usernames = new LinkedHashSet<>();
+        usernames.addAll(project.getOwners());
+        usernames.addAll(project.getMembers());
+        usernames.addAll(project.getCollaborators());
+        return new ArrayList<>(usernames);
+    }
+
     /**
      * Can the user read a stored search, a project, or the subject or experiment within the context of the project.
      *
@@ -0,0 +1,210 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubApiException;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultAsyncJupyterHubClientTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private HubCircuitBreaker circuitBreaker;
+    private HubRequestLimiter requestLimiter;
+    private DefaultAsyncJupyterHubClient client;
+
+    private HttpServer hub;
+    private HttpServer newHub;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger newHubRequests = new AtomicInteger();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void before() throws Exception {
+        hub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        hub.createContext("/hub/api/users", exchange -> {
+            requests.incrementAndGet();
+            final byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status.get(), body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        hub.createContext("/hub/api/users/slow", exchange -> {
+            entered.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] body = "{\"name\": \"slow\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        hub.createContext("/hub/api/users/alice/tokens", exchange -> {
+            final byte[] body = "{\"token\": \"secret\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(201, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        hub.start();
+
+        newHub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        newHub.createContext("/hub/api/users", exchange -> {
+            newHubRequests.incrementAndGet();
+            final byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        newHub.start();
+
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn("http://localhost:" + hub.getAddress().getPort() + "/hub/api");
+        when(mockJupyterHubPreferences.getJupyterHubToken()).thenReturn("token");
+        when(mockJupyterHubPreferences.getHubClientConnectTimeout()).thenReturn(2);
+        when(mockJupyterHubPreferences.getHubClientReadTimeout()).thenReturn(2);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerFailureThreshold()).thenReturn(2);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(60);
+
+        // A single attempt per request
+        final HubRetryPolicy mockRetryPolicy = mock(HubRetryPolicy.class);
+        when(mockRetryPolicy.executeAsync(anyString(), any())).thenAnswer(invocation -> ((Supplier<CompletableFuture<?>>) invocation.getArgument(1)).get());
+
+        circuitBreaker = new HubCircuitBreaker(mockJupyterHubPreferences);
+        requestLimiter = spy(new HubRequestLimiter(mockJupyterHubPreferences));
+        client = new DefaultAsyncJupyterHubClient(mockJupyterHubPreferences, circuitBreaker, mockRetryPolicy, requestLimiter);
+    }
+
+    @After
+    public void after() {
+        proceed.countDown();
+        client.close();
+        hub.stop(0);
+        newHub.stop(0);
+    }
+
+    @Test(timeout = 10000)
+    public void testServerErrorsOpenCircuitBreaker() {
+        status.set(503);
+
+        assertFailsWith(JupyterHubApiException.class);
+        assertFailsWith(JupyterHubApiException.class);
+        assertEquals(HubCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // Fails fast without reaching the hub
+        assertFailsWith(JupyterHubUnavailableException.class);
+        assertEquals(2, requests.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testSuccessClosesCircuitBreaker() {
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(0);
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertEquals(HubCircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // The trial request succeeds
+        assertTrue(client.getUsers().join().isEmpty());
+        assertEquals(HubCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+    }
+
+    @Test(timeout = 10000)
+    public void testConnectionFailuresCount() throws Exception {
+        final int closedPort;
+        try (final ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn("http://localhost:" + closedPort + "/hub/api");
+
+        assertFailsWith(Exception.class);
+
+        assertEquals(1, circuitBreaker.getConsecutiveFailures());
+    }
+
+    @Test(timeout = 10000)
+    public void testClientErrorsDoNotCount() {
+        status.set(403);
+        circuitBreaker.recordFailure();
+
+        assertFailsWith(JupyterHubApiException.class);
+
+        assertEquals(HubCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+    }
+
+    @Test(timeout = 10000)
+    public void testRebuildDrainsRequestsInFlight() throws Exception {
+        when(mockJupyterHubPreferences.getHubClientReadMaxConcurrent()).thenReturn(1);
+        final DefaultAsyncJupyterHubClient.HubConnection old = client.connection();
+        old.release();
+
+        // One request in flight to the old hub, and one waiting behind it in the read pool
+        final CompletableFuture<Optional<User>> inFlight = client.getUser("slow");
+        entered.await();
+        final CompletableFuture<List<User>> queued = client.getUsers();
+        circuitBreaker.recordFailure();
+
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn("http://localhost:" + newHub.getAddress().getPort() + "/hub/api");
+        client.connection().release();
+        assertFalse(old.isClosed());
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+
+        proceed.countDown();
+        assertEquals("slow", inFlight.join().map(User::getName).orElse(null));
+        assertTrue(queued.join().isEmpty());
+
+        // The queued request went to the new hub once admitted
+        assertEquals(0, requests.get());
+        assertEquals(1, newHubRequests.get());
+        assertTrue(old.isClosed());
+        assertEquals(0, circuitBreaker.getConsecutiveFailures());
+    }
+
+    @Test(timeout = 10000)
+    public void testTokensShareSpawnPool() {
+        final Token token = client.createToken("alice", Token.builder().note("test").build()).join();
+
+        assertEquals("secret", token.getToken());
+        verify(requestLimiter).submit(eq(HubRequestLimiter.Pool.SPAWN), any(), isNull());
+    }
+
+    private void assertFailsWith(final Class<? extends Throwable> type) {
+        try {
+            client.getUsers().join();
+            fail("Expected " + type.getSimpleName());
+        } catch (CompletionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+
+}
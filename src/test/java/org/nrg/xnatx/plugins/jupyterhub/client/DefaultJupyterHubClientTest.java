@@ -0,0 +1,121 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Hub;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultJupyterHubClientTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private DefaultJupyterHubClient client;
+
+    private HttpServer oldHub;
+    private HttpServer newHub;
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    @Before
+    public void before() throws Exception {
+        oldHub = hub("1.0.0", true);
+        newHub = hub("2.0.0", false);
+
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn(apiUrl(oldHub));
+        when(mockJupyterHubPreferences.getJupyterHubToken()).thenReturn("token");
+        when(mockJupyterHubPreferences.getHubClientMaxConnections()).thenReturn(10);
+        when(mockJupyterHubPreferences.getHubClientMaxConnectionsPerRoute()).thenReturn(10);
+        when(mockJupyterHubPreferences.getHubClientConnectTimeout()).thenReturn(2);
+        when(mockJupyterHubPreferences.getHubClientReadTimeout()).thenReturn(5);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerFailureThreshold()).thenReturn(5);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(60);
+
+        // A single attempt per request
+        final HubRetryPolicy mockRetryPolicy = mock(HubRetryPolicy.class);
+        when(mockRetryPolicy.execute(anyString(), any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(1)).get());
+
+        client = new DefaultJupyterHubClient(mockJupyterHubPreferences, new HubCircuitBreaker(mockJupyterHubPreferences),
+                                             mockRetryPolicy, new HubRequestLimiter(mockJupyterHubPreferences));
+    }
+
+    @After
+    public void after() {
+        proceed.countDown();
+        client.close();
+        oldHub.stop(0);
+        newHub.stop(0);
+    }
+
+    @Test(timeout = 10000)
+    public void testReplacedConnectionDrainsBeforeClosing() throws Exception {
+        final DefaultJupyterHubClient.HubConnection old = client.connection();
+        old.release();
+
+        final CompletableFuture<Hub> inFlight = CompletableFuture.supplyAsync(() -> client.getVersion());
+        entered.await();
+
+        // The API URL changes while a request to the old hub is in flight
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn(apiUrl(newHub));
+        assertEquals("2.0.0", client.getVersion().getVersion());
+        assertFalse(old.isClosed());
+
+        proceed.countDown();
+        assertEquals("1.0.0", inFlight.join().getVersion());
+        assertTrue(old.isClosed());
+    }
+
+    @Test(timeout = 10000)
+    public void testIdleConnectionClosedOnChange() {
+        final DefaultJupyterHubClient.HubConnection old = client.connection();
+        old.release();
+
+        when(mockJupyterHubPreferences.getJupyterHubApiUrl()).thenReturn(apiUrl(newHub));
+        final DefaultJupyterHubClient.HubConnection replacement = client.connection();
+        replacement.release();
+
+        assertNotSame(old, replacement);
+        assertTrue(old.isClosed());
+        assertFalse(old.acquire());
+    }
+
+    private HttpServer hub(final String version, final boolean slow) throws IOException {
+        final HttpServer hub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        hub.createContext("/hub/api/", exchange -> {
+            if (slow) {
+                entered.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final byte[] body = ("{\"version\": \"" + version + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        hub.start();
+        return hub;
+    }
+
+    private static String apiUrl(final HttpServer hub) {
+        return "http://localhost:" + hub.getAddress().getPort() + "/hub/api";
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HubCircuitBreakerTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private HubCircuitBreaker circuitBreaker;
+
+    @Before
+    public void before() {
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerFailureThreshold()).thenReturn(3);
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(30);
+        circuitBreaker = new HubCircuitBreaker(mockJupyterHubPreferences);
+    }
+
+    @Test
+    public void testOpensAfterThreshold() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertEquals(HubCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.acquire();
+
+        circuitBreaker.recordFailure();
+        assertEquals(HubCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test(expected = JupyterHubUnavailableException.class)
+    public void testFailsFastWhenOpen() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        circuitBreaker.acquire();
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        assertEquals(HubCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getConsecutiveFailures());
+    }
+
+    @Test
+    public void testHalfOpenAllowsSingleTrial() {
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(0);
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        // Open duration elapsed, one trial request is let through
+        circuitBreaker.acquire();
+        assertEquals(HubCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        try {
+            circuitBreaker.acquire();
+            fail("Only one trial request should be allowed while half open");
+        } catch (JupyterHubUnavailableException e) {
+            // Expected
+        }
+
+        // Trial succeeds
+        circuitBreaker.recordSuccess();
+        assertEquals(HubCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenFailureReopens() {
+        when(mockJupyterHubPreferences.getHubCircuitBreakerOpenDuration()).thenReturn(0);
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+
+        circuitBreaker.acquire();
+        circuitBreaker.recordFailure();
+
+        assertEquals(HubCircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+}
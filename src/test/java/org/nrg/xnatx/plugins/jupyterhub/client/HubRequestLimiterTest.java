@@ -0,0 +1,91 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HubRequestLimiterTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private HubRequestLimiter limiter;
+
+    @Before
+    public void before() {
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubClientSpawnMaxConcurrent()).thenReturn(2);
+        when(mockJupyterHubPreferences.getHubClientSpawnRate()).thenReturn(0);
+        when(mockJupyterHubPreferences.getHubClientReadMaxConcurrent()).thenReturn(0);
+        when(mockJupyterHubPreferences.getHubClientReadRate()).thenReturn(0);
+        when(mockJupyterHubPreferences.getHubClientReadTimeout()).thenReturn(5);
+        limiter = new HubRequestLimiter(mockJupyterHubPreferences);
+    }
+
+    @Test(timeout = 5000)
+    public void testConcurrencyLimit() {
+        final List<CompletableFuture<String>> hubResponses = new ArrayList<>();
+        final List<Integer> queuedAhead = new ArrayList<>();
+        final List<CompletableFuture<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            final CompletableFuture<String> hubResponse = new CompletableFuture<>();
+            hubResponses.add(hubResponse);
+            results.add(limiter.submit(HubRequestLimiter.Pool.SPAWN, () -> hubResponse, queuedAhead::add));
+        }
+
+        // Two requests admitted, two waiting
+        assertEquals(2, (int) limiter.getQueued().get("SPAWN"));
+        assertEquals(0, (int) limiter.getQueued().get("READ"));
+        assertEquals(2, queuedAhead.size());
+        assertEquals(0, (int) queuedAhead.get(0));
+        assertEquals(1, (int) queuedAhead.get(1));
+
+        // Finishing a request admits the next one
+        hubResponses.get(0).complete("first");
+        assertEquals("first", results.get(0).join());
+        assertEquals(1, (int) limiter.getQueued().get("SPAWN"));
+
+        hubResponses.get(1).completeExceptionally(new RuntimeException("hub error"));
+        assertTrue(results.get(1).isCompletedExceptionally());
+        assertEquals(0, (int) limiter.getQueued().get("SPAWN"));
+
+        hubResponses.get(2).complete("third");
+        hubResponses.get(3).complete("fourth");
+        assertEquals("third", results.get(2).join());
+        assertEquals("fourth", results.get(3).join());
+    }
+
+    @Test(timeout = 5000)
+    public void testRateLimit() {
+        when(mockJupyterHubPreferences.getHubClientDeleteMaxConcurrent()).thenReturn(0);
+        when(mockJupyterHubPreferences.getHubClientDeleteRate()).thenReturn(10);
+
+        final long start = System.nanoTime();
+        final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            results.add(limiter.submit(HubRequestLimiter.Pool.DELETE, () -> CompletableFuture.completedFuture(true), null));
+        }
+
+        // A burst of 10 goes out right away, the rest at 10 per second
+        assertFalse(results.get(14).isDone());
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    @Test
+    public void testExecuteBlocking() {
+        assertEquals("user", limiter.execute(HubRequestLimiter.Pool.READ, () -> "user"));
+        assertEquals(0, (int) limiter.getQueued().get("READ"));
+    }
+
+}
@@ -0,0 +1,159 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubApiException;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HubRetryPolicyTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private HubRetryPolicy retryPolicy;
+
+    @Before
+    public void before() {
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubClientMaxRetries()).thenReturn(3);
+        when(mockJupyterHubPreferences.getHubClientRetryBaseDelay()).thenReturn(1);
+        when(mockJupyterHubPreferences.getHubClientRetryMaxDelay()).thenReturn(10);
+        when(mockJupyterHubPreferences.getHubClientRetryBudgetPercent()).thenReturn(10);
+        retryPolicy = new HubRetryPolicy(mockJupyterHubPreferences);
+    }
+
+    @Test
+    public void testRetriesTransientFailures() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String result = retryPolicy.execute("GET /users/{name}", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                // The blocking client wraps request failures
+                throw new RuntimeException(new HttpServerErrorException(HttpStatus.BAD_GATEWAY));
+            }
+            return "user";
+        });
+
+        assertEquals("user", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, retryPolicy.getRetries());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retryPolicy.execute("GET /users/{name}", () -> {
+                attempts.incrementAndGet();
+                throw new ResourceAccessException("Connection refused");
+            });
+            fail("Expected the last failure to be thrown");
+        } catch (ResourceAccessException e) {
+            assertEquals(4, attempts.get());
+        }
+    }
+
+    @Test
+    public void testDoesNotRetryClientErrors() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retryPolicy.execute("GET /users/{name}", () -> {
+                attempts.incrementAndGet();
+                throw new HttpClientErrorException(HttpStatus.FORBIDDEN);
+            });
+            fail("Expected the failure to be thrown");
+        } catch (HttpClientErrorException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void testRetryAfterLongerThanMaxDelay() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "120");
+
+        try {
+            retryPolicy.execute("GET /users", () -> {
+                attempts.incrementAndGet();
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, null, null);
+            });
+            fail("Expected the failure to be thrown");
+        } catch (HttpClientErrorException e) {
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    public void testRetryBudget() {
+        when(mockJupyterHubPreferences.getHubClientMaxRetries()).thenReturn(100);
+        when(mockJupyterHubPreferences.getHubClientRetryBudgetPercent()).thenReturn(0);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retryPolicy.execute("GET /info", () -> {
+                attempts.incrementAndGet();
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            });
+            fail("Expected the failure to be thrown");
+        } catch (HttpServerErrorException e) {
+            // Only the reserve of the budget is available
+            assertEquals(11, attempts.get());
+        }
+
+        // Budget is per endpoint
+        assertEquals("ok", retryPolicy.execute("GET /users", () -> {
+            if (attempts.incrementAndGet() < 13) {
+                throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            return "ok";
+        }));
+    }
+
+    @Test
+    public void testExecuteAsync() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final Boolean result = retryPolicy.executeAsync("DELETE /users/{name}/server", () -> attempts.incrementAndGet() < 2 ?
+                                                                                             CompletableFuture.<Boolean>failedFuture(new JupyterHubApiException(503, "Unavailable.", "0")) :
+                                                                                             CompletableFuture.completedFuture(true))
+                                          .join();
+
+        assertTrue(result);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testIsTransient() {
+        assertTrue(HubRetryPolicy.isTransient(new JupyterHubApiException(429, "Slow down.")));
+        assertTrue(HubRetryPolicy.isTransient(new RuntimeException(new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT))));
+        assertFalse(HubRetryPolicy.isTransient(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+        assertFalse(HubRetryPolicy.isTransient(new IllegalStateException()));
+    }
+
+    @Test
+    public void testParseRetryAfter() {
+        assertEquals(Duration.ofSeconds(5), HubRetryPolicy.parseRetryAfter("5"));
+        assertEquals(Duration.ZERO, HubRetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertNull(HubRetryPolicy.parseRetryAfter("soon"));
+        assertNull(HubRetryPolicy.parseRetryAfter(null));
+    }
+
+}
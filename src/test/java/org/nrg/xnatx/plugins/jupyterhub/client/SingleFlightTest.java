@@ -0,0 +1,98 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @Test(timeout = 5000)
+    public void testConcurrentCallsShareResult() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger invocations = new AtomicInteger();
+        final Object result = new Object();
+
+        final CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("user", () -> {
+            invocations.incrementAndGet();
+            await(release);
+            return result;
+        }));
+        waitForCalls(singleFlight, 1);
+
+        final CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("user", () -> {
+            invocations.incrementAndGet();
+            return new Object();
+        }));
+        waitForCalls(singleFlight, 2);
+        release.countDown();
+
+        assertSame(result, first.get());
+        assertSame(result, second.get());
+        assertEquals(1, invocations.get());
+        assertEquals(1, singleFlight.getCoalesced());
+    }
+
+    @Test(timeout = 5000)
+    public void testConcurrentCallsShareException() throws Exception {
+        final SingleFlight singleFlight = new SingleFlight();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> singleFlight.execute("user", () -> {
+            await(release);
+            throw new IllegalStateException("hub down");
+        }));
+        waitForCalls(singleFlight, 1);
+
+        final CompletableFuture<Object> second = CompletableFuture.supplyAsync(() -> singleFlight.execute("user", Object::new));
+        waitForCalls(singleFlight, 2);
+        release.countDown();
+
+        for (CompletableFuture<Object> call : new CompletableFuture[]{first, second}) {
+            try {
+                call.join();
+                fail("Expected the hub failure to be shared");
+            } catch (Exception e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @Test
+    public void testSequentialCallsAreNotCached() {
+        final SingleFlight singleFlight = new SingleFlight();
+        final AtomicInteger invocations = new AtomicInteger();
+
+        singleFlight.execute("user", invocations::incrementAndGet);
+        singleFlight.execute("user", invocations::incrementAndGet);
+        singleFlight.execute("other", invocations::incrementAndGet);
+
+        assertEquals(3, invocations.get());
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    private static void waitForCalls(final SingleFlight singleFlight, final long calls) throws InterruptedException {
+        while (singleFlight.getCalls() < calls) {
+            Thread.sleep(10);
+        }
+        // Give the joining thread time to reach the in-flight future
+        Thread.sleep(50);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
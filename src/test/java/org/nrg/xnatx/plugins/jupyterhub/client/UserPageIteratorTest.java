@@ -0,0 +1,57 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class UserPageIteratorTest {
+
+    private static final List<User> USERS = IntStream.range(0, 5)
+                                                     .mapToObj(i -> User.builder().name("user" + i).build())
+                                                     .collect(Collectors.toList());
+
+    @Test
+    public void testIteratesAllPages() {
+        final List<Integer> requestedOffsets = new ArrayList<>();
+        final UserPageIterator iterator = new UserPageIterator((offset, limit) -> {
+            requestedOffsets.add(offset);
+            final int end = Math.min(USERS.size(), offset + limit);
+            return new UserPageIterator.Page(USERS.subList(offset, end), end < USERS.size() ? end : null);
+        }, 2);
+
+        final List<String> names = new ArrayList<>();
+        iterator.forEachRemaining(user -> names.add(user.getName()));
+
+        assertEquals(Arrays.asList("user0", "user1", "user2", "user3", "user4"), names);
+        assertEquals(Arrays.asList(0, 2, 4), requestedOffsets);
+    }
+
+    @Test
+    public void testStopsOnEmptyPage() {
+        final List<Integer> requestedOffsets = new ArrayList<>();
+        final UserPageIterator iterator = new UserPageIterator((offset, limit) -> {
+            requestedOffsets.add(offset);
+            return new UserPageIterator.Page(Collections.emptyList(), offset + limit);
+        }, 2);
+
+        assertFalse(iterator.hasNext());
+        assertEquals(Collections.singletonList(0), requestedOffsets);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextWhenExhausted() {
+        final UserPageIterator iterator = new UserPageIterator((offset, limit) -> new UserPageIterator.Page(null, null), 2);
+        iterator.next();
+    }
+
+}
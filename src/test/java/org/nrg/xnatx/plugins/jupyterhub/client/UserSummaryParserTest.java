@@ -0,0 +1,156 @@
+package org.nrg.xnatx.plugins.jupyterhub.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UserSummaryParserTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final UserSummaryParser parser = new UserSummaryParser(objectMapper.getFactory());
+
+    private static final String USER_JSON = "{" +
+            "\"kind\": \"user\", \"name\": \"andy\", \"admin\": false, \"roles\": [\"user\"], \"groups\": [], " +
+            "\"server\": \"/jupyterhub/user/andy/\", \"pending\": null, \"last_activity\": \"2023-03-15T18:46:27.640283Z\", " +
+            "\"auth_state\": {\"nested\": {\"deeply\": [1, 2, 3]}}, " +
+            "\"servers\": {" +
+            "  \"\": {\"name\": \"\", \"last_activity\": \"2023-03-15T18:46:27.640283Z\", \"started\": \"2023-03-15T18:40:00.000000Z\", " +
+            "        \"pending\": null, \"ready\": true, \"stopped\": false, \"url\": \"/jupyterhub/user/andy/\", " +
+            "        \"user_options\": {\"xsiType\": \"xnat:projectData\", \"itemId\": \"TEST\", \"eventTrackingId\": \"1234\"}, " +
+            "        \"progress_url\": \"/jupyterhub/hub/api/users/andy/server/progress\", \"state\": {}}, " +
+            "  \"ml\": {\"name\": \"ml\", \"last_activity\": null, \"started\": \"2023-03-15T18:45:00Z\", \"pending\": \"spawn\", " +
+            "          \"ready\": false, \"url\": \"/jupyterhub/user/andy/ml/\", \"user_options\": {}}" +
+            "}}";
+
+    @Test
+    public void testParsePlainList() throws Exception {
+        final String json = "[" + USER_JSON + "," + USER_JSON.replace("andy", "bob") + "]";
+
+        final UserPageIterator.Page page = parse(json, 0, 200);
+
+        assertEquals(2, page.getUsers().size());
+        assertNull(page.getNextOffset());
+        assertEquals("bob", page.getUsers().get(1).getName());
+    }
+
+    @Test
+    public void testParsePlainList_FullPage() throws Exception {
+        final UserPageIterator.Page page = parse("[" + USER_JSON + "]", 10, 1);
+        assertEquals(Integer.valueOf(11), page.getNextOffset());
+    }
+
+    @Test
+    public void testParsePaginated() throws Exception {
+        final String json = "{\"items\": [" + USER_JSON + "], " +
+                "\"_pagination\": {\"offset\": 0, \"limit\": 1, \"total\": 5, \"next\": {\"offset\": 1, \"limit\": 1, \"url\": \"http://hub/users?offset=1\"}}}";
+
+        final UserPageIterator.Page page = parse(json, 0, 1);
+
+        assertEquals(1, page.getUsers().size());
+        assertEquals(Integer.valueOf(1), page.getNextOffset());
+    }
+
+    @Test
+    public void testParsePaginated_LastPage() throws Exception {
+        final String json = "{\"_pagination\": {\"offset\": 0, \"limit\": 200, \"total\": 1, \"next\": null}, \"items\": [" + USER_JSON + "]}";
+
+        final UserPageIterator.Page page = parse(json, 0, 200);
+
+        assertEquals(1, page.getUsers().size());
+        assertNull(page.getNextOffset());
+    }
+
+    @Test
+    public void testParseEmpty() throws Exception {
+        assertTrue(parse("", 0, 200).getUsers().isEmpty());
+        assertTrue(parse("[]", 0, 200).getUsers().isEmpty());
+    }
+
+    @Test
+    public void testSummaryMatchesFullBinding() throws Exception {
+        final User full = objectMapper.readValue(USER_JSON, User.class);
+        final User summary = parse("[" + USER_JSON + "]", 0, 200).getUsers().get(0);
+
+        assertEquals(full.getName(), summary.getName());
+        assertEquals(full.getLast_activity().toInstant(), summary.getLast_activity().toInstant());
+        assertEquals(full.getServers().keySet(), summary.getServers().keySet());
+
+        for (String servername : full.getServers().keySet()) {
+            final Server fullServer = full.getServers().get(servername);
+            final Server summaryServer = summary.getServers().get(servername);
+
+            assertEquals(fullServer.getName(), summaryServer.getName());
+            assertEquals(fullServer.getReady(), summaryServer.getReady());
+            assertEquals(fullServer.getPending(), summaryServer.getPending());
+            assertEquals(fullServer.getUrl(), summaryServer.getUrl());
+            assertEquals(fullServer.getStarted().toInstant(), summaryServer.getStarted().toInstant());
+            assertEquals(fullServer.getLast_activity() == null, summaryServer.getLast_activity() == null);
+            assertNull(summaryServer.getUser_options());
+            assertNull(summaryServer.getProgress_url());
+        }
+
+        assertFalse(summary.isAdmin());
+        assertNull(summary.getRoles());
+    }
+
+    /**
+     * Compares latency and allocation of the streaming summary parser with binding the full User[] models as the
+     * RestTemplate path does. Not run with the build, run it by hand when changing either path.
+     */
+    @Test
+    @Ignore("Benchmark")
+    public void benchmarkAgainstFullBinding() throws Exception {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i == 0 ? "" : ",").append(USER_JSON.replace("andy", "user" + i));
+        }
+        final byte[] body = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        for (int round = 0; round < 3; round++) {
+            // Full binding
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                final List<User> users = Arrays.asList(objectMapper.readValue(body, User[].class));
+                assertEquals(2000, users.size());
+            }
+            final long fullNanos = (System.nanoTime() - start) / 20;
+            final long fullBytes = (threads.getThreadAllocatedBytes(thread) - allocated) / 20;
+
+            // Streaming summaries
+            allocated = threads.getThreadAllocatedBytes(thread);
+            start = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                final UserPageIterator.Page page = parser.parsePage(new ByteArrayInputStream(body), 0, 5000);
+                assertEquals(2000, page.getUsers().size());
+            }
+            final long summaryNanos = (System.nanoTime() - start) / 20;
+            final long summaryBytes = (threads.getThreadAllocatedBytes(thread) - allocated) / 20;
+
+            System.out.printf("Round %d, 2000 users: User[] %.2f ms / %d KB, summaries %.2f ms / %d KB%n",
+                              round, fullNanos / 1e6, fullBytes / 1024, summaryNanos / 1e6, summaryBytes / 1024);
+        }
+    }
+
+    private UserPageIterator.Page parse(final String json, final int offset, final int limit) throws Exception {
+        return parser.parsePage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), offset, limit);
+    }
+
+}
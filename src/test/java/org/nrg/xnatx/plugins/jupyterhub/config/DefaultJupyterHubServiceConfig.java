@@ -2,14 +2,35 @@ package org.nrg.xnatx.plugins.jupyterhub.config;
 
 import org.nrg.framework.services.NrgEventServiceI;
 import org.nrg.xnat.compute.services.JobTemplateService;
-import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xnatx.plugins.jupyterhub.client.AsyncJupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubCircuitBreaker;
 import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.DashboardJobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubHealthService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationTracker;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubServerPoller;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStartQueue;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStateMirror;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.ServerOperationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnDurationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnHistoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubHealthService;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubOperationTracker;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubServerPoller;
 import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubStartQueue;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubStateMirror;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultSpawnHistoryService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
 import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubServiceAccountHelper;
 import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -18,22 +39,95 @@ import org.springframework.context.annotation.Import;
 @Import({MockConfig.class})
 public class DefaultJupyterHubServiceConfig {
 
+    @Bean
+    public HubCircuitBreaker hubCircuitBreaker(final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new HubCircuitBreaker(mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public JupyterHubHealthService jupyterHubHealthService(final JupyterHubClient mockJupyterHubClient,
+                                                           final HubCircuitBreaker hubCircuitBreaker,
+                                                           final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultJupyterHubHealthService(mockJupyterHubClient, hubCircuitBreaker, mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public JupyterHubLifecycleExecutor jupyterHubLifecycleExecutor(final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new JupyterHubLifecycleExecutor(mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public JupyterHubServerPoller jupyterHubServerPoller(final JupyterHubClient mockJupyterHubClient,
+                                                         final JupyterHubLifecycleExecutor jupyterHubLifecycleExecutor,
+                                                         final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultJupyterHubServerPoller(mockJupyterHubClient, jupyterHubLifecycleExecutor, mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public JupyterHubStartQueue jupyterHubStartQueue(final JupyterHubLifecycleExecutor jupyterHubLifecycleExecutor,
+                                                     final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultJupyterHubStartQueue(jupyterHubLifecycleExecutor, mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public ResourceQuotaService resourceQuotaService(final UserOptionsEntityService mockUserOptionsEntityService,
+                                                     final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultResourceQuotaService(mockUserOptionsEntityService, mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public SpawnHistoryService spawnHistoryService(final SpawnDurationEntityService mockSpawnDurationEntityService,
+                                                   final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultSpawnHistoryService(mockSpawnDurationEntityService, mockJupyterHubPreferences);
+    }
+
+    @Bean
+    public JupyterHubOperationTracker jupyterHubOperationTracker(final NrgEventServiceI mockNrgEventService,
+                                                                 final ServerOperationEntityService mockServerOperationEntityService,
+                                                                 final JupyterHubPreferences mockJupyterHubPreferences,
+                                                                 final SystemHelper mockSystemHelper) {
+        return new DefaultJupyterHubOperationTracker(mockNrgEventService, mockServerOperationEntityService,
+                                                     mockJupyterHubPreferences, mockSystemHelper);
+    }
+
+    @Bean
+    public JupyterHubStateMirror jupyterHubStateMirror(final JupyterHubClient mockJupyterHubClient,
+                                                       final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultJupyterHubStateMirror(mockJupyterHubClient, mockJupyterHubPreferences);
+    }
+
     @Bean
     public DefaultJupyterHubService defaultJupyterHubService(final JupyterHubClient mockJupyterHubClient,
-                                                             final NrgEventServiceI mockNrgEventService,
+                                                             final AsyncJupyterHubClient mockAsyncJupyterHubClient,
+                                                             final JupyterHubStateMirror jupyterHubStateMirror,
+                                                             final JupyterHubHealthService jupyterHubHealthService,
+                                                             final JupyterHubLifecycleExecutor jupyterHubLifecycleExecutor,
+                                                             final JupyterHubServerPoller jupyterHubServerPoller,
+                                                             final SpawnHistoryService spawnHistoryService,
+                                                             final JupyterHubStartQueue jupyterHubStartQueue,
+                                                             final ResourceQuotaService resourceQuotaService,
+                                                             final JupyterHubOperationTracker jupyterHubOperationTracker,
                                                              final PermissionsHelper mockPermissionsHelper,
                                                              final UserOptionsService mockUserOptionsService,
+                                                             final SharedDataDirectoryService mockSharedDataDirectoryService,
                                                              final JupyterHubPreferences mockJupyterHubPreferences,
-                                                             final UserManagementServiceI mockUserManagementService,
                                                              final JobTemplateService mockJobTemplateService,
                                                              final DashboardJobTemplateService mockDashboardJobTemplateService,
                                                              final JupyterHubServiceAccountHelper mockJupyterHubServiceAccountHelper) {
         return new DefaultJupyterHubService(mockJupyterHubClient,
-                                            mockNrgEventService,
+                                            mockAsyncJupyterHubClient,
+                                            jupyterHubStateMirror,
+                                            jupyterHubHealthService,
+                                            jupyterHubLifecycleExecutor,
+                                            jupyterHubServerPoller,
+                                            spawnHistoryService,
+                                            jupyterHubStartQueue,
+                                            resourceQuotaService,
+                                            jupyterHubOperationTracker,
                                             mockPermissionsHelper,
                                             mockUserOptionsService,
+                                            mockSharedDataDirectoryService,
                                             mockJupyterHubPreferences,
-                                            mockUserManagementService,
                                             mockJobTemplateService,
                                             mockDashboardJobTemplateService,
                                             mockJupyterHubServiceAccountHelper);
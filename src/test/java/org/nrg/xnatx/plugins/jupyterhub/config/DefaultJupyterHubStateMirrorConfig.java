@@ -0,0 +1,20 @@
+package org.nrg.xnatx.plugins.jupyterhub.config;
+
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultJupyterHubStateMirror;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@Import({MockConfig.class})
+public class DefaultJupyterHubStateMirrorConfig {
+
+    @Bean
+    public DefaultJupyterHubStateMirror defaultJupyterHubStateMirror(final JupyterHubClient mockJupyterHubClient,
+                                                                     final JupyterHubPreferences mockJupyterHubPreferences) {
+        return new DefaultJupyterHubStateMirror(mockJupyterHubClient, mockJupyterHubPreferences);
+    }
+
+}
@@ -6,6 +6,7 @@ import org.nrg.xdat.security.services.SearchHelperServiceI;
 import org.nrg.xdat.services.AliasTokenService;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.DashboardJobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserWorkspaceService;
 import org.nrg.xnatx.plugins.jupyterhub.services.impl.DefaultUserOptionsService;
@@ -29,7 +30,8 @@ public class DefaultUserOptionsServiceConfig {
                                                                final PermissionsHelper mockPermissionsHelper,
                                                                final JobTemplateService mockJobTemplateService,
                                                                final DashboardJobTemplateService mockDashboardJobTemplateService,
-                                                               final NrgEventServiceI mockNrgEventService) {
+                                                               final NrgEventServiceI mockNrgEventService,
+                                                               final SharedDataDirectoryService mockSharedDataDirectoryService) {
         return new DefaultUserOptionsService(mockJupyterHubPreferences,
                                              mockUserWorkspaceService,
                                              mockSearchHelperService,
@@ -39,7 +41,8 @@ public class DefaultUserOptionsServiceConfig {
                                              mockPermissionsHelper,
                                              mockJobTemplateService,
                                              mockDashboardJobTemplateService,
-                                             mockNrgEventService);
+                                             mockNrgEventService,
+                                             mockSharedDataDirectoryService);
     }
 
 }
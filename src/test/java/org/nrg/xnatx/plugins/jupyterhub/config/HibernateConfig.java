@@ -58,6 +58,11 @@ public class HibernateConfig {
                 DashboardFrameworkEntity.class,
                 DashboardScopeEntity.class,
                 UserOptionsEntity.class,
+                SpawnDurationEntity.class,
+                PrestartScheduleEntity.class,
+                ServerOperationEntity.class,
+                LeaderLeaseEntity.class,
+                SharedDataDirectoryEntity.class,
                 ConstraintConfigEntity.class,
                 ConstraintEntity.class,
                 ConstraintScopeEntity.class,
@@ -0,0 +1,24 @@
+package org.nrg.xnatx.plugins.jupyterhub.config;
+
+import org.hibernate.SessionFactory;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.LeaderLeaseDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.HibernateLeaderLeaseEntityService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@Import({HibernateConfig.class})
+public class HibernateLeaderLeaseEntityServiceTestConfig {
+
+    @Bean
+    public HibernateLeaderLeaseEntityService hibernateLeaderLeaseEntityService(final LeaderLeaseDao leaderLeaseDao) {
+        return new HibernateLeaderLeaseEntityService(leaderLeaseDao);
+    }
+
+    @Bean
+    public LeaderLeaseDao leaderLeaseDao(final SessionFactory sessionFactory) {
+        return new LeaderLeaseDao(sessionFactory);
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.nrg.xnatx.plugins.jupyterhub.config;
+
+import org.hibernate.SessionFactory;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.SharedDataDirectoryDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.HibernateSharedDataDirectoryEntityService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@Import({HibernateConfig.class})
+public class HibernateSharedDataDirectoryEntityServiceTestConfig {
+
+    @Bean
+    public HibernateSharedDataDirectoryEntityService hibernateSharedDataDirectoryEntityService(final SharedDataDirectoryDao sharedDataDirectoryDao) {
+        return new HibernateSharedDataDirectoryEntityService(sharedDataDirectoryDao);
+    }
+
+    @Bean
+    public SharedDataDirectoryDao sharedDataDirectoryDao(final SessionFactory sessionFactory) {
+        return new SharedDataDirectoryDao(sessionFactory);
+    }
+
+}
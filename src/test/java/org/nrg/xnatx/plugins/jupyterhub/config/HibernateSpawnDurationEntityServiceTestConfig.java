@@ -0,0 +1,24 @@
+package org.nrg.xnatx.plugins.jupyterhub.config;
+
+import org.hibernate.SessionFactory;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.SpawnDurationDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.HibernateSpawnDurationEntityService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@Import({HibernateConfig.class})
+public class HibernateSpawnDurationEntityServiceTestConfig {
+
+    @Bean
+    public HibernateSpawnDurationEntityService hibernateSpawnDurationEntityService(final SpawnDurationDao spawnDurationDao) {
+        return new HibernateSpawnDurationEntityService(spawnDurationDao);
+    }
+
+    @Bean
+    public SpawnDurationDao spawnDurationDao(final SessionFactory sessionFactory) {
+        return new SpawnDurationDao(sessionFactory);
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.nrg.xnatx.plugins.jupyterhub.config;
+
+import org.hibernate.SessionFactory;
+import org.nrg.xnatx.plugins.jupyterhub.repositories.UserOptionsDao;
+import org.nrg.xnatx.plugins.jupyterhub.services.impl.HibernateUserOptionsEntityService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@Import({HibernateConfig.class})
+public class HibernateUserOptionsEntityServiceTestConfig {
+
+    @Bean
+    public HibernateUserOptionsEntityService hibernateUserOptionsEntityService(final UserOptionsDao userOptionsDao) {
+        return new HibernateUserOptionsEntityService(userOptionsDao);
+    }
+
+    @Bean
+    public UserOptionsDao userOptionsDao(final SessionFactory sessionFactory) {
+        return new UserOptionsDao(sessionFactory);
+    }
+
+}
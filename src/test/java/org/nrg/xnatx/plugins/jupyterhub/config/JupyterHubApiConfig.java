@@ -6,7 +6,10 @@ import org.nrg.xdat.security.services.UserManagementServiceI;
 import org.nrg.xnat.tracking.services.EventTrackingDataHibernateService;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.rest.JupyterHubApi;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubCullingService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubReconciliationService;
 import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
@@ -28,12 +31,18 @@ public class JupyterHubApiConfig extends WebSecurityConfigurerAdapter {
     public JupyterHubApi jupyterHubApi(final UserManagementServiceI mockUserManagementService,
                                        final RoleHolder mockRoleHolder,
                                        final JupyterHubService mockJupyterHubService,
+                                       final JupyterHubCullingService mockJupyterHubCullingService,
+                                       final SharedDataDirectoryService mockSharedDataDirectoryService,
+                                       final JupyterHubReconciliationService mockJupyterHubReconciliationService,
                                        final UserOptionsService mockUserOptionsService,
                                        final EventTrackingDataHibernateService mockEventTrackingDataHibernateService,
                                        final JupyterHubPreferences mockJupyterHubPreferences) {
         return new JupyterHubApi(mockUserManagementService,
                                  mockRoleHolder,
                                  mockJupyterHubService,
+                                 mockJupyterHubCullingService,
+                                 mockSharedDataDirectoryService,
+                                 mockJupyterHubReconciliationService,
                                  mockUserOptionsService,
                                  mockEventTrackingDataHibernateService,
                                  mockJupyterHubPreferences);
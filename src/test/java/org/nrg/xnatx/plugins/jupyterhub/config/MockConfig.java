@@ -16,6 +16,7 @@ import org.nrg.xdat.security.services.*;
 import org.nrg.xdat.services.AliasTokenService;
 import org.nrg.xnat.services.XnatAppInfo;
 import org.nrg.xnat.tracking.services.EventTrackingDataHibernateService;
+import org.nrg.xnatx.plugins.jupyterhub.client.AsyncJupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.*;
@@ -76,6 +77,26 @@ public class MockConfig {
         return Mockito.mock(UserOptionsEntityService.class);
     }
 
+    @Bean
+    public SpawnDurationEntityService mockSpawnDurationEntityService() {
+        return Mockito.mock(SpawnDurationEntityService.class);
+    }
+
+    @Bean
+    public PrestartScheduleEntityService mockPrestartScheduleEntityService() {
+        return Mockito.mock(PrestartScheduleEntityService.class);
+    }
+
+    @Bean
+    public ServerOperationEntityService mockServerOperationEntityService() {
+        return Mockito.mock(ServerOperationEntityService.class);
+    }
+
+    @Bean
+    public PrestartService mockPrestartService() {
+        return Mockito.mock(PrestartService.class);
+    }
+
     @Bean
     public PermissionsServiceI mockPermissionsService() {
         return Mockito.mock(PermissionsServiceI.class);
@@ -86,11 +107,26 @@ public class MockConfig {
         return Mockito.mock(UserOptionsService.class);
     }
 
+    @Bean
+    public SharedDataDirectoryService mockSharedDataDirectoryService() {
+        return Mockito.mock(SharedDataDirectoryService.class);
+    }
+
+    @Bean
+    public JupyterHubReconciliationService mockJupyterHubReconciliationService() {
+        return Mockito.mock(JupyterHubReconciliationService.class);
+    }
+
     @Bean
     public JupyterHubClient mockJupyterHubClient() {
         return Mockito.mock(JupyterHubClient.class);
     }
 
+    @Bean
+    public AsyncJupyterHubClient mockAsyncJupyterHubClient() {
+        return Mockito.mock(AsyncJupyterHubClient.class);
+    }
+
     @Bean
     public PermissionsHelper mockPermissionsHelper() {
         return Mockito.mock(PermissionsHelper.class);
@@ -111,6 +147,11 @@ public class MockConfig {
         return Mockito.mock(JupyterHubService.class);
     }
 
+    @Bean
+    public JupyterHubCullingService mockJupyterHubCullingService() {
+        return Mockito.mock(JupyterHubCullingService.class);
+    }
+
     @Bean
     public NamedParameterJdbcTemplate mockNamedParameterJdbcTemplate() {
         return Mockito.mock(NamedParameterJdbcTemplate.class);
@@ -16,7 +16,10 @@ import org.nrg.xnatx.plugins.jupyterhub.config.JupyterHubApiConfig;
 import org.nrg.xnatx.plugins.jupyterhub.models.*;
 import org.nrg.xnatx.plugins.jupyterhub.models.docker.*;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubCullingService;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubReconciliationService;
 import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
@@ -76,6 +79,9 @@ public class JupyterHubApiTest {
     @Autowired private WebApplicationContext wac;
     @Autowired private ObjectMapper mapper;
     @Autowired private JupyterHubService mockJupyterHubService;
+    @Autowired private JupyterHubCullingService mockJupyterHubCullingService;
+    @Autowired private SharedDataDirectoryService mockSharedDataDirectoryService;
+    @Autowired private JupyterHubReconciliationService mockJupyterHubReconciliationService;
     @Autowired private RoleServiceI mockRoleService;
     @Autowired private UserManagementServiceI mockUserManagementService;
     @Autowired private UserOptionsService mockUserOptionsService;
@@ -235,6 +241,9 @@ public class JupyterHubApiTest {
     public void after() {
         Mockito.reset(admin);
         Mockito.reset(mockJupyterHubService);
+        Mockito.reset(mockJupyterHubCullingService);
+        Mockito.reset(mockSharedDataDirectoryService);
+        Mockito.reset(mockJupyterHubReconciliationService);
         Mockito.reset(mockRoleService);
         Mockito.reset(mockUserManagementService);
         Mockito.reset(mockUserOptionsService);
@@ -347,6 +356,119 @@ public class JupyterHubApiTest {
         assertEquals(users, Arrays.asList(responseUsers));
     }
 
+    @Test
+    public void testGetCullCandidates() throws Exception {
+        List<CullCandidate> candidates = Collections.singletonList(CullCandidate.builder()
+                .username(NON_ADMIN_USERNAME)
+                .servername("")
+                .policy("inactivity")
+                .reason("Inactive for 120 minutes, the inactivity timeout is 60 minutes.")
+                .build());
+        when(mockJupyterHubCullingService.findCandidates()).thenReturn(candidates);
+
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get("/jupyterhub/cull/candidates")
+                .accept(JSON)
+                .with(authentication(ADMIN_AUTH))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        final String response =
+                mockMvc.perform(request)
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentType(JSON))
+                        .andReturn()
+                        .getResponse()
+                        .getContentAsString();
+
+        CullCandidate[] responseCandidates = mapper.readValue(response, CullCandidate[].class);
+
+        assertEquals(candidates, Arrays.asList(responseCandidates));
+        verify(mockJupyterHubCullingService, never()).cull();
+    }
+
+    @Test
+    public void testGetSharedDataDeletions() throws Exception {
+        List<SharedDataDeletion> deletions = Collections.singletonList(SharedDataDeletion.builder()
+                .path("/data/xnat/archive/SHARED_PROJECT/jupyter-notebooks/abc")
+                .status(SharedDataDeletion.Status.Running)
+                .files(1200)
+                .directories(30)
+                .queued(new Date(1000))
+                .started(new Date(2000))
+                .entriesPerSecond(500)
+                .build());
+        when(mockSharedDataDirectoryService.getDeletions()).thenReturn(deletions);
+
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get("/jupyterhub/shared-data/deletions")
+                .accept(JSON)
+                .with(authentication(ADMIN_AUTH))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        final String response =
+                mockMvc.perform(request)
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentType(JSON))
+                        .andReturn()
+                        .getResponse()
+                        .getContentAsString();
+
+        SharedDataDeletion[] responseDeletions = mapper.readValue(response, SharedDataDeletion[].class);
+
+        assertEquals(deletions, Arrays.asList(responseDeletions));
+    }
+
+    @Test
+    public void testGetReconciliation() throws Exception {
+        HubReconciliation reconciliation = HubReconciliation.builder()
+                .started(new Date(1000))
+                .finished(new Date(2000))
+                .hubServers(2)
+                .userOptions(3)
+                .staleUserOptions(2)
+                .sharedDataDirectories(2)
+                .unrecordedServers(Collections.singletonList(HubReconciliation.UnrecordedServer.builder()
+                        .username(NON_ADMIN_USERNAME)
+                        .servername("")
+                        .build()))
+                .build();
+        when(mockJupyterHubReconciliationService.getLastReconciliation()).thenReturn(Optional.of(reconciliation));
+
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get("/jupyterhub/reconciliation")
+                .accept(JSON)
+                .with(authentication(ADMIN_AUTH))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        final String response =
+                mockMvc.perform(request)
+                        .andExpect(status().isOk())
+                        .andExpect(content().contentType(JSON))
+                        .andReturn()
+                        .getResponse()
+                        .getContentAsString();
+
+        assertEquals(reconciliation, mapper.readValue(response, HubReconciliation.class));
+        verify(mockJupyterHubReconciliationService, never()).reconcile();
+    }
+
+    @Test
+    public void testGetReconciliationNotRunYet() throws Exception {
+        when(mockJupyterHubReconciliationService.getLastReconciliation()).thenReturn(Optional.empty());
+
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get("/jupyterhub/reconciliation")
+                .accept(JSON)
+                .with(authentication(ADMIN_AUTH))
+                .with(csrf())
+                .with(testSecurityContext());
+
+        mockMvc.perform(request).andExpect(status().isNotFound());
+    }
+
     @Test
     public void testCreateUser() throws Exception {
         final MockHttpServletRequestBuilder request = MockMvcRequestBuilders
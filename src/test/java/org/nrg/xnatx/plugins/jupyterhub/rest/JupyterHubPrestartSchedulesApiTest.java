@@ -0,0 +1,214 @@
+package org.nrg.xnatx.plugins.jupyterhub.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.nrg.xdat.security.services.RoleServiceI;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.config.JupyterHubPrestartSchedulesApiTestConfig;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebAppConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {JupyterHubPrestartSchedulesApiTestConfig.class})
+public class JupyterHubPrestartSchedulesApiTest {
+
+    @Autowired private WebApplicationContext wac;
+    @Autowired private ObjectMapper mapper;
+    @Autowired private RoleServiceI mockRoleService;
+    @Autowired private UserManagementServiceI mockUserManagementService;
+    @Autowired private PrestartService mockPrestartService;
+
+    private MockMvc mockMvc;
+    private UserI mockUser;
+    private Authentication mockAuthentication;
+
+    private PrestartSchedule schedule;
+
+    @Before
+    public void setup() {
+        // Setup pre-start
+        schedule = PrestartSchedule.builder()
+                                   .id(1L)
+                                   .name("Intro to Imaging")
+                                   .usernames(Arrays.asList("alice", "bob"))
+                                   .servername("")
+                                   .xsiType("xnat:projectData")
+                                   .itemId("TestProject")
+                                   .itemLabel("TestProject")
+                                   .projectId("TestProject")
+                                   .computeEnvironmentConfigId(3L)
+                                   .hardwareConfigId(2L)
+                                   .startAt(new Date(1700000000000L))
+                                   .rampRate(10)
+                                   .status(PrestartSchedule.Status.Scheduled)
+                                   .build();
+
+        // Setup mocks
+        mockMvc = MockMvcBuilders.webAppContextSetup(wac).apply(springSecurity()).build();
+
+        mockUser = Mockito.mock(UserI.class);
+        when(mockUser.getLogin()).thenReturn("mockUser");
+        when(mockUser.getEmail()).thenReturn("mockUser@mockuser.com");
+        when(mockUser.getPassword()).thenReturn("mockUserPassword");
+        when(mockUser.getID()).thenReturn(1);
+        when(mockRoleService.isSiteAdmin(mockUser)).thenReturn(true);
+        mockAuthentication = new TestingAuthenticationToken(mockUser, mockUser.getPassword());
+    }
+
+    @After
+    public void after() throws Exception {
+        Mockito.reset(
+                mockRoleService,
+                mockUserManagementService,
+                mockPrestartService,
+                mockUser
+        );
+    }
+
+    @Test
+    public void test_wiring() {
+        assertNotNull(wac);
+        assertNotNull(mapper);
+        assertNotNull(mockRoleService);
+        assertNotNull(mockUserManagementService);
+        assertNotNull(mockPrestartService);
+    }
+
+    @Test
+    public void test_getAll() throws Exception {
+        // Setup
+        when(mockPrestartService.getAll()).thenReturn(Collections.singletonList(schedule));
+
+        // Execute
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/jupyterhub/prestart-schedules")
+                                                                            .with(authentication(mockAuthentication))
+                                                                            .with(csrf())
+                                                                            .with(testSecurityContext());
+
+        final String response = mockMvc.perform(request)
+                                       .andExpect(status().isOk())
+                                       .andReturn()
+                                       .getResponse()
+                                       .getContentAsString();
+
+        // Verify
+        assertEquals(mapper.writeValueAsString(Collections.singletonList(schedule)), response);
+        verify(mockPrestartService).getAll();
+    }
+
+    @Test
+    public void test_get() throws Exception {
+        // Setup
+        when(mockPrestartService.get(1L)).thenReturn(Optional.of(schedule));
+
+        // Execute
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/jupyterhub/prestart-schedules/1")
+                                                                            .with(authentication(mockAuthentication))
+                                                                            .with(csrf())
+                                                                            .with(testSecurityContext());
+
+        final String response = mockMvc.perform(request)
+                                       .andExpect(status().isOk())
+                                       .andReturn()
+                                       .getResponse()
+                                       .getContentAsString();
+
+        // Verify
+        assertEquals(mapper.writeValueAsString(schedule), response);
+        verify(mockPrestartService).get(1L);
+    }
+
+    @Test
+    public void test_get_notFound() throws Exception {
+        // Setup
+        when(mockPrestartService.get(2L)).thenReturn(Optional.empty());
+
+        // Execute
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/jupyterhub/prestart-schedules/2")
+                                                                            .with(authentication(mockAuthentication))
+                                                                            .with(csrf())
+                                                                            .with(testSecurityContext());
+
+        mockMvc.perform(request).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void test_create() throws Exception {
+        // Setup
+        when(mockPrestartService.create(any(), eq(schedule))).thenReturn(schedule);
+
+        // Execute
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.post("/jupyterhub/prestart-schedules")
+                                                                            .with(authentication(mockAuthentication))
+                                                                            .with(csrf())
+                                                                            .with(testSecurityContext())
+                                                                            .content(mapper.writeValueAsString(schedule))
+                                                                            .contentType("application/json");
+
+        final String response = mockMvc.perform(request)
+                                       .andExpect(status().isOk())
+                                       .andReturn()
+                                       .getResponse()
+                                       .getContentAsString();
+
+        // Verify
+        assertEquals(mapper.writeValueAsString(schedule), response);
+        verify(mockPrestartService).create(any(), eq(schedule));
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        // Setup
+        schedule.setStatus(PrestartSchedule.Status.Cancelled);
+        when(mockPrestartService.cancel(1L)).thenReturn(schedule);
+
+        // Execute
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.delete("/jupyterhub/prestart-schedules/1")
+                                                                            .with(authentication(mockAuthentication))
+                                                                            .with(csrf())
+                                                                            .with(testSecurityContext());
+
+        final String response = mockMvc.perform(request)
+                                       .andExpect(status().isOk())
+                                       .andReturn()
+                                       .getResponse()
+                                       .getContentAsString();
+
+        // Verify
+        assertEquals(mapper.writeValueAsString(schedule), response);
+        verify(mockPrestartService).cancel(1L);
+    }
+
+}
@@ -0,0 +1,362 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.CullCandidate;
+import org.nrg.xnatx.plugins.jupyterhub.models.ResourceUsage;
+import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartScheduleEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubCullingServiceTest {
+
+    private final String username = "user";
+
+    private JupyterHubClient mockJupyterHubClient;
+    private JupyterHubService mockJupyterHubService;
+    private PrestartScheduleEntityService mockPrestartScheduleEntityService;
+    private ResourceQuotaService mockResourceQuotaService;
+    private UserOptionsService mockUserOptionsService;
+    private UserManagementServiceI mockUserManagementService;
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private UserI user;
+    private DefaultJupyterHubCullingService cullingService;
+
+    @Before
+    public void before() throws Exception {
+        mockJupyterHubClient = mock(JupyterHubClient.class);
+        mockJupyterHubService = mock(JupyterHubService.class);
+        mockPrestartScheduleEntityService = mock(PrestartScheduleEntityService.class);
+        mockResourceQuotaService = mock(ResourceQuotaService.class);
+        mockUserOptionsService = mock(UserOptionsService.class);
+        mockUserManagementService = mock(UserManagementServiceI.class);
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+
+        user = mock(UserI.class);
+        when(user.getUsername()).thenReturn(username);
+        when(user.getID()).thenReturn(1);
+        when(mockUserManagementService.getUser(eq(username))).thenReturn(user);
+        when(mockJupyterHubService.stopServer(any(UserI.class), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(mockJupyterHubPreferences.getCullMaxConcurrentStops()).thenReturn(2);
+
+        cullingService = new DefaultJupyterHubCullingService(mockJupyterHubClient, mockJupyterHubService,
+                                                             mockPrestartScheduleEntityService, mockResourceQuotaService,
+                                                             mockUserOptionsService, mockUserManagementService,
+                                                             mockJupyterHubPreferences,
+                                                             Arrays.asList(new InactivityCullPolicy(mockJupyterHubPreferences),
+                                                                           new MaxLifetimeCullPolicy(mockJupyterHubPreferences)));
+    }
+
+    @Test
+    public void testCullIdleServers_Cull() {
+        // Setup
+        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
+
+        Server server_active = Server.builder()
+                .name("server_active")
+                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")))
+                .build();
+
+        Server server_inactive = Server.builder()
+                .name("server_inactive")
+                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(2L))
+                .build();
+
+        givenServers(server_active, server_inactive);
+
+        // Test
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify only the inactive server stopped
+        assertEquals(1, culled.size());
+        assertEquals("inactivity", culled.get(0).getPolicy());
+        verify(mockJupyterHubService, never()).stopServer(eq(user), eq(server_active.getName()), anyString());
+        verify(mockJupyterHubService, times(1)).stopServer(eq(user), eq(server_inactive.getName()), anyString());
+        // Without a cluster capacity the ledger is not rebuilt
+        verify(mockResourceQuotaService, never()).reload();
+    }
+
+    @Test
+    public void testCullIdleServers_PrestartExempt() {
+        // Setup
+        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
+
+        Server server_inactive = Server.builder()
+                .name("server_inactive")
+                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(2L))
+                .build();
+
+        givenServers(server_inactive);
+
+        // The inactive server was started by a pre-start which is still exempt from culling
+        PrestartScheduleEntity prestart = PrestartScheduleEntity.builder()
+                .usernames(Collections.singletonList(username))
+                .servername("server_inactive")
+                .build();
+        when(mockPrestartScheduleEntityService.findCullExempt(any())).thenReturn(Collections.singletonList(prestart));
+
+        // Test
+        cullingService.cull();
+
+        // Verify the exempt server was not stopped
+        verify(mockJupyterHubService, never()).stopServer(any(), any(), any());
+    }
+
+    @Test
+    public void testCull_NoPolicyEnabled() {
+        // Setup -> inactivity timeout and max lifetime set to zero
+
+        // Test
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify JupyterHub is not even read
+        assertTrue(culled.isEmpty());
+        verify(mockJupyterHubClient, never()).streamUserSummaries(anyBoolean());
+        verify(mockJupyterHubService, never()).stopServer(any(), any(), any());
+    }
+
+    @Test
+    public void testCull_Exception() {
+        // Setup
+        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
+
+        // Test
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify no servers stopped
+        assertTrue(culled.isEmpty());
+        verify(mockJupyterHubService, never()).stopServer(any(), any(), any());
+    }
+
+    @Test
+    public void testCullLongRunningServers_Cull() {
+        // Setup
+        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
+
+        Server server_active = Server.builder()
+                .name("server_active")
+                .started(ZonedDateTime.now(ZoneId.of("UTC")))
+                .build();
+
+        Server server_long_running = Server.builder()
+                .name("server_long_running")
+                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(48L).minusMinutes(1L))
+                .build();
+
+        // Server started less than 48 hours ago
+        Server server_almost_long_running = Server.builder()
+                .name("server_almost_long_running")
+                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(47L).minusMinutes(59L))
+                .build();
+
+        givenServers(server_active, server_long_running, server_almost_long_running);
+
+        // Test
+        cullingService.cull();
+
+        // Verify only the long running server stopped
+        verify(mockJupyterHubService, times(1)).stopServer(any(), any(), any());
+        verify(mockJupyterHubService, times(1)).stopServer(eq(user), eq(server_long_running.getName()), anyString());
+    }
+
+    @Test
+    public void testSinglePassEvaluatesAllPolicies() throws Exception {
+        // Setup
+        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
+        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
+
+        Server server_inactive = Server.builder()
+                .name("server_inactive")
+                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(3L))
+                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(2L))
+                .build();
+
+        Server server_long_running = Server.builder()
+                .name("server_long_running")
+                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(50L))
+                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")))
+                .build();
+
+        givenServers(server_inactive, server_long_running);
+
+        // Test
+        List<CullCandidate> candidates = cullingService.findCandidates();
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify the dry run stops nothing and each pass reads JupyterHub and resolves the user once
+        assertThat(candidates.stream().map(CullCandidate::getPolicy).collect(Collectors.toList()), containsInAnyOrder("inactivity", "maxLifetime"));
+        assertEquals(candidates, culled);
+        verify(mockJupyterHubClient, times(2)).streamUserSummaries(true);
+        verify(mockUserManagementService, times(1)).getUser(username);
+        verify(mockJupyterHubService, times(2)).stopServer(any(), any(), any());
+    }
+
+    @Test
+    public void testStopsAreBounded() {
+        // Setup
+        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
+
+        final List<Server> servers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            servers.add(Server.builder()
+                              .name("server_" + i)
+                              .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(2L))
+                              .build());
+        }
+        givenServers(servers.toArray(new Server[0]));
+
+        // Stops only end when completed below
+        final List<CompletableFuture<Void>> stops = new ArrayList<>();
+        when(mockJupyterHubService.stopServer(any(UserI.class), anyString(), anyString())).thenAnswer(invocation -> {
+            final CompletableFuture<Void> stop = new CompletableFuture<>();
+            stops.add(stop);
+            return stop;
+        });
+
+        // Test
+        cullingService.cull();
+
+        // Verify two stops at a time, each with its own event tracking ID
+        assertEquals(2, stops.size());
+        stops.get(0).complete(null);
+        assertEquals(3, stops.size());
+        stops.get(1).complete(null);
+        stops.get(2).complete(null);
+        assertEquals(5, stops.size());
+
+        final ArgumentCaptor<String> eventTrackingIds = ArgumentCaptor.forClass(String.class);
+        verify(mockJupyterHubService, times(5)).stopServer(eq(user), anyString(), eventTrackingIds.capture());
+        assertEquals(5, new HashSet<>(eventTrackingIds.getAllValues()).size());
+    }
+
+    @Test
+    public void testCapacityEvictsLeastRecentlyActive() {
+        // Setup -> no cull policy enabled, 10 of 10 CPUs reserved with eviction above 80%
+        givenCapacityPressure();
+
+        Server server_idle_3h = idleServer("server_idle_3h", 3L);
+        Server server_idle_2h = idleServer("server_idle_2h", 2L);
+        Server server_idle_1h = idleServer("server_idle_1h", 1L);
+        Server server_active = idleServer("server_active", 0L);
+        givenServers(server_idle_3h, server_idle_2h, server_idle_1h, server_active);
+
+        givenReservation("server_idle_3h", 1);
+        givenReservation("server_idle_2h", 2);
+        givenReservation("server_idle_1h", 2);
+        givenReservation("server_active", 5);
+
+        // Test
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify the usage of all nodes is read, then the two least recently active servers are evicted, enough to get under 8 CPUs
+        final InOrder inOrder = inOrder(mockResourceQuotaService);
+        inOrder.verify(mockResourceQuotaService).reload();
+        inOrder.verify(mockResourceQuotaService).getTotalUsage();
+        assertThat(culled.stream().map(CullCandidate::getServername).collect(Collectors.toList()), contains("server_idle_3h", "server_idle_2h"));
+        assertTrue(culled.stream().allMatch(candidate -> "capacity".equals(candidate.getPolicy())));
+        verify(mockJupyterHubService, times(2)).stopServer(any(), any(), any());
+        verify(mockJupyterHubService, never()).stopServer(eq(user), eq("server_idle_1h"), anyString());
+    }
+
+    @Test
+    public void testCapacityEvictionProtectsDashboardsAndCountsCulledServers() {
+        // Setup
+        givenCapacityPressure();
+        when(mockJupyterHubPreferences.getCapacityEvictionProtectDashboards()).thenReturn(true);
+        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
+
+        Server dashboard = idleServer("dashboard", 3L);
+        Server server_idle_2h = idleServer("server_idle_2h", 2L);
+        Server server_idle_1h = idleServer("server_idle_1h", 1L);
+        Server server_long_running = idleServer("server_long_running", 0L);
+        server_long_running.setStarted(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(50L));
+        givenServers(dashboard, server_idle_2h, server_idle_1h, server_long_running);
+
+        givenReservation("dashboard", 6);
+        givenReservation("server_idle_2h", 1);
+        givenReservation("server_idle_1h", 2);
+        givenReservation("server_long_running", 1);
+        when(mockUserOptionsService.retrieveUserOptions(user, "dashboard")).thenReturn(Optional.of(XnatUserOptions.builder().dashboardConfigId(1L).build()));
+
+        // Test
+        List<String> candidates = cullingService.findCandidates().stream()
+                                                .map(candidate -> candidate.getServername() + ":" + candidate.getPolicy())
+                                                .collect(Collectors.toList());
+
+        // Verify the long running server is counted as released, the dashboard is passed over and one idle server is enough
+        assertThat(candidates, contains("server_long_running:maxLifetime", "server_idle_2h:capacity"));
+        verify(mockJupyterHubService, never()).stopServer(any(), any(), any());
+    }
+
+    @Test
+    public void testNoEvictionUnderThreshold() {
+        // Setup
+        givenCapacityPressure();
+        when(mockResourceQuotaService.getTotalUsage()).thenAnswer(invocation -> new ResourceUsage(2, 8, 0));
+        givenServers(idleServer("server_idle_3h", 3L));
+
+        // Test
+        List<CullCandidate> culled = cullingService.cull();
+
+        // Verify JupyterHub is not even read
+        assertTrue(culled.isEmpty());
+        verify(mockJupyterHubClient, never()).streamUserSummaries(anyBoolean());
+    }
+
+    private void givenCapacityPressure() {
+        when(mockJupyterHubPreferences.getClusterCpuCapacity()).thenReturn("10");
+        when(mockJupyterHubPreferences.getCapacityEvictionThreshold()).thenReturn(80);
+        when(mockJupyterHubPreferences.getCapacityEvictionMinIdle()).thenReturn(30);
+        when(mockResourceQuotaService.getTotalUsage()).thenAnswer(invocation -> new ResourceUsage(4, 10, 0));
+        when(mockUserOptionsService.retrieveUserOptions(any(UserI.class), anyString())).thenReturn(Optional.empty());
+    }
+
+    private void givenReservation(final String servername, final double cpu) {
+        when(mockResourceQuotaService.getServerUsage(1, servername)).thenReturn(new ResourceUsage(1, cpu, 0));
+    }
+
+    private Server idleServer(final String name, final long idleHours) {
+        return Server.builder()
+                     .name(name)
+                     .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(idleHours + 1))
+                     .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(idleHours))
+                     .build();
+    }
+
+    private void givenServers(final Server... servers) {
+        final Map<String, Server> byName = new HashMap<>();
+        for (final Server server : servers) {
+            byName.put(server.getName(), server);
+        }
+        final User jupyterUser = User.builder().name(username).servers(byName).build();
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(jupyterUser));
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.LeaderLeaseEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubLeaderElectionTest {
+
+    private LeaderLeaseEntityService mockLeaderLeaseEntityService;
+    private DefaultJupyterHubLeaderElection leaderElection;
+
+    @Before
+    public void before() {
+        mockLeaderLeaseEntityService = mock(LeaderLeaseEntityService.class);
+
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getLeaderLeaseDuration()).thenReturn(60);
+
+        final SystemHelper mockSystemHelper = mock(SystemHelper.class);
+        when(mockSystemHelper.getNodeId()).thenReturn("node-1");
+
+        leaderElection = new DefaultJupyterHubLeaderElection(mockLeaderLeaseEntityService, mockJupyterHubPreferences, mockSystemHelper);
+    }
+
+    @Test
+    public void testLeaderRunsTasks() {
+        when(mockLeaderLeaseEntityService.acquire(eq(DefaultJupyterHubLeaderElection.LEASE_NAME), eq("node-1"), any(Date.class))).thenReturn(true);
+        final AtomicInteger runs = new AtomicInteger();
+
+        leaderElection.runIfLeader("task", runs::incrementAndGet);
+        leaderElection.runIfLeader("task", runs::incrementAndGet);
+
+        assertTrue(leaderElection.isLeader());
+        assertEquals(2, runs.get());
+        // The second run relied on the lease taken by the first
+        verify(mockLeaderLeaseEntityService, times(1)).acquire(any(), any(), any(Date.class));
+    }
+
+    @Test
+    public void testFollowerSkipsTasks() {
+        when(mockLeaderLeaseEntityService.acquire(any(), any(), any(Date.class))).thenReturn(false);
+        final AtomicInteger runs = new AtomicInteger();
+
+        leaderElection.runIfLeader("task", runs::incrementAndGet);
+
+        assertFalse(leaderElection.isLeader());
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void testLeaseLostToAnotherNode() {
+        when(mockLeaderLeaseEntityService.acquire(any(), any(), any(Date.class))).thenReturn(true, false);
+
+        leaderElection.renew();
+        assertTrue(leaderElection.isLeader());
+
+        leaderElection.renew();
+        assertFalse(leaderElection.isLeader());
+    }
+
+    @Test
+    public void testLeaseKeptWhenRenewalFails() {
+        when(mockLeaderLeaseEntityService.acquire(any(), any(), any(Date.class))).thenReturn(true)
+                                                                                 .thenThrow(new RuntimeException("Database unavailable"));
+
+        leaderElection.renew();
+        leaderElection.renew();
+
+        assertTrue(leaderElection.isLeader());
+    }
+
+    @Test
+    public void testRelease() {
+        leaderElection.release();
+        verify(mockLeaderLeaseEntityService, never()).release(any(), any());
+
+        when(mockLeaderLeaseEntityService.acquire(any(), any(), any(Date.class))).thenReturn(true);
+        leaderElection.renew();
+        leaderElection.release();
+
+        assertFalse(leaderElection.isLeader());
+        verify(mockLeaderLeaseEntityService).release(DefaultJupyterHubLeaderElection.LEASE_NAME, "node-1");
+    }
+
+}
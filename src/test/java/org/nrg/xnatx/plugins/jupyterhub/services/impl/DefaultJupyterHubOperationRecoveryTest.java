@@ -0,0 +1,169 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.nrg.xnatx.plugins.jupyterhub.services.*;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubOperationRecoveryTest {
+
+    private ServerOperationEntityService mockServerOperationEntityService;
+    private JupyterHubOperationTracker mockOperationTracker;
+    private JupyterHubClient mockJupyterHubClient;
+    private JupyterHubService mockJupyterHubService;
+    private UserOptionsService mockUserOptionsService;
+    private ResourceQuotaService mockResourceQuotaService;
+    private JupyterHubLeaderElection mockLeaderElection;
+    private UserI user;
+    private DefaultJupyterHubOperationRecovery recovery;
+
+    @Before
+    public void before() throws Exception {
+        mockServerOperationEntityService = mock(ServerOperationEntityService.class);
+        mockOperationTracker = mock(JupyterHubOperationTracker.class);
+        mockJupyterHubClient = mock(JupyterHubClient.class);
+        mockJupyterHubService = mock(JupyterHubService.class);
+        mockUserOptionsService = mock(UserOptionsService.class);
+        mockResourceQuotaService = mock(ResourceQuotaService.class);
+        mockLeaderElection = mock(JupyterHubLeaderElection.class);
+
+        user = mock(UserI.class);
+        when(user.getID()).thenReturn(1);
+        final UserManagementServiceI mockUserManagementService = mock(UserManagementServiceI.class);
+        when(mockUserManagementService.getUser("alice")).thenReturn(user);
+
+        final SystemHelper mockSystemHelper = mock(SystemHelper.class);
+        when(mockSystemHelper.getNodeId()).thenReturn("node-1");
+
+        recovery = new DefaultJupyterHubOperationRecovery(mockServerOperationEntityService, mockOperationTracker,
+                                                          mockJupyterHubClient, mockJupyterHubService,
+                                                          mock(JupyterHubServerPoller.class), mock(JupyterHubStateMirror.class),
+                                                          mockUserOptionsService, mockResourceQuotaService,
+                                                          mock(SharedDataDirectoryService.class),
+                                                          mockUserManagementService, mock(JupyterHubLifecycleExecutor.class),
+                                                          mockLeaderElection, mockSystemHelper);
+    }
+
+    @Test
+    public void testInterruptedStopOfRemovedServerIsCompleted() {
+        final ServerOperationEntity operation = interrupted(JupyterServerEventI.Operation.Stop);
+        when(mockJupyterHubClient.getServer("alice", "")).thenReturn(Optional.empty());
+
+        recovery.recover();
+
+        verify(mockServerOperationEntityService).delete(operation);
+        verify(mockUserOptionsService).removeUserOptions(user, "");
+        verify(mockResourceQuotaService).release(1, "");
+        verify(mockJupyterHubService, never()).stopServer(any(UserI.class), anyString(), anyString());
+        assertEquals(JupyterServerEventI.Status.Completed, lastEvent().getStatus());
+    }
+
+    @Test
+    public void testInterruptedStopOfRunningServerIsResent() {
+        final ServerOperationEntity operation = interrupted(JupyterServerEventI.Operation.Stop);
+        when(mockJupyterHubClient.getServer("alice", "")).thenReturn(Optional.of(Server.builder().name("").ready(true).build()));
+
+        recovery.recover();
+
+        verify(mockServerOperationEntityService).delete(operation);
+        verify(mockJupyterHubService).stopServer(user, "", "first");
+    }
+
+    @Test
+    public void testInterruptedStartOfRemovedServerFails() {
+        final ServerOperationEntity operation = interrupted(JupyterServerEventI.Operation.Start);
+        when(mockJupyterHubClient.getServer("alice", "")).thenReturn(Optional.empty());
+
+        recovery.recover();
+
+        verify(mockServerOperationEntityService).delete(operation);
+        verify(mockUserOptionsService).removeUserOptions(user, "");
+        assertEquals(JupyterServerEventI.Status.Failed, lastEvent().getStatus());
+    }
+
+    @Test
+    public void testInterruptedStartOfReadyServerCompletes() {
+        final ServerOperationEntity operation = interrupted(JupyterServerEventI.Operation.Start);
+        when(mockJupyterHubClient.getServer("alice", "")).thenReturn(Optional.of(Server.builder().name("").ready(true).url("/jupyterhub/user/alice/").build()));
+
+        recovery.recover();
+
+        verify(mockServerOperationEntityService).delete(operation);
+        verify(mockUserOptionsService, never()).removeUserOptions(any(UserI.class), anyString());
+        assertEquals(JupyterServerEventI.Status.Completed, lastEvent().getStatus());
+    }
+
+    @Test
+    public void testOperationKeptWhileJupyterHubIsUnavailable() {
+        final ServerOperationEntity operation = interrupted(JupyterServerEventI.Operation.Stop);
+        when(mockJupyterHubClient.getServer("alice", "")).thenThrow(new JupyterHubUnavailableException("JupyterHub is unavailable"));
+
+        recovery.recover();
+
+        verify(mockServerOperationEntityService, never()).delete(operation);
+        verify(mockOperationTracker, never()).triggerEvent(any(JupyterServerEvent.class));
+    }
+
+    @Test
+    public void testOperationInFlightIsNotRecovered() {
+        interrupted(JupyterServerEventI.Operation.Start);
+        when(mockOperationTracker.isInFlight("first")).thenReturn(true);
+
+        recovery.recover();
+
+        verify(mockJupyterHubClient, never()).getServer(anyString(), anyString());
+        verify(mockServerOperationEntityService, never()).delete(any(ServerOperationEntity.class));
+    }
+
+    @Test
+    public void testAbandonedOperationsOnlyRecoveredByLeader() {
+        recovery.recover();
+        verify(mockServerOperationEntityService, never()).findAbandoned(anyString(), any(Date.class));
+
+        when(mockLeaderElection.isLeader()).thenReturn(true);
+        recovery.recover();
+        verify(mockServerOperationEntityService).findAbandoned(eq("node-1"), any(Date.class));
+    }
+
+    private ServerOperationEntity interrupted(final JupyterServerEventI.Operation kind) {
+        final ServerOperationEntity operation = ServerOperationEntity.builder()
+                                                                     .node("node-1")
+                                                                     .username("alice")
+                                                                     .userId(1)
+                                                                     .servername("")
+                                                                     .operation(kind)
+                                                                     .eventTrackingId("first")
+                                                                     .attachedTrackingIds(Collections.emptyList())
+                                                                     .state(JupyterServerEventI.Status.InProgress)
+                                                                     .progress(20)
+                                                                     .deadline(new Date(System.currentTimeMillis() - 1000))
+                                                                     .build();
+        when(mockServerOperationEntityService.findByNode("node-1")).thenReturn(Collections.singletonList(operation));
+        return operation;
+    }
+
+    private JupyterServerEvent lastEvent() {
+        final ArgumentCaptor<JupyterServerEvent> captor = ArgumentCaptor.forClass(JupyterServerEvent.class);
+        verify(mockOperationTracker, atLeastOnce()).triggerEvent(captor.capture());
+        return captor.getValue();
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.nrg.framework.services.NrgEventServiceI;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEvent;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubOperationTracker.TrackedOperation;
+import org.nrg.xnatx.plugins.jupyterhub.services.ServerOperationEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SystemHelper;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubOperationTrackerTest {
+
+    private NrgEventServiceI mockEventService;
+    private ServerOperationEntityService mockServerOperationEntityService;
+    private DefaultJupyterHubOperationTracker tracker;
+
+    @Before
+    public void before() {
+        mockEventService = mock(NrgEventServiceI.class);
+        mockServerOperationEntityService = mock(ServerOperationEntityService.class);
+        when(mockServerOperationEntityService.create(any(ServerOperationEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getStartTimeout()).thenReturn(180);
+        when(mockJupyterHubPreferences.getStopTimeout()).thenReturn(30);
+
+        final SystemHelper mockSystemHelper = mock(SystemHelper.class);
+        when(mockSystemHelper.getNodeId()).thenReturn("node-1");
+
+        tracker = new DefaultJupyterHubOperationTracker(mockEventService, mockServerOperationEntityService,
+                                                        mockJupyterHubPreferences, mockSystemHelper);
+    }
+
+    @Test
+    public void testDuplicateStartAttaches() {
+        TrackedOperation start = tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "first").orElseThrow(AssertionError::new);
+        tracker.triggerEvent(JupyterServerEvent.progress("first", 1, JupyterServerEventI.Operation.Start, 20, "Building"));
+
+        // Double click with a new event tracking ID
+        assertFalse(tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "second").isPresent());
+        // UI retry with the same event tracking ID
+        assertFalse(tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "first").isPresent());
+        assertEquals(1, tracker.getInFlight());
+
+        tracker.triggerEvent(JupyterServerEvent.completed("first", 1, JupyterServerEventI.Operation.Start, "Ready"));
+
+        // The attached request got the latest event on attaching and every event after that
+        assertThat(events("second"), contains("Building", "Ready"));
+        assertThat(events("first"), contains("Building", "Ready"));
+
+        start.end();
+        start.end(); // No effect
+        assertEquals(0, tracker.getInFlight());
+
+        // A start after the previous one ended runs again
+        assertTrue(tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "third").isPresent());
+    }
+
+    @Test
+    public void testOtherServersDoNotAttach() {
+        assertTrue(tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "first").isPresent());
+        assertTrue(tracker.begin("alice", "named", JupyterServerEventI.Operation.Start, "second").isPresent());
+        assertTrue(tracker.begin("bob", "", JupyterServerEventI.Operation.Start, "third").isPresent());
+        assertEquals(3, tracker.getInFlight());
+    }
+
+    @Test
+    public void testStopWaitsForStart() {
+        TrackedOperation start = tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "start").orElseThrow(AssertionError::new);
+        TrackedOperation stop = tracker.begin("alice", "", JupyterServerEventI.Operation.Stop, "stop").orElseThrow(AssertionError::new);
+
+        assertTrue(start.previous().isDone());
+        assertFalse(stop.previous().isDone());
+
+        // A repeated stop attaches to the waiting stop
+        Optional<TrackedOperation> repeated = tracker.begin("alice", "", JupyterServerEventI.Operation.Stop, "stop-again");
+        assertFalse(repeated.isPresent());
+
+        start.end();
+        assertTrue(stop.previous().isDone());
+
+        stop.end();
+        assertEquals(0, tracker.getInFlight());
+    }
+
+    @Test
+    public void testOperationIsPersistedWhileInFlight() {
+        TrackedOperation start = tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "first").orElseThrow(AssertionError::new);
+
+        ArgumentCaptor<ServerOperationEntity> captor = ArgumentCaptor.forClass(ServerOperationEntity.class);
+        verify(mockServerOperationEntityService).create(captor.capture());
+        ServerOperationEntity persisted = captor.getValue();
+        assertEquals("node-1", persisted.getNode());
+        assertEquals("alice", persisted.getUsername());
+        assertEquals(JupyterServerEventI.Operation.Start, persisted.getOperation());
+        assertEquals(JupyterServerEventI.Status.InProgress, persisted.getState());
+        assertTrue(persisted.getDeadline().getTime() > System.currentTimeMillis());
+        assertTrue(tracker.isInFlight("first"));
+
+        // Each event updates the current step
+        tracker.triggerEvent(JupyterServerEvent.progress("first", 1, JupyterServerEventI.Operation.Start, 20, "Building"));
+        assertEquals("Building", persisted.getStep());
+        assertEquals(Integer.valueOf(1), persisted.getUserId());
+
+        // Attached requests are persisted with the operation
+        tracker.begin("alice", "", JupyterServerEventI.Operation.Start, "second");
+        assertThat(persisted.getAttachedTrackingIds(), contains("second"));
+        verify(mockServerOperationEntityService, times(2)).update(persisted);
+
+        start.end();
+        verify(mockServerOperationEntityService).delete(persisted);
+        assertFalse(tracker.isInFlight("first"));
+        assertFalse(tracker.isInFlight("second"));
+    }
+
+    @Test
+    public void testUntrackedEvent() {
+        tracker.triggerEvent(JupyterServerEvent.progress("untracked", 1, JupyterServerEventI.Operation.Stop, 0, "Stopping"));
+        verify(mockEventService, times(1)).triggerEvent(any(JupyterServerEvent.class));
+    }
+
+    private List<String> events(final String trackingId) {
+        final ArgumentCaptor<JupyterServerEvent> captor = ArgumentCaptor.forClass(JupyterServerEvent.class);
+        verify(mockEventService, atLeastOnce()).triggerEvent(captor.capture());
+        return captor.getAllValues().stream()
+                     .filter(event -> trackingId.equals(event.getTrackingId()))
+                     .map(JupyterServerEvent::getMessage)
+                     .collect(Collectors.toList());
+    }
+
+}
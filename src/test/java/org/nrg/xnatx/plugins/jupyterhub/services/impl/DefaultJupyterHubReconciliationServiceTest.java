@@ -0,0 +1,133 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.HubReconciliation;
+import org.nrg.xnatx.plugins.jupyterhub.services.ResourceQuotaService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryService;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubReconciliationServiceTest {
+
+    private JupyterHubClient mockJupyterHubClient;
+    private UserOptionsEntityService mockUserOptionsEntityService;
+    private ResourceQuotaService mockResourceQuotaService;
+    private SharedDataDirectoryService mockSharedDataDirectoryService;
+    private DefaultJupyterHubReconciliationService reconciliationService;
+
+    @Before
+    public void before() {
+        mockJupyterHubClient = mock(JupyterHubClient.class);
+        mockUserOptionsEntityService = mock(UserOptionsEntityService.class);
+        mockResourceQuotaService = mock(ResourceQuotaService.class);
+        mockSharedDataDirectoryService = mock(SharedDataDirectoryService.class);
+        when(mockUserOptionsEntityService.findAfter(anyLong(), anyInt())).thenReturn(Collections.emptyList());
+
+        reconciliationService = new DefaultJupyterHubReconciliationService(mockJupyterHubClient, mockUserOptionsEntityService,
+                                                                           mockResourceQuotaService, mockSharedDataDirectoryService);
+    }
+
+    @Test
+    public void testStaleUserOptionsAreDeletedAndUnrecordedServersFlagged() {
+        // Setup -> alice's server is recorded, bob's server and a server started from JupyterHub are not
+        final User alice = user("alice", "", server("1"));
+        final User bob = user("bob", "lab", server("2"));
+        final User hubOnly = user("carol", "", server(null));
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.of(alice, bob, hubOnly));
+
+        final UserOptionsEntity running = userOptions(1, 1, "");
+        final UserOptionsEntity stale = userOptions(2, 3, "");
+        when(mockUserOptionsEntityService.findAfter(0, DefaultJupyterHubReconciliationService.BATCH_SIZE)).thenReturn(Arrays.asList(running, stale));
+        when(mockUserOptionsEntityService.deleteStale(eq(Collections.singletonList(2L)), any(Date.class))).thenReturn(Collections.singletonList(stale));
+        when(mockSharedDataDirectoryService.reap()).thenReturn(1);
+
+        // Execute
+        HubReconciliation reconciliation = reconciliationService.reconcile();
+
+        // Verify
+        assertEquals(3, reconciliation.getHubServers());
+        assertEquals(2, reconciliation.getUserOptions());
+        assertEquals(1, reconciliation.getStaleUserOptions());
+        assertEquals(1, reconciliation.getSharedDataDirectories());
+        assertThat(reconciliation.getUnrecordedServers().stream().map(server -> server.getUsername() + "/" + server.getServername()).collect(Collectors.toList()),
+                   containsInAnyOrder("bob/lab", "carol/"));
+        verify(mockResourceQuotaService).release(3, "");
+        verify(mockResourceQuotaService, never()).release(1, "");
+        assertEquals(Optional.of(reconciliation), reconciliationService.getLastReconciliation());
+    }
+
+    @Test
+    public void testUserOptionsAreDeletedInBatches() {
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.empty());
+
+        final int batchSize = DefaultJupyterHubReconciliationService.BATCH_SIZE;
+        final List<UserOptionsEntity> first = LongStream.rangeClosed(1, batchSize)
+                                                        .mapToObj(id -> userOptions(id, (int) id, ""))
+                                                        .collect(Collectors.toList());
+        final List<UserOptionsEntity> second = Collections.singletonList(userOptions(batchSize + 1, batchSize + 1, ""));
+        when(mockUserOptionsEntityService.findAfter(0, batchSize)).thenReturn(first);
+        when(mockUserOptionsEntityService.findAfter(batchSize, batchSize)).thenReturn(second);
+
+        reconciliationService.reconcile();
+
+        // One delete per page, none per row
+        verify(mockUserOptionsEntityService, times(2)).deleteStale(anyCollection(), any(Date.class));
+        verify(mockUserOptionsEntityService, never()).delete(any(UserOptionsEntity.class));
+        verify(mockUserOptionsEntityService, never()).findAfter(batchSize + 1, batchSize);
+        // Nothing was actually deleted
+        verifyNoInteractions(mockResourceQuotaService, mockSharedDataDirectoryService);
+    }
+
+    @Test
+    public void testNothingIsDeletedWhileJupyterHubIsUnavailable() {
+        when(mockJupyterHubClient.streamUsers(true)).thenThrow(new JupyterHubUnavailableException("JupyterHub is unavailable"));
+
+        try {
+            reconciliationService.reconcile();
+            fail("Expected JupyterHubUnavailableException");
+        } catch (JupyterHubUnavailableException e) {
+            // Expected
+        }
+
+        verifyNoInteractions(mockUserOptionsEntityService);
+        assertFalse(reconciliationService.getLastReconciliation().isPresent());
+    }
+
+    private static User user(final String username, final String servername, final Server server) {
+        final Map<String, Server> servers = new HashMap<>();
+        servers.put(servername, server);
+        return User.builder().name(username).servers(servers).build();
+    }
+
+    private static Server server(final String userId) {
+        return Server.builder()
+                     .user_options(userId != null ? Collections.singletonMap("userId", userId) : null)
+                     .build();
+    }
+
+    private static UserOptionsEntity userOptions(final long id, final Integer userId, final String servername) {
+        final UserOptionsEntity userOptions = UserOptionsEntity.builder()
+                                                               .userId(userId)
+                                                               .servername(servername)
+                                                               .eventTrackingId("tracking-" + id)
+                                                               .build();
+        userOptions.setId(id);
+        return userOptions;
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class DefaultJupyterHubServerPollerTest {
+
+    private JupyterHubClient mockJupyterHubClient;
+    private JupyterHubLifecycleExecutor lifecycleExecutor;
+    private DefaultJupyterHubServerPoller poller;
+
+    @Before
+    public void before() {
+        mockJupyterHubClient = mock(JupyterHubClient.class);
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getStartPollingInterval()).thenReturn(1);
+        when(mockJupyterHubPreferences.getStopPollingInterval()).thenReturn(1);
+        when(mockJupyterHubPreferences.getHubLifecycleThreads()).thenReturn(2);
+        lifecycleExecutor = new JupyterHubLifecycleExecutor(mockJupyterHubPreferences);
+        poller = new DefaultJupyterHubServerPoller(mockJupyterHubClient, lifecycleExecutor, mockJupyterHubPreferences);
+    }
+
+    @After
+    public void after() {
+        lifecycleExecutor.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testOneSnapshotResolvesAllWaiters() {
+        final Map<String, Server> servers = new HashMap<>();
+        servers.put("", Server.builder().name("").ready(true).url("/user/alice/").build());
+        final User alice = User.builder().name("alice").servers(servers).build();
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(alice));
+
+        // A start waiting for alice's server and stops waiting for bob's and carol's servers to go away
+        final CompletableFuture<Optional<Server>> start = poller.awaitServer("alice", "", server -> server.isPresent() && server.get().getReady(), 3000, null);
+        final CompletableFuture<Optional<Server>> stopBob = poller.awaitServer("bob", "", server -> !server.isPresent(), 3000, null);
+        final CompletableFuture<Optional<Server>> stopCarol = poller.awaitServer("carol", "ml", server -> !server.isPresent(), 3000, null);
+
+        assertEquals("/user/alice/", start.join().get().getUrl());
+        assertFalse(stopBob.join().isPresent());
+        assertFalse(stopCarol.join().isPresent());
+
+        verify(mockJupyterHubClient, times(1)).streamUserSummaries(true);
+        assertEquals(0, poller.getPending());
+    }
+
+    @Test(timeout = 5000)
+    public void testTimeoutCompletesWithLastState() {
+        final User alice = User.builder().name("alice").servers(Collections.singletonMap("", Server.builder().name("").pending("stop").build())).build();
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(alice));
+
+        final Optional<Server> server = poller.awaitServer("alice", "", s -> !s.isPresent(), 1500, null).join();
+
+        assertTrue(server.isPresent());
+        verify(mockJupyterHubClient, atLeast(2)).streamUserSummaries(true);
+    }
+
+    @Test(timeout = 5000)
+    public void testCustomSchedule() throws Exception {
+        final User alice = User.builder().name("alice").servers(Collections.singletonMap("", Server.builder().name("").ready(true).build())).build();
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(alice));
+
+        final CompletableFuture<Optional<Server>> start = poller.awaitServer("alice", "", server -> server.isPresent(), 3000, elapsed -> 2000, null);
+
+        // Not due on the first tick
+        Thread.sleep(1200);
+        verify(mockJupyterHubClient, never()).streamUserSummaries(anyBoolean());
+
+        assertTrue(start.join().isPresent());
+        verify(mockJupyterHubClient, times(1)).streamUserSummaries(true);
+    }
+
+    @Test(timeout = 5000)
+    public void testHubFailureAfterTimeout() {
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
+
+        final CompletableFuture<Optional<Server>> stop = poller.awaitServer("alice", "", s -> !s.isPresent(), 500, null);
+
+        assertTrue(stop.handle((server, e) -> e != null).join());
+    }
+
+}
@@ -16,31 +16,45 @@ import org.nrg.xdat.security.services.UserManagementServiceI;
 import org.nrg.xdat.security.user.exceptions.UserInitException;
 import org.nrg.xft.security.UserI;
 import org.nrg.xnat.compute.services.JobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.client.AsyncJupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.HubCircuitBreaker;
 import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Hub;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.SpawnProgress;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.Token;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
 import org.nrg.xnatx.plugins.jupyterhub.client.models.UserOptions;
 import org.nrg.xnatx.plugins.jupyterhub.config.DefaultJupyterHubServiceConfig;
 import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
 import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
+import org.nrg.xnatx.plugins.jupyterhub.models.XnatUserOptions;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.Resources;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.TaskTemplate;
 import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
 import org.nrg.xnatx.plugins.jupyterhub.services.DashboardJobTemplateService;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnDurationEntityService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
 import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsService;
 import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+import org.nrg.xnatx.plugins.jupyterhub.utils.StageGraph;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -50,6 +64,7 @@ public class DefaultJupyterHubServiceTest {
 
     @Autowired private DefaultJupyterHubService jupyterHubService;
     @Autowired private JupyterHubClient mockJupyterHubClient;
+    @Autowired private AsyncJupyterHubClient mockAsyncJupyterHubClient;
     @Autowired private PermissionsHelper mockPermissionsHelper;
     @Autowired private NrgEventServiceI mockEventService;
     @Autowired private UserOptionsEntityService mockUserOptionsEntityService;
@@ -58,6 +73,7 @@ public class DefaultJupyterHubServiceTest {
     @Autowired private UserManagementServiceI mockUserManagementServiceI;
     @Autowired private JobTemplateService mockJobTemplateService;
     @Autowired private DashboardJobTemplateService mockDashboardJobTemplateService;
+    @Autowired private SpawnDurationEntityService mockSpawnDurationEntityService;
 
     @Captor ArgumentCaptor<JupyterServerEventI> jupyterServerEventCaptor;
     @Captor ArgumentCaptor<Token> tokenArgumentCaptor;
@@ -153,14 +169,24 @@ public class DefaultJupyterHubServiceTest {
 
         // Default preferences
         when(mockJupyterHubPreferences.getMaxNamedServers()).thenReturn(1);
+
+        // Async client defaults, JupyterHub accepts start and stop requests and no server is running
+        when(mockAsyncJupyterHubClient.startServer(anyString(), anyString(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(mockAsyncJupyterHubClient.stopServer(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+        when(mockAsyncJupyterHubClient.getServer(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        // Progress stream unavailable by default, start falls back to polling
+        when(mockAsyncJupyterHubClient.streamProgress(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @After
     public void after() {
         Mockito.reset(mockJupyterHubClient);
+        Mockito.reset(mockAsyncJupyterHubClient);
         Mockito.reset(mockEventService);
         Mockito.reset(mockPermissionsHelper);
         Mockito.reset(mockUserOptionsService);
+        Mockito.reset(mockSpawnDurationEntityService);
         Mockito.reset(mockUserOptionsEntityService);
         Mockito.reset(mockUserManagementServiceI);
         Mockito.reset(mockJobTemplateService);
@@ -184,6 +210,19 @@ public class DefaultJupyterHubServiceTest {
         verify(mockJupyterHubClient).getInfo();
     }
 
+    @Test
+    public void testGetInfo_HubOffline() {
+        when(mockJupyterHubClient.getInfo()).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
+
+        // Test
+        Hub info = jupyterHubService.getInfo();
+
+        // Verify the health and circuit breaker state are still reported
+        assertNull(info.getVersion());
+        assertNotNull(info.getHealth());
+        assertEquals(HubCircuitBreaker.State.CLOSED.name(), info.getHealth().getCircuitBreaker());
+    }
+
     @Test
     public void testCreateUser() {
         // Test
@@ -207,8 +246,8 @@ public class DefaultJupyterHubServiceTest {
         // Test
         jupyterHubService.getUsers();
 
-        // Verify the jupyter hub client method was called as expected
-        verify(mockJupyterHubClient).getUsers();
+        // Verify the hub state mirror synced the active users
+        verify(mockJupyterHubClient).streamUsers(true);
     }
 
     @Test
@@ -216,8 +255,8 @@ public class DefaultJupyterHubServiceTest {
         // Test
         jupyterHubService.getServer(user);
 
-        // Verify the jupyter hub client method was called as expected
-        verify(mockJupyterHubClient).getServer(username);
+        // Verify the hub state mirror got the user from JupyterHub
+        verify(mockJupyterHubClient).getUser(username);
     }
 
     @Test
@@ -225,17 +264,18 @@ public class DefaultJupyterHubServiceTest {
         // Test
         jupyterHubService.getServer(user, servername);
 
-        // Verify the jupyter hub client method was called as expected
-        verify(mockJupyterHubClient).getServer(username, servername);
+        // Verify the hub state mirror got the user from JupyterHub
+        verify(mockJupyterHubClient).getUser(username);
     }
 
-    @Test
+    @Test(timeout = 2000)
     public void testStartServer_cantReadProject() throws Exception {
         // Can't read project
         when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(false);
 
         // Test
         jupyterHubService.startServer(user, startProjectRequest);
+        Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
 
         // Verify failure to start event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -247,16 +287,17 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
-    @Test
+    @Test(timeout = 2000)
     public void testStartServer_cantReadSubject() throws Exception {
         // Can't read subject
         when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(false);
 
         // Test
         jupyterHubService.startServer(user, startSubjectRequest);
+        Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
 
         //Verify failure to start event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -268,16 +309,17 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
-    @Test
+    @Test(timeout = 2000)
     public void testStartServer_cantReadExperiment() throws Exception {
         // Can't read experiment
         when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(false);
 
         // Test
         jupyterHubService.startServer(user, startExperimentRequest);
+        Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
 
         //Verify failure to start event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -289,16 +331,17 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
-    @Test
+    @Test(timeout = 2000)
     public void testStartServer_cantReadScan() throws Exception {
         // Can't read experiment
         when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(false);
 
         // Test
         jupyterHubService.startServer(user, startScanRequest);
+        Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
 
         //Verify failure to start event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -310,7 +353,7 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
     @Test(timeout = 2000)
@@ -336,7 +379,7 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
     @Test(timeout = 2000)
@@ -363,7 +406,7 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
     @Test(timeout = 2000)
@@ -396,7 +439,40 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
+    }
+
+    @Test(timeout = 2000)
+    public void testStartServer_quotaExceeded() throws Exception {
+        // Grant permissions
+        when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(true);
+        when(mockJobTemplateService.isAvailable(any(), any(), any())).thenReturn(true);
+        when(mockJupyterHubClient.getUser(anyString())).thenReturn(Optional.of(userNoServers));
+
+        // The hardware reserves more CPUs than the user's quota
+        when(mockJupyterHubPreferences.getUserCpuQuota()).thenReturn("2");
+        when(mockUserOptionsService.retrieveUserOptions(any(), eq(servername))).thenReturn(Optional.of(
+                XnatUserOptions.builder()
+                               .taskTemplate(TaskTemplate.builder().resources(Resources.builder().cpuReservation(4.0).build()).build())
+                               .build()));
+
+        try {
+            // Test
+            jupyterHubService.startServer(user, startProjectRequest);
+            Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
+
+            // Verify failure to start event occurred
+            verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
+            JupyterServerEventI capturedEvent = jupyterServerEventCaptor.getValue();
+            assertEquals(JupyterServerEventI.Status.Failed, capturedEvent.getStatus());
+            assertEquals(JupyterServerEventI.Operation.Start, capturedEvent.getOperation());
+
+            // Verify the stored user options are removed again and no attempts to start a server
+            verify(mockUserOptionsService, times(1)).removeUserOptions(eq(user), eq(servername));
+            verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
+        } finally {
+            when(mockJupyterHubPreferences.getUserCpuQuota()).thenReturn("");
+        }
     }
 
     @Test(timeout = 2000)
@@ -421,7 +497,7 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
     @Test(timeout = 2000)
@@ -447,7 +523,7 @@ public class DefaultJupyterHubServiceTest {
         verify(mockUserOptionsEntityService, never()).createOrUpdate(any());
 
         // Verify no attempts to start a server
-        verify(mockJupyterHubClient, never()).startServer(any(), any(), any());
+        verify(mockAsyncJupyterHubClient, never()).startServer(any(), any(), any(), any());
     }
 
     @Test(timeout = 4000)
@@ -459,24 +535,28 @@ public class DefaultJupyterHubServiceTest {
         when(mockJobTemplateService.isAvailable(any(), any(), any())).thenReturn(true);
 
         // To successfully start a server there should be no running servers at first.
-        // A subsequent call should contain a server, but let's presume it is never ready
+        // The server poller never sees the server, let's presume it is never ready
         when(mockJupyterHubClient.getUser(anyString())).thenReturn(Optional.of(userNoServers));
-        when(mockJupyterHubClient.getServer(anyString(), anyString())).thenReturn(Optional.empty());
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.empty());
 
         // Test
         jupyterHubService.startServer(user, startProjectRequest);
         Thread.sleep(3000); // Async call, need to wait. Is there a better way to test this?
 
         // Verify user options are stored
-        verify(mockUserOptionsService, times(1)).storeUserOptions(eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
+        verify(mockUserOptionsService, times(1)).storeUserOptions(any(StageGraph.class), eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
                                                                   eq(projectId), eq(projectId), eq(computeEnvironmentConfigId),
-                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId));
+                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId), anyList());
 
         // Verify JupyterHub start server request sent
-        verify(mockJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class));
+        verify(mockAsyncJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class), any());
 
-        // Verify 2 attempts to get server from JupyterHub with polling rate and timeout
-        verify(mockJupyterHubClient, times(2)).getServer(eq(username), eq(servername));
+        // Verify the shared poller checked JupyterHub until the timeout
+        verify(mockJupyterHubClient, atLeast(2)).streamUserSummaries(true);
+
+        // Verify the timed out spawn is recorded with the time waited
+        verify(mockSpawnDurationEntityService).record(argThat(spawnDuration -> Boolean.TRUE.equals(spawnDuration.getTimedOut()) &&
+                                                                               spawnDuration.getDurationMillis() >= 2000), anyInt());
 
         // Verify failure to start event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -494,21 +574,21 @@ public class DefaultJupyterHubServiceTest {
         when(mockJobTemplateService.isAvailable(any(), any(), any())).thenReturn(true);
 
         // To successfully start a server there should be no running servers at first.
-        // A subsequent call should eventually return a server in the ready state
+        // The server poller should eventually see the server in the ready state
         when(mockJupyterHubClient.getUser(anyString())).thenReturn(Optional.of(userNoServers));
-        when(mockJupyterHubClient.getServer(anyString(), anyString())).thenReturn(Optional.of(Server.builder().ready(true).build()));
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(userWithServer(Server.builder().name(servername).ready(true).build())));
 
         // Test
         jupyterHubService.startServer(user, startProjectRequest);
         Thread.sleep(2500); // Async call, need to wait. Is there a better way to test this?
 
         // Verify user options are stored
-        verify(mockUserOptionsService, times(1)).storeUserOptions(eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
+        verify(mockUserOptionsService, times(1)).storeUserOptions(any(StageGraph.class), eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
                                                                   eq(projectId), eq(projectId), eq(computeEnvironmentConfigId),
-                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId));
+                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId), anyList());
 
         // Verify JupyterHub start server request sent
-        verify(mockJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class));
+        verify(mockAsyncJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class), any());
 
         // Verify start completed event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -517,6 +597,40 @@ public class DefaultJupyterHubServiceTest {
         assertEquals(JupyterServerEventI.Operation.Start, capturedEvent.getOperation());
     }
 
+    @Test(timeout = 3000)
+    public void testStartServer_ProgressStream_Success() throws Exception {
+        // Grant permissions
+        when(mockPermissionsHelper.canRead(any(), anyString(), anyString(), anyString())).thenReturn(true);
+
+        // Job template is available
+        when(mockJobTemplateService.isAvailable(any(), any(), any())).thenReturn(true);
+
+        // No running servers, JupyterHub streams spawn progress until the server is ready
+        when(mockJupyterHubClient.getUser(anyString())).thenReturn(Optional.of(userNoServers));
+        when(mockAsyncJupyterHubClient.streamProgress(eq(username), eq(servername), any())).thenAnswer(invocation -> {
+            Consumer<SpawnProgress> listener = invocation.getArgument(2);
+            listener.accept(SpawnProgress.builder().progress(50).message("Spawning server...").build());
+            SpawnProgress ready = SpawnProgress.builder().progress(100).ready(true).message("Server ready").url("/user/" + username + "/" + servername + "/").build();
+            listener.accept(ready);
+            return CompletableFuture.completedFuture(ready);
+        });
+
+        // Test
+        jupyterHubService.startServer(user, startProjectRequest);
+        Thread.sleep(1000); // Async call, need to wait. Is there a better way to test this?
+
+        // Verify no polling was needed
+        verify(mockJupyterHubClient, never()).streamUserSummaries(anyBoolean());
+
+        // Verify hub progress was forwarded with mapped percentages and the start completed
+        verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
+        List<JupyterServerEventI> events = jupyterServerEventCaptor.getAllValues();
+        assertTrue(events.stream().anyMatch(event -> event.getProgress() == 69 && "Spawning server...".equals(event.getMessage())));
+        JupyterServerEventI capturedEvent = jupyterServerEventCaptor.getValue();
+        assertEquals(JupyterServerEventI.Status.Completed, capturedEvent.getStatus());
+        assertEquals(JupyterServerEventI.Operation.Start, capturedEvent.getOperation());
+    }
+
     @Test(timeout = 3000)
     public void testStartServer_CreateUser_Success() throws Exception {
         // Grant permissions
@@ -530,7 +644,7 @@ public class DefaultJupyterHubServiceTest {
         // Start with a user who does not yet exist on JupyterHub
         when(mockJupyterHubClient.getUser(anyString())).thenReturn(Optional.empty());
         when(mockJupyterHubClient.createUser(anyString())).thenReturn(userNoServers);
-        when(mockJupyterHubClient.getServer(anyString(), anyString())).thenReturn(Optional.of(Server.builder().ready(true).build()));
+        when(mockAsyncJupyterHubClient.getServer(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(Optional.of(Server.builder().ready(true).build())));
 
         // Test
         jupyterHubService.startServer(user, startProjectRequest);
@@ -540,12 +654,12 @@ public class DefaultJupyterHubServiceTest {
         verify(mockJupyterHubClient, times(1)).createUser(anyString());
 
         // Verify user options are stored
-        verify(mockUserOptionsService, times(1)).storeUserOptions(eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
+        verify(mockUserOptionsService, times(1)).storeUserOptions(any(StageGraph.class), eq(user), eq(servername), eq(XnatProjectdata.SCHEMA_ELEMENT_NAME),
                                                                   eq(projectId), eq(projectId), eq(computeEnvironmentConfigId),
-                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId));
+                                                                  eq(hardwareConfigId), isNull(), eq(eventTrackingId), anyList());
 
         // Verify JupyterHub start server request sent
-        verify(mockJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class));
+        verify(mockAsyncJupyterHubClient, times(1)).startServer(eq(username), eq(servername), any(UserOptions.class), any());
 
         // Verify start completed event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -556,20 +670,18 @@ public class DefaultJupyterHubServiceTest {
 
     @Test(timeout = 3000)
     public void testStopSever_Failure() throws Exception {
-        // Returning a server should lead to a failure to stop event
-        when(mockJupyterHubClient.getServer(anyString(), anyString()))
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.of(Server.builder().build()));
+        // The server poller still seeing the server should lead to a failure to stop event
+        when(mockJupyterHubClient.streamUserSummaries(true)).thenAnswer(invocation -> Stream.of(userWithServer(Server.builder().name(servername).pending("stop").build())));
 
         // Test
         jupyterHubService.stopServer(user, servername, eventTrackingId);
         Thread.sleep(2500); // Async call, need to wait. Is there a better way to test this?
 
         // Verify one attempt to stop the sever
-        verify(mockJupyterHubClient, atLeastOnce()).stopServer(username, servername);
+        verify(mockAsyncJupyterHubClient, atLeastOnce()).stopServer(username, servername);
 
         // Verify attempts to see if server stopped
-        verify(mockJupyterHubClient, atLeast(2)).getServer(username, servername);
+        verify(mockJupyterHubClient, atLeast(1)).streamUserSummaries(true);
 
         // Verify failure to stop event occurred
         verify(mockEventService, atLeastOnce()).triggerEvent(jupyterServerEventCaptor.capture());
@@ -581,17 +693,17 @@ public class DefaultJupyterHubServiceTest {
     @Test(timeout = 3000)
     public void testStopSever_Success() throws Exception {
         // Returning an empty should lead to a failure to start event
-        when(mockJupyterHubClient.getServer(anyString(), anyString())).thenReturn(Optional.empty());
+        when(mockAsyncJupyterHubClient.getServer(anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
 
         // Test
         jupyterHubService.stopServer(user, servername, eventTrackingId);
         Thread.sleep(2000); // Async call, need to wait. Is there a better way to test this?
 
         // Verify one attempt to stop the sever
-        verify(mockJupyterHubClient, times(1)).stopServer(username, servername);
+        verify(mockAsyncJupyterHubClient, times(1)).stopServer(username, servername);
 
         // Verify at least one attempt to see if server stopped
-        verify(mockJupyterHubClient, atLeastOnce()).getServer(username, servername);
+        verify(mockJupyterHubClient, atLeastOnce()).streamUserSummaries(true);
 
         // Verify user options are removed
         verify(mockUserOptionsService, times(1)).removeUserOptions(eq(user), eq(servername));
@@ -621,179 +733,10 @@ public class DefaultJupyterHubServiceTest {
         assertEquals(Collections.singletonList(scope), tokenArgumentCaptorValue.getScopes());
     }
 
-    @Test(timeout = 3000)
-    public void testCullIdleServers_Cull() throws Exception {
-        // Setup
-        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
-
-        Server server_active = Server.builder()
-                .name("server_active")
-                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")))
-                .build();
-
-        Server server_inactive = Server.builder()
-                .name("server_inactive")
-                .last_activity(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(2L))
-                .build();
-
-        Map<String, Server> servers = new HashMap<>();
-        servers.put("server_active", server_active);
-        servers.put("server_inactive", server_inactive);
-
-        User jupyterUser = User.builder()
-                .name(username)
-                .servers(servers)
-                .build();
-
-        when(mockJupyterHubClient.getUsers()).thenReturn(Collections.singletonList(jupyterUser));
-
-        // Test
-        jupyterHubService.cullInactiveServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify active server not stopped
-        verify(mockJupyterHubClient, never()).stopServer(eq(username), eq(server_active.getName()));
-        verify(mockUserOptionsService, never()).removeUserOptions(eq(user), eq(server_active.getName()));
-
-        // Verify inactive server stopped
-        verify(mockJupyterHubClient, times(1)).stopServer(eq(username), eq(server_inactive.getName()));
-        verify(mockUserOptionsService, times(1)).removeUserOptions(eq(user), eq(server_inactive.getName()));
-    }
-
-    @Test(timeout = 3000)
-    public void testCullIdleServers_NoCull() throws InterruptedException {
-        // Setup -> timeout set to zero
-        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(0L);
-
-        // Test
-        jupyterHubService.cullInactiveServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify no servers stopped
-        verify(mockJupyterHubClient, never()).stopServer(any(), any());
-        verify(mockUserOptionsService, never()).removeUserOptions(any(), any());
-    }
-
-    @Test(timeout = 3000)
-    public void testCullIdleServers_Exception() throws InterruptedException {
-        // Setup
-        when(mockJupyterHubPreferences.getInactivityTimeout()).thenReturn(90L);
-        when(mockJupyterHubClient.getUsers()).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
-
-        // Test
-        jupyterHubService.cullInactiveServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify no servers stopped
-        verify(mockJupyterHubClient, never()).stopServer(any(), any());
-        verify(mockUserOptionsService, never()).removeUserOptions(any(), any());
-    }
-
-    @Test(timeout = 3000)
-    public void testCullLongRunningServers_Cull() throws InterruptedException {
-        // Setup
-        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
-
-        Server server_active = Server.builder()
-                .name("server_active")
-                .started(ZonedDateTime.now(ZoneId.of("UTC")))
-                .build();
-
-        Server server_long_running = Server.builder()
-                .name("server_long_running")
-                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(48L).minusMinutes(1L))
-                .build();
-
-        Map<String, Server> servers = new HashMap<>();
-        servers.put(server_active.getName(), server_active);
-        servers.put(server_long_running.getName(), server_long_running);
-
-        User jupyterUser = User.builder()
-                .name(username)
-                .servers(servers)
-                .build();
-
-        when(mockJupyterHubClient.getUsers()).thenReturn(Collections.singletonList(jupyterUser));
-
-        // Test
-        jupyterHubService.cullLongRunningServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify active server not stopped
-        verify(mockJupyterHubClient, never()).stopServer(eq(username), eq(server_active.getName()));
-        verify(mockUserOptionsService, never()).removeUserOptions(eq(user), eq(server_active.getName()));
-
-        // Verify inactive server stopped
-        verify(mockJupyterHubClient, times(1)).stopServer(eq(username), eq(server_long_running.getName()));
-        verify(mockUserOptionsService, times(1)).removeUserOptions(eq(user), eq(server_long_running.getName()));
-    }
-
-    @Test(timeout = 3000)
-    public void testCullLongRunningServers_NoCull_Disabled() throws InterruptedException {
-        // Setup -> timeout set to zero
-        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(0L);
-
-        // Test
-        jupyterHubService.cullLongRunningServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify servers not stopped
-        verify(mockJupyterHubClient, never()).stopServer(any(), any());
-        verify(mockUserOptionsService, never()).removeUserOptions(any(), any());
+    private User userWithServer(final Server server) {
+        final Map<String, Server> servers = new HashMap<>();
+        servers.put(server.getName(), server);
+        return User.builder().name(username).servers(servers).build();
     }
 
-    @Test(timeout = 3000)
-    public void testCullLongRunningServers_NoCull() throws InterruptedException {
-        // Setup
-        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
-
-        Server server_active = Server.builder()
-                .name("server_active")
-                .started(ZonedDateTime.now(ZoneId.of("UTC")))
-                .build();
-
-        // Server started less than 48 hours ago
-        Server server_long_running = Server.builder()
-                .name("server_long_running")
-                .started(ZonedDateTime.now(ZoneId.of("UTC")).minusHours(47L).minusMinutes(59L))
-                .build();
-
-        Map<String, Server> servers = new HashMap<>();
-        servers.put(server_active.getName(), server_active);
-        servers.put(server_long_running.getName(), server_long_running);
-
-        User jupyterUser = User.builder()
-                .name(username)
-                .servers(servers)
-                .build();
-
-        when(mockJupyterHubClient.getUsers()).thenReturn(Collections.singletonList(jupyterUser));
-
-        // Test
-        jupyterHubService.cullLongRunningServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify active server not stopped
-        verify(mockJupyterHubClient, never()).stopServer(eq(username), eq(server_active.getName()));
-        verify(mockUserOptionsService, never()).removeUserOptions(eq(user), eq(server_active.getName()));
-
-        // Verify inactive server not stopped. Timeout is set to zero
-        verify(mockJupyterHubClient, never()).stopServer(eq(username), eq(server_long_running.getName()));
-        verify(mockUserOptionsService, never()).removeUserOptions(eq(user), eq(server_long_running.getName()));
-    }
-
-    @Test(timeout = 3000)
-    public void testCullLongRunningServers_Exception() throws InterruptedException {
-        // Setup
-        when(mockJupyterHubPreferences.getMaxServerLifetime()).thenReturn(48L);
-        when(mockJupyterHubClient.getUsers()).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
-
-        // Test
-        jupyterHubService.cullLongRunningServers();
-        Thread.sleep(2000); // Stop server is async call, need to wait.
-
-        // Verify no server stopped
-        verify(mockJupyterHubClient, never()).stopServer(any(), any());
-        verify(mockUserOptionsService, never()).removeUserOptions(any(), any());
-    }
-}
\ No newline at end of file
+}
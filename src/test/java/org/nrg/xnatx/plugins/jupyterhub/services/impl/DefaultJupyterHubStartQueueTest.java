@@ -0,0 +1,196 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubStartQueue.Admission;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DefaultJupyterHubStartQueueTest {
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private JupyterHubLifecycleExecutor lifecycleExecutor;
+    private DefaultJupyterHubStartQueue startQueue;
+
+    @Before
+    public void before() {
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubLifecycleThreads()).thenReturn(2);
+        when(mockJupyterHubPreferences.getStartQueueMaxConcurrent()).thenReturn(1);
+        lifecycleExecutor = new JupyterHubLifecycleExecutor(mockJupyterHubPreferences);
+        startQueue = new DefaultJupyterHubStartQueue(lifecycleExecutor, mockJupyterHubPreferences);
+    }
+
+    @After
+    public void after() {
+        lifecycleExecutor.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testGlobalCap() {
+        Admission first = startQueue.admit("alice", "A", null).join();
+        CompletableFuture<Admission> second = startQueue.admit("bob", "B", null);
+
+        assertFalse(second.isDone());
+        assertEquals(1, startQueue.getRunning());
+        assertEquals(1, startQueue.getQueued());
+
+        first.release();
+        first.release(); // No effect
+
+        second.join();
+        assertEquals(1, startQueue.getRunning());
+        assertEquals(0, startQueue.getQueued());
+    }
+
+    @Test(timeout = 5000)
+    public void testUnlimited() {
+        when(mockJupyterHubPreferences.getStartQueueMaxConcurrent()).thenReturn(0);
+
+        for (int i = 0; i < 100; i++) {
+            startQueue.admit("alice", "A", null).join();
+        }
+
+        assertEquals(100, startQueue.getRunning());
+    }
+
+    @Test(timeout = 5000)
+    public void testFairSharingBetweenProjects() {
+        final List<String> admitted = new CopyOnWriteArrayList<>();
+        final Admission running = startQueue.admit("batch", "A", null).join();
+
+        // Project A's scripted batch queues first, then one start each from project B and C
+        final List<CompletableFuture<Admission>> waiting = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            waiting.add(track(startQueue.admit("batch", "A", null), "A" + i, admitted));
+        }
+        waiting.add(track(startQueue.admit("bob", "B", null), "B", admitted));
+        waiting.add(track(startQueue.admit("carol", "C", null), "C", admitted));
+
+        running.release();
+        drain(waiting);
+
+        assertThat(admitted.subList(0, 3), contains("B", "C", "A0"));
+    }
+
+    @Test(timeout = 5000)
+    public void testFairSharingBetweenUsers() {
+        when(mockJupyterHubPreferences.getStartQueueMaxConcurrent()).thenReturn(2);
+        final List<String> admitted = new CopyOnWriteArrayList<>();
+        final Admission alice = startQueue.admit("alice", "A", null).join();
+        final Admission other = startQueue.admit("alice", "A", null).join();
+
+        final List<CompletableFuture<Admission>> waiting = new ArrayList<>();
+        waiting.add(track(startQueue.admit("alice", "A", null), "alice", admitted));
+        waiting.add(track(startQueue.admit("bob", "A", null), "bob", admitted));
+
+        alice.release();
+        waiting.get(1).join();
+        assertThat(admitted, contains("bob"));
+
+        other.release();
+        drain(waiting);
+    }
+
+    @Test(timeout = 5000)
+    public void testProjectWeights() {
+        when(mockJupyterHubPreferences.getStartQueueMaxConcurrent()).thenReturn(3);
+        when(mockJupyterHubPreferences.getStartQueueProjectWeights()).thenReturn(Collections.singletonMap("A", "2"));
+        final List<String> admitted = new CopyOnWriteArrayList<>();
+
+        final List<CompletableFuture<Admission>> waiting = new ArrayList<>();
+        final Admission blocker1 = startQueue.admit("x", "X", null).join();
+        final Admission blocker2 = startQueue.admit("x", "X", null).join();
+        final Admission blocker3 = startQueue.admit("x", "X", null).join();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(track(startQueue.admit("alice", "A", null), "A", admitted));
+            waiting.add(track(startQueue.admit("bob", "B", null), "B", admitted));
+        }
+
+        // Three slots free up, project A gets twice the share of project B
+        blocker1.release();
+        blocker2.release();
+        blocker3.release();
+
+        while (admitted.size() < 3) {
+            Thread.yield();
+        }
+        assertEquals(2, admitted.subList(0, 3).stream().filter("A"::equals).count());
+        assertEquals(3, startQueue.getQueued());
+
+        drain(waiting);
+    }
+
+    @Test(timeout = 5000)
+    public void testQueuePositions() {
+        final List<Integer> positions = new CopyOnWriteArrayList<>();
+        final Admission running = startQueue.admit("alice", "A", null).join();
+        final CompletableFuture<Admission> second = startQueue.admit("alice", "A", null);
+        final CompletableFuture<Admission> third = startQueue.admit("alice", "A", positions::add);
+
+        // A start from another project moves ahead of alice's waiting starts
+        final CompletableFuture<Admission> bob = startQueue.admit("bob", "B", null);
+
+        running.release();
+        bob.join();
+
+        assertThat(positions, contains(1, 2, 1));
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+    }
+
+    @Test(timeout = 5000)
+    public void testTagsPruned() {
+        final Admission running = startQueue.admit("batch", "A", null).join();
+        final CompletableFuture<Admission> waiting = startQueue.admit("batch", "A", null);
+
+        // Tags of the busy project and user are kept while they have starts waiting
+        running.release();
+        assertEquals(2, startQueue.getTagged());
+
+        waiting.join().release();
+        for (int i = 0; i < 100; i++) {
+            startQueue.admit("user" + i, "P" + i, null).join().release();
+        }
+
+        assertEquals(0, startQueue.getTagged());
+        assertEquals(0, startQueue.getRunning());
+    }
+
+    private static CompletableFuture<Admission> track(final CompletableFuture<Admission> admission, final String name, final List<String> admitted) {
+        return admission.thenApply(a -> {
+            admitted.add(name);
+            return a;
+        });
+    }
+
+    /**
+     * Releases the admissions as they are granted until all have run.
+     */
+    private static void drain(final List<CompletableFuture<Admission>> waiting) {
+        final List<CompletableFuture<Admission>> remaining = new ArrayList<>(waiting);
+        while (!remaining.isEmpty()) {
+            remaining.removeIf(admission -> {
+                if (admission.isDone()) {
+                    admission.join().release();
+                    return true;
+                }
+                return false;
+            });
+            Thread.yield();
+        }
+    }
+
+}
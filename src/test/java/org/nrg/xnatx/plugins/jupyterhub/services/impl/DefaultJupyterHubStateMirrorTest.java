@@ -0,0 +1,174 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.config.DefaultJupyterHubStateMirrorConfig;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = DefaultJupyterHubStateMirrorConfig.class)
+public class DefaultJupyterHubStateMirrorTest {
+
+    @Autowired private DefaultJupyterHubStateMirror jupyterHubStateMirror;
+    @Autowired private JupyterHubClient mockJupyterHubClient;
+    @Autowired private JupyterHubPreferences mockJupyterHubPreferences;
+
+    private final String username = "user";
+    private final String servername = "server";
+    private User userWithServer;
+
+    @Before
+    public void before() {
+        Map<String, Server> servers = new HashMap<>();
+        servers.put(servername, Server.builder().name(servername).ready(true).build());
+        userWithServer = User.builder().name(username).servers(servers).build();
+
+        when(mockJupyterHubPreferences.getHubStateMaxStaleness()).thenReturn(60);
+    }
+
+    @After
+    public void after() {
+        Mockito.reset(mockJupyterHubClient);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testGetUser_servedFromMirrorWhenFresh() {
+        when(mockJupyterHubClient.getUser(username)).thenReturn(Optional.of(userWithServer));
+
+        // Test
+        Optional<User> first = jupyterHubStateMirror.getUser(username);
+        Optional<User> second = jupyterHubStateMirror.getUser(username);
+
+        // Verify only the first read went to JupyterHub
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals(username, second.get().getName());
+        verify(mockJupyterHubClient, times(1)).getUser(username);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testGetUser_liveWhenStale() {
+        when(mockJupyterHubPreferences.getHubStateMaxStaleness()).thenReturn(0);
+        when(mockJupyterHubClient.getUser(username)).thenReturn(Optional.of(userWithServer));
+
+        // Test
+        jupyterHubStateMirror.getUser(username);
+        jupyterHubStateMirror.getUser(username);
+
+        // Verify both reads went to JupyterHub
+        verify(mockJupyterHubClient, times(2)).getUser(username);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testGetUser_keepsServerPutDuringFetch() {
+        // A start puts its spawning server while the user is being fetched from JupyterHub
+        when(mockJupyterHubClient.getUser(username)).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            jupyterHubStateMirror.putServer(username, Server.builder().name("spawning").ready(false).pending("spawn").build());
+            return Optional.of(userWithServer);
+        });
+
+        // Test
+        jupyterHubStateMirror.getUser(username);
+
+        // Verify the fetched user did not replace the newer state
+        assertTrue(jupyterHubStateMirror.getServer(username, "spawning").isPresent());
+        verify(mockJupyterHubClient, times(1)).getUser(username);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testGetUsers_syncsOnceWhileFresh() {
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.of(userWithServer));
+
+        // Test
+        List<User> users = jupyterHubStateMirror.getUsers();
+        jupyterHubStateMirror.getUsers();
+        Optional<Server> server = jupyterHubStateMirror.getServer(username, servername);
+
+        // Verify
+        assertEquals(1, users.size());
+        assertTrue(server.isPresent());
+        verify(mockJupyterHubClient, times(1)).streamUsers(true);
+        verify(mockJupyterHubClient, never()).getUser(anyString());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testSync_removesStoppedServers() {
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.of(userWithServer))
+                                                    .thenAnswer(invocation -> Stream.empty());
+
+        // Test
+        jupyterHubStateMirror.sync();
+        assertTrue(jupyterHubStateMirror.getServer(username, servername).isPresent());
+        jupyterHubStateMirror.sync();
+
+        // Verify the user is still known but no longer has the server
+        Optional<User> user = jupyterHubStateMirror.getUser(username);
+        assertTrue(user.isPresent());
+        assertTrue(user.get().getServers().isEmpty());
+        assertTrue(jupyterHubStateMirror.getUsers().isEmpty());
+        verify(mockJupyterHubClient, never()).getUser(anyString());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testPutAndRemoveServer() {
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.empty());
+        assertTrue(jupyterHubStateMirror.getUsers().isEmpty());
+        jupyterHubStateMirror.putUser(User.builder().name(username).servers(Collections.emptyMap()).build());
+
+        // Test
+        jupyterHubStateMirror.putServer(username, Server.builder().name(servername).ready(false).pending("spawn").build());
+
+        // Verify the spawning server is visible without asking JupyterHub
+        assertTrue(jupyterHubStateMirror.getServer(username, servername).isPresent());
+        assertEquals(1, jupyterHubStateMirror.getUsers().size());
+        verify(mockJupyterHubClient, times(1)).streamUsers(true);
+
+        // Test
+        jupyterHubStateMirror.removeServer(username, servername);
+
+        // Verify
+        assertFalse(jupyterHubStateMirror.getServer(username, servername).isPresent());
+        verify(mockJupyterHubClient, never()).getUser(anyString());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testSync_failureKeepsState() {
+        jupyterHubStateMirror.putUser(userWithServer);
+        when(mockJupyterHubClient.streamUsers(true)).thenThrow(new RuntimeException("Unable to connect to JupyterHub"));
+
+        // Test
+        jupyterHubStateMirror.sync();
+
+        // Verify
+        assertTrue(jupyterHubStateMirror.getServer(username, servername).isPresent());
+    }
+
+}
@@ -0,0 +1,267 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.nrg.xdat.security.services.UserManagementServiceI;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnatx.plugins.jupyterhub.entities.PrestartScheduleEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.PrestartSchedule;
+import org.nrg.xnatx.plugins.jupyterhub.models.ServerStartRequest;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.JupyterHubService;
+import org.nrg.xnatx.plugins.jupyterhub.services.PrestartScheduleEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.JupyterHubLifecycleExecutor;
+import org.nrg.xnatx.plugins.jupyterhub.utils.PermissionsHelper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultPrestartServiceTest {
+
+    private PrestartScheduleEntityService mockPrestartScheduleEntityService;
+    private JupyterHubService mockJupyterHubService;
+    private UserManagementServiceI mockUserManagementService;
+    private PermissionsHelper mockPermissionsHelper;
+    private JupyterHubLifecycleExecutor lifecycleExecutor;
+    private DefaultPrestartService prestartService;
+
+    private UserI admin;
+
+    @Before
+    public void before() throws Exception {
+        mockPrestartScheduleEntityService = mock(PrestartScheduleEntityService.class);
+        mockJupyterHubService = mock(JupyterHubService.class);
+        mockUserManagementService = mock(UserManagementServiceI.class);
+        mockPermissionsHelper = mock(PermissionsHelper.class);
+
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubLifecycleThreads()).thenReturn(2);
+        when(mockJupyterHubPreferences.getPrestartRampRate()).thenReturn(10);
+        when(mockJupyterHubPreferences.getPrestartCullExemption()).thenReturn(120);
+        lifecycleExecutor = new JupyterHubLifecycleExecutor(mockJupyterHubPreferences);
+
+        prestartService = new DefaultPrestartService(mockPrestartScheduleEntityService, mockJupyterHubService,
+                                                     mockUserManagementService, mockPermissionsHelper,
+                                                     lifecycleExecutor, mockJupyterHubPreferences);
+
+        admin = mockUser("admin");
+        for (String username : Arrays.asList("alice", "bob", "carol")) {
+            final UserI user = mockUser(username);
+            when(mockUserManagementService.getUser(username)).thenReturn(user);
+        }
+        when(mockUserManagementService.getUser("admin")).thenReturn(admin);
+        when(mockPrestartScheduleEntityService.create(any(PrestartScheduleEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @After
+    public void after() {
+        lifecycleExecutor.shutdown();
+    }
+
+    @Test
+    public void testCreate_Defaults() {
+        final Date startAt = new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(15));
+
+        final PrestartSchedule created = prestartService.create(admin, schedule(Arrays.asList("alice", " ", "alice", "bob"), startAt));
+
+        assertEquals(Arrays.asList("alice", "bob"), created.getUsernames());
+        assertEquals("", created.getServername());
+        assertEquals(Integer.valueOf(10), created.getRampRate());
+        assertEquals(new Date(startAt.getTime() + TimeUnit.MINUTES.toMillis(120)), created.getCullExemptUntil());
+        assertEquals("admin", created.getCreatedBy());
+        assertEquals(PrestartSchedule.Status.Scheduled, created.getStatus());
+        assertEquals(Integer.valueOf(0), created.getLaunched());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreate_Invalid() {
+        final PrestartSchedule schedule = schedule(Collections.singletonList("alice"), null);
+        prestartService.create(admin, schedule);
+    }
+
+    @Test(timeout = 5000)
+    public void testLaunch_Ramp() {
+        // 600 servers per minute, one every 100 ms
+        final PrestartScheduleEntity entity = entity(1L, Arrays.asList("alice", "bob", "carol"), 600);
+        due(entity);
+
+        final long launched = System.currentTimeMillis();
+        prestartService.launchDueSchedules();
+
+        final ArgumentCaptor<ServerStartRequest> captor = ArgumentCaptor.forClass(ServerStartRequest.class);
+        verify(mockJupyterHubService, timeout(3000).times(3)).startServer(any(UserI.class), captor.capture());
+        assertTrue(System.currentTimeMillis() - launched >= 200);
+
+        final List<ServerStartRequest> requests = captor.getAllValues();
+        assertEquals(Arrays.asList("alice", "bob", "carol"), requests.stream().map(ServerStartRequest::getUsername).collect(Collectors.toList()));
+        requests.forEach(request -> {
+            assertEquals("class", request.getServername());
+            assertEquals("TestProject", request.getProjectId());
+            assertEquals(Long.valueOf(3L), request.getComputeEnvironmentConfigId());
+            assertEquals(Long.valueOf(2L), request.getHardwareConfigId());
+            assertTrue(request.getEventTrackingId().startsWith("prestart_1_" + request.getUsername() + "_"));
+        });
+
+        // Each start is recorded, then the ramp completes
+        for (int position = 1; position <= 3; position++) {
+            verify(mockPrestartScheduleEntityService, timeout(1000)).progress(eq(1L), eq(position), eq(true), any(Date.class));
+        }
+        verify(mockPrestartScheduleEntityService, timeout(1000)).setStatus(1L, PrestartSchedule.Status.Completed, Collections.singleton(PrestartSchedule.Status.Running));
+    }
+
+    @Test(timeout = 5000)
+    public void testLaunch_ProjectMembers() {
+        final PrestartScheduleEntity entity = entity(2L, new ArrayList<>(), 6000);
+        due(entity);
+        when(mockPermissionsHelper.getProjectMembers(admin, "TestProject")).thenReturn(Arrays.asList("alice", "bob"));
+
+        prestartService.launchDueSchedules();
+
+        verify(mockJupyterHubService, timeout(3000).times(2)).startServer(any(UserI.class), any(ServerStartRequest.class));
+
+        // The resolved members are stored with the schedule for the cull exemption
+        assertEquals(Arrays.asList("alice", "bob"), entity.getUsernames());
+    }
+
+    @Test
+    public void testLaunch_ClaimedByAnotherNode() throws Exception {
+        final PrestartScheduleEntity entity = entity(4L, Arrays.asList("alice", "bob"), 6000);
+        when(mockPrestartScheduleEntityService.findDue(any(Date.class))).thenReturn(Collections.singletonList(entity));
+        when(mockPrestartScheduleEntityService.claim(eq(4L), any(Date.class))).thenReturn(false);
+
+        prestartService.launchDueSchedules();
+
+        Thread.sleep(200);
+        verify(mockJupyterHubService, never()).startServer(any(UserI.class), any(ServerStartRequest.class));
+        verify(mockPrestartScheduleEntityService, never()).update(any(PrestartScheduleEntity.class));
+    }
+
+    @Test
+    public void testLaunch_CancelledBeforeRamp() throws Exception {
+        final PrestartScheduleEntity entity = entity(6L, new ArrayList<>(), 6000);
+        due(entity);
+
+        // Another node cancels the pre-start while the project members are looked up
+        when(mockPermissionsHelper.getProjectMembers(admin, "TestProject")).thenAnswer(invocation -> {
+            entity.setStatus(PrestartSchedule.Status.Cancelled);
+            return Arrays.asList("alice", "bob");
+        });
+
+        prestartService.launchDueSchedules();
+
+        Thread.sleep(200);
+        assertEquals(PrestartSchedule.Status.Cancelled, entity.getStatus());
+        verify(mockJupyterHubService, never()).startServer(any(UserI.class), any(ServerStartRequest.class));
+        verify(mockPrestartScheduleEntityService, never()).update(any(PrestartScheduleEntity.class));
+    }
+
+    @Test(timeout = 5000)
+    public void testLaunch_ResumesAbandonedRamp() {
+        final Date heartbeat = new Date(System.currentTimeMillis() - DefaultPrestartService.ABANDONED_AFTER - 1000);
+        final PrestartScheduleEntity entity = entity(5L, Arrays.asList("alice", "bob", "carol"), 6000);
+        entity.setStatus(PrestartSchedule.Status.Running);
+        entity.setPosition(2);
+        entity.setHeartbeat(heartbeat);
+        when(mockPrestartScheduleEntityService.findAbandoned(any(Date.class))).thenReturn(Collections.singletonList(entity));
+        when(mockPrestartScheduleEntityService.reclaim(eq(5L), eq(heartbeat), any(Date.class))).thenReturn(true);
+        when(mockPrestartScheduleEntityService.retrieve(5L)).thenReturn(entity);
+
+        prestartService.launchDueSchedules();
+
+        // Only the users after the recorded position are started
+        final ArgumentCaptor<ServerStartRequest> captor = ArgumentCaptor.forClass(ServerStartRequest.class);
+        verify(mockJupyterHubService, timeout(3000)).startServer(any(UserI.class), captor.capture());
+        assertEquals("carol", captor.getValue().getUsername());
+        verify(mockPrestartScheduleEntityService, timeout(1000)).progress(eq(5L), eq(3), eq(true), any(Date.class));
+    }
+
+    @Test(timeout = 5000)
+    public void testCancel_SkipsRemainingStarts() throws Exception {
+        // 60 servers per minute, one every second
+        final PrestartScheduleEntity entity = entity(3L, Arrays.asList("alice", "bob"), 60);
+        due(entity);
+
+        prestartService.launchDueSchedules();
+        verify(mockJupyterHubService, timeout(500).times(1)).startServer(any(UserI.class), any(ServerStartRequest.class));
+
+        final PrestartSchedule cancelled = prestartService.cancel(3L);
+        assertEquals(PrestartSchedule.Status.Cancelled, cancelled.getStatus());
+
+        Thread.sleep(1500);
+        verify(mockJupyterHubService, times(1)).startServer(any(UserI.class), any(ServerStartRequest.class));
+        verify(mockPrestartScheduleEntityService, times(1)).progress(anyLong(), anyInt(), anyBoolean(), any(Date.class));
+        assertEquals(PrestartSchedule.Status.Cancelled, entity.getStatus());
+    }
+
+    /**
+     * Makes the pre-start due and claimable, with the status updates applied to the entity as the database would.
+     */
+    private void due(final PrestartScheduleEntity entity) {
+        when(mockPrestartScheduleEntityService.findDue(any(Date.class))).thenReturn(Collections.singletonList(entity));
+        when(mockPrestartScheduleEntityService.retrieve(entity.getId())).thenReturn(entity);
+        when(mockPrestartScheduleEntityService.claim(eq(entity.getId()), any(Date.class))).thenAnswer(invocation -> {
+            entity.setStatus(PrestartSchedule.Status.Running);
+            return true;
+        });
+        when(mockPrestartScheduleEntityService.setStatus(eq(entity.getId()), any(PrestartSchedule.Status.class), anyCollection())).thenAnswer(invocation -> {
+            final Collection<PrestartSchedule.Status> expected = invocation.getArgument(2);
+            if (!expected.contains(entity.getStatus())) {
+                return false;
+            }
+            entity.setStatus(invocation.getArgument(1));
+            return true;
+        });
+        when(mockPrestartScheduleEntityService.setUsernames(eq(entity.getId()), anyList())).thenAnswer(invocation -> {
+            if (entity.getStatus() != PrestartSchedule.Status.Running) {
+                return false;
+            }
+            entity.setUsernames(invocation.getArgument(1));
+            return true;
+        });
+    }
+
+    private PrestartSchedule schedule(final List<String> usernames, final Date startAt) {
+        return PrestartSchedule.builder()
+                               .name("Intro to Imaging")
+                               .usernames(usernames)
+                               .xsiType("xnat:projectData")
+                               .itemId("TestProject")
+                               .itemLabel("TestProject")
+                               .projectId("TestProject")
+                               .computeEnvironmentConfigId(3L)
+                               .hardwareConfigId(2L)
+                               .startAt(startAt)
+                               .build();
+    }
+
+    private PrestartScheduleEntity entity(final Long id, final List<String> usernames, final int rampRate) {
+        final PrestartScheduleEntity entity = PrestartScheduleEntity.fromPojo(schedule(usernames, new Date()));
+        entity.setId(id);
+        entity.setServername("class");
+        entity.setRampRate(rampRate);
+        entity.setCreatedBy("admin");
+        entity.setStatus(PrestartSchedule.Status.Scheduled);
+        entity.setLaunched(0);
+        return entity;
+    }
+
+    private static UserI mockUser(final String username) {
+        final UserI user = mock(UserI.class);
+        when(user.getUsername()).thenReturn(username);
+        when(user.getLogin()).thenReturn(username);
+        return user;
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.exceptions.ResourceQuotaExceededException;
+import org.nrg.xnatx.plugins.jupyterhub.models.ResourceUsage;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.Resources;
+import org.nrg.xnatx.plugins.jupyterhub.models.docker.TaskTemplate;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.UserOptionsEntityService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultResourceQuotaServiceTest {
+
+    private static final long GB = 1024L * 1024 * 1024;
+
+    private UserOptionsEntityService mockUserOptionsEntityService;
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private DefaultResourceQuotaService resourceQuotaService;
+    private Map<String, UserOptionsEntity> stored;
+
+    @Before
+    public void before() {
+        mockUserOptionsEntityService = mock(UserOptionsEntityService.class);
+        stored = new LinkedHashMap<>();
+        when(mockUserOptionsEntityService.getAll()).thenAnswer(invocation -> new ArrayList<>(stored.values()));
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getUserCpuQuota()).thenReturn("4");
+        when(mockJupyterHubPreferences.getUserMemoryQuota()).thenReturn("16G");
+        when(mockJupyterHubPreferences.getProjectCpuQuota()).thenReturn("");
+        when(mockJupyterHubPreferences.getProjectMemoryQuota()).thenReturn("24G");
+        resourceQuotaService = new DefaultResourceQuotaService(mockUserOptionsEntityService, mockJupyterHubPreferences);
+    }
+
+    @Test
+    public void testParseMemory() {
+        assertEquals(512L * 1024 * 1024, DefaultResourceQuotaService.parseMemory("512M"));
+        assertEquals(4 * GB, DefaultResourceQuotaService.parseMemory("4G"));
+        assertEquals(4 * GB, DefaultResourceQuotaService.parseMemory("4gb"));
+        assertEquals(4 * GB, DefaultResourceQuotaService.parseMemory("4Gi"));
+        assertEquals(GB + GB / 2, DefaultResourceQuotaService.parseMemory("1.5G"));
+        assertEquals(1024, DefaultResourceQuotaService.parseMemory("1024"));
+        assertEquals(-1, DefaultResourceQuotaService.parseMemory(""));
+        assertEquals(-1, DefaultResourceQuotaService.parseMemory(null));
+        assertEquals(-1, DefaultResourceQuotaService.parseMemory("lots"));
+    }
+
+    @Test
+    public void testReserveAndRelease() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(2.0, "8G"));
+        reserve(1, "b", "P1", taskTemplate(2.0, "8G"));
+
+        assertEquals(new ResourceUsage(2, 4.0, 16 * GB), resourceQuotaService.getUserUsage(1));
+        assertEquals(new ResourceUsage(2, 4.0, 16 * GB), resourceQuotaService.getProjectUsage("P1"));
+        assertTrue(resourceQuotaService.isReserved(1, "a"));
+
+        release(1, "a");
+        release(1, "a");
+
+        assertFalse(resourceQuotaService.isReserved(1, "a"));
+        assertEquals(new ResourceUsage(1, 2.0, 8 * GB), resourceQuotaService.getUserUsage(1));
+        assertEquals(new ResourceUsage(1, 2.0, 8 * GB), resourceQuotaService.getProjectUsage("P1"));
+    }
+
+    @Test
+    public void testTotalAndServerUsage() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(2.0, "8G"));
+        reserve(2, "", "P2", taskTemplate(1.0, "4G"));
+
+        assertEquals(new ResourceUsage(2, 3.0, 12 * GB), resourceQuotaService.getTotalUsage());
+        assertEquals(new ResourceUsage(1, 2.0, 8 * GB), resourceQuotaService.getServerUsage(1, "a"));
+        assertEquals(new ResourceUsage(), resourceQuotaService.getServerUsage(1, "b"));
+
+        release(1, "a");
+
+        assertEquals(new ResourceUsage(1, 1.0, 4 * GB), resourceQuotaService.getTotalUsage());
+        assertEquals(new ResourceUsage(), resourceQuotaService.getServerUsage(1, "a"));
+    }
+
+    @Test
+    public void testUserCpuQuota() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(3.0, "1G"));
+
+        try {
+            reserve(1, "b", "P2", taskTemplate(1.5, "1G"));
+            fail("Expected the user CPU quota to be exceeded");
+        } catch (ResourceQuotaExceededException e) {
+            assertTrue(e.getMessage().contains("quota of 4 CPUs"));
+        }
+
+        // Nothing reserved for the rejected server, other users are not affected
+        assertFalse(resourceQuotaService.isReserved(1, "b"));
+        assertEquals(new ResourceUsage(), resourceQuotaService.getProjectUsage("P2"));
+        reserve(2, "b", "P2", taskTemplate(1.5, "1G"));
+    }
+
+    @Test(expected = ResourceQuotaExceededException.class)
+    public void testProjectMemoryQuota() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(1.0, "12G"));
+        reserve(2, "a", "P1", taskTemplate(1.0, "12G"));
+        reserve(3, "a", "P1", taskTemplate(1.0, "1G"));
+    }
+
+    @Test
+    public void testReplaceReservation() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(4.0, "16G"));
+
+        // Restarting the same server only counts the new reservation
+        reserve(1, "a", "P1", taskTemplate(3.0, "8G"));
+
+        assertEquals(new ResourceUsage(1, 3.0, 8 * GB), resourceQuotaService.getUserUsage(1));
+    }
+
+    @Test
+    public void testNoQuotas() throws Exception {
+        when(mockJupyterHubPreferences.getUserCpuQuota()).thenReturn(null);
+        when(mockJupyterHubPreferences.getUserMemoryQuota()).thenReturn(null);
+        when(mockJupyterHubPreferences.getProjectMemoryQuota()).thenReturn(null);
+
+        for (int i = 0; i < 10; i++) {
+            reserve(1, "server" + i, "P1", taskTemplate(8.0, "64G"));
+        }
+        reserve(1, "none", "P1", null);
+
+        assertEquals(new ResourceUsage(11, 80.0, 640 * GB), resourceQuotaService.getUserUsage(1));
+    }
+
+    @Test
+    public void testLoadedFromUserOptions() {
+        when(mockUserOptionsEntityService.getAll()).thenReturn(Arrays.asList(
+                UserOptionsEntity.builder().userId(1).servername("a").projectId("P1").taskTemplate(taskTemplate(2.0, "4G")).build(),
+                UserOptionsEntity.builder().userId(2).servername("").projectId("P1").taskTemplate(taskTemplate(1.0, "2G")).build()
+        ));
+
+        assertEquals(new ResourceUsage(2, 3.0, 6 * GB), resourceQuotaService.getProjectUsage("P1"));
+        assertTrue(resourceQuotaService.isReserved(2, ""));
+        verify(mockUserOptionsEntityService, times(1)).getAll();
+    }
+
+    @Test
+    public void testReserveCountsServersOfOtherNodes() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(2.0, "4G"));
+        assertEquals(new ResourceUsage(1, 2.0, 4 * GB), resourceQuotaService.getUserUsage(1));
+
+        // Started through another node after the ledger was built
+        stored.put("1:b", UserOptionsEntity.builder().userId(1).servername("b").projectId("P1").taskTemplate(taskTemplate(2.0, "4G")).build());
+
+        try {
+            reserve(1, "c", "P1", taskTemplate(1.0, "1G"));
+            fail("Expected the user CPU quota to be exceeded");
+        } catch (ResourceQuotaExceededException e) {
+            assertTrue(e.getMessage().contains("with 4 already in use"));
+        }
+        assertTrue(resourceQuotaService.isReserved(1, "b"));
+        assertFalse(resourceQuotaService.isReserved(1, "c"));
+    }
+
+    @Test
+    public void testReserveSeesReleasesOfOtherNodes() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(4.0, "4G"));
+
+        // Stopped through another node
+        stored.remove("1:a");
+
+        reserve(1, "b", "P1", taskTemplate(4.0, "4G"));
+        assertFalse(resourceQuotaService.isReserved(1, "a"));
+        assertEquals(new ResourceUsage(1, 4.0, 4 * GB), resourceQuotaService.getUserUsage(1));
+    }
+
+    @Test
+    public void testReadsUseLedgerBetweenReloads() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(2.0, "4G"));
+
+        resourceQuotaService.getUserUsage(1);
+        resourceQuotaService.getProjectUsage("P1");
+        resourceQuotaService.getTotalUsage();
+        resourceQuotaService.isReserved(1, "a");
+
+        // Only the reservation read the user options
+        verify(mockUserOptionsEntityService, times(1)).getAll();
+    }
+
+    @Test
+    public void testFailedReloadKeepsLedger() throws Exception {
+        reserve(1, "a", "P1", taskTemplate(3.0, "4G"));
+        when(mockUserOptionsEntityService.getAll()).thenThrow(new RuntimeException("Database unavailable"));
+
+        try {
+            resourceQuotaService.reserve(1, "b", "P1", taskTemplate(2.0, "1G"));
+            fail("Expected the user CPU quota to be exceeded");
+        } catch (ResourceQuotaExceededException e) {
+            assertTrue(e.getMessage().contains("with 3 already in use"));
+        }
+    }
+
+    /**
+     * Stores the user options before reserving, as a server start does.
+     */
+    private void reserve(final Integer userId, final String servername, final String projectId, final TaskTemplate taskTemplate) throws ResourceQuotaExceededException {
+        final String key = userId + ":" + servername;
+        final UserOptionsEntity previous = stored.put(key, UserOptionsEntity.builder().userId(userId).servername(servername).projectId(projectId).taskTemplate(taskTemplate).build());
+        try {
+            resourceQuotaService.reserve(userId, servername, projectId, taskTemplate);
+        } catch (ResourceQuotaExceededException e) {
+            // A rejected start removes the options it stored
+            if (previous != null) {
+                stored.put(key, previous);
+            } else {
+                stored.remove(key);
+            }
+            throw e;
+        }
+    }
+
+    private void release(final Integer userId, final String servername) {
+        stored.remove(userId + ":" + servername);
+        resourceQuotaService.release(userId, servername);
+    }
+
+    private static TaskTemplate taskTemplate(final Double cpuReservation, final String memReservation) {
+        return TaskTemplate.builder()
+                           .resources(Resources.builder()
+                                               .cpuReservation(cpuReservation)
+                                               .memReservation(memReservation)
+                                               .build())
+                           .build();
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.nrg.xdat.preferences.SiteConfigPreferences;
+import org.nrg.xft.security.UserI;
+import org.nrg.xnat.utils.FileUtils;
+import org.nrg.xnatx.plugins.jupyterhub.client.JupyterHubClient;
+import org.nrg.xnatx.plugins.jupyterhub.client.exceptions.JupyterHubUnavailableException;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.Server;
+import org.nrg.xnatx.plugins.jupyterhub.client.models.User;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.SharedDataDirectoryEntityService;
+import org.nrg.xnatx.plugins.jupyterhub.utils.SharedDataDeletionQueue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class DefaultSharedDataDirectoryServiceTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SharedDataDirectoryEntityService mockSharedDataDirectoryEntityService;
+    private JupyterHubClient mockJupyterHubClient;
+    private Path sharedDirectory;
+    private SharedDataDeletionQueue sharedDataDeletionQueue;
+    private DefaultSharedDataDirectoryService sharedDataDirectoryService;
+
+    @Before
+    public void before() throws Exception {
+        mockSharedDataDirectoryEntityService = mock(SharedDataDirectoryEntityService.class);
+        mockJupyterHubClient = mock(JupyterHubClient.class);
+
+        final SiteConfigPreferences mockSiteConfigPreferences = mock(SiteConfigPreferences.class);
+        when(mockSiteConfigPreferences.getArchivePath()).thenReturn(temporaryFolder.getRoot().toString());
+        sharedDirectory = Files.createDirectories(temporaryFolder.getRoot().toPath().resolve(FileUtils.SHARED_PROJECT_DIRECTORY_STRING).resolve("jupyter-notebooks"));
+
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getSharedDataDeletionThreads()).thenReturn(1);
+        when(mockJupyterHubPreferences.getSharedDataDeletionRate()).thenReturn(0);
+        sharedDataDeletionQueue = new SharedDataDeletionQueue(mockJupyterHubPreferences);
+
+        sharedDataDirectoryService = new DefaultSharedDataDirectoryService(mockSharedDataDirectoryEntityService, mockJupyterHubClient,
+                                                                           mockSiteConfigPreferences, sharedDataDeletionQueue);
+    }
+
+    @After
+    public void after() {
+        sharedDataDeletionQueue.shutdown();
+    }
+
+    @Test
+    public void testRecord() {
+        final UserI user = mock(UserI.class);
+        when(user.getUsername()).thenReturn("user");
+
+        Path directory = sharedDataDirectoryService.record(user, "first");
+
+        assertEquals(Paths.get("jupyter-notebooks", "first"), directory);
+        final ArgumentCaptor<SharedDataDirectoryEntity> captor = ArgumentCaptor.forClass(SharedDataDirectoryEntity.class);
+        verify(mockSharedDataDirectoryEntityService).create(captor.capture());
+        assertEquals("first", captor.getValue().getEventTrackingId());
+        assertEquals(directory.toString(), captor.getValue().getPath());
+        assertEquals("user", captor.getValue().getOwner());
+    }
+
+    @Test
+    public void testReapRemovesJournalEntriesOfRemovedDirectories() {
+        final SharedDataDirectoryEntity orphan = entry("orphan");
+        when(mockSharedDataDirectoryEntityService.findOrphaned(any(Date.class), eq(DefaultSharedDataDirectoryService.REAP_BATCH_SIZE)))
+                .thenReturn(Collections.singletonList(orphan));
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.empty());
+
+        assertEquals(1, sharedDataDirectoryService.reap());
+
+        // The directory is already gone, only the journal entry is left to delete
+        verify(mockSharedDataDirectoryEntityService, timeout(1000)).delete(orphan);
+    }
+
+    @Test
+    public void testReapKeepsDirectoriesOfRunningServers() throws Exception {
+        // A later start of the same server replaced the stored user options, the first server still runs
+        Files.createDirectory(sharedDirectory.resolve("replaced"));
+        final SharedDataDirectoryEntity replaced = entry("replaced");
+        when(mockSharedDataDirectoryEntityService.findOrphaned(any(Date.class), eq(DefaultSharedDataDirectoryService.REAP_BATCH_SIZE)))
+                .thenReturn(Collections.singletonList(replaced));
+        final Server server = Server.builder().name("").user_options(Collections.singletonMap("eventTrackingId", "replaced")).build();
+        final User user = User.builder().name("user").servers(Collections.singletonMap("", server)).build();
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.of(user));
+
+        assertEquals(0, sharedDataDirectoryService.reap());
+
+        assertTrue(Files.exists(sharedDirectory.resolve("replaced")));
+        verify(mockSharedDataDirectoryEntityService, never()).delete(any(SharedDataDirectoryEntity.class));
+    }
+
+    @Test
+    public void testReapNothingWhileJupyterHubIsUnavailable() throws Exception {
+        Files.createDirectory(sharedDirectory.resolve("orphan"));
+        when(mockSharedDataDirectoryEntityService.findOrphaned(any(Date.class), eq(DefaultSharedDataDirectoryService.REAP_BATCH_SIZE)))
+                .thenReturn(Collections.singletonList(entry("orphan")));
+        when(mockJupyterHubClient.streamUsers(true)).thenThrow(new JupyterHubUnavailableException("JupyterHub is unavailable"));
+
+        assertEquals(0, sharedDataDirectoryService.reap());
+
+        assertTrue(Files.exists(sharedDirectory.resolve("orphan")));
+        verify(mockSharedDataDirectoryEntityService, never()).delete(any(SharedDataDirectoryEntity.class));
+    }
+
+    @Test
+    public void testReapWithoutOrphans() {
+        when(mockSharedDataDirectoryEntityService.findOrphaned(any(Date.class), anyInt())).thenReturn(Collections.emptyList());
+
+        assertEquals(0, sharedDataDirectoryService.reap());
+
+        verifyNoInteractions(mockJupyterHubClient);
+    }
+
+    @Test
+    public void testRemoveDeletesDirectoryThenJournalEntry() throws Exception {
+        final Path directory = Files.createDirectories(sharedDirectory.resolve("first").resolve("project").resolve("experiment"));
+        Files.createFile(directory.resolve("scan.dcm"));
+        final SharedDataDirectoryEntity entry = entry("first");
+        when(mockSharedDataDirectoryEntityService.findByEventTrackingId("first")).thenReturn(Collections.singletonList(entry));
+
+        sharedDataDirectoryService.remove("first").get(5, TimeUnit.SECONDS);
+
+        assertFalse(Files.exists(sharedDirectory.resolve("first")));
+        verify(mockSharedDataDirectoryEntityService).delete(entry);
+    }
+
+    @Test
+    public void testRemoveRefusesPathsOutsideSharedDirectory() throws Exception {
+        final Path outside = Files.createDirectory(temporaryFolder.getRoot().toPath().resolve("outside"));
+        final SharedDataDirectoryEntity entry = SharedDataDirectoryEntity.builder()
+                                                                         .eventTrackingId("escape")
+                                                                         .path(Paths.get("jupyter-notebooks", "..", "..", "outside").toString())
+                                                                         .owner("user")
+                                                                         .build();
+        when(mockSharedDataDirectoryEntityService.findByEventTrackingId("escape")).thenReturn(Collections.singletonList(entry));
+
+        sharedDataDirectoryService.remove("escape").get(5, TimeUnit.SECONDS);
+
+        assertTrue(Files.exists(outside));
+        verify(mockSharedDataDirectoryEntityService, never()).delete(entry);
+    }
+
+    @Test
+    public void testReconcileKeepsRunningAndJournaledDirectories() throws Exception {
+        old(Files.createDirectory(sharedDirectory.resolve("running")));
+        old(Files.createDirectory(sharedDirectory.resolve("starting")));
+
+        final Server server = Server.builder().name("").user_options(Collections.singletonMap("eventTrackingId", "running")).build();
+        final Server withoutOptions = Server.builder().name("other").build();
+        final User user = User.builder().name("user").servers(Collections.singletonMap("", server)).build();
+        final User other = User.builder().name("other").servers(Collections.singletonMap("other", withoutOptions)).build();
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.of(user, other));
+        when(mockSharedDataDirectoryEntityService.getAll()).thenReturn(Collections.singletonList(entry("starting")));
+
+        assertEquals(0, sharedDataDirectoryService.reconcile());
+
+        assertTrue(Files.exists(sharedDirectory.resolve("running")));
+        assertTrue(Files.exists(sharedDirectory.resolve("starting")));
+        verify(mockSharedDataDirectoryEntityService, never()).delete(any(SharedDataDirectoryEntity.class));
+    }
+
+    @Test
+    public void testReconcileRemovesUnknownDirectories() throws Exception {
+        Files.createFile(Files.createDirectory(sharedDirectory.resolve("unknown")).resolve("notebook.ipynb"));
+        old(sharedDirectory.resolve("unknown"));
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.empty());
+        when(mockSharedDataDirectoryEntityService.getAll()).thenReturn(Collections.emptyList());
+
+        assertEquals(1, sharedDataDirectoryService.reconcile());
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(sharedDirectory.resolve("unknown")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(sharedDirectory.resolve("unknown")));
+    }
+
+    @Test
+    public void testReconcileKeepsDirectoriesOfStartsInProgress() throws Exception {
+        old(Files.createDirectory(sharedDirectory.resolve("journaled")));
+        Files.createDirectory(sharedDirectory.resolve("young"));
+        when(mockJupyterHubClient.streamUsers(true)).thenAnswer(invocation -> Stream.empty());
+
+        // A start journals and creates its directory while the reconciliation reads JupyterHub and the journal
+        when(mockSharedDataDirectoryEntityService.getAll()).thenAnswer(invocation -> {
+            old(Files.createDirectory(sharedDirectory.resolve("starting")));
+            return Collections.singletonList(entry("journaled"));
+        });
+
+        assertEquals(0, sharedDataDirectoryService.reconcile());
+
+        assertTrue(Files.exists(sharedDirectory.resolve("starting")));
+        assertTrue(Files.exists(sharedDirectory.resolve("young")));
+    }
+
+    @Test
+    public void testReconcileWithoutSharedDirectory() throws Exception {
+        Files.delete(sharedDirectory);
+
+        assertEquals(0, sharedDataDirectoryService.reconcile());
+
+        verifyNoInteractions(mockJupyterHubClient);
+    }
+
+    private static Path old(final Path directory) throws Exception {
+        return Files.setLastModifiedTime(directory, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+    }
+
+    private static SharedDataDirectoryEntity entry(final String eventTrackingId) {
+        return SharedDataDirectoryEntity.builder()
+                                        .eventTrackingId(eventTrackingId)
+                                        .path(Paths.get("jupyter-notebooks", eventTrackingId).toString())
+                                        .owner("user")
+                                        .build();
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.models.SpawnEstimate;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+import org.nrg.xnatx.plugins.jupyterhub.services.SpawnDurationEntityService;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DefaultSpawnHistoryServiceTest {
+
+    private SpawnDurationEntityService mockSpawnDurationEntityService;
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private DefaultSpawnHistoryService spawnHistoryService;
+
+    @Before
+    public void before() {
+        mockSpawnDurationEntityService = mock(SpawnDurationEntityService.class);
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getSpawnHistorySize()).thenReturn(50);
+        when(mockJupyterHubPreferences.getSpawnHistoryMinSamples()).thenReturn(5);
+        when(mockJupyterHubPreferences.getStartTimeout()).thenReturn(180);
+        when(mockJupyterHubPreferences.getStartTimeoutFloor()).thenReturn(60);
+        when(mockJupyterHubPreferences.getStartPollingInterval()).thenReturn(10);
+        spawnHistoryService = new DefaultSpawnHistoryService(mockSpawnDurationEntityService, mockJupyterHubPreferences);
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (long seconds = 1; seconds <= 20; seconds++) {
+            spawnHistoryService.recordSpawn(1L, 2L, seconds * 1000);
+        }
+
+        SpawnEstimate estimate = spawnHistoryService.getEstimate(1L, 2L).get();
+
+        assertEquals(20, estimate.getSamples());
+        assertEquals(10000, estimate.getP50Millis());
+        assertEquals(19000, estimate.getP95Millis());
+        verify(mockSpawnDurationEntityService, times(20)).record(any(SpawnDurationEntity.class), eq(50));
+    }
+
+    @Test
+    public void testHistoryLoadedFromDatabase() {
+        when(mockSpawnDurationEntityService.findRecent(1L, 2L, 50)).thenReturn(Arrays.asList(spawnDuration(12000L), spawnDuration(8000L), spawnDuration(10000L)));
+
+        SpawnEstimate estimate = spawnHistoryService.getEstimate(1L, 2L).get();
+        spawnHistoryService.getEstimate(1L, 2L);
+
+        assertEquals(3, estimate.getSamples());
+        assertEquals(10000, estimate.getP50Millis());
+        assertEquals(12000, estimate.getP95Millis());
+        verify(mockSpawnDurationEntityService, times(1)).findRecent(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testFallsBackToPreferences() {
+        for (int i = 0; i < 4; i++) {
+            spawnHistoryService.recordSpawn(1L, 2L, 10000);
+        }
+
+        assertEquals(180000, spawnHistoryService.getStartTimeout(1L, 2L));
+        assertEquals(10000, spawnHistoryService.getReadinessSchedule(1L, 2L).applyAsLong(0));
+        assertEquals(180000, spawnHistoryService.getStartTimeout(null, null));
+        assertFalse(spawnHistoryService.getEstimate(null, 2L).isPresent());
+    }
+
+    @Test
+    public void testDisabled() {
+        when(mockJupyterHubPreferences.getSpawnHistoryMinSamples()).thenReturn(0);
+        for (int i = 0; i < 10; i++) {
+            spawnHistoryService.recordSpawn(1L, 2L, 10000);
+        }
+
+        assertEquals(180000, spawnHistoryService.getStartTimeout(1L, 2L));
+    }
+
+    @Test
+    public void testStartTimeout() {
+        // Small image, ~10 s to spawn
+        for (int i = 0; i < 10; i++) {
+            spawnHistoryService.recordSpawn(1L, 2L, 10000);
+        }
+        // Large image, ~3 min to spawn
+        for (int i = 0; i < 10; i++) {
+            spawnHistoryService.recordSpawn(3L, 2L, 180000);
+        }
+
+        assertEquals(60000, spawnHistoryService.getStartTimeout(1L, 2L));
+        assertEquals(360000, spawnHistoryService.getStartTimeout(3L, 2L));
+    }
+
+    @Test
+    public void testStartTimeoutFloor() {
+        for (int i = 0; i < 10; i++) {
+            spawnHistoryService.recordSpawn(1L, 2L, 10000);
+        }
+        when(mockJupyterHubPreferences.getStartTimeoutFloor()).thenReturn(300);
+
+        assertEquals(300000, spawnHistoryService.getStartTimeout(1L, 2L));
+    }
+
+    @Test
+    public void testTimeoutsGrowStartTimeout() {
+        // Warm image, ~20 s to spawn, the learned timeout is 40 s
+        when(mockJupyterHubPreferences.getStartTimeoutFloor()).thenReturn(0);
+        for (int i = 0; i < 18; i++) {
+            spawnHistoryService.recordSpawn(1L, 2L, 20000);
+        }
+        assertEquals(40000, spawnHistoryService.getStartTimeout(1L, 2L));
+
+        // A cold pull on a new node exceeds it
+        spawnHistoryService.recordTimeout(1L, 2L, 40000);
+
+        final SpawnEstimate estimate = spawnHistoryService.getEstimate(1L, 2L).get();
+        assertEquals(19, estimate.getSamples());
+        assertEquals(1, estimate.getTimeouts());
+        assertEquals(40000, estimate.getP95Millis());
+        assertEquals(80000, spawnHistoryService.getStartTimeout(1L, 2L));
+        verify(mockSpawnDurationEntityService).record(argThat(spawnDuration -> Boolean.TRUE.equals(spawnDuration.getTimedOut()) &&
+                                                                               spawnDuration.getDurationMillis() == 40000), eq(50));
+    }
+
+    @Test
+    public void testTimeoutsLoadedFromDatabase() {
+        final SpawnDurationEntity timedOut = spawnDuration(60000L);
+        timedOut.setTimedOut(true);
+        when(mockSpawnDurationEntityService.findRecent(1L, 2L, 50)).thenReturn(Arrays.asList(timedOut, spawnDuration(8000L)));
+
+        assertEquals(1, spawnHistoryService.getEstimate(1L, 2L).get().getTimeouts());
+    }
+
+    @Test
+    public void testReadinessSchedule() {
+        for (long seconds = 81; seconds <= 100; seconds++) {
+            spawnHistoryService.recordSpawn(1L, 2L, seconds * 1000);
+        }
+
+        // p50 = 90 s, p95 = 99 s, dense from 67.5 s to 99 s
+        LongUnaryOperator schedule = spawnHistoryService.getReadinessSchedule(1L, 2L);
+
+        // Approaching the expected ready time the wait halves
+        assertEquals(33750, schedule.applyAsLong(0));
+        assertEquals(16875, schedule.applyAsLong(33750));
+        // Dense around the expected ready time
+        assertEquals(1000, schedule.applyAsLong(67500));
+        assertEquals(1000, schedule.applyAsLong(90000));
+        assertEquals(1000, schedule.applyAsLong(99000));
+        // Backs off exponentially once overdue
+        assertEquals(1000, schedule.applyAsLong(100000));
+        assertEquals(2000, schedule.applyAsLong(101000));
+        assertEquals(4000, schedule.applyAsLong(103000));
+        assertEquals(30000, schedule.applyAsLong(200000));
+    }
+
+    private static SpawnDurationEntity spawnDuration(final Long durationMillis) {
+        return SpawnDurationEntity.builder()
+                                  .computeEnvironmentConfigId(1L)
+                                  .hardwareConfigId(2L)
+                                  .durationMillis(durationMillis)
+                                  .build();
+    }
+
+}
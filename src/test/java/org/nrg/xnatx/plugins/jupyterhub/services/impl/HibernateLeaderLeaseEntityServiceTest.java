@@ -0,0 +1,87 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.xnatx.plugins.jupyterhub.config.HibernateLeaderLeaseEntityServiceTestConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.transaction.Transactional;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.nrg.xnatx.plugins.jupyterhub.utils.TestingUtils.commitTransaction;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@Transactional
+@ContextConfiguration(classes = HibernateLeaderLeaseEntityServiceTestConfig.class)
+public class HibernateLeaderLeaseEntityServiceTest {
+
+    @Autowired private HibernateLeaderLeaseEntityService entityService;
+
+    @Test
+    public void test() {
+        assertNotNull(entityService);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testOnlyOneHolder() {
+        // Setup
+        assertTrue(entityService.acquire("lease", "node-1", inSeconds(60)));
+        commitTransaction();
+
+        // Execute / Verify
+        assertFalse(entityService.acquire("lease", "node-2", inSeconds(60)));
+        commitTransaction();
+        assertTrue(entityService.acquire("lease", "node-1", inSeconds(60)));
+        commitTransaction();
+
+        assertEquals("node-1", entityService.findByName("lease").orElseThrow(AssertionError::new).getHolder());
+        assertEquals(1, entityService.getAll().size());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testExpiredLeaseIsTakenOver() {
+        // Setup
+        assertTrue(entityService.acquire("lease", "node-1", inSeconds(-1)));
+        commitTransaction();
+
+        // Execute
+        assertTrue(entityService.acquire("lease", "node-2", inSeconds(60)));
+        commitTransaction();
+
+        // Verify
+        assertFalse(entityService.acquire("lease", "node-1", inSeconds(60)));
+        commitTransaction();
+        assertEquals("node-2", entityService.findByName("lease").orElseThrow(AssertionError::new).getHolder());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testReleasedLeaseIsTakenOver() {
+        // Setup
+        assertTrue(entityService.acquire("lease", "node-1", inSeconds(60)));
+        commitTransaction();
+
+        // Execute
+        entityService.release("lease", "node-2"); // Not the holder, no effect
+        commitTransaction();
+        assertFalse(entityService.acquire("lease", "node-2", inSeconds(60)));
+        commitTransaction();
+
+        entityService.release("lease", "node-1");
+        commitTransaction();
+
+        // Verify
+        assertTrue(entityService.acquire("lease", "node-2", inSeconds(60)));
+    }
+
+    private static Date inSeconds(final int seconds) {
+        return new Date(System.currentTimeMillis() + seconds * 1000L);
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.xnatx.plugins.jupyterhub.config.HibernateSharedDataDirectoryEntityServiceTestConfig;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SharedDataDirectoryEntity;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+import static org.nrg.xnatx.plugins.jupyterhub.utils.TestingUtils.commitTransaction;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@Transactional
+@ContextConfiguration(classes = HibernateSharedDataDirectoryEntityServiceTestConfig.class)
+public class HibernateSharedDataDirectoryEntityServiceTest {
+
+    @Autowired private HibernateSharedDataDirectoryEntityService entityService;
+    @Autowired private SessionFactory sessionFactory;
+
+    @Test
+    public void test() {
+        assertNotNull(entityService);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testFindByEventTrackingId() {
+        // Setup
+        entityService.create(directory("first"));
+        entityService.create(directory("second"));
+        commitTransaction();
+
+        // Execute
+        List<SharedDataDirectoryEntity> found = entityService.findByEventTrackingId("first");
+
+        // Verify
+        assertEquals(1, found.size());
+        assertEquals("jupyter-notebooks/first", found.get(0).getPath());
+        assertEquals("user", found.get(0).getOwner());
+        assertTrue(entityService.findByEventTrackingId("third").isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testFindOrphaned() {
+        // Setup -> one directory of a running server, one of a start in flight and two orphans
+        entityService.create(directory("running"));
+        entityService.create(directory("starting"));
+        entityService.create(directory("orphan-1"));
+        entityService.create(directory("orphan-2"));
+        sessionFactory.getCurrentSession().save(UserOptionsEntity.builder().userId(1).servername("").eventTrackingId("running").build());
+        sessionFactory.getCurrentSession().save(ServerOperationEntity.builder()
+                                                                     .node("node-1")
+                                                                     .username("user")
+                                                                     .servername("")
+                                                                     .operation(JupyterServerEventI.Operation.Start)
+                                                                     .eventTrackingId("starting")
+                                                                     .state(JupyterServerEventI.Status.InProgress)
+                                                                     .deadline(new Date())
+                                                                     .build());
+        commitTransaction();
+
+        // Execute
+        final Date later = new Date(System.currentTimeMillis() + 60000);
+        List<String> orphaned = entityService.findOrphaned(later, 10).stream()
+                                             .map(SharedDataDirectoryEntity::getEventTrackingId)
+                                             .collect(Collectors.toList());
+
+        // Verify only the orphans, within the limit and none younger than the given time
+        assertThat(orphaned, containsInAnyOrder("orphan-1", "orphan-2"));
+        assertEquals(1, entityService.findOrphaned(later, 1).size());
+        assertTrue(entityService.findOrphaned(new Date(0), 10).isEmpty());
+    }
+
+    private static SharedDataDirectoryEntity directory(final String eventTrackingId) {
+        return SharedDataDirectoryEntity.builder()
+                                        .eventTrackingId(eventTrackingId)
+                                        .path("jupyter-notebooks/" + eventTrackingId)
+                                        .owner("user")
+                                        .build();
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.xnatx.plugins.jupyterhub.config.HibernateSpawnDurationEntityServiceTestConfig;
+import org.nrg.xnatx.plugins.jupyterhub.entities.SpawnDurationEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+import static org.nrg.xnatx.plugins.jupyterhub.utils.TestingUtils.commitTransaction;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@Transactional
+@ContextConfiguration(classes = HibernateSpawnDurationEntityServiceTestConfig.class)
+public class HibernateSpawnDurationEntityServiceTest {
+
+    @Autowired private HibernateSpawnDurationEntityService entityService;
+
+    @Test
+    public void test() {
+        assertNotNull(entityService);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testRecordKeepsMostRecent() {
+        // Execute
+        for (long duration = 1; duration <= 5; duration++) {
+            entityService.record(spawnDuration(1L, 2L, duration * 1000), 3);
+        }
+        entityService.record(spawnDuration(1L, 3L, 60000L), 3);
+
+        commitTransaction();
+
+        // Verify
+        List<SpawnDurationEntity> recent = entityService.findRecent(1L, 2L, 10);
+        assertThat(recent.stream().map(SpawnDurationEntity::getDurationMillis).collect(Collectors.toList()), contains(5000L, 4000L, 3000L));
+        assertEquals(1, entityService.findRecent(1L, 3L, 10).size());
+        assertEquals(4, entityService.getAll().size());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testFindRecentLimit() {
+        // Setup
+        for (long duration = 1; duration <= 5; duration++) {
+            entityService.record(spawnDuration(1L, 2L, duration * 1000), 10);
+        }
+
+        commitTransaction();
+
+        // Execute
+        List<SpawnDurationEntity> recent = entityService.findRecent(1L, 2L, 2);
+
+        // Verify
+        assertThat(recent.stream().map(SpawnDurationEntity::getDurationMillis).collect(Collectors.toList()), contains(5000L, 4000L));
+    }
+
+    private static SpawnDurationEntity spawnDuration(final Long computeEnvironmentConfigId, final Long hardwareConfigId, final Long durationMillis) {
+        return SpawnDurationEntity.builder()
+                                  .computeEnvironmentConfigId(computeEnvironmentConfigId)
+                                  .hardwareConfigId(hardwareConfigId)
+                                  .durationMillis(durationMillis)
+                                  .build();
+    }
+
+}
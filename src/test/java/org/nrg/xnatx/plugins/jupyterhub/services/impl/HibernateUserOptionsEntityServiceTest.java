@@ -0,0 +1,111 @@
+package org.nrg.xnatx.plugins.jupyterhub.services.impl;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nrg.xnatx.plugins.jupyterhub.config.HibernateUserOptionsEntityServiceTestConfig;
+import org.nrg.xnatx.plugins.jupyterhub.entities.ServerOperationEntity;
+import org.nrg.xnatx.plugins.jupyterhub.entities.UserOptionsEntity;
+import org.nrg.xnatx.plugins.jupyterhub.events.JupyterServerEventI;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.transaction.Transactional;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.*;
+import static org.nrg.xnatx.plugins.jupyterhub.utils.TestingUtils.commitTransaction;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@Transactional
+@ContextConfiguration(classes = HibernateUserOptionsEntityServiceTestConfig.class)
+public class HibernateUserOptionsEntityServiceTest {
+
+    @Autowired private HibernateUserOptionsEntityService entityService;
+    @Autowired private SessionFactory sessionFactory;
+
+    @Test
+    public void test() {
+        assertNotNull(entityService);
+    }
+
+    @Test
+    @DirtiesContext
+    public void testFindAfter() {
+        // Setup
+        entityService.create(userOptions(1, "", "first"));
+        final UserOptionsEntity second = entityService.create(userOptions(1, "named", "second"));
+        final UserOptionsEntity third = entityService.create(userOptions(2, "", "third"));
+        commitTransaction();
+
+        // Execute
+        List<String> page = eventTrackingIds(entityService.findAfter(0, 2));
+        List<String> next = eventTrackingIds(entityService.findAfter(second.getId(), 2));
+
+        // Verify pages in ID order
+        assertThat(page, contains("first", "second"));
+        assertThat(next, contains("third"));
+        assertTrue(entityService.findAfter(third.getId(), 2).isEmpty());
+    }
+
+    @Test
+    @DirtiesContext
+    public void testDeleteStale() {
+        // Setup -> one server stopped, one being stopped, one being started and one not in the batch
+        final UserOptionsEntity stopped = entityService.create(userOptions(1, "", "stopped"));
+        final UserOptionsEntity stopping = entityService.create(userOptions(2, "", "stopping"));
+        final UserOptionsEntity restarting = entityService.create(userOptions(3, "", "old-start"));
+        entityService.create(userOptions(4, "", "other"));
+        sessionFactory.getCurrentSession().save(operation("stopping", null, "user-2", ""));
+        sessionFactory.getCurrentSession().save(operation("new-start", 3, "user-3", ""));
+        commitTransaction();
+
+        final List<Long> batch = Arrays.asList(stopped.getId(), stopping.getId(), restarting.getId());
+
+        // Nothing was stored before the given time
+        assertTrue(entityService.deleteStale(batch, new Date(0)).isEmpty());
+        commitTransaction();
+
+        // Execute
+        List<String> deleted = eventTrackingIds(entityService.deleteStale(batch, new Date(System.currentTimeMillis() + 60000)));
+        commitTransaction();
+
+        // Verify only the user options of the stopped server are deleted
+        assertThat(deleted, contains("stopped"));
+        assertThat(eventTrackingIds(entityService.findAfter(0, 10)), containsInAnyOrder("stopping", "old-start", "other"));
+    }
+
+    private List<String> eventTrackingIds(final List<UserOptionsEntity> userOptions) {
+        return userOptions.stream().map(UserOptionsEntity::getEventTrackingId).collect(Collectors.toList());
+    }
+
+    private static UserOptionsEntity userOptions(final Integer userId, final String servername, final String eventTrackingId) {
+        return UserOptionsEntity.builder()
+                                .userId(userId)
+                                .servername(servername)
+                                .projectId("project")
+                                .eventTrackingId(eventTrackingId)
+                                .build();
+    }
+
+    private static ServerOperationEntity operation(final String eventTrackingId, final Integer userId, final String username, final String servername) {
+        return ServerOperationEntity.builder()
+                                    .node("node-1")
+                                    .username(username)
+                                    .userId(userId)
+                                    .servername(servername)
+                                    .operation(JupyterServerEventI.Operation.Stop)
+                                    .eventTrackingId(eventTrackingId)
+                                    .state(JupyterServerEventI.Status.InProgress)
+                                    .deadline(new Date())
+                                    .build();
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nrg.xnatx.plugins.jupyterhub.models.LifecycleStats;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JupyterHubLifecycleExecutorTest {
+
+    private JupyterHubLifecycleExecutor executor;
+
+    @Before
+    public void before() {
+        final JupyterHubPreferences mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getHubLifecycleThreads()).thenReturn(1);
+        when(mockJupyterHubPreferences.getHubLifecycleQueueCapacity()).thenReturn(2);
+        executor = new JupyterHubLifecycleExecutor(mockJupyterHubPreferences);
+    }
+
+    @After
+    public void after() {
+        executor.shutdown();
+    }
+
+    @Test(timeout = 5000)
+    public void testAdmissionPolicy() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // Occupy the only thread, then fill the queue
+        executor.operations().execute(() -> {
+            running.countDown();
+            await(release);
+        });
+        assertTrue(running.await(2, TimeUnit.SECONDS));
+        executor.operations().execute(() -> {});
+        executor.operations().execute(() -> {});
+
+        // New operations are rejected
+        try {
+            CompletableFuture.runAsync(() -> {}, executor.operations());
+            fail("Expected the operation to be rejected");
+        } catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        // Continuations of admitted operations are not
+        final CompletableFuture<Void> continuation = CompletableFuture.runAsync(() -> {}, executor);
+
+        LifecycleStats stats = executor.getStats();
+        assertEquals(1, stats.getActiveTasks());
+        assertEquals(3, stats.getQueued());
+        assertEquals(1, stats.getRejected());
+
+        release.countDown();
+        continuation.get(2, TimeUnit.SECONDS);
+    }
+
+    @Test(timeout = 5000)
+    public void testNamedThreads() throws Exception {
+        final String name = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor.operations()).get();
+        assertTrue(name.startsWith("jupyterhub-lifecycle-"));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
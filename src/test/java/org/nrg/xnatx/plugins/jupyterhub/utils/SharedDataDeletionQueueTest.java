@@ -0,0 +1,133 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nrg.xnatx.plugins.jupyterhub.models.SharedDataDeletion;
+import org.nrg.xnatx.plugins.jupyterhub.preferences.JupyterHubPreferences;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SharedDataDeletionQueueTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JupyterHubPreferences mockJupyterHubPreferences;
+    private SharedDataDeletionQueue queue;
+
+    @Before
+    public void before() {
+        mockJupyterHubPreferences = mock(JupyterHubPreferences.class);
+        when(mockJupyterHubPreferences.getSharedDataDeletionThreads()).thenReturn(2);
+        when(mockJupyterHubPreferences.getSharedDataDeletionRate()).thenReturn(0);
+        queue = new SharedDataDeletionQueue(mockJupyterHubPreferences);
+    }
+
+    @After
+    public void after() {
+        queue.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testDeletesTree() throws Exception {
+        final Path root = tree("tree", 3, 4);
+
+        final SharedDataDeletion deletion = queue.submit(root).get();
+
+        assertFalse(Files.exists(root));
+        assertEquals(SharedDataDeletion.Status.Completed, deletion.getStatus());
+        // 3 levels of 3 subdirectories with 4 files each, plus the root
+        assertEquals(4 * (1 + 3 + 9 + 27), deletion.getFiles());
+        assertEquals(1 + 3 + 9 + 27, deletion.getDirectories());
+        assertEquals(0, deletion.getFailures());
+        assertNotNull(deletion.getFinished());
+        assertFalse(queue.isDeleting(root));
+
+        final List<SharedDataDeletion> deletions = queue.getDeletions();
+        assertEquals(1, deletions.size());
+        assertEquals(deletion, deletions.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void testMissingTreeCompletes() throws Exception {
+        final SharedDataDeletion deletion = queue.submit(temporaryFolder.getRoot().toPath().resolve("missing")).get();
+
+        assertEquals(SharedDataDeletion.Status.Completed, deletion.getStatus());
+        assertEquals(0, deletion.getFiles() + deletion.getDirectories());
+    }
+
+    @Test(timeout = 10000)
+    public void testTreeIsDeletedOnce() throws Exception {
+        // Slow enough for the second submit to find the first one in progress
+        when(mockJupyterHubPreferences.getSharedDataDeletionRate()).thenReturn(100);
+        final Path root = tree("tree", 2, 10);
+
+        final CompletableFuture<SharedDataDeletion> first = queue.submit(root);
+        final CompletableFuture<SharedDataDeletion> second = queue.submit(root.resolve("..").resolve("tree"));
+
+        assertSame(first, second);
+        assertTrue(queue.isDeleting(root));
+        first.get();
+        assertFalse(Files.exists(root));
+    }
+
+    @Test(timeout = 10000)
+    public void testRateIsThrottled() throws Exception {
+        // A burst of 20 operations, then 20 operations per second
+        when(mockJupyterHubPreferences.getSharedDataDeletionRate()).thenReturn(20);
+        final Path root = tree("tree", 0, 39);
+
+        final long start = System.nanoTime();
+        queue.submit(root).get();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // One listing, 39 files and the root directory
+        assertTrue("Deleted 41 entries in " + elapsed + " ms", elapsed >= 900);
+    }
+
+    @Test(timeout = 10000)
+    public void testLinksAreNotFollowed() throws Exception {
+        final Path target = tree("target", 1, 2);
+        final Path root = Files.createDirectory(temporaryFolder.getRoot().toPath().resolve("tree"));
+        Files.createSymbolicLink(root.resolve("link"), target);
+        Files.createLink(root.resolve("hardlink"), target.resolve("file-0"));
+
+        final SharedDataDeletion deletion = queue.submit(root).get();
+
+        assertFalse(Files.exists(root));
+        assertEquals(2, deletion.getFiles());
+        assertTrue(Files.exists(target.resolve("file-0")));
+        assertTrue(Files.exists(target.resolve("dir-0").resolve("file-1")));
+    }
+
+    /**
+     * Creates a tree with the given number of files in each directory and three subdirectories per level.
+     */
+    private Path tree(final String name, final int depth, final int files) throws Exception {
+        final Path root = Files.createDirectory(temporaryFolder.getRoot().toPath().resolve(name));
+        fill(root, depth, files);
+        return root;
+    }
+
+    private void fill(final Path directory, final int depth, final int files) throws Exception {
+        for (int i = 0; i < files; i++) {
+            Files.createFile(directory.resolve("file-" + i));
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 3; i++) {
+                fill(Files.createDirectory(directory.resolve("dir-" + i)), depth - 1, files);
+            }
+        }
+    }
+
+}
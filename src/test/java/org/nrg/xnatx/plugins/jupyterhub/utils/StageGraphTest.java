@@ -0,0 +1,161 @@
+package org.nrg.xnatx.plugins.jupyterhub.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StageGraphTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 5000)
+    public void testIndependentStagesRunConcurrently() {
+        final StageGraph graph = new StageGraph(executor);
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch second = new CountDownLatch(1);
+
+        // Each stage waits for the other one to have started
+        graph.stage("first", () -> {
+            first.countDown();
+            return second.await(2, TimeUnit.SECONDS);
+        });
+        graph.stage("second", () -> {
+            second.countDown();
+            return first.await(2, TimeUnit.SECONDS);
+        });
+
+        graph.completion().join();
+
+        assertEquals(2, graph.getTimings().size());
+        assertTrue(graph.getTimings().get("first") < 2000);
+        assertTrue(graph.getTimings().get("second") < 2000);
+    }
+
+    @Test(timeout = 5000)
+    public void testDependentStageReadsResults() {
+        final StageGraph graph = new StageGraph(executor);
+
+        final StageGraph.Stage<Integer> two = graph.stage("two", () -> 2);
+        final StageGraph.Stage<Integer> three = graph.stage("three", () -> 3);
+        final StageGraph.Stage<Integer> product = graph.stage("product", () -> two.get() * three.get(), two, three);
+
+        graph.completion().join();
+
+        assertEquals(Integer.valueOf(6), product.get());
+        assertEquals("product", graph.getTimings().keySet().stream().reduce((a, b) -> b).orElse(null));
+    }
+
+    @Test(timeout = 5000)
+    public void testFailureCancelsGraph() throws Exception {
+        final StageGraph graph = new StageGraph(executor);
+        final CountDownLatch running = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final AtomicBoolean dependentRan = new AtomicBoolean(false);
+        final IllegalStateException failure = new IllegalStateException("Check failed");
+
+        final StageGraph.Stage<Void> slow = graph.stage("slow", () -> {
+            running.countDown();
+            try {
+                Thread.sleep(4000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return null;
+        });
+        final StageGraph.Stage<Void> check = graph.stage("check", () -> {
+            running.await();
+            throw failure;
+        });
+        graph.stage("dependent", () -> {
+            dependentRan.set(true);
+            return null;
+        }, slow, check);
+
+        try {
+            graph.completion().join();
+            fail("Expected the graph to fail");
+        } catch (CompletionException e) {
+            assertSame(failure, e.getCause());
+        }
+
+        assertTrue(interrupted.get());
+        assertFalse(dependentRan.get());
+        assertFalse(graph.getTimings().containsKey("dependent"));
+        try {
+            check.get();
+            fail("Expected the failed stage to rethrow");
+        } catch (CompletionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testStagesRunInlineInDependencyOrder() {
+        final StageGraph graph = new StageGraph(Runnable::run);
+
+        final StageGraph.Stage<String> first = graph.stage("first", () -> "a");
+        final StageGraph.Stage<String> second = graph.stage("second", () -> first.get() + "b", first);
+
+        graph.completion().join();
+
+        assertEquals("ab", second.get());
+    }
+
+    @Test
+    public void testSkippedStageAfterFailure() {
+        final StageGraph graph = new StageGraph(Runnable::run);
+
+        final StageGraph.Stage<Void> rejected = graph.stage("rejected", () -> {
+            throw new IllegalArgumentException("Rejected");
+        });
+        final StageGraph.Stage<Void> skipped = graph.stage("skipped", () -> null, rejected);
+
+        try {
+            graph.completion().join();
+            fail("Expected the graph to fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+
+        try {
+            skipped.get();
+            fail("Expected the stage to be skipped");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoStagesAfterCompletion() {
+        final StageGraph graph = new StageGraph(Runnable::run);
+        graph.stage("first", () -> null);
+        graph.completion().join();
+
+        graph.stage("second", () -> null);
+    }
+
+}